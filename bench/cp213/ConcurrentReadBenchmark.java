@@ -0,0 +1,184 @@
+package cp213;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Multithreaded read throughput of a shared ConcurrentAVL and
+ * ConcurrentPopularityTree against an AVL guarded by one global lock. Run with {@code -t 1}, {@code -t 2}, ... up to
+ * the core count to see how each scales; the default uses every core. The
+ * mixed group adds one writer thread that keeps inserting and removing keys
+ * while the readers run.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConcurrentReadBenchmark {
+
+	/**
+	 * The trees shared by every benchmark thread. Both hold the even keys 0, 2,
+	 * ..., 2(size - 1).
+	 */
+	@State(Scope.Benchmark)
+	public static class SharedTrees {
+
+		@Param({ "1000", "1000000" })
+		public int size;
+
+		ConcurrentAVL<Integer> concurrent;
+		AVL<Integer> locked;
+		ConcurrentPopularityTree<Integer> popular;
+
+		/**
+		 * Fills both trees.
+		 */
+		@Setup(Level.Trial)
+		public void setUp() {
+			final int[] keys = KeyDistribution.UNIFORM.insertKeys(this.size, new SplittableRandom(42));
+			this.concurrent = new ConcurrentAVL<>();
+			this.locked = new AVL<>();
+			this.popular = new ConcurrentPopularityTree<>();
+
+			for (final int key : keys) {
+				this.concurrent.insert(new CountedData<Integer>(key * 2));
+				this.locked.insert(new CountedData<Integer>(key * 2));
+				this.popular.insert(new CountedData<Integer>(key * 2));
+			}
+			return;
+		}
+	}
+
+	/**
+	 * Per-thread source of keys, so that threads do not share a random generator.
+	 */
+	@State(Scope.Thread)
+	public static class Probes {
+
+		SplittableRandom random;
+
+		/**
+		 * Seeds this thread's generator.
+		 */
+		@Setup(Level.Trial)
+		public void setUp() {
+			this.random = new SplittableRandom(Thread.currentThread().getId());
+			return;
+		}
+
+		/**
+		 * Returns a key that is in the shared trees.
+		 *
+		 * @param size The number of keys in the trees.
+		 * @return An even key.
+		 */
+		CountedData<Integer> hit(final int size) {
+			return new CountedData<Integer>(this.random.nextInt(size) * 2);
+		}
+
+		/**
+		 * Returns a key that is not in the shared trees.
+		 *
+		 * @param size The number of keys in the trees.
+		 * @return An odd key.
+		 */
+		CountedData<Integer> miss(final int size) {
+			return new CountedData<Integer>(this.random.nextInt(size) * 2 + 1);
+		}
+	}
+
+	/**
+	 * Lock-free lookups in the ConcurrentAVL.
+	 *
+	 * @param trees  The shared trees.
+	 * @param probes This thread's keys.
+	 * @return The retrieved data.
+	 */
+	@Benchmark
+	@Threads(Threads.MAX)
+	public CountedData<Integer> concurrentRetrieve(final SharedTrees trees, final Probes probes) {
+		return trees.concurrent.retrieve(probes.hit(trees.size));
+	}
+
+	/**
+	 * Lookups in the AVL under a global lock.
+	 *
+	 * @param trees  The shared trees.
+	 * @param probes This thread's keys.
+	 * @return The retrieved data.
+	 */
+	@Benchmark
+	@Threads(Threads.MAX)
+	public CountedData<Integer> lockedRetrieve(final SharedTrees trees, final Probes probes) {
+		final CountedData<Integer> key = probes.hit(trees.size);
+
+		synchronized (trees.locked) {
+			return trees.locked.retrieve(key);
+		}
+	}
+
+	/**
+	 * Lock-free counting lookups in the ConcurrentPopularityTree, including the
+	 * amortized rebuilds they trigger.
+	 *
+	 * @param trees  The shared trees.
+	 * @param probes This thread's keys.
+	 * @return The retrieved data.
+	 */
+	@Benchmark
+	@Threads(Threads.MAX)
+	public CountedData<Integer> popularityRetrieve(final SharedTrees trees, final Probes probes) {
+		return trees.popular.retrieve(probes.hit(trees.size));
+	}
+
+	/**
+	 * Readers of the mixed workload.
+	 *
+	 * @param trees  The shared trees.
+	 * @param probes This thread's keys.
+	 * @return The retrieved data.
+	 */
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(15)
+	public CountedData<Integer> mixedRead(final SharedTrees trees, final Probes probes) {
+		return trees.concurrent.retrieve(probes.hit(trees.size));
+	}
+
+	/**
+	 * Writer of the mixed workload: adds and then removes a key that is not
+	 * otherwise in the tree.
+	 *
+	 * @param trees  The shared trees.
+	 * @param probes This thread's keys.
+	 */
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public void mixedWrite(final SharedTrees trees, final Probes probes) {
+		final CountedData<Integer> key = probes.miss(trees.size);
+		trees.concurrent.insert(key);
+		trees.concurrent.remove(key);
+		return;
+	}
+}
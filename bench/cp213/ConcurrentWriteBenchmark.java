@@ -0,0 +1,224 @@
+package cp213;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Multithreaded write throughput of a shared counted index: a CountedSkipList,
+ * whose writers never block, and a ShardedTree, whose writers lock only the
+ * shard of their key, against a ConcurrentAVL, whose writers are serialized by
+ * a lock, and an AVL guarded by one global lock. Every benchmark
+ * runs 16 writer threads; raise the count with {@code -t} or the group thread
+ * counts with {@code -tg}.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConcurrentWriteBenchmark {
+
+	/**
+	 * The tree shared by every benchmark thread. It holds the even keys 0, 2, ...,
+	 * 2(size - 1).
+	 */
+	@State(Scope.Benchmark)
+	public static class SharedTree {
+
+		@Param({ "AVL", "CONCURRENT_AVL", "SKIP_LIST", "SHARDED_AVL" })
+		public TreeType treeType;
+
+		@Param({ "1000", "1000000" })
+		public int size;
+
+		boolean locked;
+		BST<Integer> tree;
+
+		/**
+		 * Fills the tree. A sharded tree is divided by a sample of the keys.
+		 */
+		@Setup(Level.Trial)
+		public void setUp() {
+			final int[] keys = KeyDistribution.UNIFORM.insertKeys(this.size, new SplittableRandom(42));
+			final int[] sample = new int[Math.min(keys.length, 4096)];
+
+			for (int i = 0; i < sample.length; i++) {
+				sample[i] = keys[i] * 2;
+			}
+			this.tree = this.treeType.create(sample);
+			this.locked = this.treeType == TreeType.AVL;
+
+			for (final int key : keys) {
+				this.tree.insert(new CountedData<Integer>(key * 2));
+			}
+			return;
+		}
+
+		/**
+		 * Inserts key, under the global lock if the tree is not thread safe.
+		 *
+		 * @param key The key to insert.
+		 */
+		void insert(final CountedData<Integer> key) {
+
+			if (this.locked) {
+				synchronized (this.tree) {
+					this.tree.insert(key);
+				}
+			} else {
+				this.tree.insert(key);
+			}
+			return;
+		}
+
+		/**
+		 * Removes key, under the global lock if the tree is not thread safe.
+		 *
+		 * @param key The key to remove.
+		 */
+		void remove(final CountedData<Integer> key) {
+
+			if (this.locked) {
+				synchronized (this.tree) {
+					this.tree.remove(key);
+				}
+			} else {
+				this.tree.remove(key);
+			}
+			return;
+		}
+
+		/**
+		 * Retrieves key, under the global lock if the tree is not thread safe.
+		 *
+		 * @param key The key to retrieve.
+		 * @return The retrieved data.
+		 */
+		CountedData<Integer> retrieve(final CountedData<Integer> key) {
+			CountedData<Integer> data = null;
+
+			if (this.locked) {
+				synchronized (this.tree) {
+					data = this.tree.retrieve(key);
+				}
+			} else {
+				data = this.tree.retrieve(key);
+			}
+			return data;
+		}
+	}
+
+	/**
+	 * Per-thread source of keys, so that threads do not share a random generator.
+	 */
+	@State(Scope.Thread)
+	public static class Probes {
+
+		SplittableRandom random;
+
+		/**
+		 * Seeds this thread's generator.
+		 */
+		@Setup(Level.Trial)
+		public void setUp() {
+			this.random = new SplittableRandom(Thread.currentThread().getId());
+			return;
+		}
+
+		/**
+		 * Returns a key that is in the shared tree.
+		 *
+		 * @param size The number of keys in the tree.
+		 * @return An even key.
+		 */
+		CountedData<Integer> hit(final int size) {
+			return new CountedData<Integer>(this.random.nextInt(size) * 2);
+		}
+
+		/**
+		 * Returns a key that is not in the shared tree.
+		 *
+		 * @param size The number of keys in the tree.
+		 * @return An odd key.
+		 */
+		CountedData<Integer> miss(final int size) {
+			return new CountedData<Integer>(this.random.nextInt(size) * 2 + 1);
+		}
+	}
+
+	/**
+	 * Inserts then removes a key that is not otherwise in the tree, which adds and
+	 * removes a node.
+	 *
+	 * @param tree   The shared tree.
+	 * @param probes This thread's keys.
+	 */
+	@Benchmark
+	@Threads(16)
+	public void churn(final SharedTree tree, final Probes probes) {
+		final CountedData<Integer> key = probes.miss(tree.size);
+		tree.insert(key);
+		tree.remove(key);
+		return;
+	}
+
+	/**
+	 * Counts a key that is in the tree, which changes only its count.
+	 *
+	 * @param tree   The shared tree.
+	 * @param probes This thread's keys.
+	 */
+	@Benchmark
+	@Threads(16)
+	public void count(final SharedTree tree, final Probes probes) {
+		tree.insert(probes.hit(tree.size));
+		return;
+	}
+
+	/**
+	 * Readers of the mixed workload.
+	 *
+	 * @param tree   The shared tree.
+	 * @param probes This thread's keys.
+	 * @return The retrieved data.
+	 */
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(8)
+	public CountedData<Integer> mixedRead(final SharedTree tree, final Probes probes) {
+		return tree.retrieve(probes.hit(tree.size));
+	}
+
+	/**
+	 * Writers of the mixed workload: count keys that are in the tree.
+	 *
+	 * @param tree   The shared tree.
+	 * @param probes This thread's keys.
+	 */
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(8)
+	public void mixedWrite(final SharedTree tree, final Probes probes) {
+		tree.insert(probes.hit(tree.size));
+		return;
+	}
+}
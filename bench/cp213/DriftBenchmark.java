@@ -0,0 +1,131 @@
+package cp213;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Comparisons per retrieval on a workload whose popular keys drift: retrievals
+ * follow the DRIFTING distribution, whose hot keys change every
+ * KeyDistribution.DRIFT probes. The probe sequence is never repeated, so each
+ * phase's hot keys are new to the tree. Each iteration reports the comparisons
+ * made and the retrievals done as secondary results, and their ratio per
+ * iteration shows whether a tree keeps up with the drift. A PopularityTree
+ * keeps the keys of past phases near the root and its ratio climbs from phase
+ * to phase; a DecayingPopularityTree lets them sink and its ratio stays flat.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 10, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DriftBenchmark {
+
+	/**
+	 * Number of Zipfian ranks generated per trial. A power of 2 so that the
+	 * cursor can wrap with a mask.
+	 */
+	private static final int RANKS = 1 << 20;
+
+	/**
+	 * Comparisons and retrievals in the current iteration.
+	 */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Counters {
+
+		public long comparisons;
+		public long retrievals;
+
+		/**
+		 * Clears the counters at the start of each iteration.
+		 */
+		@Setup(Level.Iteration)
+		public void clear() {
+			this.comparisons = 0;
+			this.retrievals = 0;
+			return;
+		}
+	}
+
+	/**
+	 * A filled tree and the ranks used to probe it.
+	 */
+	@State(Scope.Thread)
+	public static class DriftState {
+
+		@Param({ "AVL", "POPULARITY", "DECAYING_POPULARITY", "SPLAY" })
+		public TreeType treeType;
+
+		@Param({ "100000", "1000000" })
+		public int size;
+
+		long position = 0;
+		int[] ranks;
+		BST<Integer> tree;
+
+		/**
+		 * Generates the ranks and fills the tree.
+		 */
+		@Setup(Level.Trial)
+		public void setUp() {
+			final SplittableRandom random = new SplittableRandom(42);
+			final KeyDistribution.Zipf zipf = new KeyDistribution.Zipf(this.size, 0.99);
+			this.tree = this.treeType.create();
+
+			for (final int key : KeyDistribution.DRIFTING.insertKeys(this.size, random)) {
+				this.tree.insert(new CountedData<Integer>(key * 2));
+			}
+			this.ranks = new int[RANKS];
+
+			for (int i = 0; i < RANKS; i++) {
+				this.ranks[i] = zipf.next(random);
+			}
+			return;
+		}
+
+		/**
+		 * Returns the next key of the drifting sequence. The ranks are reused, but
+		 * each pass over them falls in a later phase.
+		 *
+		 * @return A key that is in the tree.
+		 */
+		CountedData<Integer> next() {
+			final long probe = this.position++;
+			final int rank = this.ranks[(int) probe & (RANKS - 1)];
+			return new CountedData<Integer>(KeyDistribution.drift(rank, probe, this.size) * 2);
+		}
+	}
+
+	/**
+	 * Retrieves the next key of the drifting sequence.
+	 *
+	 * @param state    The benchmark state.
+	 * @param counters Receives the comparisons made.
+	 * @return The retrieved data.
+	 */
+	@Benchmark
+	public CountedData<Integer> retrieve(final DriftState state, final Counters counters) {
+		final long before = state.tree.getComparisonsLong();
+		final CountedData<Integer> data = state.tree.retrieve(state.next());
+		counters.comparisons += state.tree.getComparisonsLong() - before;
+		counters.retrievals++;
+		return data;
+	}
+}
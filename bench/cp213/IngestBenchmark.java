@@ -0,0 +1,125 @@
+package cp213;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Scanner;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Counts the letters of a generated text file into a PopularityTree, once with
+ * the Scanner loop of {@code A04Main.retrieve} and once with TextIngester. The
+ * file is written once per trial and is read from the OS cache after the first
+ * iteration.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IngestBenchmark {
+
+	/**
+	 * The generated input file.
+	 */
+	@State(Scope.Benchmark)
+	public static class Corpus {
+
+		@Param({ "16", "256" })
+		public int megabytes;
+
+		Path file;
+
+		/**
+		 * Writes random lines of words to a temporary file.
+		 *
+		 * @throws IOException If the file cannot be written.
+		 */
+		@Setup(Level.Trial)
+		public void setUp() throws IOException {
+			final SplittableRandom random = new SplittableRandom(42);
+			final String[] words = A04Main.POPULAR.split("");
+			this.file = Files.createTempFile("ingest", ".txt");
+
+			try (BufferedWriter writer = Files.newBufferedWriter(this.file, StandardCharsets.UTF_8)) {
+				for (long written = 0; written < this.megabytes * (1L << 20); written += 2) {
+					writer.write(words[Math.min(random.nextInt(words.length), random.nextInt(words.length))]);
+					writer.write(random.nextInt(6) == 0 ? '\n' : ' ');
+				}
+			}
+			return;
+		}
+
+		/**
+		 * Deletes the file.
+		 *
+		 * @throws IOException If the file cannot be deleted.
+		 */
+		@TearDown(Level.Trial)
+		public void tearDown() throws IOException {
+			Files.delete(this.file);
+			return;
+		}
+	}
+
+	/**
+	 * Counts with TextIngester.
+	 *
+	 * @param corpus The input file.
+	 * @return The filled tree.
+	 * @throws IOException If the file cannot be read.
+	 */
+	@Benchmark
+	public PopularityTree<Character> ingester(final Corpus corpus) throws IOException {
+		final PopularityTree<Character> tree = new PopularityTree<>();
+		new TextIngester().ingest(corpus.file, tree);
+		return tree;
+	}
+
+	/**
+	 * Counts with Scanner, one retrieve per letter.
+	 *
+	 * @param corpus The input file.
+	 * @return The filled tree.
+	 * @throws IOException If the file cannot be read.
+	 */
+	@Benchmark
+	public PopularityTree<Character> scanner(final Corpus corpus) throws IOException {
+		final PopularityTree<Character> tree = new PopularityTree<>();
+
+		for (final char letter : A04Main.ALPHABET.toCharArray()) {
+			tree.insert(new CountedData<Character>(letter));
+		}
+		try (Scanner fileScan = new Scanner(new File(corpus.file.toString()), StandardCharsets.UTF_8)) {
+			while (fileScan.hasNextLine()) {
+				for (final char c : fileScan.nextLine().toCharArray()) {
+					if (Character.isLetter(c)) {
+						tree.retrieve(new CountedData<Character>(Character.toUpperCase(c)));
+					}
+				}
+			}
+		}
+		return tree;
+	}
+}
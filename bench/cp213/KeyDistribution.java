@@ -0,0 +1,262 @@
+package cp213;
+
+import java.util.SplittableRandom;
+
+/**
+ * Key workloads used by the tree benchmarks. Each distribution produces the
+ * order in which keys are inserted into a tree and the sequence of keys that
+ * are then looked up in it.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public enum KeyDistribution {
+
+	/**
+	 * Distinct keys inserted in random order, probed uniformly at random.
+	 */
+	UNIFORM {
+		@Override
+		public int[] insertKeys(final int size, final SplittableRandom random) {
+			final int[] keys = sorted(size);
+			shuffle(keys, random);
+			return keys;
+		}
+
+		@Override
+		public int[] probeKeys(final int size, final int count, final SplittableRandom random) {
+			final int[] keys = new int[count];
+
+			for (int i = 0; i < count; i++) {
+				keys[i] = random.nextInt(size);
+			}
+			return keys;
+		}
+	},
+	/**
+	 * Distinct keys inserted in random order, probed with a Zipfian skew (theta
+	 * 0.99). Popular ranks are scattered over the key space so that hot keys are
+	 * not simply the smallest keys.
+	 */
+	ZIPFIAN {
+		@Override
+		public int[] insertKeys(final int size, final SplittableRandom random) {
+			return UNIFORM.insertKeys(size, random);
+		}
+
+		@Override
+		public int[] probeKeys(final int size, final int count, final SplittableRandom random) {
+			final Zipf zipf = new Zipf(size, 0.99);
+			final int[] keys = new int[count];
+
+			for (int i = 0; i < count; i++) {
+				keys[i] = scatter(zipf.next(random), size);
+			}
+			return keys;
+		}
+	},
+	/**
+	 * Keys inserted in ascending order and probed by an ascending scan that wraps
+	 * around. Models feeds that arrive sorted.
+	 */
+	SEQUENTIAL {
+		@Override
+		public int[] insertKeys(final int size, final SplittableRandom random) {
+			return sorted(size);
+		}
+
+		@Override
+		public int[] probeKeys(final int size, final int count, final SplittableRandom random) {
+			final int[] keys = new int[count];
+
+			for (int i = 0; i < count; i++) {
+				keys[i] = i % size;
+			}
+			return keys;
+		}
+	},
+	/**
+	 * Keys inserted in ascending order and probed alternately from both ends of
+	 * the key range, so that every lookup lands on one of the deepest paths of an
+	 * unbalanced tree.
+	 */
+	ADVERSARIAL {
+		@Override
+		public int[] insertKeys(final int size, final SplittableRandom random) {
+			return sorted(size);
+		}
+
+		@Override
+		public int[] probeKeys(final int size, final int count, final SplittableRandom random) {
+			final int[] keys = new int[count];
+
+			for (int i = 0; i < count; i++) {
+				final int offset = (i >> 1) % size;
+				keys[i] = (i & 1) == 0 ? size - 1 - offset : offset;
+			}
+			return keys;
+		}
+	},
+	/**
+	 * Distinct keys inserted in random order, probed with a Zipfian skew whose
+	 * popular keys change every DRIFT probes. Each phase scatters the ranks over
+	 * the key space differently, so the keys that are hot in one phase are
+	 * unrelated to those that were hot in the last.
+	 */
+	DRIFTING {
+		@Override
+		public int[] insertKeys(final int size, final SplittableRandom random) {
+			return UNIFORM.insertKeys(size, random);
+		}
+
+		@Override
+		public int[] probeKeys(final int size, final int count, final SplittableRandom random) {
+			final Zipf zipf = new Zipf(size, 0.99);
+			final int[] keys = new int[count];
+
+			for (int i = 0; i < count; i++) {
+				keys[i] = drift(zipf.next(random), i, size);
+			}
+			return keys;
+		}
+	};
+
+	/**
+	 * The number of probes in each phase of the DRIFTING distribution.
+	 */
+	public static final int DRIFT = 1 << 20;
+
+	/**
+	 * Generates Zipfian ranks in the range 0 to n - 1 using the method of Gray et
+	 * al., "Quickly Generating Billion-Record Synthetic Databases". Set-up is O(n),
+	 * each sample is O(1).
+	 */
+	static final class Zipf {
+		private final double alpha;
+		private final double eta;
+		private final int n;
+		private final double theta;
+		private final double zetan;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param n     The number of ranks.
+		 * @param theta The skew, 0 &lt; theta &lt; 1.
+		 */
+		Zipf(final int n, final double theta) {
+			this.n = n;
+			this.theta = theta;
+			this.zetan = zeta(n, theta);
+			this.alpha = 1.0 / (1.0 - theta);
+			this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta(2, theta) / this.zetan);
+		}
+
+		private static double zeta(final int n, final double theta) {
+			double sum = 0;
+
+			for (int i = 1; i <= n; i++) {
+				sum += 1 / Math.pow(i, theta);
+			}
+			return sum;
+		}
+
+		/**
+		 * Returns the next rank, 0 being the most popular.
+		 *
+		 * @param random The source of randomness.
+		 * @return A rank in the range 0 to n - 1.
+		 */
+		int next(final SplittableRandom random) {
+			final double u = random.nextDouble();
+			final double uz = u * this.zetan;
+			int rank;
+
+			if (uz < 1.0) {
+				rank = 0;
+			} else if (uz < 1.0 + Math.pow(0.5, this.theta)) {
+				rank = 1;
+			} else {
+				rank = (int) (this.n * Math.pow(this.eta * u - this.eta + 1, this.alpha));
+			}
+			return Math.min(rank, this.n - 1);
+		}
+	}
+
+	/**
+	 * Maps a rank onto a key for the phase of the DRIFTING distribution that
+	 * contains a probe.
+	 *
+	 * @param rank  The rank to map.
+	 * @param probe The position of the probe in the sequence.
+	 * @param size  The size of the key space.
+	 * @return The key for rank in the phase of probe.
+	 */
+	static int drift(final int rank, final long probe, final int size) {
+		final long phase = probe / DRIFT;
+		return (int) (((rank + phase * size) * 0x9E3779B1L & 0x7FFFFFFFL) % size);
+	}
+
+	/**
+	 * Maps a rank onto a key by multiplicative hashing, spreading the popular ranks
+	 * over the key range 0 to size - 1.
+	 *
+	 * @param rank The rank to map.
+	 * @param size The size of the key space.
+	 * @return The key for rank.
+	 */
+	static int scatter(final int rank, final int size) {
+		return (int) ((rank * 0x9E3779B1L & 0x7FFFFFFFL) % size);
+	}
+
+	/**
+	 * Shuffles an array in place (Fisher-Yates).
+	 *
+	 * @param keys   The array to shuffle.
+	 * @param random The source of randomness.
+	 */
+	static void shuffle(final int[] keys, final SplittableRandom random) {
+
+		for (int i = keys.length - 1; i > 0; i--) {
+			final int j = random.nextInt(i + 1);
+			final int temp = keys[i];
+			keys[i] = keys[j];
+			keys[j] = temp;
+		}
+		return;
+	}
+
+	/**
+	 * Returns the keys 0 to size - 1 in ascending order.
+	 *
+	 * @param size The number of keys.
+	 * @return The sorted keys.
+	 */
+	static int[] sorted(final int size) {
+		final int[] keys = new int[size];
+
+		for (int i = 0; i < size; i++) {
+			keys[i] = i;
+		}
+		return keys;
+	}
+
+	/**
+	 * Returns the order in which keys are inserted into a tree of size keys.
+	 *
+	 * @param size   The number of distinct keys.
+	 * @param random The source of randomness.
+	 * @return The keys in insertion order.
+	 */
+	public abstract int[] insertKeys(int size, SplittableRandom random);
+
+	/**
+	 * Returns a sequence of keys to look up in a tree of size keys.
+	 *
+	 * @param size   The number of distinct keys.
+	 * @param count  The length of the sequence.
+	 * @param random The source of randomness.
+	 * @return The keys in lookup order.
+	 */
+	public abstract int[] probeKeys(int size, int count, SplittableRandom random);
+}
@@ -0,0 +1,195 @@
+package cp213;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares AVL&lt;Long&gt; with the array-backed PooledAVL holding the same
+ * keys. Run with {@code -prof gc} to see the allocation rate and GC time of
+ * each: the pooled tree allocates only when its arrays grow, and a full GC
+ * traces five arrays rather than three objects per key.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PooledBenchmark {
+
+	/**
+	 * Number of probe keys generated per trial. A power of 2 so that the cursor can
+	 * wrap with a mask.
+	 */
+	private static final int PROBES = 1 << 20;
+
+	/**
+	 * A filled AVL and PooledAVL plus the keys used to build and probe them.
+	 */
+	@State(Scope.Thread)
+	public static class PoolState {
+
+		@Param({ "UNIFORM", "ZIPFIAN" })
+		public KeyDistribution distribution;
+
+		@Param({ "100000", "1000000", "10000000" })
+		public int size;
+
+		AVL<Long> avl;
+		int cursor = 0;
+		int[] insertKeys;
+		PooledAVL pooled;
+		int[] probeKeys;
+
+		/**
+		 * Generates the workload and fills both trees.
+		 */
+		@Setup(Level.Trial)
+		public void setUp() {
+			final SplittableRandom random = new SplittableRandom(42);
+			this.insertKeys = this.distribution.insertKeys(this.size, random);
+			this.probeKeys = this.distribution.probeKeys(this.size, PROBES, random);
+			this.avl = this.fillAVL();
+			this.pooled = this.fillPooled();
+			return;
+		}
+
+		/**
+		 * Builds an AVL from the insertion keys.
+		 *
+		 * @return The filled tree.
+		 */
+		AVL<Long> fillAVL() {
+			final AVL<Long> filled = new AVL<>();
+
+			for (final int key : this.insertKeys) {
+				filled.insert(new CountedData<Long>(key * 2L));
+			}
+			return filled;
+		}
+
+		/**
+		 * Builds a PooledAVL from the insertion keys.
+		 *
+		 * @return The filled tree.
+		 */
+		PooledAVL fillPooled() {
+			final PooledAVL filled = new PooledAVL();
+
+			for (final int key : this.insertKeys) {
+				filled.insert(key * 2L);
+			}
+			return filled;
+		}
+
+		/**
+		 * Returns the next probe key.
+		 *
+		 * @return An even key that is in the trees.
+		 */
+		long next() {
+			final int index = this.cursor;
+			this.cursor = (index + 1) & (PROBES - 1);
+			return this.probeKeys[index] * 2L;
+		}
+	}
+
+	/**
+	 * Time to build an AVL.
+	 *
+	 * @param state The benchmark state.
+	 * @return The built tree.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 5)
+	public AVL<Long> buildAVL(final PoolState state) {
+		return state.fillAVL();
+	}
+
+	/**
+	 * Time to build a PooledAVL.
+	 *
+	 * @param state The benchmark state.
+	 * @return The built tree.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 5)
+	public PooledAVL buildPooled(final PoolState state) {
+		return state.fillPooled();
+	}
+
+	/**
+	 * Inserts then removes a key that is not in the AVL.
+	 *
+	 * @param state The benchmark state.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void churnAVL(final PoolState state) {
+		final CountedData<Long> data = new CountedData<Long>(state.next() + 1);
+		state.avl.insert(data);
+		state.avl.remove(data);
+		return;
+	}
+
+	/**
+	 * Inserts then removes a key that is not in the PooledAVL.
+	 *
+	 * @param state The benchmark state.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void churnPooled(final PoolState state) {
+		final long key = state.next() + 1;
+		state.pooled.insert(key);
+		state.pooled.remove(key);
+		return;
+	}
+
+	/**
+	 * Retrieves a key that is in the AVL.
+	 *
+	 * @param state The benchmark state.
+	 * @return The retrieved data.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public CountedData<Long> retrieveAVL(final PoolState state) {
+		return state.avl.retrieve(new CountedData<Long>(state.next()));
+	}
+
+	/**
+	 * Retrieves a key that is in the PooledAVL.
+	 *
+	 * @param state The benchmark state.
+	 * @return The count of the retrieved key.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public int retrievePooled(final PoolState state) {
+		return state.pooled.retrieve(state.next());
+	}
+}
@@ -0,0 +1,160 @@
+package cp213;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Drives a TreeServer on localhost with a closed loop of clients, each sending
+ * its next request as soon as the last is answered, and prints the latency
+ * percentiles and throughput at each level of concurrency. A tenth of the
+ * requests are inserts of keys in the tree, the rest retrievals of uniformly
+ * chosen keys. Latency is measured by the client, from sending a request to
+ * receiving its whole response, and includes the loopback network stack.
+ *
+ * <pre>
+ * java -cp out cp213.ServerLoadGenerator [treeType [size [requests]]]
+ * </pre>
+ *
+ * treeType is a TreeType, AVL by default; size is the number of keys in the
+ * tree, 100000 by default; requests is the number of requests at each level,
+ * 20000 by default. The clients run on virtual threads where the Java runtime
+ * has them. Unless they are set on the command line, the generator sets the JDK
+ * server properties that TreeServer recommends under load before it starts a
+ * server.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class ServerLoadGenerator {
+
+	/**
+	 * The numbers of concurrent clients, in the order they are run.
+	 */
+	private static final int[] CLIENTS = { 1, 4, 16, 64, 256 };
+	/**
+	 * Idle connections the server keeps open, as many as may wait to be accepted.
+	 */
+	private static final int IDLE_CONNECTIONS = 1024;
+	/**
+	 * Percentage of requests that are inserts.
+	 */
+	private static final int WRITE_PERCENT = 10;
+
+	/**
+	 * Runs the load at each level of concurrency and prints a row for each.
+	 *
+	 * @param args treeType, size and requests, all optional.
+	 * @throws Exception if the server cannot be started or a request fails.
+	 */
+	public static void main(final String[] args) throws Exception {
+		final TreeType treeType = TreeType.valueOf(args.length > 0 ? args[0] : "AVL");
+		final int size = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+		final int requests = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+		// The JDK server reads these once, when the first server is created.
+		System.getProperties().putIfAbsent("sun.net.httpserver.nodelay", "true");
+		System.getProperties().putIfAbsent("sun.net.httpserver.maxIdleConnections",
+				String.valueOf(IDLE_CONNECTIONS));
+		final BST<Integer> tree = treeType.create();
+
+		for (final int key : KeyDistribution.UNIFORM.insertKeys(size, new SplittableRandom(42))) {
+			tree.insert(new CountedData<Integer>(key));
+		}
+		final ExecutorService clients = TreeServer.newExecutor();
+		final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(clients)
+				.build();
+		System.out.printf("%s of %d keys, %d requests per level, %d%% inserts%n", treeType, size, requests,
+				WRITE_PERCENT);
+		// Warm up the server, the client and the tree.
+		run(tree, http, clients, size, 16, requests);
+		System.out.printf("%8s %12s %10s %10s %10s %10s%n", "clients", "requests/s", "p50 us", "p99 us", "max us",
+				"batch");
+
+		for (final int count : CLIENTS) {
+			final Object[] row = run(tree, http, clients, size, count, requests);
+			System.out.printf("%8d %12.0f %10.1f %10.1f %10.1f %10.2f%n", row);
+		}
+		clients.shutdown();
+		return;
+	}
+
+	/**
+	 * Serves tree on a new server and sends it requests from clients concurrent
+	 * clients.
+	 *
+	 * @param tree     The tree to serve.
+	 * @param http     The HTTP client.
+	 * @param executor Runs the clients.
+	 * @param size     The number of keys in the tree.
+	 * @param clients  The number of concurrent clients.
+	 * @param requests The number of requests to send in all.
+	 * @return The clients, requests per second, p50, p99 and maximum latency in
+	 *         microseconds, and the mean retrieval batch of the server.
+	 * @throws Exception if the server cannot be started or a request fails.
+	 */
+	private static Object[] run(final BST<Integer> tree, final HttpClient http, final ExecutorService executor,
+			final int size, final int clients, final int requests) throws Exception {
+		final TreeServer<Integer> server = new TreeServer<Integer>(tree, Integer::valueOf);
+		final InetSocketAddress address = server.start(0);
+		final String base = "http://localhost:" + address.getPort();
+		final TreeMetrics.Histogram latency = new TreeMetrics.Histogram();
+		final ArrayList<Future<Void>> futures = new ArrayList<>();
+		final long start = System.nanoTime();
+
+		try {
+			for (int i = 0; i < clients; i++) {
+				final SplittableRandom random = new SplittableRandom(i);
+				final int share = requests / clients + (i < requests % clients ? 1 : 0);
+				futures.add(executor.submit(() -> {
+					for (int j = 0; j < share; j++) {
+						send(http, base, random, size, latency);
+					}
+					return null;
+				}));
+			}
+			for (final Future<Void> future : futures) {
+				future.get();
+			}
+		} finally {
+			server.stop();
+		}
+		final double seconds = (System.nanoTime() - start) / 1e9;
+		return new Object[] { clients, latency.getTotal() / seconds, latency.getValueAtPercentile(50) / 1e3,
+				latency.getValueAtPercentile(99) / 1e3, latency.getMax() / 1e3, server.getMeanBatch() };
+	}
+
+	/**
+	 * Sends one request, chosen at random, and records its latency.
+	 *
+	 * @param http    The HTTP client.
+	 * @param base    The URI of the server.
+	 * @param random  The client's random generator.
+	 * @param size    The number of keys in the tree.
+	 * @param latency Records the latency in nanoseconds.
+	 * @throws IOException          if the request fails.
+	 * @throws InterruptedException if the client is interrupted.
+	 */
+	private static void send(final HttpClient http, final String base, final SplittableRandom random, final int size,
+			final TreeMetrics.Histogram latency) throws IOException, InterruptedException {
+		final int key = random.nextInt(size);
+		final HttpRequest request = random.nextInt(100) < WRITE_PERCENT
+				? HttpRequest.newBuilder(URI.create(base + "/insert?key=" + key))
+						.POST(HttpRequest.BodyPublishers.noBody()).build()
+				: HttpRequest.newBuilder(URI.create(base + "/retrieve?key=" + key)).GET().build();
+		final long start = System.nanoTime();
+		final HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+		latency.record(System.nanoTime() - start);
+
+		if (response.statusCode() != 200) {
+			throw new IOException(request.uri() + " answered " + response.statusCode());
+		}
+		return;
+	}
+}
@@ -0,0 +1,233 @@
+package cp213;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Counting a high-cardinality Zipfian stream exactly in a tree against counting
+ * it in a HeavyHitterTree, which keeps only the keys whose estimated count
+ * reaches a threshold. The JMH benchmarks measure the time to count one key.
+ * Run the class as a program to print the memory used against the accuracy of
+ * the counts for a range of sketch error bounds. The heap is measured after
+ * System.gc, which the serial collector does not report exactly, so use the
+ * parallel collector:
+ *
+ * <pre>
+ * java -XX:+UseParallelGC -cp "out:jmh/*" cp213.SketchBenchmark
+ * </pre>
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SketchBenchmark {
+
+	/**
+	 * The probability that a sketch exceeds its error bound.
+	 */
+	private static final double DELTA = 0.01;
+	/**
+	 * The fraction of the stream a key must reach to be a heavy hitter.
+	 */
+	private static final double PHI = 1e-4;
+	/**
+	 * Number of keys in a stream. A power of 2 so that the cursor can wrap with a
+	 * mask.
+	 */
+	private static final int STREAM = 1 << 22;
+	/**
+	 * Number of distinct keys the stream is drawn from.
+	 */
+	private static final int UNIVERSE = 10_000_000;
+
+	/**
+	 * A stream of keys and the structures that count it.
+	 */
+	@State(Scope.Thread)
+	public static class SketchState {
+
+		@Param({ "AVL", "POPULARITY" })
+		public TreeType treeType;
+
+		@Param({ "0.0001", "0.00001" })
+		public double epsilon;
+
+		int cursor = 0;
+		BST<Integer> exact;
+		HeavyHitterTree<Integer> sketched;
+		CountedData<Integer>[] stream;
+
+		/**
+		 * Generates the stream and creates empty counters.
+		 */
+		@Setup(Level.Trial)
+		public void setUp() {
+			this.stream = stream(new SplittableRandom(42));
+			this.exact = this.treeType.create();
+			this.sketched = new HeavyHitterTree<>(this.treeType.create(), this.epsilon, DELTA, (int) (PHI * STREAM));
+			return;
+		}
+
+		/**
+		 * Returns the next key of the stream.
+		 *
+		 * @return A key.
+		 */
+		CountedData<Integer> next() {
+			final CountedData<Integer> key = this.stream[this.cursor];
+			this.cursor = (this.cursor + 1) & (STREAM - 1);
+			return key;
+		}
+	}
+
+	/**
+	 * Returns a stream of keys drawn from UNIVERSE keys with a Zipfian skew.
+	 *
+	 * @param random The source of randomness.
+	 * @return The stream.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	static CountedData<Integer>[] stream(final SplittableRandom random) {
+		final KeyDistribution.Zipf zipf = new KeyDistribution.Zipf(UNIVERSE, 0.99);
+		final CountedData<Integer>[] stream = new CountedData[STREAM];
+
+		for (int i = 0; i < STREAM; i++) {
+			stream[i] = new CountedData<Integer>(KeyDistribution.scatter(zipf.next(random), UNIVERSE));
+		}
+		return stream;
+	}
+
+	/**
+	 * Returns the heap in use after collecting garbage.
+	 *
+	 * @return The bytes in use.
+	 */
+	private static long heap() {
+		final Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Counts the stream exactly in a tree and in HeavyHitterTrees of several error
+	 * bounds, and prints for each the shape of the sketch, the heap used, the
+	 * number of tree nodes, the number of keys in the tree that are not true heavy
+	 * hitters, and the largest and mean overestimate of the counts in the tree as
+	 * a fraction of the stream.
+	 *
+	 * @param args Unused.
+	 */
+	public static void main(final String[] args) {
+		final CountedData<Integer>[] stream = stream(new SplittableRandom(42));
+		final int[] truth = new int[UNIVERSE];
+
+		for (final CountedData<Integer> key : stream) {
+			truth[key.getData()]++;
+		}
+		final int threshold = (int) (PHI * STREAM);
+		int heavy = 0;
+
+		for (final int count : truth) {
+			heavy += count >= threshold ? 1 : 0;
+		}
+		System.out.printf("%d keys from %d, threshold %d, %d true heavy hitters%n", STREAM, UNIVERSE, threshold,
+				heavy);
+		System.out.printf("%-10s %14s %12s %10s %10s %14s %14s%n", "epsilon", "sketch", "heap bytes", "nodes",
+				"false +", "max over / N", "mean over / N");
+		final double[] epsilons = { 0, 1e-3, 1e-4, 3e-5, 1e-5, 3e-6 };
+
+		for (final double epsilon : epsilons) {
+			measure(stream, truth, epsilon, threshold);
+		}
+		return;
+	}
+
+	/**
+	 * Counts stream in one way and prints a row of the table printed by main. The
+	 * counters are local to this method, so they are garbage once it returns and
+	 * do not add to the heap measured for the next row.
+	 *
+	 * @param stream    The keys to count.
+	 * @param truth     The true count of each key.
+	 * @param epsilon   The error bound of the sketch, 0 to count exactly.
+	 * @param threshold The count at which a key is a heavy hitter.
+	 */
+	private static void measure(final CountedData<Integer>[] stream, final int[] truth, final double epsilon,
+			final int threshold) {
+		final long before = heap();
+		final BST<Integer> tree = new PopularityTree<>();
+		HeavyHitterTree<Integer> sketched = null;
+
+		if (epsilon == 0) {
+			for (final CountedData<Integer> key : stream) {
+				tree.add(new CountedData<Integer>(key.getData()), 1);
+			}
+		} else {
+			sketched = new HeavyHitterTree<>(tree, epsilon, DELTA, threshold);
+
+			for (final CountedData<Integer> key : stream) {
+				sketched.insert(key);
+			}
+		}
+		final long bytes = heap() - before;
+		int falsePositives = 0;
+		long maxOver = 0;
+		long totalOver = 0;
+
+		for (final CountedData<Integer> data : tree) {
+			final int actual = truth[data.getData()];
+			falsePositives += actual < threshold ? 1 : 0;
+			maxOver = Math.max(maxOver, data.getCount() - actual);
+			totalOver += data.getCount() - actual;
+		}
+		final String shape = sketched != null
+				? sketched.getSketch().getDepth() + " x " + sketched.getSketch().getWidth()
+				: "none";
+		System.out.printf("%-10s %14s %12d %10d %10d %14.2e %14.2e%n", epsilon == 0 ? "exact" : epsilon, shape, bytes,
+				tree.getSize(), falsePositives, (double) maxOver / STREAM,
+				(double) totalOver / Math.max(tree.getSize(), 1) / STREAM);
+		return;
+	}
+
+	/**
+	 * Counts one key exactly in a tree.
+	 *
+	 * @param state The benchmark state.
+	 */
+	@Benchmark
+	public void exact(final SketchState state) {
+		state.exact.add(new CountedData<Integer>(state.next().getData()), 1);
+		return;
+	}
+
+	/**
+	 * Counts one key in a HeavyHitterTree.
+	 *
+	 * @param state The benchmark state.
+	 */
+	@Benchmark
+	public void sketched(final SketchState state) {
+		state.sketched.insert(state.next());
+		return;
+	}
+}
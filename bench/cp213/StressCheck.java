@@ -0,0 +1,301 @@
+package cp213;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.SplittableRandom;
+
+/**
+ * Checks the trees that may be shared between threads by running several
+ * writers against one tree at once, then comparing the tree with the counts
+ * the writers' operations must have produced. Prints a row for each tree and
+ * exits with status 1 if any tree is invalid or has a wrong count.
+ *
+ * <pre>
+ * java -cp out cp213.StressCheck [threads [operations [keys [seed]]]]
+ * </pre>
+ *
+ * threads is the number of writers, 4 by default; operations is the number of
+ * operations of each writer, 200000 by default; keys is the number of distinct
+ * keys, 1000 by default, so that writers often change the same key at once;
+ * seed seeds the operations, 42 by default.
+ *
+ * The operations of each writer are drawn from the seed before the writers
+ * start, and are chosen so that the final counts do not depend on how the
+ * writers interleave: a writer removes a key only while its own insertions of
+ * the key outnumber its own removals, so the key is present and every removal
+ * takes exactly 1 from the count. Inserts, adds and removals are run against
+ * CountedSkipList, ShardedTree and ConcurrentAVL. ConcurrentPopularityTree,
+ * where insertion does not count, is run with inserts, retrievals and removals,
+ * and is restructured before it is checked. A failure is therefore reproducible
+ * from the arguments, although the interleaving that exposed it may not be.
+ *
+ * The check only exercises real interleavings on a machine with several cores.
+ * On one core the writers take turns in time slices, so an operation is only
+ * interrupted where the scheduler happens to preempt it, and a race whose window
+ * is a few instructions wide is unlikely to show. A pass on one core shows that
+ * the trees are correct under sequential switching between writers, not that
+ * they are free of races; the program prints a warning when it runs on one
+ * core.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class StressCheck {
+
+	/**
+	 * The operations of one writer: the keys, and for each key the change to make
+	 * to its count.
+	 */
+	private static final class Plan {
+		private final int[] deltas;
+		private final int[] keys;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param operations The number of operations.
+		 */
+		Plan(final int operations) {
+			this.deltas = new int[operations];
+			this.keys = new int[operations];
+		}
+	}
+
+	/**
+	 * Percentage of operations of the counting trees that are adds of more than
+	 * 1.
+	 */
+	private static final int ADD_PERCENT = 10;
+	/**
+	 * Percentage of operations that are removals, where the writer may remove.
+	 */
+	private static final int REMOVE_PERCENT = 30;
+
+	/**
+	 * Runs the writers against tree and compares the tree with expected.
+	 *
+	 * @param name     The name printed for the tree.
+	 * @param tree     An empty tree that may be shared between threads.
+	 * @param plans    The operations of each writer.
+	 * @param expected The count each key must have at the end.
+	 * @param present  Whether each key must be in the tree at the end.
+	 * @return true if the tree is valid and matches expected, false otherwise.
+	 * @throws InterruptedException if interrupted while waiting for the writers.
+	 */
+	private static boolean check(final String name, final BST<Integer> tree, final Plan[] plans,
+			final long[] expected, final boolean[] present) throws InterruptedException {
+		final boolean popularity = tree instanceof ConcurrentPopularityTree;
+		final ArrayList<Thread> writers = new ArrayList<>();
+		final long start = System.nanoTime();
+
+		for (final Plan plan : plans) {
+			writers.add(new Thread(() -> write(tree, plan, popularity)));
+		}
+
+		for (final Thread writer : writers) {
+			writer.start();
+		}
+
+		for (final Thread writer : writers) {
+			writer.join();
+		}
+		final long elapsed = System.nanoTime() - start;
+
+		if (popularity) {
+			((ConcurrentPopularityTree<Integer>) tree).restructure();
+		}
+		final boolean valid = tree.isValid();
+		int size = 0;
+		long total = 0;
+		int wrong = 0;
+
+		for (int key = 0; key < expected.length; key++) {
+
+			if (present[key]) {
+				size++;
+				total += expected[key];
+			}
+		}
+		int found = 0;
+		long counted = 0;
+		final Iterator<CountedData<Integer>> iterator = tree.iterator();
+
+		while (iterator.hasNext()) {
+			final CountedData<Integer> data = iterator.next();
+			found++;
+			counted += data.getCount();
+
+			if (!present[data.getData()] || data.getCount() != expected[data.getData()]) {
+				wrong++;
+			}
+		}
+		final boolean passed = valid && wrong == 0 && found == size && tree.getSize() == size && counted == total;
+		System.out.printf("%-24s %10.0f %6s %8d %8d %12d %12d %6d %5s%n", name, elapsed / 1e6, valid, size, found,
+				total, counted, wrong, passed ? "PASS" : "FAIL");
+		return passed;
+	}
+
+	/**
+	 * Draws the operations of each writer for a counting tree, and adds their
+	 * effect to expected.
+	 *
+	 * @param threads    The number of writers.
+	 * @param operations The number of operations of each writer.
+	 * @param expected   The count of each key, updated.
+	 * @param seed       Seeds the operations.
+	 * @return The operations of each writer.
+	 */
+	private static Plan[] counting(final int threads, final int operations, final long[] expected,
+			final long seed) {
+		final Plan[] plans = new Plan[threads];
+
+		for (int t = 0; t < threads; t++) {
+			final SplittableRandom random = new SplittableRandom(seed + t);
+			final int[] own = new int[expected.length];
+			final Plan plan = new Plan(operations);
+
+			for (int i = 0; i < operations; i++) {
+				final int key = random.nextInt(expected.length);
+				final int choice = random.nextInt(100);
+				int delta = 1;
+
+				if (choice < REMOVE_PERCENT && own[key] > 0) {
+					delta = -1;
+				} else if (choice >= 100 - ADD_PERCENT) {
+					delta = 2 + random.nextInt(3);
+				}
+				own[key] += delta;
+				expected[key] += delta;
+				plan.keys[i] = key;
+				plan.deltas[i] = delta;
+			}
+			plans[t] = plan;
+		}
+		return plans;
+	}
+
+	/**
+	 * Draws the operations of each writer for a ConcurrentPopularityTree, and adds
+	 * their effect to expected and present. A delta of 0 is an insert, which does
+	 * not count, 1 a retrieval and -1 a removal. A writer retrieves only keys it
+	 * has inserted, and removes a key only while its own retrievals of the key
+	 * outnumber its removals by 2 or more, so no key is ever removed outright.
+	 *
+	 * @param threads    The number of writers.
+	 * @param operations The number of operations of each writer.
+	 * @param expected   The count of each key, updated.
+	 * @param present    Whether each key is in the tree, updated.
+	 * @param seed       Seeds the operations.
+	 * @return The operations of each writer.
+	 */
+	private static Plan[] popularity(final int threads, final int operations, final long[] expected,
+			final boolean[] present, final long seed) {
+		final Plan[] plans = new Plan[threads];
+
+		for (int t = 0; t < threads; t++) {
+			final SplittableRandom random = new SplittableRandom(seed + t);
+			final int[] own = new int[expected.length];
+			final boolean[] inserted = new boolean[expected.length];
+			final Plan plan = new Plan(operations);
+
+			for (int i = 0; i < operations; i++) {
+				final int key = random.nextInt(expected.length);
+				final int choice = random.nextInt(100);
+				int delta = 1;
+
+				if (!inserted[key]) {
+					delta = 0;
+					inserted[key] = true;
+					present[key] = true;
+				} else if (choice < REMOVE_PERCENT && own[key] > 1) {
+					delta = -1;
+				}
+				own[key] += delta;
+				expected[key] += delta;
+				plan.keys[i] = key;
+				plan.deltas[i] = delta;
+			}
+			plans[t] = plan;
+		}
+		return plans;
+	}
+
+	/**
+	 * Applies the operations of plan to tree.
+	 *
+	 * @param tree       The tree to change.
+	 * @param plan       The operations.
+	 * @param popularity true if tree is a ConcurrentPopularityTree, whose plan
+	 *                   retrieves rather than inserts to count.
+	 */
+	private static void write(final BST<Integer> tree, final Plan plan, final boolean popularity) {
+
+		for (int i = 0; i < plan.keys.length; i++) {
+			final CountedData<Integer> data = new CountedData<Integer>(plan.keys[i]);
+			final int delta = plan.deltas[i];
+
+			if (delta < 0) {
+				tree.remove(data);
+			} else if (popularity) {
+
+				if (delta == 0) {
+					tree.insert(data);
+				} else {
+					tree.retrieve(data);
+				}
+			} else if (delta == 1) {
+				tree.insert(data);
+			} else {
+				tree.add(data, delta);
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Checks each tree and prints a row for each.
+	 *
+	 * @param args threads, operations, keys and seed, all optional.
+	 * @throws InterruptedException if interrupted while waiting for the writers.
+	 */
+	public static void main(final String[] args) throws InterruptedException {
+		final int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		final int operations = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+		final int keys = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+		final long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+		final ArrayList<CountedData<Integer>> sample = new ArrayList<>();
+
+		for (int key = 0; key < keys; key++) {
+			sample.add(new CountedData<Integer>(key));
+		}
+		final long[] expected = new long[keys];
+		final Plan[] plans = counting(threads, operations, expected, seed);
+		final boolean[] present = new boolean[keys];
+
+		for (int key = 0; key < keys; key++) {
+			present[key] = expected[key] > 0;
+		}
+		final long[] popular = new long[keys];
+		final boolean[] retrieved = new boolean[keys];
+		final Plan[] retrievals = popularity(threads, operations, popular, retrieved, seed);
+		System.out.printf("%d writers, %d operations each, %d keys, seed %d%n", threads, operations, keys, seed);
+
+		if (Runtime.getRuntime().availableProcessors() < 2) {
+			System.out.println("warning: 1 processor available, so the writers do not run in parallel");
+		}
+		System.out.printf("%-24s %10s %6s %8s %8s %12s %12s %6s %5s%n", "tree", "ms", "valid", "size", "found",
+				"total", "counted", "wrong", "");
+		boolean passed = true;
+		passed &= check("CountedSkipList", new CountedSkipList<Integer>(), plans, expected, present);
+		passed &= check("ShardedTree", new ShardedTree<Integer>(sample, threads, AVL::new), plans, expected,
+				present);
+		passed &= check("ConcurrentAVL", new ConcurrentAVL<Integer>(), plans, expected, present);
+		passed &= check("ConcurrentPopularityTree", new ConcurrentPopularityTree<Integer>(), retrievals, popular,
+				retrieved);
+
+		if (!passed) {
+			System.exit(1);
+		}
+		return;
+	}
+}
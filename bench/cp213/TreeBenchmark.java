@@ -0,0 +1,235 @@
+package cp213;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks for insert, retrieve, remove and traversal over BST, AVL,
+ * PopularityTree, SplayTree and SemiSplayTree under several key distributions.
+ * Run with {@code -prof gc} to report allocation rates alongside the timings.
+ *
+ * Trees hold the even keys 0, 2, ..., 2(size - 1). Lookups probe even keys,
+ * so they always hit; churn inserts and removes odd keys, so it always adds and
+ * then deletes a leaf and the tree size stays constant.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TreeBenchmark {
+
+	/**
+	 * Number of probe keys generated per trial. A power of 2 so that the cursor can
+	 * wrap with a mask.
+	 */
+	private static final int PROBES = 1 << 20;
+
+	/**
+	 * Shared benchmark state: a filled tree plus the keys used to build and probe
+	 * it.
+	 */
+	@State(Scope.Thread)
+	public static class TreeState {
+
+		@Param({ "BST", "AVL", "POPULARITY", "SPLAY", "SEMI_SPLAY", "TREAP", "SKIP_LIST" })
+		public TreeType treeType;
+
+		@Param({ "UNIFORM", "ZIPFIAN", "SEQUENTIAL", "ADVERSARIAL" })
+		public KeyDistribution distribution;
+
+		@Param({ "1000", "10000", "100000", "1000000", "10000000" })
+		public int size;
+
+		int cursor = 0;
+		FrozenTree<Integer> frozen;
+		int[] insertKeys;
+		CountedData<Integer>[] probes;
+		int[] probeKeys;
+		BST<Integer> tree;
+
+		/**
+		 * Generates the workload and fills the tree.
+		 */
+		@Setup(Level.Trial)
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		public void setUp() {
+			final SplittableRandom random = new SplittableRandom(42);
+			this.insertKeys = this.distribution.insertKeys(this.size, random);
+			this.probeKeys = this.distribution.probeKeys(this.size, PROBES, random);
+			this.probes = new CountedData[PROBES];
+
+			for (int i = 0; i < PROBES; i++) {
+				this.probes[i] = new CountedData<Integer>(this.probeKeys[i] * 2);
+			}
+			this.tree = this.fill();
+			this.frozen = this.tree.freeze();
+			return;
+		}
+
+		/**
+		 * Builds a new tree of this state's type from the insertion keys.
+		 *
+		 * @return The filled tree.
+		 */
+		BST<Integer> fill() {
+			final BST<Integer> filled = this.treeType.create();
+
+			for (final int key : this.insertKeys) {
+				filled.insert(new CountedData<Integer>(key * 2));
+			}
+			return filled;
+		}
+
+		/**
+		 * Returns the position of the next probe key.
+		 *
+		 * @return An index into the probe arrays.
+		 */
+		int next() {
+			final int index = this.cursor;
+			this.cursor = (index + 1) & (PROBES - 1);
+			return index;
+		}
+	}
+
+	/**
+	 * Time to build a complete tree from the workload's insertion order.
+	 *
+	 * @param state The benchmark state.
+	 * @return The built tree.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 5)
+	public BST<Integer> build(final TreeState state) {
+		return state.fill();
+	}
+
+	/**
+	 * Time to build a complete tree from the workload's keys with one
+	 * {@code insertAll}, which sorts them and builds the tree balanced in linear
+	 * time.
+	 *
+	 * @param state The benchmark state.
+	 * @return The built tree.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 5)
+	public BST<Integer> bulkBuild(final TreeState state) {
+		final ArrayList<CountedData<Integer>> data = new ArrayList<>(state.insertKeys.length);
+
+		for (final int key : state.insertKeys) {
+			data.add(new CountedData<Integer>(key * 2));
+		}
+		final BST<Integer> built = state.treeType.create();
+		built.insertAll(data);
+		return built;
+	}
+
+	/**
+	 * Inserts then removes a key that is not in the tree.
+	 *
+	 * @param state The benchmark state.
+	 */
+	@Benchmark
+	@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void insertRemove(final TreeState state) {
+		final CountedData<Integer> data = new CountedData<Integer>(state.probeKeys[state.next()] * 2 + 1);
+		state.tree.insert(data);
+		state.tree.remove(data);
+		return;
+	}
+
+	/**
+	 * Retrieves a key that is in the tree.
+	 *
+	 * @param state The benchmark state.
+	 * @return The retrieved data.
+	 */
+	@Benchmark
+	@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public CountedData<Integer> retrieve(final TreeState state) {
+		return state.tree.retrieve(state.probes[state.next()]);
+	}
+
+	/**
+	 * Retrieves a key that is in the tree from a frozen snapshot of the tree.
+	 *
+	 * @param state The benchmark state.
+	 * @return The retrieved data.
+	 */
+	@Benchmark
+	@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public CountedData<Integer> frozenRetrieve(final TreeState state) {
+		return state.frozen.retrieve(state.probes[state.next()]);
+	}
+
+	/**
+	 * Walks the whole tree in order with its lazy iterator.
+	 *
+	 * @param state The benchmark state.
+	 * @param hole  Consumes the traversed data.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void iterate(final TreeState state, final Blackhole hole) {
+
+		for (final CountedData<Integer> data : state.tree) {
+			hole.consume(data);
+		}
+		return;
+	}
+
+	/**
+	 * Sums the counts of the whole tree with a parallel stream.
+	 *
+	 * @param state The benchmark state.
+	 * @return The sum of the counts.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public long parallelStream(final TreeState state) {
+		return state.tree.stream().parallel().mapToLong(CountedData::getCount).sum();
+	}
+
+	/**
+	 * Copies the whole tree in order into a list.
+	 *
+	 * @param state The benchmark state.
+	 * @param hole  Consumes the traversal result.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void traverse(final TreeState state, final Blackhole hole) {
+		hole.consume(state.tree.inOrder());
+		return;
+	}
+}
@@ -0,0 +1,173 @@
+package cp213;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The tree implementations exercised by the benchmarks.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public enum TreeType {
+
+	/**
+	 * Unbalanced binary search tree.
+	 */
+	BST {
+		@Override
+		public BST<Integer> create() {
+			return new BST<>();
+		}
+	},
+	/**
+	 * Height balanced AVL tree.
+	 */
+	AVL {
+		@Override
+		public BST<Integer> create() {
+			return new AVL<>();
+		}
+	},
+	/**
+	 * Popularity (count ordered) tree.
+	 */
+	POPULARITY {
+		@Override
+		public BST<Integer> create() {
+			return new PopularityTree<>();
+		}
+	},
+	/**
+	 * Popularity tree whose counts decay with a half-life of
+	 * DecayingPopularityTree.DEFAULT_HALF_LIFE retrievals.
+	 */
+	DECAYING_POPULARITY {
+		@Override
+		public BST<Integer> create() {
+			return new DecayingPopularityTree<>();
+		}
+	},
+	/**
+	 * Top-down splay tree.
+	 */
+	SPLAY {
+		@Override
+		public BST<Integer> create() {
+			return new SplayTree<>();
+		}
+	},
+	/**
+	 * Semi-splay tree.
+	 */
+	SEMI_SPLAY {
+		@Override
+		public BST<Integer> create() {
+			return new SemiSplayTree<>();
+		}
+	},
+	/**
+	 * Treap whose priorities are hashes of the keys.
+	 */
+	TREAP {
+		@Override
+		public BST<Integer> create() {
+			return new Treap<>();
+		}
+	},
+	/**
+	 * Treap whose priorities are key counts.
+	 */
+	TREAP_BY_COUNT {
+		@Override
+		public BST<Integer> create() {
+			return new Treap<>(true);
+		}
+	},
+	/**
+	 * Copy-on-write AVL tree with lock-free reads and serialized writers.
+	 */
+	CONCURRENT_AVL {
+		@Override
+		public BST<Integer> create() {
+			return new ConcurrentAVL<>();
+		}
+	},
+	/**
+	 * Lock-free skip list with atomic counts.
+	 */
+	SKIP_LIST {
+		@Override
+		public BST<Integer> create() {
+			return new CountedSkipList<>();
+		}
+	},
+	/**
+	 * AVL trees, one per key range, each behind its own lock.
+	 */
+	SHARDED_AVL {
+		@Override
+		public BST<Integer> create() {
+			return this.create(new int[0]);
+		}
+
+		@Override
+		public BST<Integer> create(final int[] sample) {
+			return new ShardedTree<Integer>(sampleOf(sample), SHARDS, AVL::new);
+		}
+	},
+	/**
+	 * Popularity trees, one per key range, each behind its own lock.
+	 */
+	SHARDED_POPULARITY {
+		@Override
+		public BST<Integer> create() {
+			return this.create(new int[0]);
+		}
+
+		@Override
+		public BST<Integer> create(final int[] sample) {
+			return new ShardedTree<Integer>(sampleOf(sample), SHARDS, PopularityTree::new);
+		}
+	};
+
+	/**
+	 * Number of shards of the sharded types: enough that 16 threads seldom wait
+	 * for the same shard.
+	 */
+	private static final int SHARDS = 64;
+
+	/**
+	 * Returns the keys of sample as data.
+	 *
+	 * @param sample The keys.
+	 * @return The keys as data, in the order of sample.
+	 */
+	private static List<CountedData<Integer>> sampleOf(final int[] sample) {
+		final List<CountedData<Integer>> data = new ArrayList<>(sample.length);
+
+		for (final int key : sample) {
+			data.add(new CountedData<Integer>(key));
+		}
+		return data;
+	}
+
+	/**
+	 * Creates a new, empty tree of this type.
+	 *
+	 * @return An empty tree.
+	 */
+	public abstract BST<Integer> create();
+
+	/**
+	 * Creates a new, empty tree of this type for keys like those of sample. Only
+	 * the sharded types use the sample, to divide the keys between their shards;
+	 * without one they have a single shard.
+	 *
+	 * @param sample Keys drawn from those the tree will hold.
+	 * @return An empty tree.
+	 */
+	public BST<Integer> create(final int[] sample) {
+		return this.create();
+	}
+}
@@ -1,265 +1,1218 @@
-package cp213;
-
-import java.io.File;
-import java.io.IOException;
-import java.text.NumberFormat;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Scanner;
-
-/**
- * Main method and table generation methods for Assignment 4.
- *
- * @author Giuseppe AKbari
- * @author David Brown
- * @version 2024-10-15
- */
-public class A04Main {
-
-	// Constants
-	private static final String LINE = "-".repeat(40);
-	private static final String TEST_LINE = "=".repeat(80);
-	private static final Integer[] testData = { 1, 2, 3 };
-
-	/**
-	 * The letters of the English alphabet in alphabetic order.
-	 */
-	public static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-	/**
-	 * The default test file name.
-	 */
-	public static final String FILENAME = "decline.txt";
-	/**
-	 * A NumberFormat object.
-	 */
-	public static final NumberFormat NF = NumberFormat.getInstance();
-	/**
-	 * Letters of the English alphabet in popularity order.
-	 */
-	public static final String POPULAR = "ETAOINSHRDLUCMPFYWGBVKJXZQ";
-	/**
-	 * A separator string.
-	 */
-	public static final String SEPARATOR = "------------------------------";
-	/**
-	 * Letters of the English alphabet in split by halves order.
-	 */
-	public static final String SPLIT = "MFTCJPWADHKNRUYBEIGLOQSVXZ";
-	/**
-	 * Array of test alphabets.
-	 */
-	public static final String[] STRING_DATA = new String[] { ALPHABET, SPLIT, POPULAR };
-
-	/**
-	 * Print a formatted table of character counts and percentages in the format:
-	 *
-	 * <pre>
-	 * Character Table for Comparisons File
-	 *
-	 * Char    Count Percent
-	 *    A  206,946    8.17
-	 *    B   37,498    1.48
-	 *    ...
-	 * </pre>
-	 *
-	 * Note: your data may not match this as it is file dependent.
-	 *
-	 * @param tree The BST to generate the table from.
-	 */
-	private static void characterTable(final BST<Character> tree) {
-
-		final ArrayList<CountedData<Character>> array = tree.inOrder();
-		int totalCount = 0;
-
-		for (final CountedData<Character> data : array) {
-			totalCount += data.getCount();
-		}
-		System.out.println("Char    Count Percent");
-
-		for (final CountedData<Character> data : array) {
-			final int count = data.getCount();
-			final double percent = (double) data.getCount() / totalCount * 100;
-			System.out.format("%4s %,8d %7.2f%n", data.getData(), count, percent);
-		}
-		return;
-	}
-
-	/**
-	 * Fill a tree by inserting all letters from a string into the tree. Letters
-	 * must be converted to upper-case. Non-letters are ignored. The order that
-	 * letters are inserted into the tree determine its shape.
-	 *
-	 * @param tree   The BST/AVL/PopularityTree to fill.
-	 * @param string The string to read into the tree.
-	 */
-	private static void fillTree(final BST<Character> tree, final String string) {
-
-		for (final char letter : string.toCharArray()) {
-			final CountedData<Character> data = new CountedData<Character>(Character.toUpperCase(letter));
-			tree.insert(data);
-		}
-		return;
-	}
-
-	/**
-	 * Determine the number of comparisons to retrieve the contents of a file from a
-	 * tree. Attempt to retrieve every letter in the file from tree. All letters
-	 * must be converted to upper case.
-	 *
-	 * @param tree The BST to process.
-	 * @param file The file to process.
-	 * @return The number of comparisons necessary to find every letter in file in
-	 *         tree.
-	 */
-	private static int retrieve(final BST<Character> tree, final Scanner fileScan) {
-
-		while (fileScan.hasNextLine()) {
-			final String line = fileScan.nextLine();
-
-			for (final Character c : line.toCharArray()) {
-
-				if (Character.isLetter(c)) {
-					final CountedData<Character> key = new CountedData<Character>(Character.toUpperCase(c));
-					tree.retrieve(key);
-				}
-			}
-		}
-		return tree.getComparisons();
-	}
-
-	/**
-	 * Test AVL.
-	 */
-	private static void testAVL() {
-		System.out.println(TEST_LINE);
-		System.out.println("Testing AVL");
-		final AVL<Integer> source = new AVL<>();
-		System.out.println("  isEmpty {true}: " + source.isEmpty());
-		System.out.println(LINE);
-		System.out.println("Insert data: " + Arrays.toString(testData));
-
-		for (Integer i : testData) {
-			CountedData<Integer> data = new CountedData<>(i);
-			source.insert(data);
-		}
-		System.out.println("  isEmpty {false}: " + source.isEmpty());
-		System.out.println("  Contents {[{2: 1}, {1: 1}, {3: 1}]}: " + source.levelOrder().toString());
-		System.out.println("  Height {2}: " + source.getHeight());
-		System.out.println(LINE);
-		System.out.println();
-	}
-
-	/**
-	 * Test BST.
-	 */
-	private static void testBST() {
-		System.out.println(TEST_LINE);
-		System.out.println("Testing BST");
-		final BST<Integer> source = new BST<>();
-		System.out.println("  isEmpty {true}: " + source.isEmpty());
-		System.out.println(LINE);
-		System.out.println("Insert data: " + Arrays.toString(testData));
-
-		for (Integer i : testData) {
-			CountedData<Integer> data = new CountedData<>(i);
-			source.insert(data);
-		}
-		System.out.println("  isEmpty {false}: " + source.isEmpty());
-		System.out.println("  Contents {[{1: 1}, {2: 1}, {3: 1}]}: " + source.levelOrder().toString());
-		System.out.println("  Height {3}: " + source.getHeight());
-		System.out.println(LINE);
-		System.out.println();
-	}
-
-	/**
-	 * Test PopularityTree.
-	 */
-	private static void testPopularityTree() {
-		System.out.println(TEST_LINE);
-		System.out.println("Testing PopularityTree");
-		final PopularityTree<Integer> source = new PopularityTree<>();
-		System.out.println("  isEmpty {true}: " + source.isEmpty());
-		System.out.println(LINE);
-		System.out.println("Insert data: " + Arrays.toString(testData));
-
-		for (Integer i : testData) {
-			CountedData<Integer> data = new CountedData<>(i);
-			source.insert(data);
-		}
-		System.out.println("  isEmpty {false}: " + source.isEmpty());
-		System.out.println("  Contents {[{1: 0}, {2: 0}, {3: 0}]}: " + source.levelOrder().toString());
-		System.out.println("  Height {3}: " + source.getHeight());
-		System.out.println(LINE);
-		System.out.println();
-		System.out.println("Retrieve data: ");
-		CountedData<Integer> key = new CountedData<>(3);
-		System.out.println("  retrieve {3: 1}: " + source.retrieve(key));
-		System.out.println("  Contents {[{1: 0}, {2: 0}]}: " + source.levelOrder().toString());
-		System.out.println("  Height {2}: " + source.getHeight());
-		System.out.println(LINE);
-		System.out.println();
-	}
-
-	/**
-	 * Program for Assignment 4.
-	 *
-	 * @param args unused
-	 * @throws IOException If error on files.
-	 */
-	public static void main(final String[] args) throws IOException {
-		System.out.println("BST Data Structures Tests");
-		System.out.println();
-		System.out.println("Tests are of the form:");
-		System.out.println("  Test Operation {expected data}: actual data");
-		System.out.println("  Contents: [contents from front to rear]");
-		System.out.println();
-
-		testBST();
-		testAVL();
-		testPopularityTree();
-		System.out.println(TEST_LINE);
-
-		System.out.println("Testing file: " + FILENAME);
-		System.out.println();
-		final File comparisonsFile = new File(FILENAME);
-
-		for (final String string : STRING_DATA) {
-			int minComparisons = Integer.MAX_VALUE;
-			String treeType = null;
-			String minTree = null;
-			System.out.println("Data String: " + string);
-			System.out.println();
-			final ArrayList<BST<Character>> trees = new ArrayList<>();
-			trees.add(new BST<Character>());
-			trees.add(new PopularityTree<Character>());
-			trees.add(new AVL<Character>());
-
-			for (final BST<Character> tree : trees) {
-				treeType = tree.getClass().getSimpleName();
-				System.out.println("  Tree Type: " + treeType);
-				A04Main.fillTree(tree, string);
-				final Scanner fileScan = new Scanner(comparisonsFile);
-				final int comparisons = A04Main.retrieve(tree, fileScan);
-				fileScan.close();
-				System.out.println("  Height: " + tree.getHeight());
-				System.out.println("  Comparisons: " + NF.format(comparisons));
-
-				if (comparisons < minComparisons) {
-					minComparisons = comparisons;
-					minTree = treeType;
-				}
-				System.out.println();
-			}
-			System.out.println("Tree with minimum comparisons: " + minTree);
-			System.out.println(SEPARATOR);
-		}
-		final PopularityTree<Character> bst = new PopularityTree<>();
-		A04Main.fillTree(bst, ALPHABET);
-		final Scanner fileScan = new Scanner(comparisonsFile);
-		A04Main.retrieve(bst, fileScan);
-		fileScan.close();
-		System.out.println("Character Table for Comparisons File");
-		System.out.println();
-		A04Main.characterTable(bst);
-	}
-}
+package cp213;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Main method and table generation methods for Assignment 4.
+ *
+ * @author Giuseppe AKbari
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class A04Main {
+
+	// Constants
+	private static final String LINE = "-".repeat(40);
+	private static final String TEST_LINE = "=".repeat(80);
+	private static final Integer[] testData = { 1, 2, 3 };
+	private static final int KEYS = 50;
+	private static final int OPERATIONS = 2000;
+
+	/**
+	 * The letters of the English alphabet in alphabetic order.
+	 */
+	public static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+	/**
+	 * The default test file name.
+	 */
+	public static final String FILENAME = "decline.txt";
+	/**
+	 * A NumberFormat object.
+	 */
+	public static final NumberFormat NF = NumberFormat.getInstance();
+	/**
+	 * Letters of the English alphabet in popularity order.
+	 */
+	public static final String POPULAR = "ETAOINSHRDLUCMPFYWGBVKJXZQ";
+	/**
+	 * A separator string.
+	 */
+	public static final String SEPARATOR = "------------------------------";
+	/**
+	 * Letters of the English alphabet in split by halves order.
+	 */
+	public static final String SPLIT = "MFTCJPWADHKNRUYBEIGLOQSVXZ";
+	/**
+	 * Array of test alphabets.
+	 */
+	public static final String[] STRING_DATA = new String[] { ALPHABET, SPLIT, POPULAR };
+
+	/**
+	 * Print a formatted table of character counts and percentages in the format:
+	 *
+	 * <pre>
+	 * Character Table for Comparisons File
+	 *
+	 * Char    Count Percent
+	 *    A  206,946    8.17
+	 *    B   37,498    1.48
+	 *    ...
+	 * </pre>
+	 *
+	 * Note: your data may not match this as it is file dependent.
+	 *
+	 * @param tree The BST to generate the table from.
+	 */
+	private static void characterTable(final BST<Character> tree) {
+
+		int totalCount = 0;
+
+		for (final CountedData<Character> data : tree) {
+			totalCount += data.getCount();
+		}
+		System.out.println("Char    Count Percent");
+
+		for (final CountedData<Character> data : tree) {
+			final int count = data.getCount();
+			final double percent = (double) data.getCount() / totalCount * 100;
+			System.out.format("%4s %,8d %7.2f%n", data.getData(), count, percent);
+		}
+		return;
+	}
+
+	/**
+	 * Fill a tree by inserting all letters from a string into the tree. Letters
+	 * must be converted to upper-case. Non-letters are ignored. The order that
+	 * letters are inserted into the tree determine its shape.
+	 *
+	 * @param tree   The BST/AVL/PopularityTree/SplayTree/Treap/CountedSkipList/
+	 *               ShardedTree to fill.
+	 * @param string The string to read into the tree.
+	 */
+	private static void fillTree(final BST<Character> tree, final String string) {
+
+		for (final char letter : string.toCharArray()) {
+			final CountedData<Character> data = new CountedData<Character>(Character.toUpperCase(letter));
+			tree.insert(data);
+		}
+		return;
+	}
+
+	/**
+	 * Determine the number of comparisons to retrieve the contents of a file from a
+	 * tree. Attempt to retrieve every letter in the file from tree. All letters
+	 * must be converted to upper case.
+	 *
+	 * @param tree The BST to process.
+	 * @param file The file to process.
+	 * @return The number of comparisons necessary to find every letter in file in
+	 *         tree.
+	 */
+	private static long retrieve(final BST<Character> tree, final Scanner fileScan) {
+
+		while (fileScan.hasNextLine()) {
+			final String line = fileScan.nextLine();
+
+			for (final Character c : line.toCharArray()) {
+
+				if (Character.isLetter(c)) {
+					final CountedData<Character> key = new CountedData<Character>(Character.toUpperCase(c));
+					tree.retrieve(key);
+				}
+			}
+		}
+		return tree.getComparisonsLong();
+	}
+
+	/**
+	 * Fill a CharPopularityTree by inserting all letters from a string into the
+	 * tree. Letters must be converted to upper-case. Non-letters are ignored.
+	 *
+	 * @param tree   The CharPopularityTree to fill.
+	 * @param string The string to read into the tree.
+	 */
+	private static void fillTree(final CharPopularityTree tree, final String string) {
+
+		for (int i = 0; i < string.length(); i++) {
+			tree.insert(Character.toUpperCase(string.charAt(i)));
+		}
+		return;
+	}
+
+	/**
+	 * Determine the number of comparisons to retrieve the contents of a file from a
+	 * CharPopularityTree. No objects are allocated per letter.
+	 *
+	 * @param tree     The CharPopularityTree to process.
+	 * @param fileScan The file to process.
+	 * @return The number of comparisons necessary to find every letter in file in
+	 *         tree.
+	 */
+	private static long retrieve(final CharPopularityTree tree, final Scanner fileScan) {
+
+		while (fileScan.hasNextLine()) {
+			final String line = fileScan.nextLine();
+
+			for (int i = 0; i < line.length(); i++) {
+				final char c = line.charAt(i);
+
+				if (Character.isLetter(c)) {
+					tree.retrieve(Character.toUpperCase(c));
+				}
+			}
+		}
+		return tree.getComparisonsLong();
+	}
+
+	/**
+	 * Determines if tree holds exactly the keys of expected, each with its
+	 * expected count, in order.
+	 *
+	 * @param tree     The tree to compare.
+	 * @param expected The count of each key the tree must hold.
+	 * @return true if the contents of tree match expected, false otherwise.
+	 */
+	private static boolean matches(final BST<Integer> tree, final TreeMap<Integer, Integer> expected) {
+		boolean matched = tree.getSize() == expected.size();
+		final Iterator<Map.Entry<Integer, Integer>> entries = expected.entrySet().iterator();
+
+		for (final CountedData<Integer> data : tree) {
+
+			if (matched && entries.hasNext()) {
+				final Map.Entry<Integer, Integer> entry = entries.next();
+				matched = data.getData().equals(entry.getKey()) && data.getCount() == entry.getValue();
+			} else {
+				matched = false;
+			}
+		}
+		return matched && !entries.hasNext();
+	}
+
+	/**
+	 * Applies seeded random inserts, adds, retrievals and removals of the keys 0 to
+	 * KEYS - 1 to a tree that counts insertions, as BST does, and checks the tree
+	 * after each operation against a TreeMap of the counts it must hold: its
+	 * contents, its navigation methods, and the rank of the key.
+	 *
+	 * @param tree An empty CountedSkipList or ShardedTree.
+	 * @return The number of operations after which the tree was invalid or did not
+	 *         match the TreeMap.
+	 */
+	private static int countingOperations(final BST<Integer> tree) {
+		final SplittableRandom random = new SplittableRandom(42);
+		final TreeMap<Integer, Integer> expected = new TreeMap<>();
+		int failed = 0;
+
+		for (int i = 0; i < OPERATIONS; i++) {
+			final Integer key = random.nextInt(KEYS);
+			final int choice = random.nextInt(10);
+			boolean passed = true;
+
+			if (choice < 4) {
+				tree.insert(new CountedData<>(key));
+				expected.merge(key, 1, Integer::sum);
+			} else if (choice < 5) {
+				final int count = 2 + random.nextInt(3);
+				tree.add(new CountedData<>(key), count);
+				expected.merge(key, count, Integer::sum);
+			} else if (choice < 7) {
+				final CountedData<Integer> found = tree.retrieve(new CountedData<>(key));
+				final Integer count = expected.get(key);
+				passed = found == null ? count == null : count != null && found.getCount() == count;
+			} else {
+				tree.remove(new CountedData<>(key));
+				expected.computeIfPresent(key, (k, c) -> c > 1 ? c - 1 : null);
+			}
+			passed = passed && tree.isValid() && matches(tree, expected) && navigates(tree, expected)
+					&& tree.rank(new CountedData<>(key)) == expected.headMap(key).size();
+
+			if (!passed) {
+				failed++;
+			}
+		}
+		return failed;
+	}
+
+	/**
+	 * Determines if frozen holds exactly the keys of expected, each with its
+	 * expected count, in order, and if every key from -1 to KEYS is found by
+	 * contains, getCount and retrieve exactly when it is in expected.
+	 *
+	 * @param frozen   The snapshot to compare.
+	 * @param expected The count of each key the snapshot must hold.
+	 * @return true if the contents of frozen match expected, false otherwise.
+	 */
+	private static boolean matches(final FrozenTree<Integer> frozen, final TreeMap<Integer, Integer> expected) {
+		boolean matched = frozen.getSize() == expected.size();
+		final Iterator<Map.Entry<Integer, Integer>> entries = expected.entrySet().iterator();
+
+		for (final CountedData<Integer> data : frozen) {
+
+			if (matched && entries.hasNext()) {
+				final Map.Entry<Integer, Integer> entry = entries.next();
+				matched = data.getData().equals(entry.getKey()) && data.getCount() == entry.getValue();
+			} else {
+				matched = false;
+			}
+		}
+
+		for (int key = -1; matched && key <= KEYS; key++) {
+			final CountedData<Integer> probe = new CountedData<>(key);
+			final Integer count = expected.get(key);
+			final CountedData<Integer> found = frozen.retrieve(probe);
+			matched = frozen.contains(probe) == (count != null) && frozen.getCount(probe) == (count != null ? count : 0)
+					&& (found == null ? count == null : count != null && found.getCount() == count);
+		}
+		return matched && !entries.hasNext();
+	}
+
+	/**
+	 * Determines if the navigation methods of tree agree with those of expected:
+	 * first and last, floor, ceiling, higher and lower of every key from -1 to
+	 * KEYS, and range over every span of 0, 5 and KEYS keys starting from -1 to
+	 * KEYS.
+	 *
+	 * @param tree     The tree to compare.
+	 * @param expected The count of each key the tree must hold.
+	 * @return true if every navigation method of tree finds the key and count
+	 *         expected finds, false otherwise.
+	 */
+	private static boolean navigates(final BST<Integer> tree, final TreeMap<Integer, Integer> expected) {
+		boolean matched = same(tree.first(), expected.firstEntry()) && same(tree.last(), expected.lastEntry());
+
+		for (int key = -1; matched && key <= KEYS; key++) {
+			final CountedData<Integer> probe = new CountedData<>(key);
+			matched = same(tree.floor(probe), expected.floorEntry(key))
+					&& same(tree.ceiling(probe), expected.ceilingEntry(key))
+					&& same(tree.higher(probe), expected.higherEntry(key))
+					&& same(tree.lower(probe), expected.lowerEntry(key));
+
+			for (final int span : new int[] { 0, 5, KEYS }) {
+				final Iterator<CountedData<Integer>> range = tree.range(probe, new CountedData<>(key + span));
+
+				for (final Map.Entry<Integer, Integer> entry : expected.subMap(key, true, key + span, true)
+						.entrySet()) {
+					matched = matched && range.hasNext() && same(range.next(), entry);
+				}
+				matched = matched && !range.hasNext();
+			}
+		}
+		return matched;
+	}
+
+	/**
+	 * Applies seeded random inserts, retrievals and removals of the keys 0 to KEYS
+	 * - 1 to a tree that counts retrievals rather than insertions, and checks the
+	 * tree after each operation against a TreeMap of the counts it must hold.
+	 *
+	 * @param tree An empty SplayTree or SemiSplayTree.
+	 * @return The number of operations after which the tree was invalid or did not
+	 *         match the TreeMap.
+	 */
+	private static int retrievalOperations(final BST<Integer> tree) {
+		final SplittableRandom random = new SplittableRandom(42);
+		final TreeMap<Integer, Integer> expected = new TreeMap<>();
+		int failed = 0;
+
+		for (int i = 0; i < OPERATIONS; i++) {
+			final Integer key = random.nextInt(KEYS);
+			final int choice = random.nextInt(10);
+			boolean passed = true;
+
+			if (choice < 4) {
+				tree.insert(new CountedData<>(key));
+				expected.putIfAbsent(key, 0);
+			} else if (choice < 8) {
+				final CountedData<Integer> found = tree.retrieve(new CountedData<>(key));
+				final Integer count = expected.computeIfPresent(key, (k, c) -> c + 1);
+				passed = found == null ? count == null : count != null && found.getCount() == count;
+			} else {
+				tree.remove(new CountedData<>(key));
+				expected.computeIfPresent(key, (k, c) -> c > 1 ? c - 1 : null);
+			}
+
+			if (!passed || !tree.isValid() || !matches(tree, expected)) {
+				failed++;
+			}
+		}
+		return failed;
+	}
+
+	/**
+	 * Applies seeded random adds and removals of the keys 0 to KEYS - 1 to a new
+	 * tree, and after each saves the tree and loads the snapshot into another new
+	 * tree of the same kind. Checks that the loaded tree is valid, matches a
+	 * TreeMap of the counts, and has the shape of the tree saved. A snapshot of
+	 * sorted data, which any tree can load, is also loaded into an AVL and checked.
+	 *
+	 * @param factory Creates the trees.
+	 * @param shaped  Whether the tree saves its shape, false for a CountedSkipList
+	 *                or ShardedTree, which save sorted data.
+	 * @return The number of operations after which a loaded tree was invalid or did
+	 *         not match.
+	 * @throws IOException If error on the snapshot streams.
+	 */
+	private static int snapshotOperations(final Supplier<BST<Integer>> factory, final boolean shaped)
+			throws IOException {
+		final SplittableRandom random = new SplittableRandom(42);
+		final BST<Integer> tree = factory.get();
+		final TreeMap<Integer, Integer> expected = new TreeMap<>();
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		int failed = 0;
+
+		for (int i = 0; i < OPERATIONS / 10; i++) {
+			final Integer key = random.nextInt(KEYS);
+
+			if (random.nextInt(10) < 7) {
+				final int count = 1 + random.nextInt(4);
+				tree.add(new CountedData<>(key), count);
+				expected.merge(key, count, Integer::sum);
+			} else {
+				tree.remove(new CountedData<>(key));
+				expected.computeIfPresent(key, (k, c) -> c > 1 ? c - 1 : null);
+			}
+			output.reset();
+			tree.save(output, KeyCodec.INT);
+			final BST<Integer> same = factory.get();
+			same.load(new ByteArrayInputStream(output.toByteArray()), KeyCodec.INT);
+			boolean passed = same.isValid() && matches(same, expected);
+
+			if (shaped) {
+				passed = passed && same.levelOrder().toString().equals(tree.levelOrder().toString());
+			} else {
+				final AVL<Integer> balanced = new AVL<>();
+				balanced.load(new ByteArrayInputStream(output.toByteArray()), KeyCodec.INT);
+				passed = passed && balanced.isValid() && matches(balanced, expected);
+			}
+
+			if (!passed) {
+				failed++;
+			}
+		}
+		return failed;
+	}
+
+	/**
+	 * Applies seeded random inserts and removals of the keys 0 to KEYS - 1 to a new
+	 * treap, each followed by a split at a random key and a join of the two parts.
+	 * Checks the treap, and both parts of each split, against TreeMaps of the
+	 * counts they must hold.
+	 *
+	 * @param byCount Whether the treap priorities are data counts.
+	 * @return The number of operations after which a treap was invalid or did not
+	 *         match its TreeMap.
+	 */
+	private static int treapOperations(final boolean byCount) {
+		final SplittableRandom random = new SplittableRandom(42);
+		final Treap<Integer> tree = new Treap<>(byCount);
+		final TreeMap<Integer, Integer> expected = new TreeMap<>();
+		int failed = 0;
+
+		for (int i = 0; i < OPERATIONS; i++) {
+			final Integer key = random.nextInt(KEYS);
+
+			if (random.nextInt(10) < 6) {
+				tree.insert(new CountedData<>(key));
+				expected.merge(key, 1, Integer::sum);
+			} else {
+				tree.remove(new CountedData<>(key));
+				expected.computeIfPresent(key, (k, c) -> c > 1 ? c - 1 : null);
+			}
+			boolean passed = tree.isValid() && matches(tree, expected);
+			final int at = random.nextInt(-1, KEYS + 2);
+			final Treap<Integer> split = tree.split(new CountedData<>(at));
+			passed = passed && tree.isValid() && matches(tree, new TreeMap<>(expected.headMap(at)))
+					&& split.isValid() && matches(split, new TreeMap<>(expected.tailMap(at)));
+			tree.join(split);
+			passed = passed && tree.isValid() && matches(tree, expected) && split.isEmpty();
+
+			if (!passed) {
+				failed++;
+			}
+		}
+		return failed;
+	}
+
+	/**
+	 * Determines if data holds the key and count of entry.
+	 *
+	 * @param data  The data found by a tree, may be null.
+	 * @param entry The entry found by a TreeMap, may be null.
+	 * @return true if both are null or both hold the same key and count, false
+	 *         otherwise.
+	 */
+	private static boolean same(final CountedData<Integer> data, final Map.Entry<Integer, Integer> entry) {
+		return data == null ? entry == null
+				: entry != null && data.getData().equals(entry.getKey()) && data.getCount() == entry.getValue();
+	}
+
+	/**
+	 * Test AVL.
+	 */
+	private static void testAVL() {
+		System.out.println(TEST_LINE);
+		System.out.println("Testing AVL");
+		final AVL<Integer> source = new AVL<>();
+		System.out.println("  isEmpty {true}: " + source.isEmpty());
+		System.out.println("  topK(1) {[]}: " + source.topK(1));
+		System.out.println(LINE);
+		System.out.println("Insert data: " + Arrays.toString(testData));
+
+		for (Integer i : testData) {
+			CountedData<Integer> data = new CountedData<>(i);
+			source.insert(data);
+		}
+		System.out.println("  isEmpty {false}: " + source.isEmpty());
+		System.out.println("  Contents {[{2: 1}, {1: 1}, {3: 1}]}: " + source.levelOrder().toString());
+		System.out.println("  Height {2}: " + source.getHeight());
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Insert 3 again: ");
+		source.insert(new CountedData<>(3));
+		System.out.println("  topK(1) {[{3: 2}]}: " + source.topK(1));
+		System.out.println(LINE);
+		System.out.println();
+	}
+
+	/**
+	 * Test BST.
+	 */
+	private static void testBST() {
+		System.out.println(TEST_LINE);
+		System.out.println("Testing BST");
+		final BST<Integer> source = new BST<>();
+		System.out.println("  isEmpty {true}: " + source.isEmpty());
+		System.out.println("  topK(1) {[]}: " + source.topKAux(1));
+		System.out.println(LINE);
+		System.out.println("Insert data: " + Arrays.toString(testData));
+
+		for (Integer i : testData) {
+			CountedData<Integer> data = new CountedData<>(i);
+			source.insert(data);
+		}
+		System.out.println("  isEmpty {false}: " + source.isEmpty());
+		System.out.println("  Contents {[{1: 1}, {2: 1}, {3: 1}]}: " + source.levelOrder().toString());
+		System.out.println("  Height {3}: " + source.getHeight());
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Insert 3 again: ");
+		source.insert(new CountedData<>(3));
+		System.out.println("  topK(1) {[{3: 2}]}: " + source.topKAux(1));
+		System.out.println(LINE);
+		System.out.println();
+	}
+
+	/**
+	 * Test CountedSkipList.
+	 */
+	private static void testCountedSkipList() {
+		System.out.println(TEST_LINE);
+		System.out.println("Testing CountedSkipList");
+		final CountedSkipList<Integer> source = new CountedSkipList<>();
+		System.out.println("  isEmpty {true}: " + source.isEmpty());
+		System.out.println("  topK(1) {[]}: " + source.topK(1));
+		System.out.println(LINE);
+		System.out.println("Insert data: " + Arrays.toString(testData));
+
+		for (Integer i : testData) {
+			source.insert(new CountedData<>(i));
+		}
+		System.out.println("  isEmpty {false}: " + source.isEmpty());
+		System.out.println("  Contents {[{1: 1}, {2: 1}, {3: 1}]}: " + source.inOrder().toString());
+		System.out.println("  Size {3}: " + source.getSize());
+		System.out.println("  isValid {true}: " + source.isValid());
+		System.out.println("  select(3) {null}: " + source.select(3));
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Add 2 to 3, remove 1: ");
+		source.add(new CountedData<>(3), 2);
+		source.remove(new CountedData<>(1));
+		System.out.println("  Contents {[{2: 1}, {3: 3}]}: " + source.inOrder().toString());
+		System.out.println("  retrieve {3: 3}: " + source.retrieve(new CountedData<>(3)));
+		System.out.println("  topK(1) {[{3: 3}]}: " + source.topK(1));
+		System.out.println("  isValid {true}: " + source.isValid());
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Random inserts, adds, retrievals and removals: ");
+		System.out.println("  Failed checks {0}: " + countingOperations(new CountedSkipList<Integer>()));
+		System.out.println(LINE);
+		System.out.println();
+	}
+
+	/**
+	 * Test FrozenTree.
+	 */
+	private static void testFrozenTree() {
+		System.out.println(TEST_LINE);
+		System.out.println("Testing FrozenTree");
+		final AVL<Integer> source = new AVL<>();
+		FrozenTree<Integer> frozen = source.freeze();
+		System.out.println("  isEmpty {true}: " + frozen.isEmpty());
+		System.out.println("  retrieve {null}: " + frozen.retrieve(new CountedData<>(1)));
+		System.out.println(LINE);
+		System.out.println("Insert data: " + Arrays.toString(testData));
+
+		for (Integer i : testData) {
+			source.insert(new CountedData<>(i));
+		}
+		source.insert(new CountedData<>(3));
+		System.out.println("Insert 3 again and freeze: ");
+		frozen = source.freeze();
+		final ArrayList<CountedData<Integer>> contents = new ArrayList<>();
+
+		for (final CountedData<Integer> data : frozen) {
+			contents.add(data);
+		}
+		System.out.println("  Contents {[{1: 1}, {2: 1}, {3: 2}]}: " + contents);
+		System.out.println("  Height {2}: " + frozen.getHeight());
+		System.out.println("  getCount(3) {2}: " + frozen.getCount(new CountedData<>(3)));
+		System.out.println("  contains(4) {false}: " + frozen.contains(new CountedData<>(4)));
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Random inserts and removals, freezing after each: ");
+		final SplittableRandom random = new SplittableRandom(42);
+		final AVL<Integer> tree = new AVL<>();
+		final TreeMap<Integer, Integer> expected = new TreeMap<>();
+		FrozenTree<Integer> early = null;
+		TreeMap<Integer, Integer> earlyExpected = null;
+		int failed = 0;
+
+		for (int i = 0; i < OPERATIONS; i++) {
+			final Integer key = random.nextInt(KEYS);
+
+			if (random.nextInt(10) < 7) {
+				tree.insert(new CountedData<>(key));
+				expected.merge(key, 1, Integer::sum);
+			} else {
+				tree.remove(new CountedData<>(key));
+				expected.computeIfPresent(key, (k, c) -> c > 1 ? c - 1 : null);
+			}
+			frozen = tree.freeze();
+
+			if (!tree.isValid() || !matches(frozen, expected)) {
+				failed++;
+			}
+
+			if (i == OPERATIONS / 2) {
+				early = frozen;
+				earlyExpected = new TreeMap<>(expected);
+			}
+		}
+		System.out.println("  Failed checks {0}: " + failed);
+		System.out.println("  Early snapshot unchanged {true}: " + matches(early, earlyExpected));
+		System.out.println(LINE);
+		System.out.println();
+	}
+
+	/**
+	 * Test HeavyHitterTree.
+	 */
+	private static void testHeavyHitterTree() {
+		System.out.println(TEST_LINE);
+		System.out.println("Testing HeavyHitterTree");
+		final HeavyHitterTree<Integer> source = new HeavyHitterTree<>(new AVL<Integer>(), 0.01, 0.01, 3);
+		final CountedData<Integer> key = new CountedData<>(1);
+		System.out.println("Insert 1 twice, threshold 3: ");
+		source.insert(key);
+		source.insert(key);
+		System.out.println("  Tree isEmpty {true}: " + source.getTree().isEmpty());
+		System.out.println("  estimate {2}: " + source.estimate(key));
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Insert 1 twice more: ");
+		source.insert(key);
+		System.out.println("  Tree Contents {[{1: 3}]}: " + source.getTree().levelOrder().toString());
+		source.insert(key);
+		System.out.println("  Tree Contents {[{1: 4}]}: " + source.getTree().levelOrder().toString());
+		System.out.println("  estimate {4}: " + source.estimate(key));
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Random skewed inserts of keys 0 to 499, threshold 20: ");
+		final SplittableRandom random = new SplittableRandom(42);
+		final HeavyHitterTree<Integer> hitters = new HeavyHitterTree<>(new AVL<Integer>(), 0.001, 0.01, 20);
+		final BST<Integer> tree = hitters.getTree();
+		final TreeMap<Integer, Integer> expected = new TreeMap<>();
+		int failed = 0;
+		int overcount = 0;
+
+		for (int i = 0; i < OPERATIONS * 5; i++) {
+			// Skewed towards small keys.
+			final Integer next = Math.min(random.nextInt(500), random.nextInt(500));
+			hitters.insert(new CountedData<>(next));
+			expected.merge(next, 1, Integer::sum);
+			boolean passed = tree.isValid() && hitters.estimate(new CountedData<>(next)) >= expected.get(next);
+
+			for (final CountedData<Integer> data : tree) {
+				// A promoted key is never undercounted.
+				final int count = expected.get(data.getData());
+				passed = passed && data.getCount() >= count;
+				overcount = Math.max(overcount, data.getCount() - count);
+			}
+
+			for (final Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+				// A key whose true count reaches the threshold is promoted.
+				passed = passed && (entry.getValue() < hitters.getThreshold()
+						|| tree.contains(new CountedData<>(entry.getKey())));
+			}
+
+			if (!passed) {
+				failed++;
+			}
+		}
+		System.out.println("  Failed checks {0}: " + failed);
+		System.out.println("  Largest overcount within epsilon * N {true}: "
+				+ (overcount <= 0.001 * hitters.getSketch().getTotal()));
+		System.out.println(LINE);
+		System.out.println();
+	}
+
+	/**
+	 * Test the navigation methods of BST: first, last, floor, ceiling, higher,
+	 * lower and range.
+	 */
+	private static void testNavigation() {
+		System.out.println(TEST_LINE);
+		System.out.println("Testing Navigation");
+		final AVL<Integer> source = new AVL<>();
+		System.out.println("  first {null}: " + source.first());
+		System.out.println("  floor(1) {null}: " + source.floor(new CountedData<>(1)));
+		System.out.println(LINE);
+		System.out.println("Insert data: [2, 4, 6]");
+
+		for (Integer i : new Integer[] { 2, 4, 6 }) {
+			source.insert(new CountedData<>(i));
+		}
+		final CountedData<Integer> key = new CountedData<>(4);
+		System.out.println("  first {2: 1}: " + source.first());
+		System.out.println("  last {6: 1}: " + source.last());
+		System.out.println("  floor(4) {4: 1}: " + source.floor(key));
+		System.out.println("  ceiling(5) {6: 1}: " + source.ceiling(new CountedData<>(5)));
+		System.out.println("  higher(4) {6: 1}: " + source.higher(key));
+		System.out.println("  lower(4) {2: 1}: " + source.lower(key));
+		System.out.println("  lower(2) {null}: " + source.lower(new CountedData<>(2)));
+		final ArrayList<CountedData<Integer>> contents = new ArrayList<>();
+		source.range(new CountedData<>(3), new CountedData<>(6)).forEachRemaining(contents::add);
+		System.out.println("  range(3, 6) {[{4: 1}, {6: 1}]}: " + contents);
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Random inserts and removals: ");
+		final SplittableRandom random = new SplittableRandom(42);
+		final AVL<Integer> tree = new AVL<>();
+		final TreeMap<Integer, Integer> expected = new TreeMap<>();
+		int failed = 0;
+
+		for (int i = 0; i < OPERATIONS; i++) {
+			final Integer next = random.nextInt(KEYS);
+
+			if (random.nextInt(10) < 6) {
+				tree.insert(new CountedData<>(next));
+				expected.merge(next, 1, Integer::sum);
+			} else {
+				tree.remove(new CountedData<>(next));
+				expected.computeIfPresent(next, (k, c) -> c > 1 ? c - 1 : null);
+			}
+
+			if (!tree.isValid() || !matches(tree, expected) || !navigates(tree, expected)) {
+				failed++;
+			}
+		}
+		System.out.println("  Failed checks {0}: " + failed);
+		System.out.println(LINE);
+		System.out.println();
+	}
+
+	/**
+	 * Test OptimalTree.
+	 */
+	private static void testOptimalTree() {
+		System.out.println(TEST_LINE);
+		System.out.println("Testing OptimalTree");
+		final PopularityTree<Integer> source = new PopularityTree<>();
+		System.out.println("Insert data: " + Arrays.toString(testData));
+
+		for (Integer i : testData) {
+			source.insert(new CountedData<>(i));
+		}
+		System.out.println("Retrieve 3 three times and 1 once: ");
+
+		for (Integer i : new Integer[] { 3, 3, 3, 1 }) {
+			source.retrieve(new CountedData<>(i));
+		}
+		OptimalTree<Integer> optimal = source.rebuildOptimal();
+		System.out.println("  Contents {[{3: 3}, {1: 1}, {2: 0}]}: " + optimal.levelOrder().toString());
+		System.out.println("  Height {3}: " + optimal.getHeight());
+		System.out.println("  isValid {true}: " + optimal.isValid());
+
+		try {
+			optimal.insert(new CountedData<>(4));
+			System.out.println("  insert {UnsupportedOperationException}: none");
+		} catch (final UnsupportedOperationException e) {
+			System.out.println("  insert {UnsupportedOperationException}: " + e.getClass().getSimpleName());
+		}
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Rebuild after random retrievals: ");
+		final SplittableRandom random = new SplittableRandom(42);
+		final PopularityTree<Integer> popularity = new PopularityTree<>();
+		final AVL<Integer> balanced = new AVL<>();
+		final TreeMap<Integer, Integer> expected = new TreeMap<>();
+
+		for (int key = 0; key < KEYS; key++) {
+			popularity.insert(new CountedData<>(key));
+			expected.put(key, 0);
+		}
+		final int[] retrievals = new int[OPERATIONS];
+
+		for (int i = 0; i < OPERATIONS; i++) {
+			// Skewed towards small keys.
+			retrievals[i] = Math.min(random.nextInt(KEYS), random.nextInt(KEYS));
+			popularity.retrieve(new CountedData<>(retrievals[i]));
+			expected.merge(retrievals[i], 1, Integer::sum);
+		}
+		optimal = popularity.rebuildOptimal();
+
+		for (final CountedData<Integer> data : optimal) {
+			balanced.insert(new CountedData<>(data.getData()));
+		}
+		System.out.println("  isValid {true}: " + optimal.isValid());
+		System.out.println("  Matches TreeMap {true}: " + matches(optimal, expected));
+		int failed = 0;
+
+		for (final int key : retrievals) {
+			final CountedData<Integer> found = optimal.retrieve(new CountedData<>(key));
+			balanced.retrieve(new CountedData<>(key));
+
+			if (found == null || found.getCount() != expected.get(key)) {
+				failed++;
+			}
+		}
+		System.out.println("  Failed retrievals {0}: " + failed);
+		System.out.println("  Counts unchanged {true}: " + matches(optimal, expected));
+		System.out.println("  No more comparisons than AVL {true}: "
+				+ (optimal.getComparisonsLong() <= balanced.getComparisonsLong()));
+		System.out.println(LINE);
+		System.out.println();
+	}
+
+	/**
+	 * Test PopularityTree.
+	 */
+	@SuppressWarnings("unchecked")
+	private static void testPopularityTree() {
+		System.out.println(TEST_LINE);
+		System.out.println("Testing PopularityTree");
+		final PopularityTree<Integer> source = new PopularityTree<>();
+		System.out.println("  isEmpty {true}: " + source.isEmpty());
+		System.out.println("  topK(1) {[]}: " + source.topK(1));
+		System.out.println(LINE);
+		System.out.println("Insert data: " + Arrays.toString(testData));
+
+		for (Integer i : testData) {
+			CountedData<Integer> data = new CountedData<>(i);
+			source.insert(data);
+		}
+		System.out.println("  isEmpty {false}: " + source.isEmpty());
+		System.out.println("  Contents {[{1: 0}, {2: 0}, {3: 0}]}: " + source.levelOrder().toString());
+		System.out.println("  Height {3}: " + source.getHeight());
+		System.out.println("  isValid {true}: " + source.isValid());
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Retrieve data: ");
+		CountedData<Integer> key = new CountedData<>(3);
+		System.out.println("  retrieve {3: 1}: " + source.retrieve(key));
+		System.out.println("  topK(1) {[{3: 1}]}: " + source.topK(1));
+		System.out.println("  Contents {[{3: 1}, {1: 0}, {2: 0}]}: " + source.levelOrder().toString());
+		System.out.println("  Height {3}: " + source.getHeight());
+		System.out.println("  isValid {true}: " + source.isValid());
+		System.out.println(LINE);
+		System.out.println();
+		final PopularityTree<Integer> batch = new PopularityTree<>();
+
+		for (Integer i : new Integer[] { 2, 1, 3 }) {
+			batch.insert(new CountedData<>(i));
+		}
+		System.out.println("Retrieve batch [1, 3] from [2, 1, 3]: ");
+		final CountedData<Integer>[] keys = (CountedData<Integer>[]) new CountedData<?>[] { new CountedData<>(1),
+				new CountedData<>(3) };
+		batch.retrieveBatch(keys);
+		System.out.println("  Contents {[{1: 1}, {3: 1}, {2: 0}]}: " + batch.levelOrder().toString());
+		System.out.println("  isValid {true}: " + batch.isValid());
+		System.out.println(LINE);
+		System.out.println();
+	}
+
+	/**
+	 * Test SemiSplayTree.
+	 */
+	private static void testSemiSplayTree() {
+		System.out.println(TEST_LINE);
+		System.out.println("Testing SemiSplayTree");
+		final SemiSplayTree<Integer> source = new SemiSplayTree<>();
+		System.out.println("  isEmpty {true}: " + source.isEmpty());
+		System.out.println("  topK(1) {[]}: " + source.topKAux(1));
+		System.out.println(LINE);
+		System.out.println("Insert data: " + Arrays.toString(testData));
+
+		for (Integer i : testData) {
+			CountedData<Integer> data = new CountedData<>(i);
+			source.insert(data);
+		}
+		System.out.println("  isEmpty {false}: " + source.isEmpty());
+		System.out.println("  Contents {[{3: 0}, {2: 0}, {1: 0}]}: " + source.levelOrder().toString());
+		System.out.println("  Height {3}: " + source.getHeight());
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Retrieve data: ");
+		CountedData<Integer> key = new CountedData<>(1);
+		System.out.println("  retrieve {1: 1}: " + source.retrieve(key));
+		System.out.println("  topK(1) {[{1: 1}]}: " + source.topKAux(1));
+		System.out.println("  Contents {[{2: 0}, {1: 1}, {3: 0}]}: " + source.levelOrder().toString());
+		System.out.println("  Height {2}: " + source.getHeight());
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Random inserts, retrievals and removals: ");
+		System.out.println("  Failed checks {0}: " + retrievalOperations(new SemiSplayTree<Integer>()));
+		System.out.println(LINE);
+		System.out.println();
+	}
+
+	/**
+	 * Test ShardedTree.
+	 */
+	private static void testShardedTree() {
+		System.out.println(TEST_LINE);
+		System.out.println("Testing ShardedTree");
+		final ArrayList<CountedData<Integer>> sample = new ArrayList<>();
+
+		for (Integer i : new Integer[] { 2, 4, 6, 8 }) {
+			sample.add(new CountedData<>(i));
+		}
+		final ShardedTree<Integer> source = new ShardedTree<>(sample, 2, AVL<Integer>::new);
+		System.out.println("Sample [2, 4, 6, 8] in 2 shards: ");
+		System.out.println("  Shard count {2}: " + source.getShardCount());
+		System.out.println("  isEmpty {true}: " + source.isEmpty());
+		System.out.println("  first {null}: " + source.first());
+		System.out.println(LINE);
+		System.out.println("Insert data: [1, 5, 9, 5]");
+
+		for (Integer i : new Integer[] { 1, 5, 9, 5 }) {
+			source.insert(new CountedData<>(i));
+		}
+		System.out.println("  Contents {[{1: 1}, {5: 2}, {9: 1}]}: " + source.inOrder().toString());
+		System.out.println("  Size {3}: " + source.getSize());
+		System.out.println("  floor(8) {5: 2}: " + source.floor(new CountedData<>(8)));
+		System.out.println("  higher(5) {9: 1}: " + source.higher(new CountedData<>(5)));
+		System.out.println("  topK(1) {[{5: 2}]}: " + source.topK(1));
+		System.out.println("  isValid {true}: " + source.isValid());
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Random inserts, adds, retrievals and removals: ");
+		sample.clear();
+
+		for (int key = 0; key < KEYS; key += 3) {
+			sample.add(new CountedData<>(key));
+		}
+		System.out.println("  Failed checks {0}: "
+				+ countingOperations(new ShardedTree<Integer>(sample, 4, AVL<Integer>::new)));
+		System.out.println("  Failed checks of Treap shards {0}: "
+				+ countingOperations(new ShardedTree<Integer>(sample, 4, Treap<Integer>::new)));
+		System.out.println(LINE);
+		System.out.println();
+	}
+
+	/**
+	 * Test SplayTree.
+	 */
+	private static void testSplayTree() {
+		System.out.println(TEST_LINE);
+		System.out.println("Testing SplayTree");
+		final SplayTree<Integer> source = new SplayTree<>();
+		System.out.println("  isEmpty {true}: " + source.isEmpty());
+		System.out.println("  topK(1) {[]}: " + source.topKAux(1));
+		System.out.println(LINE);
+		System.out.println("Insert data: " + Arrays.toString(testData));
+
+		for (Integer i : testData) {
+			CountedData<Integer> data = new CountedData<>(i);
+			source.insert(data);
+		}
+		System.out.println("  isEmpty {false}: " + source.isEmpty());
+		System.out.println("  Contents {[{3: 0}, {2: 0}, {1: 0}]}: " + source.levelOrder().toString());
+		System.out.println("  Height {3}: " + source.getHeight());
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Retrieve data: ");
+		CountedData<Integer> key = new CountedData<>(1);
+		System.out.println("  retrieve {1: 1}: " + source.retrieve(key));
+		System.out.println("  topK(1) {[{1: 1}]}: " + source.topKAux(1));
+		System.out.println("  Contents {[{1: 1}, {2: 0}, {3: 0}]}: " + source.levelOrder().toString());
+		System.out.println("  Height {3}: " + source.getHeight());
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Random inserts, retrievals and removals: ");
+		System.out.println("  Failed checks {0}: " + retrievalOperations(new SplayTree<Integer>()));
+		System.out.println(LINE);
+		System.out.println();
+	}
+
+	/**
+	 * Test saving a Popularity Tree and loading it into another.
+	 *
+	 * @throws IOException If error on the snapshot streams.
+	 */
+	private static void testSnapshot() throws IOException {
+		System.out.println(TEST_LINE);
+		System.out.println("Testing Snapshot");
+		final PopularityTree<Integer> source = new PopularityTree<>();
+		System.out.println("Insert data: " + Arrays.toString(testData));
+
+		for (Integer i : testData) {
+			CountedData<Integer> data = new CountedData<>(i);
+			source.insert(data);
+		}
+		System.out.println("Retrieve 3 twice: ");
+		CountedData<Integer> key = new CountedData<>(3);
+		source.retrieve(key);
+		source.retrieve(key);
+		System.out.println("  Contents {[{3: 2}, {1: 0}, {2: 0}]}: " + source.levelOrder().toString());
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Save and load: ");
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		source.save(output, KeyCodec.INT);
+		System.out.println("  Bytes {23}: " + output.size());
+		final PopularityTree<Integer> target = new PopularityTree<>();
+		target.load(new ByteArrayInputStream(output.toByteArray()), KeyCodec.INT);
+		System.out.println("  Contents {[{3: 2}, {1: 0}, {2: 0}]}: " + target.levelOrder().toString());
+		System.out.println("  Height {3}: " + target.getHeight());
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Load a CountedSkipList of [1, 2, 3, 3]: ");
+		final CountedSkipList<Integer> list = new CountedSkipList<>();
+
+		for (Integer i : new Integer[] { 1, 2, 3, 3 }) {
+			list.insert(new CountedData<>(i));
+		}
+		output.reset();
+		list.save(output, KeyCodec.INT);
+		target.load(new ByteArrayInputStream(output.toByteArray()), KeyCodec.INT);
+		System.out.println("  Contents {[{3: 2}, {1: 1}, {2: 1}]}: " + target.levelOrder().toString());
+		System.out.println("  isValid {true}: " + target.isValid());
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Load a header of 2^31 - 9 nodes with none: ");
+		final byte[] corrupt = Arrays.copyOf(output.toByteArray(), 12);
+		corrupt[7] = (byte) 0xF7;
+		corrupt[8] = corrupt[9] = corrupt[10] = (byte) 0xFF;
+		corrupt[11] = 0x07;
+
+		try {
+			target.load(new ByteArrayInputStream(corrupt), KeyCodec.INT);
+			System.out.println("  load {EOFException}: none");
+		} catch (final IOException e) {
+			System.out.println("  load {EOFException}: " + e.getClass().getSimpleName());
+		}
+		System.out.println("  Size {3}: " + target.getSize());
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Random adds and removals, saving and loading after each: ");
+		final ArrayList<CountedData<Integer>> sample = new ArrayList<>();
+
+		for (int i = 0; i < KEYS; i += 3) {
+			sample.add(new CountedData<>(i));
+		}
+		System.out.println("  AVL failed checks {0}: " + snapshotOperations(AVL<Integer>::new, true));
+		System.out.println(
+				"  PopularityTree failed checks {0}: " + snapshotOperations(PopularityTree<Integer>::new, true));
+		System.out.println("  SplayTree failed checks {0}: " + snapshotOperations(SplayTree<Integer>::new, true));
+		System.out.println("  Treap failed checks {0}: " + snapshotOperations(Treap<Integer>::new, true));
+		System.out.println("  CountedSkipList failed checks {0}: "
+				+ snapshotOperations(CountedSkipList<Integer>::new, false));
+		System.out.println("  ShardedTree failed checks {0}: "
+				+ snapshotOperations(() -> new ShardedTree<Integer>(sample, 4, AVL<Integer>::new), false));
+		System.out.println(LINE);
+		System.out.println();
+	}
+
+	/**
+	 * Test Treap.
+	 */
+	private static void testTreap() {
+		System.out.println(TEST_LINE);
+		System.out.println("Testing Treap");
+		final Treap<Integer> source = new Treap<>();
+		System.out.println("  isEmpty {true}: " + source.isEmpty());
+		System.out.println("  topK(1) {[]}: " + source.topKAux(1));
+		System.out.println(LINE);
+		System.out.println("Insert data: " + Arrays.toString(testData));
+
+		for (Integer i : testData) {
+			CountedData<Integer> data = new CountedData<>(i);
+			source.insert(data);
+		}
+		System.out.println("  isEmpty {false}: " + source.isEmpty());
+		System.out.println("  Contents {[{2: 1}, {1: 1}, {3: 1}]}: " + source.levelOrder().toString());
+		System.out.println("  Height {2}: " + source.getHeight());
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Split at 2: ");
+		CountedData<Integer> key = new CountedData<>(2);
+		final Treap<Integer> split = source.split(key);
+		System.out.println("  Contents {[{1: 1}]}: " + source.levelOrder().toString());
+		System.out.println("  Split Contents {[{2: 1}, {3: 1}]}: " + split.levelOrder().toString());
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Join: ");
+		source.join(split);
+		System.out.println("  Contents {[{2: 1}, {1: 1}, {3: 1}]}: " + source.levelOrder().toString());
+		System.out.println("  Size {3}: " + source.getSize());
+		System.out.println("  Split isEmpty {true}: " + split.isEmpty());
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Insert 3 again: ");
+		source.insert(new CountedData<>(3));
+		System.out.println("  topK(1) {[{3: 2}]}: " + source.topKAux(1));
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Join [1, 2, 3] to [1, 2, 3]: ");
+
+		try {
+			source.join(Treap.fromSorted(source.inOrder()));
+			System.out.println("  join {IllegalArgumentException}: none");
+		} catch (final IllegalArgumentException e) {
+			System.out.println("  join {IllegalArgumentException}: " + e.getClass().getSimpleName());
+		}
+		System.out.println("  Size {3}: " + source.getSize());
+		System.out.println(LINE);
+		System.out.println();
+		System.out.println("Random inserts and removals, each followed by a split and join: ");
+		System.out.println("  Failed checks {0}: " + treapOperations(false));
+		System.out.println("  Failed checks by count {0}: " + treapOperations(true));
+		System.out.println(LINE);
+		System.out.println();
+	}
+
+	/**
+	 * Program for Assignment 4.
+	 *
+	 * @param args unused
+	 * @throws IOException If error on files.
+	 */
+	public static void main(final String[] args) throws IOException {
+		System.out.println("BST Data Structures Tests");
+		System.out.println();
+		System.out.println("Tests are of the form:");
+		System.out.println("  Test Operation {expected data}: actual data");
+		System.out.println("  Contents: [contents from front to rear]");
+		System.out.println();
+
+		testBST();
+		testAVL();
+		testPopularityTree();
+		testSplayTree();
+		testSemiSplayTree();
+		testTreap();
+		testOptimalTree();
+		testFrozenTree();
+		testNavigation();
+		testHeavyHitterTree();
+		testCountedSkipList();
+		testShardedTree();
+		testSnapshot();
+		System.out.println(TEST_LINE);
+
+		System.out.println("Testing file: " + FILENAME);
+		System.out.println();
+		final File comparisonsFile = new File(FILENAME);
+		final ArrayList<CountedData<Character>> sample = new ArrayList<>();
+
+		for (final char letter : ALPHABET.toCharArray()) {
+			sample.add(new CountedData<Character>(letter));
+		}
+
+		for (final String string : STRING_DATA) {
+			long minComparisons = Long.MAX_VALUE;
+			String treeType = null;
+			String minTree = null;
+			System.out.println("Data String: " + string);
+			System.out.println();
+			final ArrayList<BST<Character>> trees = new ArrayList<>();
+			final PopularityTree<Character> popularity = new PopularityTree<Character>();
+			trees.add(new BST<Character>());
+			trees.add(popularity);
+			trees.add(new AVL<Character>());
+			trees.add(new SplayTree<Character>());
+			trees.add(new SemiSplayTree<Character>());
+			trees.add(new Treap<Character>());
+			trees.add(new CountedSkipList<Character>());
+			trees.add(new ShardedTree<Character>(sample, 4, AVL::new));
+
+			for (final BST<Character> tree : trees) {
+				treeType = tree.getClass().getSimpleName();
+				System.out.println("  Tree Type: " + treeType);
+				A04Main.fillTree(tree, string);
+				final Scanner fileScan = new Scanner(comparisonsFile);
+				final long comparisons = A04Main.retrieve(tree, fileScan);
+				fileScan.close();
+				System.out.println("  Height: " + tree.getHeight());
+				System.out.println("  Comparisons: " + NF.format(comparisons));
+
+				if (comparisons < minComparisons) {
+					minComparisons = comparisons;
+					minTree = treeType;
+				}
+				System.out.println();
+			}
+			final CharPopularityTree primitive = new CharPopularityTree();
+			treeType = primitive.getClass().getSimpleName();
+			System.out.println("  Tree Type: " + treeType);
+			A04Main.fillTree(primitive, string);
+			final Scanner fileScan = new Scanner(comparisonsFile);
+			final long comparisons = A04Main.retrieve(primitive, fileScan);
+			fileScan.close();
+			System.out.println("  Height: " + primitive.getHeight());
+			System.out.println("  Comparisons: " + NF.format(comparisons));
+
+			if (comparisons < minComparisons) {
+				minComparisons = comparisons;
+				minTree = treeType;
+			}
+			System.out.println();
+			// Rebuild the PopularityTree, whose counts are now the file letter counts.
+			final OptimalTree<Character> optimal = popularity.rebuildOptimal();
+			treeType = optimal.getClass().getSimpleName();
+			System.out.println("  Tree Type: " + treeType);
+			final Scanner optimalScan = new Scanner(comparisonsFile);
+			final long optimalComparisons = A04Main.retrieve(optimal, optimalScan);
+			optimalScan.close();
+			System.out.println("  Height: " + optimal.getHeight());
+			System.out.println("  Comparisons: " + NF.format(optimalComparisons));
+
+			if (optimalComparisons < minComparisons) {
+				minComparisons = optimalComparisons;
+				minTree = treeType;
+			}
+			System.out.println();
+			System.out.println("Tree with minimum comparisons: " + minTree);
+			System.out.println(SEPARATOR);
+		}
+		final PopularityTree<Character> bst = new PopularityTree<>();
+		A04Main.fillTree(bst, ALPHABET);
+		new TextIngester().ingest(comparisonsFile.toPath(), bst);
+		System.out.println("Character Table for Comparisons File");
+		System.out.println();
+		A04Main.characterTable(bst);
+	}
+}
@@ -1,228 +1,231 @@
-package cp213;
-
-/**
- * Implements an AVL (Adelson-Velsky Landis) tree. Extends BST.
- *
- * @author Giuseppe Akbari
- * @author David Brown
- * @version 2024-10-15
- */
-public class AVL<T extends Comparable<T>> extends BST<T> {
-
-	/**
-	 * Returns the balance data of node. If greater than 1, then left heavy, if less
-	 * than -1, then right heavy. If in the range -1 to 1 inclusive, the node is
-	 * balanced. Used to determine whether to rotate a node upon insertion.
-	 *
-	 * @param node The TreeNode to analyze for balance.
-	 * @return A balance number.
-	 */
-	private int balance(final TreeNode<T> node) {
-
-		// your code here
-
-		if (node == null) {
-			return 0;
-		}
-
-		return nodeHeight(node.getLeft()) - nodeHeight(node.getRight());
-	}
-
-	/**
-	 * Rebalances the current node if its children are not balanced.
-	 *
-	 * @param node the node to rebalance
-	 * @return replacement for the rebalanced node
-	 */
-	private TreeNode<T> rebalance(TreeNode<T> node) {
-
-		// your code here
-		if (node == null) {
-			return null;
-		}
-		// TreeNode<T> nr;
-		if (balance(node) > 1) {// this is left heavy
-			if (balance(node.getLeft()) < 0) {
-				node.setLeft(rotateLeft(node.getLeft()));
-			}
-			return rotateRight(node);// rotate to the left because it is left heavy
-
-		}
-		if (balance(node) < -1) {// right heavy
-			if (balance(node.getRight()) > 0) {
-				node.setRight(rotateRight(node.getRight()));
-			}
-			return rotateLeft(node);// rotate to the right because it is left heavy
-		}
-
-		return node;
-	}
-
-	/**
-	 * Performs a left rotation around node.
-	 *
-	 * @param node The subtree to rotate.
-	 * @return The new root of the subtree.
-	 */
-	private TreeNode<T> rotateLeft(final TreeNode<T> node) {
-
-		// your code here
-		TreeNode<T> RC = node.getRight();
-		node.setRight(RC.getLeft());
-		RC.setLeft(node);
-		node.updateHeight();
-		RC.updateHeight();
-
-		return RC;
-	}
-
-	/**
-	 * Performs a right rotation around node.
-	 *
-	 * @param node The subtree to rotate.
-	 * @return The new root of the subtree.
-	 */
-	private TreeNode<T> rotateRight(final TreeNode<T> node) {
-
-		// your code here
-		TreeNode<T> RC = node.getLeft();
-		node.setLeft(RC.getRight());
-		RC.setRight(node);
-		node.updateHeight();
-		RC.updateHeight();
-
-		return RC;
-	}
-
-	/**
-	 * Auxiliary method for insert. Inserts data into this AVL. Same as BST
-	 * insertion with addition of rebalance of nodes.
-	 *
-	 * @param node The current node (TreeNode).
-	 * @param data Data to be inserted into the node.
-	 * @return The inserted node.
-	 */
-	@Override
-	protected TreeNode<T> insertAux(TreeNode<T> node, final CountedData<T> data) {
-
-		// your code here
-		// TreeNode<T> nr = null;
-		node = super.insertAux(node, data);
-
-		return rebalance(node);
-	}
-
-	/**
-	 * Auxiliary method for valid. Determines if a subtree based on node is a valid
-	 * subtree. An AVL must meet the BST validation conditions, and additionally be
-	 * balanced in all its subtrees - i.e. the difference in height between any two
-	 * children must be no greater than 1.
-	 *
-	 * @param node The root of the subtree to test for validity.
-	 * @return true if the subtree base on node is valid, false otherwise.
-	 */
-	@Override
-	protected boolean isValidAux(final TreeNode<T> node, TreeNode<T> minNode, TreeNode<T> maxNode) {
-
-		// your code here
-		boolean boo = false;
-		if (node == null) {// node is null so no bother to check and it is valid
-			boo = true;
-		} else if (node.getRight() == null && node.getLeft() == null) {// both of the kids are null so it is valid
-			boo = true;
-		} else if (node.getRight() == null || node.getLeft() == null) {// one of the kids is null
-			if (node.getRight() != null) {
-				if (node.getData().compareTo(node.getRight().getData()) < 0 && Math.abs(this.balance(node)) <= 1) {
-					// this.comparisons++;
-					boo = this.isValidAux(node.getRight(), minNode, maxNode);
-				} else {
-					boo = false;
-				}
-			} else if (node.getLeft() != null) {
-				if (node.getData().compareTo(node.getLeft().getData()) > 0 && Math.abs(this.balance(node)) <= 1) {
-					// this.comparisons++;
-					boo = this.isValidAux(node.getLeft(), minNode, maxNode);
-				} else {
-					boo = false;
-				}
-			}
-
-		} else {// none of the kids is null
-			boo = this.isValidAux(node.getRight(), null, null) && this.isValidAux(node.getLeft(), minNode, maxNode);
-		}
-		return boo;
-	}
-
-	/**
-	 * Determines whether two AVLs are identical.
-	 *
-	 * @param target The AVL to compare this AVL against.
-	 * @return true if this AVL and target contain nodes that match in position,
-	 *         data, count, and height, false otherwise.
-	 */
-	public boolean equals(final AVL<T> target) {
-		return super.equals(target);
-	}
-
-	/**
-	 * Auxiliary method for remove. Removes data from this BST. Same as BST removal
-	 * with addition of rebalance of nodes.
-	 *
-	 * @param node The current node (TreeNode).
-	 * @param data Data to be removed from the tree.
-	 * @return The replacement node.
-	 */
-	@Override
-	protected TreeNode<T> removeAux(TreeNode<T> node, final CountedData<T> data) {
-
-		// your code here
-		if (node == null) {
-			node = null;
-		} else if (node.getData().compareTo(data) > 0) {// data less than node
-			node.setLeft(removeAux(node.getLeft(), data));
-			this.rebalance(node);
-		} else if (node.getData().compareTo(data) < 0) {
-			node.setRight(removeAux(node.getRight(), data));
-			this.rebalance(node);
-		} else {
-			if (node.getData().getCount() > 1) {
-				node.getData().decrementCount();
-			} else if (node.getLeft() == null && node.getRight() == null) {
-				node = null;
-			} else if (node.getLeft() == null) {
-				node = node.getRight();
-			} else if (node.getRight() == null) {
-				node = node.getLeft();
-			} else {// node has two kids
-				TreeNode<T> rep = null;
-				if (node.getLeft().getRight() == null) {
-					rep = node.getLeft();
-				} else {
-					rep = deleteleft(node.getLeft());
-				}
-				rep.setRight(node.getRight());
-				node = rep;
-			}
-		}
-		if (node != null) {
-			node.updateHeight();
-		}
-
-		return node;
-	}
-
-	@Override
-	protected TreeNode<T> deleteleft(TreeNode<T> node) {
-		TreeNode<T> child = node.getRight();
-		TreeNode<T> rep = null;
-		if (child.getRight() == null) {
-			rep = child;
-			node.setRight(child.getLeft());
-		} else {
-			rep = deleteleft(child);
-			node.updateHeight();
-		}
-		return rep;
-	}
-
-}
+package cp213;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implements an AVL (Adelson-Velsky Landis) tree. Extends BST.
+ *
+ * @author Giuseppe Akbari
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class AVL<T extends Comparable<T>> extends BST<T> {
+
+	/**
+	 * Returns the balance data of node. If greater than 1, then left heavy, if less
+	 * than -1, then right heavy. If in the range -1 to 1 inclusive, the node is
+	 * balanced. Used to determine whether to rotate a node upon insertion.
+	 *
+	 * @param node The TreeNode to analyze for balance.
+	 * @return A balance number.
+	 */
+	private int balance(final TreeNode<T> node) {
+
+		// your code here
+
+		if (node == null) {
+			return 0;
+		}
+
+		return nodeHeight(node.getLeft()) - nodeHeight(node.getRight());
+	}
+
+	/**
+	 * Joins left and right with node between them into a balanced subtree. If one
+	 * side is more than one level taller, node is joined into the inner spine of
+	 * the taller side at the height of the shorter one, and the spine is
+	 * rebalanced on the way back up. Takes time proportional to the difference in
+	 * heights.
+	 *
+	 * @param left  The left subtree, may be null.
+	 * @param node  The node to put between left and right.
+	 * @param right The right subtree, may be null.
+	 * @return The root of the joined subtree.
+	 */
+	@Override
+	protected TreeNode<T> join(final TreeNode<T> left, final TreeNode<T> node, final TreeNode<T> right) {
+		final int leftHeight = this.nodeHeight(left);
+		final int rightHeight = this.nodeHeight(right);
+		TreeNode<T> joined = null;
+
+		if (leftHeight > rightHeight + 1) {
+			left.setRight(this.join(left.getRight(), node, right));
+			joined = this.restore(left);
+		} else if (rightHeight > leftHeight + 1) {
+			right.setLeft(this.join(left, node, right.getLeft()));
+			joined = this.restore(right);
+		} else {
+			node.setLeft(left);
+			node.setRight(right);
+			joined = this.restore(node);
+		}
+		return joined;
+	}
+
+	/**
+	 * Rebalances the current node if its children are not balanced.
+	 *
+	 * @param node the node to rebalance
+	 * @return replacement for the rebalanced node
+	 */
+	private TreeNode<T> rebalance(TreeNode<T> node) {
+
+		// your code here
+		if (node == null) {
+			return null;
+		}
+		// TreeNode<T> nr;
+		if (balance(node) > 1) {// this is left heavy
+			if (balance(node.getLeft()) < 0) {
+				node.setLeft(rotateLeft(node.getLeft()));
+			}
+			return rotateRight(node);// rotate to the left because it is left heavy
+
+		}
+		if (balance(node) < -1) {// right heavy
+			if (balance(node.getRight()) > 0) {
+				node.setRight(rotateRight(node.getRight()));
+			}
+			return rotateLeft(node);// rotate to the right because it is left heavy
+		}
+
+		return node;
+	}
+
+	/**
+	 * Performs a left rotation around node.
+	 *
+	 * @param node The subtree to rotate.
+	 * @return The new root of the subtree.
+	 */
+	private TreeNode<T> rotateLeft(final TreeNode<T> node) {
+
+		// your code here
+		TreeNode<T> RC = node.getRight();
+		node.setRight(RC.getLeft());
+		RC.setLeft(node);
+		node.updateHeight();
+		RC.updateHeight();
+		this.rotated();
+
+		return RC;
+	}
+
+	/**
+	 * Performs a right rotation around node.
+	 *
+	 * @param node The subtree to rotate.
+	 * @return The new root of the subtree.
+	 */
+	private TreeNode<T> rotateRight(final TreeNode<T> node) {
+
+		// your code here
+		TreeNode<T> RC = node.getLeft();
+		node.setLeft(RC.getRight());
+		RC.setRight(node);
+		node.updateHeight();
+		RC.updateHeight();
+		this.rotated();
+
+		return RC;
+	}
+
+	/**
+	 * Repairs a node on an insertion or removal path. Same as BST repair with
+	 * addition of rebalance of nodes.
+	 *
+	 * @param node The node to repair.
+	 * @return The replacement for the rebalanced node.
+	 */
+	@Override
+	protected TreeNode<T> restore(final TreeNode<T> node) {
+		node.updateHeight();
+		return this.rebalance(node);
+	}
+
+	/**
+	 * Auxiliary method for valid. Determines if a subtree based on node is a valid
+	 * subtree. An AVL must meet the BST validation conditions, and additionally be
+	 * balanced in all its subtrees - i.e. the difference in height between any two
+	 * children must be no greater than 1.
+	 *
+	 * @param node The root of the subtree to test for validity.
+	 * @return true if the subtree base on node is valid, false otherwise.
+	 */
+	@Override
+	protected boolean isValidAux(final TreeNode<T> node, TreeNode<T> minNode, TreeNode<T> maxNode) {
+
+		// your code here
+		boolean boo = false;
+		if (node == null) {// node is null so no bother to check and it is valid
+			boo = true;
+		} else if (node.getRight() == null && node.getLeft() == null) {// both of the kids are null so it is valid
+			boo = true;
+		} else if (node.getRight() == null || node.getLeft() == null) {// one of the kids is null
+			if (node.getRight() != null) {
+				if (node.getData().compareTo(node.getRight().getData()) < 0 && Math.abs(this.balance(node)) <= 1) {
+					// this.comparisons++;
+					boo = this.isValidAux(node.getRight(), minNode, maxNode);
+				} else {
+					boo = false;
+				}
+			} else if (node.getLeft() != null) {
+				if (node.getData().compareTo(node.getLeft().getData()) > 0 && Math.abs(this.balance(node)) <= 1) {
+					// this.comparisons++;
+					boo = this.isValidAux(node.getLeft(), minNode, maxNode);
+				} else {
+					boo = false;
+				}
+			}
+
+		} else {// none of the kids is null
+			boo = this.isValidAux(node.getRight(), null, null) && this.isValidAux(node.getLeft(), minNode, maxNode);
+		}
+		return boo;
+	}
+
+	/**
+	 * Returns an AVL holding sorted, built in linear time. Equal data are combined
+	 * into one node, counted as if each were inserted in turn. Large inputs are
+	 * built in parallel.
+	 *
+	 * @param <T>    The data type.
+	 * @param sorted Data in nondecreasing order. The data are stored in the tree.
+	 * @return A new AVL.
+	 * @throws IllegalArgumentException if sorted is not in nondecreasing order.
+	 */
+	public static <T extends Comparable<T>> AVL<T> fromSorted(final List<CountedData<T>> sorted) {
+		final AVL<T> tree = new AVL<T>();
+		tree.load(sorted);
+		return tree;
+	}
+
+	/**
+	 * Determines whether two AVLs are identical.
+	 *
+	 * @param target The AVL to compare this AVL against.
+	 * @return true if this AVL and target contain nodes that match in position,
+	 *         data, count, and height, false otherwise.
+	 */
+	public boolean equals(final AVL<T> target) {
+		return super.equals(target);
+	}
+
+	/**
+	 * Returns the k data with the greatest counts. The data are kept ordered by
+	 * count in an index that is built on the first call and updated by each
+	 * insertion and removal from then on, so later calls take O(k) time without
+	 * visiting the tree. Data with equal counts are returned in no particular
+	 * order. Not copy safe as it returns references to the data, not copies of
+	 * the data.
+	 *
+	 * @param k The number of data wanted.
+	 * @return The k data with the greatest counts, or all of the data if there are
+	 *         fewer than k, in order of decreasing count.
+	 */
+	public ArrayList<CountedData<T>> topK(final int k) {
+		return this.topKAux(k);
+	}
+
+}
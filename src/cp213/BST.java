@@ -1,376 +1,1539 @@
-package cp213;
-
-import java.util.ArrayList;
-
-/**
- * Implements a Binary Search Tree.
- *
- * @author Giuseppe Akbari
- * @author David Brown
- * @version 2024-10-15
- */
-public class BST<T extends Comparable<T>> {
-
-	// Attributes.
-	/**
-	 * Count of comparisons performed by tree.
-	 */
-	protected int comparisons = 0;
-	/**
-	 * Root node of the tree.
-	 */
-	protected TreeNode<T> root = null;
-	/**
-	 * Number of nodes in the tree.
-	 */
-	protected int size = 0;
-
-	/**
-	 * Auxiliary method for {@code equals}. Determines whether two subtrees are
-	 * identical in datas and height.
-	 *
-	 * @param source Node of this BST.
-	 * @param target Node of that BST.
-	 * @return true if source and target are identical in datas and height.
-	 */
-	protected boolean equalsAux(final TreeNode<T> source, final TreeNode<T> target) {
-
-		// your code here
-		if (source.getHeight() == target.getHeight()) {
-			if (source.inOrder().equals(target.inOrder())) {
-				return true;
-			}
-		}
-
-		return false;
-	}
-
-	/**
-	 * Auxiliary method for insert. Inserts data into this BST.
-	 *
-	 * @param node The current node (TreeNode).
-	 * @param data Data to be inserted into the tree.
-	 * @return The inserted node.
-	 */
-	protected TreeNode<T> insertAux(TreeNode<T> node, final CountedData<T> data) {
-
-		if (node == null) {
-			// Base case - add a new node containing the data.
-			node = new TreeNode<T>(data);
-			node.getData().incrementCount();
-			this.size++;
-		} else {
-			// Compare the node data against the insert data.
-			final int result = node.getData().compareTo(data);
-
-			if (result > 0) {
-				// General case - check the left subtree.
-				node.setLeft(this.insertAux(node.getLeft(), data));
-			} else if (result < 0) {
-				// General case - check the right subtree.
-				node.setRight(this.insertAux(node.getRight(), data));
-			} else {
-				// Base case - data is already in the tree, increment its count
-				node.getData().incrementCount();
-			}
-		}
-		node.updateHeight();
-		return node;
-	}
-
-	/**
-	 * Auxiliary method for valid. Determines if a subtree based on node is a valid
-	 * subtree.
-	 *
-	 * @param node    The root of the subtree to test for validity.
-	 * @param minNode The node of the minimum data in the current subtree.
-	 * @param maxNode The node of the maximum data in the current subtree.
-	 * @return true if the subtree base on node is valid, false otherwise.
-	 */
-	protected boolean isValidAux(final TreeNode<T> node, TreeNode<T> minNode, TreeNode<T> maxNode) {
-		// your code here
-		boolean boo = false;
-		if (node == null) {
-			boo = true;
-		} else if (node.getRight() == null && node.getRight() == null) {// both childs are null so it has to be true
-			boo = true;
-		} else if (node.getRight() == null || node.getRight() == null) {// one of the right or left is null
-			if (node.getRight() == null) {// check if the right is null then left is not null
-				if (node.getLeft().getData().compareTo(node.getData()) < 0) {// if the left node of the tree is less
-																				// than the parent
-					// this.comparisons++;
-					boo = this.isValidAux(node.getLeft(), null, null);// call the function again to see if node left
-																		// kids are
-																		// valid
-
-				} else {// if the left node is greater than node than it is not valid
-					boo = false;
-				}
-			} else {// then left is null and right is not null bc i used the or so one of them has
-					// to be not null
-				if (node.getRight().getData().compareTo(node.getData()) > 0) {// the right node has to be more than
-																				// the// node
-					// this.comparisons++;
-					boo = this.isValidAux(node.getRight(), null, null);// recall the function to check for the kids of
-																		// the
-																		// right
-				} else {
-					boo = false;// if the right node is less than the node
-				}
-			}
-
-		} else {// height of the kids are not null so we will call the function and pass in two
-				// kids
-			boo = this.isValidAux(node.getLeft(), null, null) && isValidAux(node.getRight(), null, null);
-
-		}
-		return boo;
-	}
-
-	/**
-	 * Returns the height of a given TreeNode. Required for when TreeNode is null.
-	 *
-	 * @param node The TreeNode to determine the height of.
-	 * @return The height attribute of node, 0 if node is null.
-	 */
-	protected int nodeHeight(final TreeNode<T> node) {
-		return node != null ? node.getHeight() : 0;
-	}
-
-	/**
-	 * Auxiliary method for remove. Removes data from this BST.
-	 *
-	 * @param node The current node (TreeNode).
-	 * @param data Data to be removed from the tree.
-	 * @return The replacement node.
-	 */
-	protected TreeNode<T> removeAux(TreeNode<T> node, final CountedData<T> data) {
-
-		// your code here
-		if (node == null) {
-
-			node = null;
-		} else if (node.getData().compareTo(data) > 0) {// data is less than node
-			// this.comparisons++;
-			node.setLeft(removeAux(node.getLeft(), data));
-		} else if (node.getData().compareTo(data) < 0) {
-			// this.comparisons++;
-			node.setRight(removeAux(node.getRight(), data));
-
-		} else {
-			if (node.getData().getCount() > 1) {
-				node.getData().decrementCount();
-			} else if (node.getLeft() == null && node.getRight() == null) {
-				node = null;
-			} else if (node.getLeft() == null) {
-				node = node.getRight();
-			} else if (node.getRight() == null) {
-				node = node.getLeft();
-			} else {// node has two kids
-				TreeNode<T> rep = null;
-				if (node.getLeft().getRight() == null) {
-					rep = node.getLeft();
-				} else {
-					rep = deleteleft(node.getLeft());
-				}
-				rep.setRight(node.getRight());
-				node = rep;
-			}
-		}
-		if (node != null) {
-			node.updateHeight();
-		}
-
-		return node;
-	}
-
-	protected TreeNode<T> deleteleft(TreeNode<T> node) {
-		TreeNode<T> child = node.getRight();
-		TreeNode<T> rep = null;
-		if (child.getRight() == null) {
-			rep = child;
-			node.setRight(child.getLeft());
-		} else {
-			rep = deleteleft(child);
-			node.updateHeight();
-		}
-		return rep;
-	}
-
-	/**
-	 * Determines if this BST contains key.
-	 *
-	 * @param key The key to search for.
-	 * @return true if this contains key, false otherwise.
-	 */
-	public boolean contains(final CountedData<T> key) {
-		return this.retrieve(key) != null;
-	}
-
-	/**
-	 * Determines whether two trees are identical.
-	 *
-	 * @param target The tree to compare this BST against.
-	 * @return true if this and target contain nodes that match in position, data,
-	 *         count, and height, false otherwise.
-	 */
-	public boolean equals(final BST<T> target) {
-		boolean isEqual = false;
-
-		if (this.size == target.size) {
-			isEqual = this.equalsAux(this.root, target.root);
-		}
-		return isEqual;
-	}
-
-	/**
-	 * Get number of comparisons executed by the retrieve method.
-	 *
-	 * @return comparisons
-	 */
-	public int getComparisons() {
-		return this.comparisons;
-	}
-
-	/**
-	 * Returns the height of the root node of this tree.
-	 *
-	 * @return height of root node, 0 if the root node is null.
-	 */
-	public int getHeight() {
-		return this.root != null ? this.root.getHeight() : 0;
-	}
-
-	/**
-	 * Returns the number of nodes in the tree.
-	 *
-	 * @return number of nodes in this tree.
-	 */
-	public int getSize() {
-		return this.size;
-	}
-
-	/**
-	 * Returns a list of the data in the current tree. The list contents are in
-	 * order from smallest to largest.
-	 *
-	 * Not thread safe as it assumes contents of the tree are not changed by an
-	 * external thread during the loop.
-	 *
-	 * @return The contents of this tree as a list of data.
-	 */
-	public ArrayList<CountedData<T>> inOrder() {
-		return this.root.inOrder();
-	}
-
-	/**
-	 * Inserts data into this tree.
-	 *
-	 * @param data Data to store.
-	 */
-	public void insert(final CountedData<T> data) {
-		this.root = this.insertAux(this.root, data);
-		return;
-	}
-
-	/**
-	 * Determines if this tree is empty.
-	 *
-	 * @return true if this tree is empty, false otherwise.
-	 */
-	public boolean isEmpty() {
-
-		// your code here
-
-		return this.root == null;
-	}
-
-	/**
-	 * Determines if this tree is a valid BST; i.e. a node's left child data is
-	 * smaller than its data, and its right child data is greater than its data, and
-	 * a node's height is equal to the maximum of the heights of its two children
-	 * (empty child nodes have a height of 0), plus 1.
-	 *
-	 * @return true if this tree is a valid BST, false otherwise.
-	 */
-	public boolean isValid() {
-		return this.isValidAux(this.root, null, null);
-	}
-
-	/**
-	 * Returns a list of the data in the current tree. The list contents are in node
-	 * level order starting from the root node. Helps determine the structure of the
-	 * tree.
-	 *
-	 * Not thread safe as it assumes contents of the tree are not changed by an
-	 * external thread during the loop.
-	 *
-	 * @return this tree data as a list of data.
-	 */
-	public ArrayList<CountedData<T>> levelOrder() {
-		return this.root.levelOrder();
-	}
-
-	/**
-	 * Returns a list of the data in the current tree. The list contents are in node
-	 * preorder.
-	 *
-	 * Not thread safe as it assumes contents of the tree are not changed by an
-	 * external thread during the loop.
-	 *
-	 * @return The contents of this tree as a list of data.
-	 */
-	public ArrayList<CountedData<T>> preOrder() {
-		return this.root.preOrder();
-	}
-
-	/**
-	 * Removes data from the tree. Decrements the node count, and if the count is 0,
-	 * removes the node entirely.
-	 *
-	 * @param data Data to decrement or remove.
-	 */
-	public void remove(final CountedData<T> data) {
-		this.root = this.removeAux(this.root, data);
-		return;
-	}
-
-	/**
-	 * Resets the comparison count to 0.
-	 */
-	public void resetComparisons() {
-		this.comparisons = 0;
-		return;
-	}
-
-	/**
-	 * Retrieves a copy of data matching key (key should have data count of 0).
-	 * Returning a complete CountedData gives access to the data and its count.
-	 *
-	 * @param key The key to look for.
-	 * @return data The complete CountedData that matches key, null otherwise.
-	 */
-	public CountedData<T> retrieve(final CountedData<T> key) {// when the compare to is less than 0 then the target
-																// inside
-		// the compare to is greater than "this"
-
-		// your code here
-		TreeNode<T> current = this.root;
-		while (current != null) {
-			this.comparisons++;
-			if (current.getData().compareTo(key) == 0) {
-				// this.comparisons++;
-				return current.getData();
-			} else {
-				// this.comparisons++;
-				if (current.getData().compareTo(key) > 0) {// current is greater than key
-					current = current.getRight();
-				} else {
-					current = current.getLeft();
-				}
-			}
-		}
-
-		return null;
-	}
-}
+package cp213;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Implements a Binary Search Tree.
+ *
+ * @author Giuseppe Akbari
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class BST<T extends Comparable<T>> implements Iterable<CountedData<T>> {
+
+	// Attributes.
+	/**
+	 * Count of comparisons performed by tree.
+	 */
+	protected long comparisons = 0;
+	/**
+	 * Root node of the tree.
+	 */
+	protected TreeNode<T> root = null;
+	/**
+	 * Number of nodes in the tree.
+	 */
+	protected int size = 0;
+	/**
+	 * Nodes from the root down to the node being inserted or removed. Allocated
+	 * by the first update and reused from then on, so that updates do not
+	 * allocate.
+	 */
+	private TreeNode<T>[] path = null;
+	/**
+	 * Measures operations for the metrics they are recorded in, null if they are
+	 * not recorded.
+	 */
+	private OperationRecorder recorder = null;
+	/**
+	 * The data ordered by count, for {@code topKAux}. Built on first use and kept
+	 * up to date by {@code counted} from then on, null until then.
+	 */
+	private CountIndex<T> index = null;
+
+	/**
+	 * The operations that a batch applies to each key as it is pushed down the
+	 * tree.
+	 */
+	private enum Batch {
+		INSERT, REMOVE, RETRIEVE
+	}
+
+	/**
+	 * Auxiliary method for the batch operations. Pushes the sorted keys
+	 * sorted[low, high) down the subtree rooted at node in one descent: at each
+	 * node the range is split by binary search into the keys less than, equal to
+	 * and greater than the node data. The node applies the operation to the equal
+	 * keys, and each side goes down its own child. While only one side is
+	 * non-empty the descent continues without recursion, so recursion happens only
+	 * where the batch divides. Changed subtrees are put back together with
+	 * {@code join} on the way up, once per touched node.
+	 *
+	 * @param node      The root of the subtree.
+	 * @param low       The first key for the subtree.
+	 * @param high      One past the last key for the subtree.
+	 * @param sorted    The keys in nondecreasing order.
+	 * @param found     Receives the data found for each retrieved key.
+	 * @param operation The operation to apply.
+	 * @param increment The amount added to a data count by each insertion or
+	 *                  retrieval.
+	 * @return The new root of the subtree.
+	 */
+	private TreeNode<T> batchAux(TreeNode<T> node, int low, int high, final CountedData<T>[] sorted,
+			final CountedData<T>[] found, final Batch operation, final int increment) {
+		final boolean changes = operation != Batch.RETRIEVE || increment != 0;
+		final TreeNode<T> top = node;
+		// The nodes passed through on one side, only needed to rejoin changes.
+		final ArrayList<TreeNode<T>> spine = changes ? new ArrayList<>() : null;
+		final BitSet leftward = changes ? new BitSet() : null;
+		TreeNode<T> subtree = null;
+
+		while (true) {
+			if (low == high) {
+				subtree = node;
+				break;
+			}
+			if (node == null) {
+				subtree = this.batchLeaves(low, high, sorted, operation);
+				break;
+			}
+			final boolean counted = operation == Batch.RETRIEVE;
+			final CountedData<T> data = node.getData();
+			int first = high;
+			int last = high;
+
+			if (high - low == 1) {
+				// A single key needs one comparison, as in a plain descent.
+				final int result = data.compareTo(sorted[low]);
+
+				if (counted) {
+					this.comparisons++;
+				}
+				first = result <= 0 ? low : high;
+				last = result < 0 ? low : high;
+			} else {
+				first = this.batchSearch(node, low, high, sorted, false, counted);
+				last = this.batchSearch(node, first, high, sorted, true, counted);
+			}
+			final int equal = last - first;
+			boolean removed = false;
+
+			if (equal > 0 && operation == Batch.REMOVE) {
+				// Removing count or more copies removes the node.
+				removed = data.getCount() <= equal;
+
+				if (!removed) {
+					data.setCount(data.getCount() - equal);
+				}
+				this.counted(data, !removed);
+			} else if (equal > 0) {
+				data.setCount(data.getCount() + equal * increment);
+
+				if (increment != 0) {
+					this.counted(data, true);
+				}
+
+				for (int i = first; i < last && operation == Batch.RETRIEVE; i++) {
+					found[i] = data;
+				}
+			}
+
+			if (removed) {
+				final TreeNode<T> left = this.batchAux(node.getLeft(), low, first, sorted, found, operation, increment);
+				final TreeNode<T> right = this.batchAux(node.getRight(), last, high, sorted, found, operation,
+						increment);
+				this.size--;
+				subtree = this.join(left, right);
+				break;
+			} else if (first > low && last < high) {
+				final TreeNode<T> left = this.batchAux(node.getLeft(), low, first, sorted, found, operation, increment);
+				final TreeNode<T> right = this.batchAux(node.getRight(), last, high, sorted, found, operation,
+						increment);
+				subtree = changes ? this.join(left, node, right) : node;
+				break;
+			} else if (first > low) {
+				if (changes) {
+					leftward.set(spine.size());
+					spine.add(node);
+				}
+				node = node.getLeft();
+				high = first;
+			} else if (last < high) {
+				if (changes) {
+					spine.add(node);
+				}
+				node = node.getRight();
+				low = last;
+			} else {
+				subtree = changes ? this.join(node.getLeft(), node, node.getRight()) : node;
+				break;
+			}
+		}
+
+		if (!changes) {
+			return top;
+		}
+		for (int i = spine.size() - 1; i >= 0; i--) {
+			final TreeNode<T> parent = spine.get(i);
+
+			if (leftward.get(i)) {
+				subtree = this.join(subtree, parent, parent.getRight());
+			} else {
+				subtree = this.join(parent.getLeft(), parent, subtree);
+			}
+		}
+		return subtree;
+	}
+
+	/**
+	 * Auxiliary method for batchAux. Handles the keys that reach an empty subtree:
+	 * inserted keys become a new balanced subtree, other keys are not in the tree.
+	 *
+	 * @param low       The first key.
+	 * @param high      One past the last key.
+	 * @param sorted    The keys in nondecreasing order.
+	 * @param operation The operation to apply.
+	 * @return The new subtree, null if there is none.
+	 */
+	private TreeNode<T> batchLeaves(final int low, final int high, final CountedData<T>[] sorted,
+			final Batch operation) {
+		TreeNode<T> subtree = null;
+
+		if (operation == Batch.INSERT) {
+			final CountedData<T>[] merged = TreeBuilder.merge(Collections.emptyIterator(), 0,
+					Arrays.asList(sorted).subList(low, high), this.insertIncrement(), false);
+			this.size += merged.length;
+
+			for (final CountedData<T> data : merged) {
+				this.counted(data, true);
+			}
+			subtree = TreeBuilder.build(merged);
+		}
+		return subtree;
+	}
+
+	/**
+	 * Auxiliary method for batchAux. Finds by binary search the first key in
+	 * sorted[low, high) that is not less than (or, if strict, greater than) the
+	 * data of node.
+	 *
+	 * @param node    The node to compare the keys against.
+	 * @param low     The first key to search.
+	 * @param high    One past the last key to search.
+	 * @param sorted  The keys in nondecreasing order.
+	 * @param strict  Whether to find the first key greater than the node data
+	 *                rather than the first key not less than it.
+	 * @param counted Whether to count the comparisons made.
+	 * @return The index of the key found, high if there is none.
+	 */
+	private int batchSearch(final TreeNode<T> node, int low, int high, final CountedData<T>[] sorted,
+			final boolean strict, final boolean counted) {
+
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			final int result = node.getData().compareTo(sorted[middle]);
+
+			if (counted) {
+				this.comparisons++;
+			}
+			if (result < 0 || !strict && result == 0) {
+				high = middle;
+			} else {
+				low = middle + 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns a copy of data sorted by key. The sort is stable, so equal data keep
+	 * their order.
+	 *
+	 * @param data The data to sort.
+	 * @return The sorted copy.
+	 */
+	private static <T extends Comparable<T>> CountedData<T>[] sortBatch(final CountedData<T>[] data) {
+		final CountedData<T>[] sorted = data.clone();
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * Auxiliary method for the order statistics. Totals the data less than key,
+	 * or not greater than key if inclusive, using the subtree sizes or count sums
+	 * of the left subtrees passed on one descent.
+	 *
+	 * @param key       The key to compare against.
+	 * @param inclusive Whether to include the data equal to key.
+	 * @param counts    Whether to total the data counts rather than the number of
+	 *                  data.
+	 * @return The total for the data below key.
+	 */
+	private long below(final CountedData<T> key, final boolean inclusive, final boolean counts) {
+		TreeNode<T> current = this.getRoot();
+		long total = 0;
+
+		while (current != null) {
+			final int result = current.getData().compareTo(key);
+
+			if (result < 0 || inclusive && result == 0) {
+				// Take current and its left subtree: all of its subtree but the right.
+				final TreeNode<T> right = current.getRight();
+
+				if (counts) {
+					total += current.getCountSum() - (right != null ? right.getCountSum() : 0);
+				} else {
+					total += current.getSize() - (right != null ? right.getSize() : 0);
+				}
+				current = right;
+			} else {
+				current = current.getLeft();
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the node at the end of the left or right spine of the tree.
+	 *
+	 * @param leftmost Whether to follow the left spine rather than the right.
+	 * @return The node with the smallest or largest data, null if the tree is
+	 *         empty.
+	 */
+	private TreeNode<T> extreme(final boolean leftmost) {
+		TreeNode<T> current = this.getRoot();
+
+		while (current != null && (leftmost ? current.getLeft() : current.getRight()) != null) {
+			current = leftmost ? current.getLeft() : current.getRight();
+		}
+		return current;
+	}
+
+	/**
+	 * Auxiliary method for the navigation methods. Finds the data closest to key
+	 * on one side of it in one descent: every node passed on the wanted side of
+	 * key is closer than the last such node.
+	 *
+	 * @param key       The key to search from.
+	 * @param below     Whether to find data less than key rather than greater.
+	 * @param inclusive Whether data equal to key may be returned.
+	 * @return The closest data, null if there is none.
+	 */
+	private CountedData<T> nearest(final CountedData<T> key, final boolean below, final boolean inclusive) {
+		TreeNode<T> current = this.getRoot();
+		CountedData<T> closest = null;
+
+		while (current != null) {
+			final int result = current.getData().compareTo(key);
+
+			if (result == 0 && inclusive) {
+				closest = current.getData();
+				break;
+			}
+			if (below ? result < 0 : result > 0) {
+				closest = current.getData();
+				current = below ? current.getRight() : current.getLeft();
+			} else {
+				current = below ? current.getLeft() : current.getRight();
+			}
+		}
+		return closest;
+	}
+
+	/**
+	 * Auxiliary method for {@code equals}. Determines whether two subtrees are
+	 * identical in datas and height.
+	 *
+	 * @param source Node of this BST.
+	 * @param target Node of that BST.
+	 * @return true if source and target are identical in datas and height.
+	 */
+	protected boolean equalsAux(final TreeNode<T> source, final TreeNode<T> target) {
+
+		// your code here
+		if (source.getHeight() == target.getHeight()) {
+			if (source.inOrder().equals(target.inOrder())) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Auxiliary method for insert. Inserts data into the subtree rooted at node
+	 * without recursion: the nodes visited on the way down are kept on an explicit
+	 * path and repaired on the way back up with {@code restore}. If data is
+	 * already in the subtree the matching node count is increased by increment,
+	 * otherwise data is stored in a new node and its own count increased by
+	 * increment.
+	 *
+	 * @param node      The root of the subtree (TreeNode).
+	 * @param data      Data to be inserted into the tree.
+	 * @param increment The amount to add to the data count.
+	 * @return The new root of the subtree.
+	 */
+	protected TreeNode<T> insertAux(final TreeNode<T> node, final CountedData<T> data, final int increment) {
+		TreeNode<T> current = node;
+		int depth = 0;
+		int result = 0;
+
+		while (current != null) {
+			// Compare the node data against the insert data.
+			result = current.getData().compareTo(data);
+
+			if (result == 0) {
+				// Data is already in the tree, increment its count. The shape is unchanged.
+				current.getData().setCount(current.getData().getCount() + increment);
+				this.counted(current.getData(), true);
+				this.recount(current, depth);
+				return node;
+			}
+			this.push(depth++, current);
+			current = result > 0 ? current.getLeft() : current.getRight();
+		}
+		// Add a new node containing the data.
+		data.setCount(data.getCount() + increment);
+		this.counted(data, true);
+		final TreeNode<T> added = new TreeNode<T>(data);
+		this.size++;
+
+		if (depth == 0) {
+			return added;
+		}
+		final TreeNode<T> parent = this.path[depth - 1];
+
+		if (result > 0) {
+			parent.setLeft(added);
+		} else {
+			parent.setRight(added);
+		}
+		return this.retrace(depth);
+	}
+
+	/**
+	 * Returns the count increment applied by {@code insert}. A BST counts every
+	 * insertion of a data.
+	 *
+	 * @return The amount added to a data count on insertion.
+	 */
+	protected int insertIncrement() {
+		return 1;
+	}
+
+	/**
+	 * Auxiliary method for valid. Determines if a subtree based on node is a valid
+	 * subtree.
+	 *
+	 * @param node    The root of the subtree to test for validity.
+	 * @param minNode The node of the minimum data in the current subtree.
+	 * @param maxNode The node of the maximum data in the current subtree.
+	 * @return true if the subtree base on node is valid, false otherwise.
+	 */
+	protected boolean isValidAux(final TreeNode<T> node, TreeNode<T> minNode, TreeNode<T> maxNode) {
+		// your code here
+		boolean boo = false;
+		if (node == null) {
+			boo = true;
+		} else if (node.getRight() == null && node.getRight() == null) {// both childs are null so it has to be true
+			boo = true;
+		} else if (node.getRight() == null || node.getRight() == null) {// one of the right or left is null
+			if (node.getRight() == null) {// check if the right is null then left is not null
+				if (node.getLeft().getData().compareTo(node.getData()) < 0) {// if the left node of the tree is less
+																				// than the parent
+					// this.comparisons++;
+					boo = this.isValidAux(node.getLeft(), null, null);// call the function again to see if node left
+																		// kids are
+																		// valid
+
+				} else {// if the left node is greater than node than it is not valid
+					boo = false;
+				}
+			} else {// then left is null and right is not null bc i used the or so one of them has
+					// to be not null
+				if (node.getRight().getData().compareTo(node.getData()) > 0) {// the right node has to be more than
+																				// the// node
+					// this.comparisons++;
+					boo = this.isValidAux(node.getRight(), null, null);// recall the function to check for the kids of
+																		// the
+																		// right
+				} else {
+					boo = false;// if the right node is less than the node
+				}
+			}
+
+		} else {// height of the kids are not null so we will call the function and pass in two
+				// kids
+			boo = this.isValidAux(node.getLeft(), null, null) && isValidAux(node.getRight(), null, null);
+
+		}
+		return boo;
+	}
+
+	/**
+	 * Joins two subtrees with no node between them. Every data of left must be less
+	 * than every data of right. The largest node of left becomes the root
+	 * between them.
+	 *
+	 * @param left  A subtree, may be null.
+	 * @param right A subtree, may be null.
+	 * @return The root of the joined subtree.
+	 */
+	protected TreeNode<T> join(final TreeNode<T> left, final TreeNode<T> right) {
+		TreeNode<T> joined = null;
+
+		if (left == null) {
+			joined = right;
+		} else if (right == null) {
+			joined = left;
+		} else {
+			// Detach the largest node of left, rejoining its right spine without it.
+			final ArrayList<TreeNode<T>> spine = new ArrayList<>();
+			TreeNode<T> max = left;
+
+			while (max.getRight() != null) {
+				spine.add(max);
+				max = max.getRight();
+			}
+			TreeNode<T> rest = max.getLeft();
+
+			for (int i = spine.size() - 1; i >= 0; i--) {
+				rest = this.join(spine.get(i).getLeft(), spine.get(i), rest);
+			}
+			joined = this.join(rest, max, right);
+		}
+		return joined;
+	}
+
+	/**
+	 * Joins two subtrees with node between them. Every data of left must be less
+	 * than the node data, and every data of right greater. A BST makes left and
+	 * right the children of node. Subclasses may restructure the result, and must
+	 * accept subtrees of any heights.
+	 *
+	 * @param left  The left subtree, may be null.
+	 * @param node  The node to put between left and right.
+	 * @param right The right subtree, may be null.
+	 * @return The root of the joined subtree.
+	 */
+	protected TreeNode<T> join(final TreeNode<T> left, final TreeNode<T> node, final TreeNode<T> right) {
+		node.setLeft(left);
+		node.setRight(right);
+		return this.restore(node);
+	}
+
+	/**
+	 * Replaces the contents of this tree with a tree holding its current data
+	 * merged with sorted, built by {@code newTree} in linear time. Counts are those
+	 * that inserting each data of sorted in turn would give.
+	 *
+	 * @param sorted Data to add, in nondecreasing order.
+	 * @throws IllegalArgumentException if sorted is not in nondecreasing order.
+	 */
+	protected void load(final List<CountedData<T>> sorted) {
+		final CountedData<T>[] merged = TreeBuilder.merge(this.iterator(), this.size, sorted,
+				this.insertIncrement(), false);
+		// Every data may have changed, so the index is rebuilt when next needed.
+		this.replace(this.newTree(merged));
+		return;
+	}
+
+	/**
+	 * Auxiliary method for the public loads. Replaces the contents of this tree
+	 * with the tree read from channel, in the shape it was saved in, or as
+	 * {@code newTree} builds it if it was saved with no shape. The channel is not
+	 * closed.
+	 *
+	 * @param channel The channel to read from.
+	 * @param codec   Decodes the keys; must be the codec they were saved with.
+	 * @throws IOException if the channel cannot be read or does not hold a tree
+	 *                     snapshot. This tree is then unchanged.
+	 */
+	protected void load(final ReadableByteChannel channel, final KeyCodec<T> codec) throws IOException {
+		this.replace(TreeSnapshot.read(channel, codec, this::newData, this::newTree));
+		return;
+	}
+
+	/**
+	 * Returns new data for a node of this tree. Subclasses that keep more than a
+	 * count in their data create their own kind.
+	 *
+	 * @param key   The key.
+	 * @param count The count of key.
+	 * @return The data.
+	 */
+	protected CountedData<T> newData(final T key, final int count) {
+		return new CountedData<T>(key, count);
+	}
+
+	/**
+	 * Returns the root of a tree of this kind holding sorted, built in linear
+	 * time. A BST builds a height-balanced tree. Subclasses whose shape carries an
+	 * invariant beyond the order of the keys, such as a heap order, build that
+	 * shape instead.
+	 *
+	 * @param sorted Data in strictly increasing order, with their counts. The data
+	 *               are stored in the tree.
+	 * @return The root of the tree, null if sorted is empty. The heights, sizes
+	 *         and count sums of its nodes are up to date.
+	 */
+	protected TreeNode<T> newTree(final CountedData<T>[] sorted) {
+		return TreeBuilder.build(sorted);
+	}
+
+	/**
+	 * Returns the height of a given TreeNode. Required for when TreeNode is null.
+	 *
+	 * @param node The TreeNode to determine the height of.
+	 * @return The height attribute of node, 0 if node is null.
+	 */
+	protected int nodeHeight(final TreeNode<T> node) {
+		return node != null ? node.getHeight() : 0;
+	}
+
+	/**
+	 * Auxiliary method for remove. Removes data from the subtree rooted at node
+	 * without recursion. Decrements the matching node count, and if the count is
+	 * not greater than 1, unlinks the node. A node with two children is replaced by
+	 * its in-order predecessor. The nodes on the path are repaired from the bottom
+	 * up with {@code restore}.
+	 *
+	 * @param node The root of the subtree (TreeNode).
+	 * @param data Data to be removed from the tree.
+	 * @return The new root of the subtree.
+	 */
+	protected TreeNode<T> removeAux(final TreeNode<T> node, final CountedData<T> data) {
+		TreeNode<T> current = node;
+		int depth = 0;
+		int result = 0;
+
+		while (current != null && (result = current.getData().compareTo(data)) != 0) {
+			this.push(depth++, current);
+			current = result > 0 ? current.getLeft() : current.getRight();
+		}
+
+		if (current == null || current.getData().getCount() > 1) {
+			// Data is not in the tree, or only its count changes. The shape is unchanged.
+			if (current != null) {
+				current.getData().decrementCount();
+				this.counted(current.getData(), true);
+				this.recount(current, depth);
+			} else {
+				this.clearPath(depth);
+			}
+			return node;
+		}
+		this.size--;
+		this.counted(current.getData(), false);
+		final int position = depth;
+		TreeNode<T> replacement = null;
+
+		if (current.getLeft() == null) {
+			replacement = current.getRight();
+		} else if (current.getRight() == null) {
+			replacement = current.getLeft();
+		} else {
+			// Node has two children: replace it with the largest node of its left subtree.
+			this.push(depth++, current);
+			TreeNode<T> parent = current;
+			replacement = current.getLeft();
+
+			while (replacement.getRight() != null) {
+				this.push(depth++, replacement);
+				parent = replacement;
+				replacement = replacement.getRight();
+			}
+
+			if (parent == current) {
+				current.setLeft(replacement.getLeft());
+			} else {
+				parent.setRight(replacement.getLeft());
+			}
+			replacement.setLeft(current.getLeft());
+			replacement.setRight(current.getRight());
+			this.path[position] = replacement;
+		}
+
+		if (position > 0) {
+			final TreeNode<T> parent = this.path[position - 1];
+
+			if (parent.getLeft() == current) {
+				parent.setLeft(replacement);
+			} else {
+				parent.setRight(replacement);
+			}
+		}
+		return depth > 0 ? this.retrace(depth) : replacement;
+	}
+
+	/**
+	 * Makes the tree rooted at root the contents of this tree. The heights, sizes
+	 * and count sums of its nodes must be up to date.
+	 *
+	 * @param root The root of the new contents, may be null.
+	 */
+	protected void replace(final TreeNode<T> root) {
+		this.root = root;
+		this.size = root != null ? root.getSize() : 0;
+		this.index = null;
+		return;
+	}
+
+	/**
+	 * Repairs a node whose subtree has changed. A BST only updates the node height.
+	 * Subclasses may restructure the subtree.
+	 *
+	 * @param node The node to repair.
+	 * @return The node that replaces node as root of its subtree.
+	 */
+	protected TreeNode<T> restore(final TreeNode<T> node) {
+		node.updateHeight();
+		return node;
+	}
+
+	/**
+	 * Returns the count increment applied by {@code retrieveBatch}. A BST does not
+	 * count retrievals.
+	 *
+	 * @return The amount added to a data count on retrieval.
+	 */
+	protected int retrieveIncrement() {
+		return 0;
+	}
+
+	/**
+	 * Notes a rotation made by the current operation, for metrics. Subclasses
+	 * that rotate call this once for each rotation.
+	 */
+	protected void rotated() {
+
+		if (this.recorder != null) {
+			this.recorder.rotated();
+		}
+		return;
+	}
+
+	/**
+	 * Auxiliary method for the public saves. Writes this tree to channel. The
+	 * channel is not closed.
+	 *
+	 * @param channel The channel to write to.
+	 * @param codec   Encodes the keys.
+	 * @throws IOException if the channel cannot be written.
+	 */
+	protected void save(final WritableByteChannel channel, final KeyCodec<T> codec) throws IOException {
+		TreeSnapshot.write(this.getRoot(), codec, this::savedCount, channel);
+		return;
+	}
+
+	/**
+	 * Returns the count of data to save. Subclasses whose counts change lazily
+	 * return the count as it stands now.
+	 *
+	 * @param data The data of a node.
+	 * @return The count to save.
+	 */
+	protected int savedCount(final CountedData<T> data) {
+		return data.getCount();
+	}
+
+	/**
+	 * Starts measuring a single-key operation, if this tree records metrics. Each
+	 * public operation calls begin before it starts and {@code end} when it is
+	 * done.
+	 *
+	 * @return The start time in nanoseconds, 0 if metrics are not recorded.
+	 */
+	protected long begin() {
+		final OperationRecorder recorder = this.recorder;
+		return recorder != null ? recorder.begin(this.comparisons) : 0;
+	}
+
+	/**
+	 * Records an operation started by {@code begin} in the metrics, if this tree
+	 * records metrics.
+	 *
+	 * @param operation The operation.
+	 * @param start     The start time returned by {@code begin}.
+	 */
+	protected void end(final TreeMetrics.Operation operation, final long start) {
+		final OperationRecorder recorder = this.recorder;
+
+		if (recorder != null) {
+			recorder.end(operation, this.comparisons, start);
+		}
+		return;
+	}
+
+	/**
+	 * Clears the first depth entries of the path so that it does not keep nodes
+	 * alive.
+	 *
+	 * @param depth The number of entries in use.
+	 */
+	protected void clearPath(final int depth) {
+
+		for (int i = 0; i < depth; i++) {
+			this.path[i] = null;
+		}
+		return;
+	}
+
+	/**
+	 * Stores a node on the path, growing the path as necessary.
+	 *
+	 * @param depth The position of node on the path.
+	 * @param node  The node to store.
+	 */
+	@SuppressWarnings("unchecked")
+	protected void push(final int depth, final TreeNode<T> node) {
+
+		if (this.path == null) {
+			this.path = (TreeNode<T>[]) new TreeNode<?>[32];
+		} else if (depth == this.path.length) {
+			this.path = Arrays.copyOf(this.path, depth * 2);
+		}
+		this.path[depth] = node;
+
+		if (this.recorder != null) {
+			this.recorder.reached(depth);
+		}
+		return;
+	}
+
+	/**
+	 * Returns the node at depth on the path and clears its entry.
+	 *
+	 * @param depth A position on the path.
+	 * @return The node at depth.
+	 */
+	protected TreeNode<T> pop(final int depth) {
+		final TreeNode<T> node = this.path[depth];
+		this.path[depth] = null;
+		return node;
+	}
+
+	/**
+	 * Records a change to the count of a stored data, or its removal, in the count
+	 * index if there is one. Must be called whenever a data count changes or a
+	 * data is added to or removed from the tree.
+	 *
+	 * @param data    The data whose count has changed.
+	 * @param present Whether data is still in the tree.
+	 */
+	protected void counted(final CountedData<T> data, final boolean present) {
+
+		if (this.index != null) {
+			if (present) {
+				this.index.update(data);
+			} else {
+				this.index.remove(data);
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Auxiliary method for topK. Returns the k data with the greatest counts from
+	 * the count index, building the index from the tree on first use. The first
+	 * call takes O(n log n) time, and later calls O(k).
+	 *
+	 * @param k The number of data wanted.
+	 * @return The k data with the greatest counts, or all of the data if there are
+	 *         fewer than k, in order of decreasing count.
+	 */
+	protected ArrayList<CountedData<T>> topKAux(final int k) {
+
+		if (this.index == null) {
+			this.index = new CountIndex<T>(this);
+		}
+		return this.index.top(k);
+	}
+
+	/**
+	 * Updates the subtree count sums of a node whose data count has changed and of
+	 * the nodes on the path above it, from the bottom up, and clears the path.
+	 *
+	 * @param node  The node whose data count has changed.
+	 * @param depth The number of entries of the path in use, the ancestors of
+	 *              node.
+	 */
+	protected void recount(final TreeNode<T> node, int depth) {
+		node.updateHeight();
+
+		while (depth > 0) {
+			this.pop(--depth).updateHeight();
+		}
+		return;
+	}
+
+	/**
+	 * Calls {@code restore} on the nodes of the path from the bottom up, relinking
+	 * each replacement to its parent, and clears the path.
+	 *
+	 * @param depth The number of entries in use.
+	 * @return The replacement for the top node of the path.
+	 */
+	private TreeNode<T> retrace(int depth) {
+		TreeNode<T> replacement = null;
+
+		while (depth > 0) {
+			final TreeNode<T> node = this.path[--depth];
+			this.path[depth] = null;
+			replacement = this.restore(node);
+
+			if (depth > 0 && replacement != node) {
+				final TreeNode<T> parent = this.path[depth - 1];
+
+				if (parent.getLeft() == node) {
+					parent.setLeft(replacement);
+				} else {
+					parent.setRight(replacement);
+				}
+			}
+		}
+		return replacement;
+	}
+
+	/**
+	 * Returns a height-balanced BST holding sorted, built in linear time. Equal
+	 * data are combined into one node, counted as if each were inserted in turn.
+	 * Large inputs are built in parallel.
+	 *
+	 * @param <T>    The data type.
+	 * @param sorted Data in nondecreasing order. The data are stored in the tree.
+	 * @return A new BST.
+	 * @throws IllegalArgumentException if sorted is not in nondecreasing order.
+	 */
+	public static <T extends Comparable<T>> BST<T> fromSorted(final List<CountedData<T>> sorted) {
+		final BST<T> tree = new BST<T>();
+		tree.load(sorted);
+		return tree;
+	}
+
+	/**
+	 * Adds count to the count of data, inserting data if it is not in the tree. In
+	 * a BST this is the same as inserting data count times, in one search.
+	 *
+	 * @param data  Data to store.
+	 * @param count The amount to add to the data count, not negative.
+	 */
+	public void add(final CountedData<T> data, final int count) {
+		final long start = this.begin();
+		this.root = this.insertAux(this.root, data, count);
+		this.end(TreeMetrics.Operation.INSERT, start);
+		return;
+	}
+
+	/**
+	 * Returns the smallest data not less than key. Not copy safe as it returns a
+	 * reference to the data, not a copy of the data. Does not count comparisons.
+	 *
+	 * @param key The key to search from.
+	 * @return The least data greater than or equal to key, null if there is none.
+	 */
+	public CountedData<T> ceiling(final CountedData<T> key) {
+		return this.nearest(key, false, true);
+	}
+
+	/**
+	 * Determines if this BST contains key.
+	 *
+	 * @param key The key to search for.
+	 * @return true if this contains key, false otherwise.
+	 */
+	public boolean contains(final CountedData<T> key) {
+		return this.retrieve(key) != null;
+	}
+
+	/**
+	 * Returns the number of data from lo to hi inclusive, in O(log n) using the
+	 * subtree sizes.
+	 *
+	 * @param lo The smallest key to count.
+	 * @param hi The largest key to count.
+	 * @return The number of data not less than lo and not greater than hi.
+	 */
+	public int countRange(final CountedData<T> lo, final CountedData<T> hi) {
+		return (int) Math.max(this.below(hi, true, false) - this.below(lo, false, false), 0);
+	}
+
+	/**
+	 * Determines whether two trees are identical.
+	 *
+	 * @param target The tree to compare this BST against.
+	 * @return true if this and target contain nodes that match in position, data,
+	 *         count, and height, false otherwise.
+	 */
+	public boolean equals(final BST<T> target) {
+		boolean isEqual = false;
+
+		if (this.getSize() == target.getSize()) {
+			isEqual = this.equalsAux(this.getRoot(), target.getRoot());
+		}
+		return isEqual;
+	}
+
+	/**
+	 * Returns the smallest data in the tree. Not copy safe as it returns a
+	 * reference to the data, not a copy of the data.
+	 *
+	 * @return The smallest data, null if the tree is empty.
+	 */
+	public CountedData<T> first() {
+		final TreeNode<T> node = this.extreme(true);
+		return node != null ? node.getData() : null;
+	}
+
+	/**
+	 * Returns the largest data not greater than key. Not copy safe as it returns a
+	 * reference to the data, not a copy of the data. Does not count comparisons.
+	 *
+	 * @param key The key to search from.
+	 * @return The greatest data less than or equal to key, null if there is none.
+	 */
+	public CountedData<T> floor(final CountedData<T> key) {
+		return this.nearest(key, true, true);
+	}
+
+	/**
+	 * Returns an immutable snapshot of the data of this tree, laid out for fast
+	 * search. The snapshot can be shared between threads without synchronization
+	 * and is not affected by later changes to this tree.
+	 *
+	 * @return A new FrozenTree.
+	 */
+	public FrozenTree<T> freeze() {
+		final ArrayList<CountedData<T>> sorted = new ArrayList<>(this.getSize());
+
+		for (final CountedData<T> data : this) {
+			sorted.add(data);
+		}
+		return new FrozenTree<T>(sorted);
+	}
+
+	/**
+	 * Get number of comparisons executed by the retrieve method.
+	 *
+	 * @return comparisons, Integer.MAX_VALUE if there have been more.
+	 */
+	public int getComparisons() {
+		return (int) Math.min(this.getComparisonsLong(), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Get number of comparisons executed by the retrieve method, which may exceed
+	 * the range of {@code getComparisons} over a long run.
+	 *
+	 * @return comparisons
+	 */
+	public long getComparisonsLong() {
+		return this.comparisons;
+	}
+
+	/**
+	 * Returns the height of the root node of this tree.
+	 *
+	 * @return height of root node, 0 if the root node is null.
+	 */
+	public int getHeight() {
+		final TreeNode<T> node = this.getRoot();
+		return node != null ? node.getHeight() : 0;
+	}
+
+	/**
+	 * Returns the metrics this tree records its operations in.
+	 *
+	 * @return The metrics, null if operations are not recorded.
+	 */
+	public TreeMetrics getMetrics() {
+		final OperationRecorder recorder = this.recorder;
+		return recorder != null ? recorder.getMetrics() : null;
+	}
+
+	/**
+	 * Returns the root node that read operations start from. Subclasses that
+	 * publish the tree to other threads override this to return their published
+	 * root.
+	 *
+	 * @return The root node of this tree, null if the tree is empty.
+	 */
+	protected TreeNode<T> getRoot() {
+		return this.root;
+	}
+
+	/**
+	 * Returns the number of nodes in the tree.
+	 *
+	 * @return number of nodes in this tree.
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the smallest data greater than key. Not copy safe as it returns a
+	 * reference to the data, not a copy of the data. Does not count comparisons.
+	 *
+	 * @param key The key to search from.
+	 * @return The least data strictly greater than key, null if there is none.
+	 */
+	public CountedData<T> higher(final CountedData<T> key) {
+		return this.nearest(key, false, false);
+	}
+
+	/**
+	 * Returns a list of the data in the current tree. The list contents are in
+	 * order from smallest to largest.
+	 *
+	 * Not thread safe as it assumes contents of the tree are not changed by an
+	 * external thread during the loop.
+	 *
+	 * @return The contents of this tree as a list of data.
+	 */
+	public ArrayList<CountedData<T>> inOrder() {
+		return this.getRoot().inOrder();
+	}
+
+	/**
+	 * Inserts data into this tree.
+	 *
+	 * @param data Data to store.
+	 */
+	public void insert(final CountedData<T> data) {
+		final long start = this.begin();
+		this.root = this.insertAux(this.root, data, this.insertIncrement());
+		this.end(TreeMetrics.Operation.INSERT, start);
+		return;
+	}
+
+	/**
+	 * Inserts all of data into this tree. The data are sorted and merged with the
+	 * current contents, and the tree is rebuilt by {@code newTree} in linear time,
+	 * so adding many data at once costs O((n + m) log m) rather than m separate
+	 * insertions. Counts are those that inserting each data in turn would give.
+	 *
+	 * @param data Data to store.
+	 */
+	public void insertAll(final Collection<CountedData<T>> data) {
+		final ArrayList<CountedData<T>> sorted = new ArrayList<>(data);
+		sorted.sort(null);
+		this.load(sorted);
+		return;
+	}
+
+	/**
+	 * Inserts all of data into this tree in one descent. The data are sorted and
+	 * pushed down the tree together, splitting at each node, and every touched
+	 * subtree is repaired once. The result is the same as inserting each data in
+	 * turn, apart from the shape of the tree.
+	 *
+	 * @param data Data to store.
+	 */
+	public void insertBatch(final CountedData<T>[] data) {
+		final CountedData<T>[] sorted = sortBatch(data);
+		this.root = this.batchAux(this.root, 0, sorted.length, sorted, null, Batch.INSERT, this.insertIncrement());
+		return;
+	}
+
+	/**
+	 * Determines if this tree is empty.
+	 *
+	 * @return true if this tree is empty, false otherwise.
+	 */
+	public boolean isEmpty() {
+
+		// your code here
+
+		return this.getRoot() == null;
+	}
+
+	/**
+	 * Determines if this tree is a valid BST; i.e. a node's left child data is
+	 * smaller than its data, and its right child data is greater than its data, and
+	 * a node's height is equal to the maximum of the heights of its two children
+	 * (empty child nodes have a height of 0), plus 1.
+	 *
+	 * @return true if this tree is a valid BST, false otherwise.
+	 */
+	public boolean isValid() {
+		return this.isValidAux(this.getRoot(), null, null);
+	}
+
+	/**
+	 * Returns a lazy iterator over the data in the current tree, in order from
+	 * smallest to largest. Not copy safe as it returns references to the data, not
+	 * copies of the data.
+	 *
+	 * Not thread safe as it assumes contents of the tree are not changed by an
+	 * external thread during the loop.
+	 *
+	 * @return An in-order iterator over this tree.
+	 */
+	@Override
+	public Iterator<CountedData<T>> iterator() {
+		return new TreeIterator.InOrder<T>(this.getRoot());
+	}
+
+	/**
+	 * Returns the largest data in the tree. Not copy safe as it returns a reference
+	 * to the data, not a copy of the data.
+	 *
+	 * @return The largest data, null if the tree is empty.
+	 */
+	public CountedData<T> last() {
+		final TreeNode<T> node = this.extreme(false);
+		return node != null ? node.getData() : null;
+	}
+
+	/**
+	 * Returns a list of the data in the current tree. The list contents are in node
+	 * level order starting from the root node. Helps determine the structure of the
+	 * tree.
+	 *
+	 * Not thread safe as it assumes contents of the tree are not changed by an
+	 * external thread during the loop.
+	 *
+	 * @return this tree data as a list of data.
+	 */
+	public ArrayList<CountedData<T>> levelOrder() {
+		return this.getRoot().levelOrder();
+	}
+
+	/**
+	 * Returns a lazy iterator over the data in the current tree, in node level
+	 * order starting from the root node. Not copy safe as it returns references to
+	 * the data, not copies of the data.
+	 *
+	 * Not thread safe as it assumes contents of the tree are not changed by an
+	 * external thread during the loop.
+	 *
+	 * @return A level order iterator over this tree.
+	 */
+	public Iterator<CountedData<T>> levelOrderIterator() {
+		return new TreeIterator.LevelOrder<T>(this.getRoot());
+	}
+
+	/**
+	 * Replaces the contents of this tree with a tree saved by {@code save}, in the
+	 * shape it was saved in. No comparisons or rotations are made: the nodes are
+	 * linked as they were saved, and their heights are computed from the bottom
+	 * up, so a tree of n nodes loads in O(n) time. The snapshot should come from a
+	 * tree of the same kind, whose shape this kind of tree keeps valid. A snapshot
+	 * of an index with no tree shape, such as a CountedSkipList, holds its data in
+	 * order and loads in the shape this kind of tree builds from sorted data:
+	 * height-balanced, or in heap order for a PopularityTree or a Treap.
+	 *
+	 * @param input The stream to read from. It is read to the end of the snapshot,
+	 *              and not closed.
+	 * @param codec Decodes the keys; must be the codec they were saved with.
+	 * @throws IOException if input cannot be read or does not hold a tree
+	 *                     snapshot. This tree is then unchanged.
+	 */
+	public void load(final InputStream input, final KeyCodec<T> codec) throws IOException {
+		TreeSnapshot.load(this, input, codec);
+		return;
+	}
+
+	/**
+	 * Replaces the contents of this tree with the tree saved by {@code save} in
+	 * the file path, as {@code load(InputStream, KeyCodec)} does.
+	 *
+	 * @param path  The file to read.
+	 * @param codec Decodes the keys; must be the codec they were saved with.
+	 * @throws IOException if the file cannot be read or does not hold a tree
+	 *                     snapshot. This tree is then unchanged.
+	 */
+	public void load(final Path path, final KeyCodec<T> codec) throws IOException {
+		TreeSnapshot.load(this, path, codec);
+		return;
+	}
+
+	/**
+	 * Returns the largest data less than key. Not copy safe as it returns a
+	 * reference to the data, not a copy of the data. Does not count comparisons.
+	 *
+	 * @param key The key to search from.
+	 * @return The greatest data strictly less than key, null if there is none.
+	 */
+	public CountedData<T> lower(final CountedData<T> key) {
+		return this.nearest(key, true, false);
+	}
+
+	/**
+	 * Returns a list of the data in the current tree. The list contents are in node
+	 * preorder.
+	 *
+	 * Not thread safe as it assumes contents of the tree are not changed by an
+	 * external thread during the loop.
+	 *
+	 * @return The contents of this tree as a list of data.
+	 */
+	public ArrayList<CountedData<T>> preOrder() {
+		return this.getRoot().preOrder();
+	}
+
+	/**
+	 * Returns a lazy iterator over the data in the current tree, in node preorder.
+	 * Not copy safe as it returns references to the data, not copies of the data.
+	 *
+	 * Not thread safe as it assumes contents of the tree are not changed by an
+	 * external thread during the loop.
+	 *
+	 * @return A preorder iterator over this tree.
+	 */
+	public Iterator<CountedData<T>> preOrderIterator() {
+		return new TreeIterator.PreOrder<T>(this.getRoot());
+	}
+
+	/**
+	 * Returns a lazy iterator over the data from lo to hi inclusive, in order from
+	 * smallest to largest. Subtrees outside the range are never visited, so a
+	 * range of k data costs O(log n + k) in a balanced tree. Not copy safe as it
+	 * returns references to the data, not copies of the data.
+	 *
+	 * Not thread safe as it assumes contents of the tree are not changed by an
+	 * external thread during the loop.
+	 *
+	 * @param lo The smallest key in range.
+	 * @param hi The largest key in range.
+	 * @return An in-order iterator over the range.
+	 */
+	public Iterator<CountedData<T>> range(final CountedData<T> lo, final CountedData<T> hi) {
+		return new TreeIterator.Range<T>(this.getRoot(), lo, hi);
+	}
+
+	/**
+	 * Returns the number of data less than key, which is the index key has or
+	 * would have in {@code inOrder()}. O(log n) using the subtree sizes.
+	 *
+	 * @param key The key to rank.
+	 * @return The number of data less than key.
+	 */
+	public int rank(final CountedData<T> key) {
+		return (int) this.below(key, false, false);
+	}
+
+	/**
+	 * Returns a read-only tree holding copies of the data of this tree, shaped to
+	 * minimize the expected comparisons of a retrieve when data are retrieved as
+	 * often as their counts say. In a PopularityTree the counts are the retrievals
+	 * so far, so a warmed-up PopularityTree gives a tree optimal for its
+	 * workload. This tree is not changed.
+	 *
+	 * @return A new OptimalTree.
+	 */
+	public OptimalTree<T> rebuildOptimal() {
+		final ArrayList<CountedData<T>> sorted = new ArrayList<>(this.getSize());
+
+		for (final CountedData<T> data : this) {
+			sorted.add(new CountedData<T>(data));
+		}
+		return new OptimalTree<T>(sorted);
+	}
+
+	/**
+	 * Removes data from the tree. Decrements the node count, and if the count is 0,
+	 * removes the node entirely.
+	 *
+	 * @param data Data to decrement or remove.
+	 */
+	public void remove(final CountedData<T> data) {
+		final long start = this.begin();
+		this.root = this.removeAux(this.root, data);
+		this.end(TreeMetrics.Operation.REMOVE, start);
+		return;
+	}
+
+	/**
+	 * Removes all of data from the tree in one descent. Each data decrements the
+	 * matching node count, and a node is removed when its count would fall to 0.
+	 * The result is the same as removing each data in turn, apart from the shape
+	 * of the tree.
+	 *
+	 * @param data Data to decrement or remove.
+	 */
+	public void removeBatch(final CountedData<T>[] data) {
+		final CountedData<T>[] sorted = sortBatch(data);
+		this.root = this.batchAux(this.root, 0, sorted.length, sorted, null, Batch.REMOVE, 0);
+		return;
+	}
+
+	/**
+	 * Resets the comparison count to 0.
+	 */
+	public void resetComparisons() {
+		this.comparisons = 0;
+		return;
+	}
+
+	/**
+	 * Retrieves a copy of data matching key (key should have data count of 0).
+	 * Returning a complete CountedData gives access to the data and its count.
+	 *
+	 * @param key The key to look for.
+	 * @return data The complete CountedData that matches key, null otherwise.
+	 */
+	public CountedData<T> retrieve(final CountedData<T> key) {// when the compare to is less than 0 then the target
+																// inside
+		// the compare to is greater than "this"
+
+		// your code here
+		final long start = this.begin();
+		TreeNode<T> current = this.getRoot();
+		CountedData<T> found = null;
+		while (current != null && found == null) {
+			this.comparisons++;
+			if (current.getData().compareTo(key) == 0) {
+				// this.comparisons++;
+				found = current.getData();
+			} else {
+				// this.comparisons++;
+				if (current.getData().compareTo(key) > 0) {// current is greater than key
+					current = current.getLeft();
+				} else {
+					current = current.getRight();
+				}
+			}
+		}
+		this.end(TreeMetrics.Operation.RETRIEVE, start);
+		return found;
+	}
+
+	/**
+	 * Retrieves the data matching each key in one descent. The keys are sorted and
+	 * pushed down the tree together, splitting at each node, so nodes shared by
+	 * the paths of several keys are visited once. Comparisons made by the binary
+	 * searches that split the keys are counted.
+	 *
+	 * @param keys The keys to look for.
+	 * @return The data matching each key, in the order of keys, null for keys that
+	 *         are not in the tree.
+	 */
+	@SuppressWarnings("unchecked")
+	public CountedData<T>[] retrieveBatch(final CountedData<T>[] keys) {
+		final Integer[] order = new Integer[keys.length];
+
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> keys[a].compareTo(keys[b]));
+		final CountedData<T>[] sorted = (CountedData<T>[]) new CountedData<?>[keys.length];
+
+		for (int i = 0; i < order.length; i++) {
+			sorted[i] = keys[order[i]];
+		}
+		final CountedData<T>[] found = (CountedData<T>[]) new CountedData<?>[keys.length];
+		this.root = this.batchAux(this.root, 0, sorted.length, sorted, found, Batch.RETRIEVE,
+				this.retrieveIncrement());
+		final CountedData<T>[] results = (CountedData<T>[]) new CountedData<?>[keys.length];
+
+		for (int i = 0; i < order.length; i++) {
+			results[order[i]] = found[i];
+		}
+		return results;
+	}
+
+	/**
+	 * Writes this tree to output in a compact binary form that {@code load}
+	 * restores in the same shape: the nodes in preorder, each as its key encoded
+	 * by codec, then its count and which children it has in a varint. The counts
+	 * of a PopularityTree, and so its shape, record its access history, which a
+	 * snapshot keeps and re-inserting the keys would lose. An index with no tree
+	 * shape writes its data in order with their counts instead.
+	 *
+	 * @param output The stream to write to. It is not closed.
+	 * @param codec  Encodes the keys.
+	 * @throws IOException if output cannot be written.
+	 */
+	public void save(final OutputStream output, final KeyCodec<T> codec) throws IOException {
+		TreeSnapshot.save(this, output, codec);
+		return;
+	}
+
+	/**
+	 * Writes this tree to the file path, as {@code save(OutputStream, KeyCodec)}
+	 * does, replacing the file if it exists.
+	 *
+	 * @param path  The file to write.
+	 * @param codec Encodes the keys.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public void save(final Path path, final KeyCodec<T> codec) throws IOException {
+		TreeSnapshot.save(this, path, codec);
+		return;
+	}
+
+	/**
+	 * Returns the data at index in order from smallest to largest, the data with
+	 * exactly index data less than it. O(log n) using the subtree sizes. Not copy
+	 * safe as it returns a reference to the data, not a copy of the data.
+	 *
+	 * @param index The position of the data in {@code inOrder()}.
+	 * @return The data at index, null if index is negative or not less than the
+	 *         size of the tree.
+	 */
+	public CountedData<T> select(int index) {
+		TreeNode<T> current = index >= 0 ? this.getRoot() : null;
+		CountedData<T> data = null;
+
+		while (current != null && data == null) {
+			final int left = current.getLeft() != null ? current.getLeft().getSize() : 0;
+
+			if (index < left) {
+				current = current.getLeft();
+			} else if (index == left) {
+				data = current.getData();
+			} else {
+				index -= left + 1;
+				current = current.getRight();
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Records the single-key operations of this tree - insert, add, remove and
+	 * retrieve - in metrics from now on. Set the metrics before the tree is shared
+	 * with other threads. Batch operations are not recorded.
+	 *
+	 * @param metrics The metrics to record in, null to stop recording.
+	 */
+	public void setMetrics(final TreeMetrics metrics) {
+		this.recorder = metrics != null ? new OperationRecorder(metrics) : null;
+		return;
+	}
+
+	/**
+	 * Returns a sequential stream over the data in the current tree, in order from
+	 * smallest to largest. The stream is backed by a splittable Spliterator, so
+	 * {@code stream().parallel()} divides the tree between threads without
+	 * copying it. Not copy safe as it returns references to the data, not copies
+	 * of the data.
+	 *
+	 * Not thread safe as it assumes contents of the tree are not changed by an
+	 * external thread during the stream.
+	 *
+	 * @return A stream over the data in this tree.
+	 */
+	public Stream<CountedData<T>> stream() {
+		return StreamSupport.stream(new TreeSpliterator<T>(this.getRoot(), this.getSize()), false);
+	}
+
+	/**
+	 * Returns the sum of the counts of the data from lo to hi inclusive, in
+	 * O(log n) using the subtree count sums.
+	 *
+	 * @param lo The smallest key to include.
+	 * @param hi The largest key to include.
+	 * @return The total count of the data not less than lo and not greater than
+	 *         hi.
+	 */
+	public long sumCountsRange(final CountedData<T> lo, final CountedData<T> hi) {
+		return Math.max(this.below(hi, true, true) - this.below(lo, false, true), 0);
+	}
+}
@@ -0,0 +1,421 @@
+package cp213;
+
+import java.util.Arrays;
+
+/**
+ * Implements a Popularity Tree of char keys with int counts. Keys and counts
+ * are stored as primitives in the nodes, so no key is ever boxed and lookups
+ * allocate nothing. Counting follows PopularityTree: insertion adds a key with
+ * a count of 0, and every retrieval increments the key's count and rotates the
+ * key above its parent when its count becomes greater than the parent's.
+ *
+ * A node is a 12 byte header plus key, count, height and two child references,
+ * 32 bytes with compressed references. The equivalent
+ * PopularityTree&lt;Character&gt; uses a TreeNode (40 bytes), a CountedData (24
+ * bytes) and, outside the Character cache, a Character (16 bytes).
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class CharPopularityTree {
+
+	/**
+	 * A tree node.
+	 */
+	private static final class Node {
+		private int count = 0; // the key count
+		private int height = 1; // the node height
+		private final char key; // the node key
+		private Node left = null; // pointer to the left child node
+		private Node right = null; // pointer to the right child node
+
+		/**
+		 * Constructor.
+		 *
+		 * @param key The node key.
+		 */
+		Node(final char key) {
+			this.key = key;
+		}
+
+		/**
+		 * Updates the height of this node from the heights of its children.
+		 */
+		void updateHeight() {
+			this.height = Math.max(height(this.left), height(this.right)) + 1;
+			return;
+		}
+	}
+
+	// Attributes.
+	/**
+	 * Count of comparisons performed by retrieve.
+	 */
+	private long comparisons = 0;
+	/**
+	 * Nodes from the root down to the node being updated, reused between calls.
+	 */
+	private Node[] path = new Node[32];
+	/**
+	 * Root node of the tree.
+	 */
+	private Node root = null;
+	/**
+	 * Number of nodes in the tree.
+	 */
+	private int size = 0;
+
+	/**
+	 * Returns the height of node.
+	 *
+	 * @param node A node.
+	 * @return The height of node, 0 if node is null.
+	 */
+	private static int height(final Node node) {
+		return node == null ? 0 : node.height;
+	}
+
+	/**
+	 * Performs a left rotation around node.
+	 *
+	 * @param node The subtree to rotate.
+	 * @return The new root of the subtree.
+	 */
+	private static Node rotateLeft(final Node node) {
+		final Node child = node.right;
+		node.right = child.left;
+		child.left = node;
+		node.updateHeight();
+		child.updateHeight();
+		return child;
+	}
+
+	/**
+	 * Performs a right rotation around node.
+	 *
+	 * @param node The subtree to rotate.
+	 * @return The new root of the subtree.
+	 */
+	private static Node rotateRight(final Node node) {
+		final Node child = node.left;
+		node.left = child.right;
+		child.right = node;
+		node.updateHeight();
+		child.updateHeight();
+		return child;
+	}
+
+	/**
+	 * Auxiliary method for isValid.
+	 *
+	 * @param node The subtree root.
+	 * @param min  Keys in the subtree must be greater than min.
+	 * @param max  Keys in the subtree must be less than max.
+	 * @return true if the subtree is ordered and has correct heights.
+	 */
+	private static boolean isValidAux(final Node node, final int min, final int max) {
+		boolean valid = true;
+
+		if (node != null) {
+			valid = node.key > min && node.key < max
+					&& node.height == Math.max(height(node.left), height(node.right)) + 1
+					&& isValidAux(node.left, min, node.key) && isValidAux(node.right, node.key, max);
+		}
+		return valid;
+	}
+
+	/**
+	 * Returns the node holding key without changing the tree.
+	 *
+	 * @param key The key to search for.
+	 * @return The matching node, null if key is not in the tree.
+	 */
+	private Node find(final char key) {
+		Node current = this.root;
+
+		while (current != null && current.key != key) {
+			current = key < current.key ? current.left : current.right;
+		}
+		return current;
+	}
+
+	/**
+	 * Stores a node on the path, growing the path as necessary.
+	 *
+	 * @param depth The position of node on the path.
+	 * @param node  The node to store.
+	 */
+	private void push(final int depth, final Node node) {
+
+		if (depth == this.path.length) {
+			this.path = Arrays.copyOf(this.path, depth * 2);
+		}
+		this.path[depth] = node;
+		return;
+	}
+
+	/**
+	 * Relinks replacement below the nodes of the path, updating heights from the
+	 * bottom up, and clears the path.
+	 *
+	 * @param depth       The number of entries in use.
+	 * @param key         The key whose path this is.
+	 * @param replacement The new subtree below the last node on the path.
+	 */
+	private void retrace(int depth, final char key, Node replacement) {
+
+		while (depth > 0) {
+			final Node parent = this.path[--depth];
+			this.path[depth] = null;
+
+			if (key < parent.key) {
+				parent.left = replacement;
+			} else {
+				parent.right = replacement;
+			}
+			parent.updateHeight();
+			replacement = parent;
+		}
+		this.root = replacement;
+		return;
+	}
+
+	/**
+	 * Determines if this tree contains key. Does not change counts.
+	 *
+	 * @param key The key to search for.
+	 * @return true if this contains key, false otherwise.
+	 */
+	public boolean contains(final char key) {
+		return this.find(key) != null;
+	}
+
+	/**
+	 * Returns the count of key. Does not change counts.
+	 *
+	 * @param key The key to look for.
+	 * @return The count of key, 0 if key is not in the tree.
+	 */
+	public int count(final char key) {
+		final Node node = this.find(key);
+		return node != null ? node.count : 0;
+	}
+
+	/**
+	 * Get number of comparisons executed by the retrieve method.
+	 *
+	 * @return comparisons, Integer.MAX_VALUE if there have been more.
+	 */
+	public int getComparisons() {
+		return (int) Math.min(this.comparisons, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Get number of comparisons executed by the retrieve method, which may exceed
+	 * the range of {@code getComparisons} over a long run.
+	 *
+	 * @return comparisons
+	 */
+	public long getComparisonsLong() {
+		return this.comparisons;
+	}
+
+	/**
+	 * Returns the height of the root node of this tree.
+	 *
+	 * @return height of root node, 0 if the root node is null.
+	 */
+	public int getHeight() {
+		return height(this.root);
+	}
+
+	/**
+	 * Returns the number of keys in the tree.
+	 *
+	 * @return number of keys in this tree.
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Inserts key with a count of 0. Repeated insertion does not change the count.
+	 *
+	 * @param key The key to insert.
+	 */
+	public void insert(final char key) {
+		Node current = this.root;
+		int depth = 0;
+
+		while (current != null && current.key != key) {
+			this.push(depth++, current);
+			current = key < current.key ? current.left : current.right;
+		}
+
+		if (current == null) {
+			this.size++;
+			this.retrace(depth, key, new Node(key));
+		} else {
+			Arrays.fill(this.path, 0, depth, null);
+		}
+		return;
+	}
+
+	/**
+	 * Determines if this tree is empty.
+	 *
+	 * @return true if this tree is empty, false otherwise.
+	 */
+	public boolean isEmpty() {
+		return this.root == null;
+	}
+
+	/**
+	 * Determines if this tree is a valid Popularity Tree: ordered and with correct
+	 * node heights. Counts are not checked: removal promotes a predecessor without
+	 * regard to its count, so a child may outrank its parent.
+	 *
+	 * @return true if this tree is valid, false otherwise.
+	 */
+	public boolean isValid() {
+		return isValidAux(this.root, Character.MIN_VALUE - 1, Character.MAX_VALUE + 1);
+	}
+
+	/**
+	 * Decrements the count of key, and if the count is not greater than 1, removes
+	 * key.
+	 *
+	 * @param key The key to decrement or remove.
+	 */
+	public void remove(final char key) {
+		Node current = this.root;
+		int depth = 0;
+
+		while (current != null && current.key != key) {
+			this.push(depth++, current);
+			current = key < current.key ? current.left : current.right;
+		}
+
+		if (current == null || current.count > 1) {
+			if (current != null) {
+				current.count--;
+			}
+			Arrays.fill(this.path, 0, depth, null);
+		} else {
+			this.size--;
+			Node replacement = null;
+
+			if (current.left == null) {
+				replacement = current.right;
+			} else if (current.right == null) {
+				replacement = current.left;
+			} else {
+				// Replace the node with the largest node of its left subtree.
+				Node parent = current;
+				replacement = current.left;
+
+				while (replacement.right != null) {
+					parent = replacement;
+					replacement = replacement.right;
+				}
+
+				if (parent != current) {
+					parent.right = replacement.left;
+					replacement.left = current.left;
+				}
+				replacement.right = current.right;
+				this.updateHeights(depth, replacement.left, replacement.key);
+				replacement.updateHeight();
+			}
+			this.retrace(depth, key, replacement);
+		}
+		return;
+	}
+
+	/**
+	 * Updates the heights of the nodes on the right spine of node from the bottom
+	 * up, stopping above the node that held max. The spine is stored on the path
+	 * above the entries already in use.
+	 *
+	 * @param base The number of path entries in use.
+	 * @param node The top of the spine, may be null.
+	 * @param max  The key that was removed from the bottom of the spine.
+	 */
+	private void updateHeights(final int base, final Node node, final char max) {
+
+		if (node != null && node.key < max) {
+			int depth = base;
+			Node current = node;
+
+			while (current != null) {
+				this.push(depth++, current);
+				current = current.right;
+			}
+			while (depth > base) {
+				this.path[--depth].updateHeight();
+				this.path[depth] = null;
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Resets the comparison count to 0.
+	 */
+	public void resetComparisons() {
+		this.comparisons = 0;
+		return;
+	}
+
+	/**
+	 * Retrieves key, increments its count and rotates it towards the root: first
+	 * with a child whose count is now greater than the key's count, then above each
+	 * ancestor on the way up whose count is less than its child's count.
+	 *
+	 * @param key The key to search for.
+	 * @return The new count of key, 0 if key is not in the tree.
+	 */
+	public int retrieve(final char key) {
+		Node current = this.root;
+		int depth = 0;
+
+		while (current != null) {
+			this.comparisons++;
+
+			if (current.key == key) {
+				break;
+			}
+			this.push(depth++, current);
+			current = key < current.key ? current.left : current.right;
+		}
+		int count = 0;
+
+		if (current == null) {
+			Arrays.fill(this.path, 0, depth, null);
+		} else {
+			count = ++current.count;
+			Node node = current;
+
+			if (node.left != null && node.left.count > node.count) {
+				node = rotateRight(node);
+			} else if (node.right != null && node.right.count > node.count) {
+				node = rotateLeft(node);
+			}
+			while (depth > 0) {
+				final Node parent = this.path[--depth];
+				this.path[depth] = null;
+
+				if (key < parent.key) {
+					parent.left = node;
+					node = node.count > parent.count ? rotateRight(parent) : parent;
+				} else {
+					parent.right = node;
+					node = node.count > parent.count ? rotateLeft(parent) : parent;
+				}
+				node.updateHeight();
+			}
+			this.root = node;
+		}
+		return count;
+	}
+}
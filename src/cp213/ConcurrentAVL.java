@@ -0,0 +1,538 @@
+package cp213;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Implements an AVL that may be shared between threads. Extends AVL.
+ *
+ * Reads never block. The tree is copy-on-write: a writer never changes a
+ * published node, it copies the nodes on the path it changes (path copying)
+ * and then publishes the new root through a volatile field. A reader works on
+ * whichever root it read first, which is a complete and consistent snapshot of
+ * the tree. Writers are serialized by a lock. Each write copies O(log n) nodes.
+ *
+ * Data returned by retrieve and by the traversals belongs to a published
+ * snapshot and must not be changed by the caller.
+ *
+ * With metrics set, a retrieval records the comparisons it made, and an
+ * insertion, addition or removal records the comparisons, the nodes it
+ * visited and the rotations it made in rebuilding the path. The measures of a
+ * write are kept under the write lock.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class ConcurrentAVL<T extends Comparable<T>> extends AVL<T> {
+
+	// Attributes.
+	/**
+	 * Count of comparisons performed by retrieve, contention free.
+	 */
+	private final LongAdder lookups = new LongAdder();
+	/**
+	 * Number of nodes in the published tree.
+	 */
+	private volatile int nodes = 0;
+	/**
+	 * Root of the most recently published tree.
+	 */
+	private volatile TreeNode<T> published = null;
+	/**
+	 * Comparisons made by the current write. Guarded by the write lock.
+	 */
+	private int writeComparisons = 0;
+	/**
+	 * Nodes visited by the current write. Guarded by the write lock.
+	 */
+	private int writeDepth = 0;
+	/**
+	 * Serializes writers.
+	 */
+	private final ReentrantLock writeLock = new ReentrantLock();
+	/**
+	 * Rotations made by the current write. Guarded by the write lock.
+	 */
+	private int writeRotations = 0;
+
+	/**
+	 * Starts measuring a write. The caller must hold the write lock.
+	 */
+	private void beginWrite() {
+		this.writeComparisons = 0;
+		this.writeDepth = 0;
+		this.writeRotations = 0;
+		return;
+	}
+
+	/**
+	 * Records a write started by {@code beginWrite} in metrics. The caller must
+	 * hold the write lock.
+	 *
+	 * @param metrics   The metrics to record in, null if they are not recorded.
+	 * @param operation The operation.
+	 * @param start     The time the operation started, in nanoseconds.
+	 */
+	private void endWrite(final TreeMetrics metrics, final TreeMetrics.Operation operation, final long start) {
+
+		if (metrics != null) {
+			metrics.record(operation, this.writeComparisons, this.writeDepth, this.writeRotations,
+					System.nanoTime() - start);
+		}
+		return;
+	}
+
+	/**
+	 * Returns a new node holding data with links to left and right.
+	 *
+	 * @param data  The data for the node.
+	 * @param left  The left child, may be null.
+	 * @param right The right child, may be null.
+	 * @return The new node.
+	 */
+	private TreeNode<T> link(final CountedData<T> data, final TreeNode<T> left, final TreeNode<T> right) {
+		final TreeNode<T> node = new TreeNode<T>(data);
+		node.setLeft(left);
+		node.setRight(right);
+		node.updateHeight();
+		return node;
+	}
+
+	/**
+	 * Returns a new balanced subtree holding data between left and right. The
+	 * heights of left and right may differ by at most 2, as they do after a single
+	 * insertion or removal. Rotations are performed by building new nodes, so
+	 * left and right are never changed.
+	 *
+	 * @param data  The data for the subtree root.
+	 * @param left  The left subtree, may be null.
+	 * @param right The right subtree, may be null.
+	 * @return The root of the new subtree.
+	 */
+	private TreeNode<T> balanced(final CountedData<T> data, final TreeNode<T> left, final TreeNode<T> right) {
+		final int leftHeight = this.nodeHeight(left);
+		final int rightHeight = this.nodeHeight(right);
+		TreeNode<T> node = null;
+
+		if (leftHeight > rightHeight + 1) {
+			// Left heavy.
+			if (this.nodeHeight(left.getLeft()) >= this.nodeHeight(left.getRight())) {
+				node = this.link(left.getData(), left.getLeft(), this.link(data, left.getRight(), right));
+				this.writeRotations++;
+			} else {
+				final TreeNode<T> middle = left.getRight();
+				node = this.link(middle.getData(), this.link(left.getData(), left.getLeft(), middle.getLeft()),
+						this.link(data, middle.getRight(), right));
+				this.writeRotations += 2;
+			}
+		} else if (rightHeight > leftHeight + 1) {
+			// Right heavy.
+			if (this.nodeHeight(right.getRight()) >= this.nodeHeight(right.getLeft())) {
+				node = this.link(right.getData(), this.link(data, left, right.getLeft()), right.getRight());
+				this.writeRotations++;
+			} else {
+				final TreeNode<T> middle = right.getLeft();
+				node = this.link(middle.getData(), this.link(data, left, middle.getLeft()),
+						this.link(right.getData(), middle.getRight(), right.getRight()));
+				this.writeRotations += 2;
+			}
+		} else {
+			node = this.link(data, left, right);
+		}
+		return node;
+	}
+
+	/**
+	 * Returns a copy of the subtree rooted at node with data inserted.
+	 *
+	 * @param node      The subtree root, may be null.
+	 * @param data      The data to insert.
+	 * @param increment The amount to add to the data count.
+	 * @return The root of the new subtree.
+	 */
+	private TreeNode<T> insertCopy(final TreeNode<T> node, final CountedData<T> data, final int increment) {
+		TreeNode<T> copy = null;
+
+		if (node == null) {
+			this.nodes++;
+			this.writeDepth++;
+			copy = this.link(new CountedData<T>(data.getData(), data.getCount() + increment), null,
+					null);
+		} else {
+			this.writeComparisons++;
+			this.writeDepth++;
+			final int result = node.getData().compareTo(data);
+
+			if (result > 0) {
+				copy = this.balanced(node.getData(), this.insertCopy(node.getLeft(), data, increment), node.getRight());
+			} else if (result < 0) {
+				copy = this.balanced(node.getData(), node.getLeft(), this.insertCopy(node.getRight(), data, increment));
+			} else {
+				final CountedData<T> counted = new CountedData<T>(node.getData().getData(),
+						node.getData().getCount() + increment);
+				copy = this.link(counted, node.getLeft(), node.getRight());
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns a copy of the subtree rooted at node without its largest node.
+	 *
+	 * @param node The subtree root.
+	 * @return The root of the new subtree.
+	 */
+	private TreeNode<T> removeMaxCopy(final TreeNode<T> node) {
+		TreeNode<T> copy = null;
+		this.writeDepth++;
+
+		if (node.getRight() == null) {
+			copy = node.getLeft();
+		} else {
+			copy = this.balanced(node.getData(), node.getLeft(), this.removeMaxCopy(node.getRight()));
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns a copy of the subtree rooted at node with data removed. data must be
+	 * in the subtree.
+	 *
+	 * @param node The subtree root.
+	 * @param data The data to remove.
+	 * @return The root of the new subtree.
+	 */
+	private TreeNode<T> removeCopy(final TreeNode<T> node, final CountedData<T> data) {
+		this.writeComparisons++;
+		this.writeDepth++;
+		final int result = node.getData().compareTo(data);
+		TreeNode<T> copy = null;
+
+		if (result > 0) {
+			copy = this.balanced(node.getData(), this.removeCopy(node.getLeft(), data), node.getRight());
+		} else if (result < 0) {
+			copy = this.balanced(node.getData(), node.getLeft(), this.removeCopy(node.getRight(), data));
+		} else if (node.getData().getCount() > 1) {
+			final CountedData<T> counted = new CountedData<T>(node.getData().getData(),
+					node.getData().getCount() - 1);
+			copy = this.link(counted, node.getLeft(), node.getRight());
+		} else {
+			this.nodes--;
+
+			if (node.getLeft() == null) {
+				copy = node.getRight();
+			} else if (node.getRight() == null) {
+				copy = node.getLeft();
+			} else {
+				// Replace the node with the largest node of its left subtree.
+				TreeNode<T> max = node.getLeft();
+
+				while (max.getRight() != null) {
+					max = max.getRight();
+				}
+				copy = this.balanced(max.getData(), this.removeMaxCopy(node.getLeft()), node.getRight());
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns the node containing key in the tree rooted at node.
+	 *
+	 * @param node The tree root.
+	 * @param key  The key to search for.
+	 * @return The matching node, null if key is not in the tree.
+	 */
+	private TreeNode<T> find(TreeNode<T> node, final CountedData<T> key) {
+
+		while (node != null) {
+			this.writeComparisons++;
+			final int result = node.getData().compareTo(key);
+
+			if (result == 0) {
+				break;
+			}
+			node = result > 0 ? node.getLeft() : node.getRight();
+		}
+		return node;
+	}
+
+	/**
+	 * Adds count to the count of data, inserting data if it is not in the tree. A
+	 * copy of data is stored, data itself is not changed.
+	 *
+	 * @param data  Data to store.
+	 * @param count The amount to add to the data count, not negative.
+	 */
+	@Override
+	public void add(final CountedData<T> data, final int count) {
+		final TreeMetrics metrics = this.getMetrics();
+		final long start = metrics != null ? System.nanoTime() : 0;
+		this.writeLock.lock();
+
+		try {
+			this.beginWrite();
+			this.published = this.insertCopy(this.published, data, count);
+			this.endWrite(metrics, TreeMetrics.Operation.INSERT, start);
+		} finally {
+			this.writeLock.unlock();
+		}
+		return;
+	}
+
+	/**
+	 * Returns the data matching key in the tree rooted at node, counting the
+	 * comparisons made.
+	 *
+	 * @param node The tree root.
+	 * @param key  The key to search for.
+	 * @return The matching data, null if key is not in the tree.
+	 */
+	private CountedData<T> lookup(final TreeNode<T> node, final CountedData<T> key) {
+		final TreeMetrics metrics = this.getMetrics();
+		final long start = metrics != null ? System.nanoTime() : 0;
+		TreeNode<T> current = node;
+		int visited = 0;
+
+		while (current != null) {
+			visited++;
+			final int result = current.getData().compareTo(key);
+
+			if (result == 0) {
+				break;
+			}
+			current = result > 0 ? current.getLeft() : current.getRight();
+		}
+		this.lookups.add(visited);
+
+		if (metrics != null) {
+			metrics.record(TreeMetrics.Operation.RETRIEVE, visited, visited, 0, System.nanoTime() - start);
+		}
+		return current != null ? current.getData() : null;
+	}
+
+	/**
+	 * Publishes root, under the write lock, in place of the current tree.
+	 *
+	 * @param root The root of the new contents, may be null.
+	 */
+	@Override
+	protected void replace(final TreeNode<T> root) {
+		this.writeLock.lock();
+
+		try {
+			super.replace(root);
+			this.published = root;
+			this.nodes = this.size;
+		} finally {
+			this.writeLock.unlock();
+		}
+		return;
+	}
+
+	/**
+	 * Returns the most recently published root.
+	 */
+	@Override
+	protected TreeNode<T> getRoot() {
+		return this.published;
+	}
+
+	/**
+	 * Get number of comparisons executed by the retrieve method.
+	 *
+	 * @return comparisons
+	 */
+	@Override
+	public long getComparisonsLong() {
+		return this.lookups.sum();
+	}
+
+	/**
+	 * Returns the number of nodes in the published tree.
+	 *
+	 * @return number of nodes in this tree.
+	 */
+	@Override
+	public int getSize() {
+		return this.nodes;
+	}
+
+	/**
+	 * Inserts data into this tree. A copy of data is stored, data itself is not
+	 * changed.
+	 *
+	 * @param data Data to store.
+	 */
+	@Override
+	public void insert(final CountedData<T> data) {
+		final TreeMetrics metrics = this.getMetrics();
+		final long start = metrics != null ? System.nanoTime() : 0;
+		this.writeLock.lock();
+
+		try {
+			this.beginWrite();
+			this.published = this.insertCopy(this.published, data, this.insertIncrement());
+			this.endWrite(metrics, TreeMetrics.Operation.INSERT, start);
+		} finally {
+			this.writeLock.unlock();
+		}
+		return;
+	}
+
+	/**
+	 * Inserts all of data into this tree. The data are sorted and merged with the
+	 * published contents into a new height-balanced tree, which is then published
+	 * in one step. Copies of data are stored, data itself is not changed.
+	 *
+	 * @param data Data to store.
+	 */
+	@Override
+	public void insertAll(final Collection<CountedData<T>> data) {
+		final ArrayList<CountedData<T>> sorted = new ArrayList<>(data);
+		sorted.sort(null);
+		this.writeLock.lock();
+
+		try {
+			final CountedData<T>[] merged = TreeBuilder.merge(new TreeIterator.InOrder<T>(this.published),
+					this.nodes, sorted, this.insertIncrement(), true);
+			this.published = TreeBuilder.build(merged);
+			this.nodes = merged.length;
+		} finally {
+			this.writeLock.unlock();
+		}
+		return;
+	}
+
+	/**
+	 * Inserts all of data into this tree under one acquisition of the write lock
+	 * and publishes the result once. Copies of data are stored, data itself is not
+	 * changed.
+	 *
+	 * @param data Data to store.
+	 */
+	@Override
+	public void insertBatch(final CountedData<T>[] data) {
+		this.writeLock.lock();
+
+		try {
+			TreeNode<T> root = this.published;
+
+			for (final CountedData<T> item : data) {
+				root = this.insertCopy(root, item, this.insertIncrement());
+			}
+			this.published = root;
+		} finally {
+			this.writeLock.unlock();
+		}
+		return;
+	}
+
+	/**
+	 * Removes data from the tree. Decrements the node count, and if the count is 0,
+	 * removes the node entirely.
+	 *
+	 * @param data Data to decrement or remove.
+	 */
+	@Override
+	public void remove(final CountedData<T> data) {
+		final TreeMetrics metrics = this.getMetrics();
+		final long start = metrics != null ? System.nanoTime() : 0;
+		this.writeLock.lock();
+
+		try {
+			this.beginWrite();
+
+			if (this.find(this.published, data) != null) {
+				this.published = this.removeCopy(this.published, data);
+			}
+			this.endWrite(metrics, TreeMetrics.Operation.REMOVE, start);
+		} finally {
+			this.writeLock.unlock();
+		}
+		return;
+	}
+
+	/**
+	 * Removes all of data from the tree under one acquisition of the write lock
+	 * and publishes the result once.
+	 *
+	 * @param data Data to decrement or remove.
+	 */
+	@Override
+	public void removeBatch(final CountedData<T>[] data) {
+		this.writeLock.lock();
+
+		try {
+			TreeNode<T> root = this.published;
+
+			for (final CountedData<T> item : data) {
+				if (this.find(root, item) != null) {
+					root = this.removeCopy(root, item);
+				}
+			}
+			this.published = root;
+		} finally {
+			this.writeLock.unlock();
+		}
+		return;
+	}
+
+	/**
+	 * Resets the comparison count to 0.
+	 */
+	@Override
+	public void resetComparisons() {
+		this.lookups.reset();
+		return;
+	}
+
+	/**
+	 * Retrieves the data matching key without locking. The search runs on the
+	 * snapshot that was published when it started.
+	 *
+	 * @param key The key to look for.
+	 * @return data The complete CountedData that matches key, null otherwise.
+	 */
+	@Override
+	public CountedData<T> retrieve(final CountedData<T> key) {
+		return this.lookup(this.published, key);
+	}
+
+	/**
+	 * Retrieves the data matching each key without locking. Every key is searched
+	 * for in the same published snapshot, one search per key.
+	 *
+	 * @param keys The keys to look for.
+	 * @return The data matching each key, in the order of keys, null for keys that
+	 *         are not in the tree.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public CountedData<T>[] retrieveBatch(final CountedData<T>[] keys) {
+		final TreeNode<T> snapshot = this.published;
+		final CountedData<T>[] results = (CountedData<T>[]) new CountedData<?>[keys.length];
+
+		for (int i = 0; i < keys.length; i++) {
+			results[i] = this.lookup(snapshot, keys[i]);
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the k data with the greatest counts in the published snapshot,
+	 * without locking. There is no count index to keep up to date across
+	 * snapshots, so the snapshot is scanned with a bounded heap in O(n log k)
+	 * time.
+	 *
+	 * @param k The number of data wanted.
+	 * @return The k data with the greatest counts, or all of the data if there are
+	 *         fewer than k, in order of decreasing count.
+	 */
+	@Override
+	public ArrayList<CountedData<T>> topK(final int k) {
+		return CountIndex.scan(this.iterator(), k);
+	}
+}
@@ -0,0 +1,693 @@
+package cp213;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Implements a Popularity Tree that may be shared between threads. Extends
+ * PopularityTree.
+ *
+ * Retrieval never blocks and never changes the shape of the tree. Each node
+ * counts its retrievals in a LongAdder, so concurrent readers of the same hot
+ * node do not contend on one field. A retrieval that meets a node while a
+ * removal is unlinking it searches again, so that its count is never added to
+ * a node that has left the tree. The promotion of popular nodes towards the
+ * root is deferred: {@code restructure} rebuilds the tree so that every node
+ * count is at least the counts of its children, which is the ordering
+ * PopularityTree.isValid checks. Ties are broken by a hash of the data, which
+ * keeps runs of equal counts balanced on average.
+ *
+ * Restructuring is amortized over retrievals. Roughly one retrieval in
+ * {@code sampling} checks whether at least as many retrievals as there are
+ * nodes have happened since the last rebuild, and if so it rebuilds the tree,
+ * but only if no writer holds the lock - a reader never waits for the lock.
+ * {@code restructure} may also be called directly, for example from a
+ * scheduled background task.
+ *
+ * The tree is copy-on-write like ConcurrentAVL: writers serialize on a lock,
+ * copy the nodes they change and publish a new root through a volatile field.
+ * The counters are shared by all versions of a node. Since retrievals change
+ * counts in place, the subtree count sums of the nodes are those of the last
+ * rebuild or write that copied the node, so {@code sumCountsRange} adds up the
+ * live counters of the range instead; subtree sizes are always exact.
+ *
+ * With metrics set, an insertion, addition or removal records the comparisons
+ * it made and the nodes it visited, under the write lock. A rebuild takes the
+ * place of the rotations a PopularityTree makes as it retrieves: the nodes that
+ * outranked their parent before the rebuild are counted as its promotions, and
+ * recorded as the rotations of the retrieval or addition that set it off.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class ConcurrentPopularityTree<T extends Comparable<T>> extends PopularityTree<T> {
+
+	/**
+	 * CountedData whose count is kept in a LongAdder.
+	 */
+	private static final class Counter<T extends Comparable<T>> extends CountedData<T> {
+
+		private final LongAdder count = new LongAdder(); // striped data count
+		private volatile boolean unlinking = false; // set while a removal may unlink the data
+
+		/**
+		 * Constructor.
+		 *
+		 * @param data  The data to be counted.
+		 * @param count The initial data count.
+		 */
+		Counter(final T data, final int count) {
+			super(data);
+			this.count.add(count);
+		}
+
+		/**
+		 * Adds delta to the count.
+		 *
+		 * @param delta The amount to add.
+		 */
+		void add(final int delta) {
+			this.count.add(delta);
+			return;
+		}
+
+		/**
+		 * Counts a retrieval, unless a removal is unlinking the data. The count is
+		 * incremented before the flag is read, and a removal sets the flag before it
+		 * reads the count, so either the removal sees the retrieval or the retrieval
+		 * sees the flag.
+		 *
+		 * @return true if the retrieval was counted, false if the data may be being
+		 *         unlinked and must be searched for again.
+		 */
+		boolean retrieved() {
+			this.count.increment();
+
+			if (this.unlinking) {
+				this.count.decrement();
+				return false;
+			}
+			return true;
+		}
+
+		@Override
+		public void decrementCount() {
+			this.count.decrement();
+		}
+
+		@Override
+		public int getCount() {
+			return (int) this.count.sum();
+		}
+
+		@Override
+		public void incrementCount() {
+			this.count.increment();
+		}
+
+		@Override
+		public void setCount(final int count) {
+			this.count.reset();
+			this.count.add(count);
+			return;
+		}
+	}
+
+	/**
+	 * The default number of retrievals between checks for a rebuild.
+	 */
+	public static final int DEFAULT_SAMPLING = 64;
+
+	// Attributes.
+	/**
+	 * Count of comparisons performed by retrieve, contention free.
+	 */
+	private final LongAdder lookups = new LongAdder();
+	/**
+	 * Number of nodes in the published tree.
+	 */
+	private volatile int nodes = 0;
+	/**
+	 * Retrievals since the last rebuild.
+	 */
+	private final LongAdder pending = new LongAdder();
+	/**
+	 * Root of the most recently published tree.
+	 */
+	private volatile TreeNode<T> published = null;
+	/**
+	 * Mask applied to a random number to decide whether a retrieval checks for a
+	 * rebuild.
+	 */
+	private final int sampleMask;
+	/**
+	 * Comparisons made by the current write. Guarded by the write lock.
+	 */
+	private int writeComparisons = 0;
+	/**
+	 * Nodes visited by the current write. Guarded by the write lock.
+	 */
+	private int writeDepth = 0;
+	/**
+	 * Serializes writers and rebuilds.
+	 */
+	private final ReentrantLock writeLock = new ReentrantLock();
+
+	/**
+	 * Creates a tree that checks for a rebuild every DEFAULT_SAMPLING retrievals on
+	 * average.
+	 */
+	public ConcurrentPopularityTree() {
+		this(DEFAULT_SAMPLING);
+	}
+
+	/**
+	 * Creates a tree that checks for a rebuild every sampling retrievals on
+	 * average.
+	 *
+	 * @param sampling The average number of retrievals between checks, rounded up
+	 *                 to a power of 2.
+	 */
+	public ConcurrentPopularityTree(final int sampling) {
+
+		if (sampling < 1) {
+			throw new IllegalArgumentException("sampling must be positive: " + sampling);
+		}
+		this.sampleMask = (sampling == 1 ? 1 : Integer.highestOneBit(sampling - 1) << 1) - 1;
+	}
+
+	/**
+	 * Rebuilds the nodes of path, from the bottom up, as new nodes above
+	 * replacement.
+	 *
+	 * @param path        The nodes from the root down to the parent of the subtree
+	 *                    being replaced.
+	 * @param key         Data in the subtree being replaced, used to choose the side
+	 *                    on which replacement is linked at each level.
+	 * @param replacement The new subtree, may be null.
+	 * @return The new root.
+	 */
+	private TreeNode<T> copyPath(final ArrayList<TreeNode<T>> path, final CountedData<T> key,
+			TreeNode<T> replacement) {
+
+		for (int i = path.size() - 1; i >= 0; i--) {
+			final TreeNode<T> node = path.get(i);
+
+			if (node.getData().compareTo(key) > 0) {
+				replacement = this.link(node.getData(), replacement, node.getRight());
+			} else {
+				replacement = this.link(node.getData(), node.getLeft(), replacement);
+			}
+		}
+		return replacement;
+	}
+
+	/**
+	 * Returns a new node holding data with links to left and right.
+	 *
+	 * @param data  The data for the node.
+	 * @param left  The left child, may be null.
+	 * @param right The right child, may be null.
+	 * @return The new node.
+	 */
+	private TreeNode<T> link(final CountedData<T> data, final TreeNode<T> left, final TreeNode<T> right) {
+		final TreeNode<T> node = new TreeNode<T>(data);
+		node.setLeft(left);
+		node.setRight(right);
+		node.updateHeight();
+		return node;
+	}
+
+	/**
+	 * Rebuilds the tree in popularity order if enough retrievals have happened
+	 * since the last rebuild and no other writer holds the lock.
+	 *
+	 * @return The promotions made by the rebuild, 0 if there was none.
+	 */
+	private int maybeRestructure() {
+		int promoted = 0;
+
+		if (this.pending.sum() >= Math.max(this.nodes, 1) && this.writeLock.tryLock()) {
+			try {
+				promoted = this.restructureLocked();
+			} finally {
+				this.writeLock.unlock();
+			}
+		}
+		return promoted;
+	}
+
+	/**
+	 * Returns the number of nodes of the published tree that outrank their parent
+	 * in popularity: the nodes a rebuild promotes. The caller must hold the write
+	 * lock.
+	 *
+	 * @return The number of nodes that outrank their parent.
+	 */
+	private int promotions() {
+		final ArrayList<TreeNode<T>> stack = new ArrayList<>();
+		int promoted = 0;
+
+		if (this.published != null) {
+			stack.add(this.published);
+		}
+		while (!stack.isEmpty()) {
+			final TreeNode<T> node = stack.remove(stack.size() - 1);
+			final long rank = popularity(node.getData(), node.getData().getCount());
+			final TreeNode<T> left = node.getLeft();
+			final TreeNode<T> right = node.getRight();
+
+			if (left != null) {
+				if (popularity(left.getData(), left.getData().getCount()) > rank) {
+					promoted++;
+				}
+				stack.add(left);
+			}
+			if (right != null) {
+				if (popularity(right.getData(), right.getData().getCount()) > rank) {
+					promoted++;
+				}
+				stack.add(right);
+			}
+		}
+		return promoted;
+	}
+
+	/**
+	 * Inserts data as a new leaf if it is not in the tree, counting the
+	 * comparisons made and the nodes visited. The caller must hold the write lock.
+	 *
+	 * @param data Data to store.
+	 * @return The data stored in the tree for data.
+	 */
+	private Counter<T> put(final CountedData<T> data) {
+		final ArrayList<TreeNode<T>> path = new ArrayList<>();
+		TreeNode<T> current = this.published;
+		int result = 0;
+		this.writeComparisons = 0;
+
+		while (current != null) {
+			this.writeComparisons++;
+
+			if ((result = current.getData().compareTo(data)) == 0) {
+				break;
+			}
+			path.add(current);
+			current = result > 0 ? current.getLeft() : current.getRight();
+		}
+		this.writeDepth = path.size() + 1;
+
+		if (current == null) {
+			current = this.link(new Counter<T>(data.getData(), data.getCount() + this.insertIncrement()), null,
+					null);
+			this.published = this.copyPath(path, data, current);
+			this.nodes++;
+		}
+		return (Counter<T>) current.getData();
+	}
+
+	/**
+	 * Rebuilds the published tree so that every node count is at least the counts
+	 * of its children. Takes a snapshot of the counts, then builds the Cartesian
+	 * tree of the in-order data on their popularity in O(n), ties broken by the
+	 * hash of the data. The caller must hold the write lock.
+	 *
+	 * @return The nodes promoted, those that outranked their parent, if metrics
+	 *         are recorded, else 0.
+	 */
+	@SuppressWarnings("unchecked")
+	private int restructureLocked() {
+		final int promoted = this.getMetrics() != null ? this.promotions() : 0;
+		this.pending.reset();
+		final TreeIterator<T> snapshot = new TreeIterator.InOrder<T>(this.published);
+		final CountedData<T>[] data = (CountedData<T>[]) new CountedData<?>[this.nodes];
+		final long[] priorities = new long[this.nodes];
+		int i = 0;
+
+		while (snapshot.hasNext()) {
+			data[i] = snapshot.next();
+			priorities[i] = popularity(data[i], data[i].getCount());
+			i++;
+		}
+		this.published = TreeBuilder.cartesian(data, priorities);
+		return promoted;
+	}
+
+	/**
+	 * Adds count to the count of data as if data were retrieved count times,
+	 * inserting data first if it is not in the tree. The count ordering is
+	 * restored by a later rebuild. Its comparisons are recorded in the metrics,
+	 * not counted by {@code getComparisons}.
+	 *
+	 * @param data  Data to store.
+	 * @param count The amount to add to the data count, not negative.
+	 */
+	@Override
+	public void add(final CountedData<T> data, final int count) {
+		final TreeMetrics metrics = this.getMetrics();
+		final long start = metrics != null ? System.nanoTime() : 0;
+		this.writeLock.lock();
+
+		try {
+			this.put(data).add(count);
+			this.pending.add(count);
+			final int promoted = this.maybeRestructure();
+
+			if (metrics != null) {
+				metrics.record(TreeMetrics.Operation.INSERT, this.writeComparisons, this.writeDepth, promoted,
+						System.nanoTime() - start);
+			}
+		} finally {
+			this.writeLock.unlock();
+		}
+		return;
+	}
+
+	/**
+	 * Returns data whose count is kept in a LongAdder.
+	 *
+	 * @param key   The key.
+	 * @param count The count of key.
+	 * @return The data.
+	 */
+	@Override
+	protected CountedData<T> newData(final T key, final int count) {
+		return new Counter<T>(key, count);
+	}
+
+	/**
+	 * Publishes root, under the write lock, in place of the current tree.
+	 *
+	 * @param root The root of the new contents, may be null.
+	 */
+	@Override
+	protected void replace(final TreeNode<T> root) {
+		this.writeLock.lock();
+
+		try {
+			super.replace(root);
+			this.published = root;
+			this.nodes = this.size;
+			this.pending.reset();
+		} finally {
+			this.writeLock.unlock();
+		}
+		return;
+	}
+
+	/**
+	 * Returns the most recently published root.
+	 */
+	@Override
+	protected TreeNode<T> getRoot() {
+		return this.published;
+	}
+
+	/**
+	 * Get number of comparisons executed by the retrieve method.
+	 *
+	 * @return comparisons
+	 */
+	@Override
+	public long getComparisonsLong() {
+		return this.lookups.sum();
+	}
+
+	/**
+	 * Returns the number of nodes in the published tree.
+	 *
+	 * @return number of nodes in this tree.
+	 */
+	@Override
+	public int getSize() {
+		return this.nodes;
+	}
+
+	/**
+	 * Inserts data into this tree as a new leaf. As in PopularityTree, repeated
+	 * insertion does not change the count. The count starts at the count of data,
+	 * data itself is not stored.
+	 *
+	 * @param data Data to store.
+	 */
+	@Override
+	public void insert(final CountedData<T> data) {
+		final TreeMetrics metrics = this.getMetrics();
+		final long start = metrics != null ? System.nanoTime() : 0;
+		this.writeLock.lock();
+
+		try {
+			this.put(data);
+
+			if (metrics != null) {
+				metrics.record(TreeMetrics.Operation.INSERT, this.writeComparisons, this.writeDepth, 0,
+						System.nanoTime() - start);
+			}
+		} finally {
+			this.writeLock.unlock();
+		}
+		return;
+	}
+
+	/**
+	 * Inserts each of data in turn with {@code insert}.
+	 *
+	 * @param data Data to store.
+	 */
+	@Override
+	public void insertBatch(final CountedData<T>[] data) {
+
+		for (final CountedData<T> item : data) {
+			this.insert(item);
+		}
+		return;
+	}
+
+	/**
+	 * Removes data from the tree. Decrements the node count, and if the count is
+	 * no longer positive, removes the node entirely, replacing it with its in-order
+	 * predecessor. The count ordering is restored by the next rebuild. A retrieval
+	 * of data made while it is being removed is either counted before the count is
+	 * judged, which keeps the node, or searches again and misses it.
+	 *
+	 * @param data Data to decrement or remove.
+	 */
+	@Override
+	public void remove(final CountedData<T> data) {
+		final TreeMetrics metrics = this.getMetrics();
+		final long start = metrics != null ? System.nanoTime() : 0;
+		this.writeLock.lock();
+
+		try {
+			final ArrayList<TreeNode<T>> path = new ArrayList<>();
+			TreeNode<T> current = this.published;
+			int result = 0;
+			this.writeComparisons = 0;
+
+			while (current != null && (result = current.getData().compareTo(data)) != 0) {
+				this.writeComparisons++;
+				path.add(current);
+				current = result > 0 ? current.getLeft() : current.getRight();
+			}
+			this.writeDepth = path.size();
+
+			if (current != null) {
+				this.writeComparisons++;
+				this.writeDepth++;
+			}
+
+			Counter<T> counter = null;
+
+			if (current != null) {
+				counter = (Counter<T>) current.getData();
+				counter.decrementCount();
+
+				if (counter.getCount() <= 0) {
+					// Close the data to retrievals, then judge its count again.
+					counter.unlinking = true;
+
+					if (counter.getCount() > 0) {
+						counter.unlinking = false;
+					}
+				}
+			}
+			if (counter != null && counter.unlinking) {
+				TreeNode<T> replacement = null;
+
+				if (current.getLeft() == null) {
+					replacement = current.getRight();
+				} else if (current.getRight() == null) {
+					replacement = current.getLeft();
+				} else {
+					// Rebuild the left subtree without its largest node, then put that node in
+					// place of current.
+					final ArrayList<TreeNode<T>> spine = new ArrayList<>();
+					TreeNode<T> max = current.getLeft();
+
+					while (max.getRight() != null) {
+						spine.add(max);
+						max = max.getRight();
+					}
+					this.writeDepth += spine.size() + 1;
+					TreeNode<T> left = max.getLeft();
+
+					for (int i = spine.size() - 1; i >= 0; i--) {
+						left = this.link(spine.get(i).getData(), spine.get(i).getLeft(), left);
+					}
+					replacement = this.link(max.getData(), left, current.getRight());
+				}
+				this.published = this.copyPath(path, data, replacement);
+				this.nodes--;
+			}
+			if (metrics != null) {
+				metrics.record(TreeMetrics.Operation.REMOVE, this.writeComparisons, this.writeDepth, 0,
+						System.nanoTime() - start);
+			}
+		} finally {
+			this.writeLock.unlock();
+		}
+		return;
+	}
+
+	/**
+	 * Removes each of data in turn with {@code remove}.
+	 *
+	 * @param data Data to decrement or remove.
+	 */
+	@Override
+	public void removeBatch(final CountedData<T>[] data) {
+
+		for (final CountedData<T> item : data) {
+			this.remove(item);
+		}
+		return;
+	}
+
+	/**
+	 * Resets the comparison count to 0.
+	 */
+	@Override
+	public void resetComparisons() {
+		this.lookups.reset();
+		return;
+	}
+
+	/**
+	 * Rebuilds the tree in popularity order from the current counts. Blocks until
+	 * the write lock is available.
+	 */
+	public void restructure() {
+		this.writeLock.lock();
+
+		try {
+			this.restructureLocked();
+		} finally {
+			this.writeLock.unlock();
+		}
+		return;
+	}
+
+	/**
+	 * Retrieves the data matching key and increments its count, without locking
+	 * and without changing the shape of the tree.
+	 *
+	 * @param key The key to search for.
+	 * @return data The complete CountedData that matches key, null otherwise.
+	 */
+	@Override
+	public CountedData<T> retrieve(final CountedData<T> key) {
+		final TreeMetrics metrics = this.getMetrics();
+		final long start = metrics != null ? System.nanoTime() : 0;
+		TreeNode<T> current = null;
+		int visited = 0;
+
+		do {
+			current = this.published;
+
+			while (current != null) {
+				visited++;
+				final int result = current.getData().compareTo(key);
+
+				if (result == 0) {
+					break;
+				}
+				current = result > 0 ? current.getLeft() : current.getRight();
+			}
+			// A removal is unlinking the data found: search the tree it publishes.
+		} while (current != null && !((Counter<T>) current.getData()).retrieved());
+		this.lookups.add(visited);
+		CountedData<T> data = null;
+		int promoted = 0;
+
+		if (current != null) {
+			data = current.getData();
+			this.pending.increment();
+
+			if ((ThreadLocalRandom.current().nextInt() & this.sampleMask) == 0) {
+				promoted = this.maybeRestructure();
+			}
+		}
+		if (metrics != null) {
+			metrics.record(TreeMetrics.Operation.RETRIEVE, visited, visited, promoted, System.nanoTime() - start);
+		}
+		return data;
+	}
+
+	/**
+	 * Retrieves each key in turn with {@code retrieve}, without locking.
+	 *
+	 * @param keys The keys to look for.
+	 * @return The data matching each key, in the order of keys, null for keys that
+	 *         are not in the tree.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public CountedData<T>[] retrieveBatch(final CountedData<T>[] keys) {
+		final CountedData<T>[] results = (CountedData<T>[]) new CountedData<?>[keys.length];
+
+		for (int i = 0; i < keys.length; i++) {
+			results[i] = this.retrieve(keys[i]);
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the sum of the current counts of the data from lo to hi inclusive in
+	 * the published snapshot, by visiting them in O(log n + k) time for k data in
+	 * the range. The subtree count sums go stale as retrievals count in place, so
+	 * the counters themselves are read.
+	 *
+	 * @param lo The smallest key to include.
+	 * @param hi The largest key to include.
+	 * @return The total count of the data not less than lo and not greater than
+	 *         hi.
+	 */
+	@Override
+	public long sumCountsRange(final CountedData<T> lo, final CountedData<T> hi) {
+		long sum = 0;
+		final Iterator<CountedData<T>> range = this.range(lo, hi);
+
+		while (range.hasNext()) {
+			sum += range.next().getCount();
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the k data with the greatest counts in the published snapshot,
+	 * without locking. There is no count index to keep up to date across
+	 * snapshots, so the snapshot is scanned with a bounded heap in O(n log k)
+	 * time.
+	 *
+	 * @param k The number of data wanted.
+	 * @return The k data with the greatest counts, or all of the data if there are
+	 *         fewer than k, in order of decreasing count.
+	 */
+	@Override
+	public ArrayList<CountedData<T>> topK(final int k) {
+		return CountIndex.scan(this.iterator(), k);
+	}
+}
@@ -0,0 +1,317 @@
+package cp213;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the data of a tree ordered by count, so that the most popular data can
+ * be listed without visiting the whole tree. The data are grouped into buckets
+ * of equal count, and the buckets are kept in a doubly linked list in order of
+ * count. A change of count moves a data from its bucket to the bucket for its
+ * new count, creating and discarding buckets as needed. When a count changes by
+ * one, as it does for each insertion, removal or retrieval, the new bucket is a
+ * neighbour of the old one and the move takes constant time. Listing the top k
+ * data walks the buckets down from the highest count and takes O(k) time.
+ *
+ * The data are found by identity, as the tree stores them, so their keys need
+ * not define hashCode. Data with equal counts are listed in no particular
+ * order.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+final class CountIndex<T extends Comparable<T>> {
+
+	/**
+	 * The data with one count.
+	 */
+	private static final class Bucket<T extends Comparable<T>> {
+		/**
+		 * The count of every data in the bucket.
+		 */
+		private final int count;
+		/**
+		 * The first data in the bucket.
+		 */
+		private Entry<T> first = null;
+		/**
+		 * The bucket with the next greater count, null if there is none.
+		 */
+		private Bucket<T> higher = null;
+		/**
+		 * The bucket with the next smaller count, null if there is none.
+		 */
+		private Bucket<T> lower = null;
+
+		/**
+		 * Creates an empty bucket.
+		 *
+		 * @param count The count of the data in the bucket.
+		 */
+		private Bucket(final int count) {
+			this.count = count;
+		}
+	}
+
+	/**
+	 * A data and its place in a bucket.
+	 */
+	private static final class Entry<T extends Comparable<T>> {
+		/**
+		 * The bucket holding the data.
+		 */
+		private Bucket<T> bucket = null;
+		/**
+		 * The data, as stored in the tree.
+		 */
+		private final CountedData<T> data;
+		/**
+		 * The next data in the bucket, null if there is none.
+		 */
+		private Entry<T> next = null;
+		/**
+		 * The previous data in the bucket, null if there is none.
+		 */
+		private Entry<T> previous = null;
+
+		/**
+		 * Creates an entry that is not yet in a bucket.
+		 *
+		 * @param data The data of the entry.
+		 */
+		private Entry(final CountedData<T> data) {
+			this.data = data;
+		}
+	}
+
+	// Attributes.
+	/**
+	 * The entry of each data in the index.
+	 */
+	private final IdentityHashMap<CountedData<T>, Entry<T>> entries;
+	/**
+	 * The bucket with the greatest count, null if the index is empty.
+	 */
+	private Bucket<T> highest = null;
+	/**
+	 * The bucket with the smallest count, null if the index is empty.
+	 */
+	private Bucket<T> lowest = null;
+
+	/**
+	 * Creates an index of data. The data are sorted by count once, so building
+	 * takes O(n log n) time.
+	 *
+	 * @param data The data to index, as stored in the tree.
+	 */
+	CountIndex(final Iterable<CountedData<T>> data) {
+		final ArrayList<CountedData<T>> sorted = new ArrayList<>();
+
+		for (final CountedData<T> item : data) {
+			sorted.add(item);
+		}
+		sorted.sort((a, b) -> Integer.compare(a.getCount(), b.getCount()));
+		this.entries = new IdentityHashMap<>(sorted.size());
+
+		for (final CountedData<T> item : sorted) {
+			// Each bucket is found or created next to the highest one.
+			final Entry<T> entry = new Entry<T>(item);
+			this.entries.put(item, entry);
+			this.link(entry, this.bucket(this.highest, item.getCount()));
+		}
+	}
+
+	/**
+	 * Returns the bucket for count, creating it if there is none. The search
+	 * starts at near and moves one bucket at a time, so it is fastest when near
+	 * is close to the bucket wanted.
+	 *
+	 * @param near  A bucket to start from, null to start from the lowest.
+	 * @param count The count of the bucket.
+	 * @return The bucket for count.
+	 */
+	private Bucket<T> bucket(final Bucket<T> near, final int count) {
+		// Find the neighbouring buckets below and above count.
+		Bucket<T> below = near;
+		Bucket<T> above = near != null ? near.higher : this.lowest;
+
+		while (below != null && below.count > count) {
+			above = below;
+			below = below.lower;
+		}
+		while (above != null && above.count <= count) {
+			below = above;
+			above = above.higher;
+		}
+		if (below != null && below.count == count) {
+			return below;
+		}
+		final Bucket<T> bucket = new Bucket<T>(count);
+		bucket.lower = below;
+		bucket.higher = above;
+
+		if (below != null) {
+			below.higher = bucket;
+		} else {
+			this.lowest = bucket;
+		}
+		if (above != null) {
+			above.lower = bucket;
+		} else {
+			this.highest = bucket;
+		}
+		return bucket;
+	}
+
+	/**
+	 * Adds entry to the front of bucket.
+	 *
+	 * @param entry  The entry to add.
+	 * @param bucket The bucket to add it to.
+	 */
+	private void link(final Entry<T> entry, final Bucket<T> bucket) {
+		entry.bucket = bucket;
+		entry.previous = null;
+		entry.next = bucket.first;
+
+		if (bucket.first != null) {
+			bucket.first.previous = entry;
+		}
+		bucket.first = entry;
+		return;
+	}
+
+	/**
+	 * Removes entry from its bucket, and removes the bucket if it is then empty.
+	 *
+	 * @param entry The entry to remove.
+	 * @return A bucket next to where entry was, null if there is none.
+	 */
+	private Bucket<T> unlink(final Entry<T> entry) {
+		Bucket<T> near = entry.bucket;
+
+		if (entry.previous != null) {
+			entry.previous.next = entry.next;
+		} else {
+			near.first = entry.next;
+		}
+		if (entry.next != null) {
+			entry.next.previous = entry.previous;
+		}
+		entry.bucket = null;
+
+		if (near.first == null) {
+			// Discard the empty bucket.
+			if (near.lower != null) {
+				near.lower.higher = near.higher;
+			} else {
+				this.lowest = near.higher;
+			}
+			if (near.higher != null) {
+				near.higher.lower = near.lower;
+			} else {
+				this.highest = near.lower;
+			}
+			near = near.lower;
+		}
+		return near;
+	}
+
+	/**
+	 * Returns the k data with the greatest counts in a stream of data, by keeping
+	 * the greatest seen so far in a min-heap of size k. Takes O(n log k) time.
+	 * Used where there is no index to maintain.
+	 *
+	 * @param <T>  The data type.
+	 * @param data The data to choose from.
+	 * @param k    The number of data wanted.
+	 * @return The k data with the greatest counts, in order of decreasing count.
+	 */
+	static <T extends Comparable<T>> ArrayList<CountedData<T>> scan(final Iterator<CountedData<T>> data,
+			final int k) {
+		final ArrayList<CountedData<T>> top = new ArrayList<>();
+
+		if (k > 0) {
+			final PriorityQueue<CountedData<T>> heap = new PriorityQueue<>(
+					(a, b) -> Integer.compare(a.getCount(), b.getCount()));
+
+			while (data.hasNext()) {
+				final CountedData<T> item = data.next();
+
+				if (heap.size() < k) {
+					heap.add(item);
+				} else if (item.getCount() > heap.peek().getCount()) {
+					heap.poll();
+					heap.add(item);
+				}
+			}
+			while (!heap.isEmpty()) {
+				top.add(heap.poll());
+			}
+			Collections.reverse(top);
+		}
+		return top;
+	}
+
+	/**
+	 * Returns the k data with the greatest counts. Takes O(k) time.
+	 *
+	 * @param k The number of data wanted.
+	 * @return The k data with the greatest counts, or all of the data if there are
+	 *         fewer than k, in order of decreasing count.
+	 */
+	ArrayList<CountedData<T>> top(final int k) {
+		final ArrayList<CountedData<T>> top = new ArrayList<>(Math.max(0, Math.min(k, this.entries.size())));
+		Bucket<T> bucket = this.highest;
+
+		while (bucket != null && top.size() < k) {
+			Entry<T> entry = bucket.first;
+
+			while (entry != null && top.size() < k) {
+				top.add(entry.data);
+				entry = entry.next;
+			}
+			bucket = bucket.lower;
+		}
+		return top;
+	}
+
+	/**
+	 * Records that data has been removed from the tree.
+	 *
+	 * @param data The removed data.
+	 */
+	void remove(final CountedData<T> data) {
+		final Entry<T> entry = this.entries.remove(data);
+
+		if (entry != null) {
+			this.unlink(entry);
+		}
+		return;
+	}
+
+	/**
+	 * Records the current count of data, adding data to the index if it is not
+	 * already there.
+	 *
+	 * @param data The data, as stored in the tree.
+	 */
+	void update(final CountedData<T> data) {
+		Entry<T> entry = this.entries.get(data);
+		Bucket<T> near = null;
+
+		if (entry == null) {
+			entry = new Entry<T>(data);
+			this.entries.put(data, entry);
+		} else if (entry.bucket.count == data.getCount()) {
+			return;
+		} else {
+			near = this.unlink(entry);
+		}
+		this.link(entry, this.bucket(near, data.getCount()));
+		return;
+	}
+}
@@ -0,0 +1,182 @@
+package cp213;
+
+/**
+ * Approximately counts the occurrences of keys in a fixed amount of memory
+ * (Cormode and Muthukrishnan, "An Improved Data Stream Summary: The Count-Min
+ * Sketch and its Applications"). The sketch is a table of depth rows of width
+ * counters. Each row hashes a key to one of its counters, and an occurrence of
+ * the key is added to its counter in every row. Other keys that hash to the same
+ * counters can only add to them, so the smallest of a key's counters is an
+ * estimate that is never less than its true count.
+ *
+ * With a width of at least e / epsilon and a depth of at least ln(1 / delta),
+ * an estimate exceeds the true count by more than epsilon times the total of
+ * all counts with probability at most delta. The width is rounded up to a power
+ * of 2, which only tightens the bound. Updates are conservative: only the
+ * counters that would otherwise fall below the new estimate are raised, which
+ * keeps the bound and makes estimates closer in practice.
+ *
+ * Keys are hashed with hashCode, so keys that are equal must have equal hash
+ * codes.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class CountMinSketch<T> {
+
+	// Attributes.
+	/**
+	 * The counters, row by row.
+	 */
+	private final int[] counters;
+	/**
+	 * The number of rows.
+	 */
+	private final int depth;
+	/**
+	 * Width - 1, to reduce a hash to a column.
+	 */
+	private final int mask;
+	/**
+	 * The seed of the hash of each row.
+	 */
+	private final long[] seeds;
+	/**
+	 * The total of all counts added.
+	 */
+	private long total = 0;
+
+	/**
+	 * Creates a sketch whose estimates exceed the true counts by more than epsilon
+	 * times the total count with probability at most delta.
+	 *
+	 * @param epsilon The error bound as a fraction of the total count, 0 &lt;
+	 *                epsilon &lt; 1.
+	 * @param delta   The probability of exceeding the error bound, 0 &lt; delta
+	 *                &lt; 1.
+	 * @throws IllegalArgumentException if epsilon or delta is not between 0 and
+	 *                                  1, or the sketch would be too large.
+	 */
+	public CountMinSketch(final double epsilon, final double delta) {
+
+		if (!(epsilon > 0 && epsilon < 1)) {
+			throw new IllegalArgumentException("epsilon must be between 0 and 1: " + epsilon);
+		}
+		if (!(delta > 0 && delta < 1)) {
+			throw new IllegalArgumentException("delta must be between 0 and 1: " + delta);
+		}
+		final long width = Long.highestOneBit((long) Math.ceil(Math.E / epsilon) - 1) << 1;
+		this.depth = (int) Math.ceil(Math.log(1 / delta));
+
+		if (width <= 0 || width > (Integer.MAX_VALUE - 8) / this.depth) {
+			throw new IllegalArgumentException("sketch too large for epsilon " + epsilon + " and delta " + delta);
+		}
+		this.mask = (int) width - 1;
+		this.counters = new int[this.depth * (int) width];
+		this.seeds = new long[this.depth];
+
+		for (int i = 0; i < this.depth; i++) {
+			this.seeds[i] = mix(0x9E3779B97F4A7C15L * (i + 1));
+		}
+	}
+
+	/**
+	 * Mixes the bits of a value so that every output bit depends on every input
+	 * bit (the finalizer of MurmurHash3).
+	 *
+	 * @param value The value to mix.
+	 * @return The mixed value.
+	 */
+	private static long mix(long value) {
+		value = (value ^ value >>> 33) * 0xFF51AFD7ED558CCDL;
+		value = (value ^ value >>> 33) * 0xC4CEB9FE1A85EC53L;
+		return value ^ value >>> 33;
+	}
+
+	/**
+	 * Returns the index of the counter of key in row.
+	 *
+	 * @param hash The hash code of the key.
+	 * @param row  The row.
+	 * @return The index of the counter in the table.
+	 */
+	private int index(final int hash, final int row) {
+		return row * (this.mask + 1) + ((int) mix(hash ^ this.seeds[row]) & this.mask);
+	}
+
+	/**
+	 * Adds count occurrences of key, and returns the new estimate of its count.
+	 * Counters stop at Integer.MAX_VALUE rather than overflow.
+	 *
+	 * @param key   The key.
+	 * @param count The number of occurrences, not negative.
+	 * @return The estimated count of key, including count.
+	 */
+	public int add(final T key, final int count) {
+		final int hash = key.hashCode();
+		final int estimate = (int) Math.min((long) this.estimate(key) + count, Integer.MAX_VALUE);
+
+		for (int row = 0; row < this.depth; row++) {
+			final int index = this.index(hash, row);
+
+			if (this.counters[index] < estimate) {
+				this.counters[index] = estimate;
+			}
+		}
+		this.total += count;
+		return estimate;
+	}
+
+	/**
+	 * Returns the estimated count of key. The estimate is never less than the
+	 * number of occurrences of key added.
+	 *
+	 * @param key The key.
+	 * @return The estimated count of key.
+	 */
+	public int estimate(final T key) {
+		final int hash = key.hashCode();
+		int estimate = Integer.MAX_VALUE;
+
+		for (int row = 0; row < this.depth; row++) {
+			estimate = Math.min(estimate, this.counters[this.index(hash, row)]);
+		}
+		return estimate;
+	}
+
+	/**
+	 * Returns the memory taken by the counters.
+	 *
+	 * @return The size of the counters in bytes.
+	 */
+	public long getBytes() {
+		return (long) this.counters.length * Integer.BYTES;
+	}
+
+	/**
+	 * Returns the number of rows.
+	 *
+	 * @return The depth of the sketch.
+	 */
+	public int getDepth() {
+		return this.depth;
+	}
+
+	/**
+	 * Returns the total of all counts added.
+	 *
+	 * @return The total count.
+	 */
+	public long getTotal() {
+		return this.total;
+	}
+
+	/**
+	 * Returns the number of counters in each row.
+	 *
+	 * @return The width of the sketch.
+	 */
+	public int getWidth() {
+		return this.mask + 1;
+	}
+}
@@ -0,0 +1,1270 @@
+package cp213;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Implements a counted index that may be shared between threads, on a
+ * lock-free skip list rather than a tree. Extends BST, whose insert, add,
+ * retrieve and remove it implements with the same counting rules, so it can
+ * stand in for a BST.
+ *
+ * No operation blocks. Nodes are linked into each level of the list with a
+ * compare-and-set (Harris, "A Pragmatic Implementation of Non-Blocking
+ * Linked-Lists"; Herlihy and Shavit, "The Art of Multiprocessor Programming",
+ * 14.4). Nothing is rebalanced, so concurrent writers that change different
+ * keys touch different nodes. The count of a key is an atomic field of its
+ * node, changed in place by compare-and-set, so counting an existing key
+ * never changes the list. A node is removed by setting its count to DEAD,
+ * then marking each of its links so that no node can be linked after it, then
+ * unlinking it. Any thread that meets a node being removed helps to unlink it.
+ *
+ * The level of a node is derived from the hash of its key, a quarter of the
+ * keys reaching each next level, so the list has the shape of a skip list with
+ * random levels but depends only on its keys. Keys are hashed with hashCode, so
+ * keys that are equal must have equal hash codes.
+ *
+ * The data returned are copies holding the count when they were read. The
+ * iterators are weakly consistent: they never fail, and return each key that
+ * is present throughout the iteration exactly once.
+ *
+ * The traversal orders are those of the list read as a tree: the children of a
+ * node are the nodes it skips over one level below its top level, and the
+ * children of the head are the nodes of the top level in use. Level order is
+ * then the nodes by top level, highest first and in order of key within a
+ * level, and preorder is the order of the keys, as each node comes before the
+ * nodes it skips over. A snapshot of the list holds its data in order with
+ * their counts, and can be loaded by any tree.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class CountedSkipList<T extends Comparable<T>> extends BST<T> {
+
+	/**
+	 * Iterates in order over the live nodes of one level, returning copies of
+	 * their data.
+	 */
+	private final class Cursor implements Iterator<CountedData<T>> {
+
+		/**
+		 * The greatest key to return, null for no limit.
+		 */
+		private final T hi;
+		/**
+		 * The level walked.
+		 */
+		private final int level;
+		/**
+		 * The next data to return, null if there is none.
+		 */
+		private CountedData<T> next = null;
+		/**
+		 * The node of next.
+		 */
+		private Node<T> node;
+		/**
+		 * Whether only the nodes whose top level is level are returned.
+		 */
+		private final boolean top;
+
+		/**
+		 * Creates a cursor over the bottom level that starts at node.
+		 *
+		 * @param node The first node to consider, may be the tail or not live.
+		 * @param hi   The greatest key to return, null for no limit.
+		 */
+		private Cursor(final Node<T> node, final T hi) {
+			this(node, hi, 0, false);
+		}
+
+		/**
+		 * Creates a cursor over level that starts at node.
+		 *
+		 * @param node  The first node to consider, may be the tail or not live.
+		 * @param hi    The greatest key to return, null for no limit.
+		 * @param level The level to walk; node must be linked into it.
+		 * @param top   Whether to return only the nodes whose top level is level.
+		 */
+		private Cursor(final Node<T> node, final T hi, final int level, final boolean top) {
+			this.node = node;
+			this.hi = hi;
+			this.level = level;
+			this.top = top;
+			this.advance();
+		}
+
+		/**
+		 * Moves to the next live node from the current node, inclusive, and reads its
+		 * data.
+		 */
+		private void advance() {
+			this.next = null;
+
+			while (this.next == null && this.node != CountedSkipList.this.tail
+					&& (this.hi == null || this.node.key.compareTo(this.hi) <= 0)) {
+
+				if (!this.top || this.node.next.length == this.level + 1) {
+					this.next = copy(this.node);
+				}
+				if (this.next == null) {
+					this.node = target(link(this.node, this.level));
+				}
+			}
+			return;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.next != null;
+		}
+
+		@Override
+		public CountedData<T> next() {
+
+			if (this.next == null) {
+				throw new NoSuchElementException();
+			}
+			final CountedData<T> data = this.next;
+			this.node = target(link(this.node, this.level));
+			this.advance();
+			return data;
+		}
+	}
+
+	/**
+	 * Iterates over the live nodes by top level, highest first, and in order
+	 * within a level.
+	 */
+	private final class Levels implements Iterator<CountedData<T>> {
+
+		/**
+		 * The level being walked, -1 once every level is done.
+		 */
+		private int level;
+		/**
+		 * The walk of level.
+		 */
+		private Cursor cursor = null;
+
+		/**
+		 * Creates an iterator that starts at the top level in use.
+		 */
+		private Levels() {
+			this.level = CountedSkipList.this.getHeight();
+			this.descend();
+		}
+
+		/**
+		 * Moves down to the next level that has a node to return, if the current level
+		 * has none left.
+		 */
+		private void descend() {
+
+			while ((this.cursor == null || !this.cursor.hasNext()) && this.level > 0) {
+				this.level--;
+				this.cursor = new Cursor(target(link(CountedSkipList.this.head, this.level)), null, this.level, true);
+			}
+			return;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.cursor != null && this.cursor.hasNext();
+		}
+
+		@Override
+		public CountedData<T> next() {
+
+			if (!this.hasNext()) {
+				throw new NoSuchElementException();
+			}
+			final CountedData<T> data = this.cursor.next();
+			this.descend();
+			return data;
+		}
+	}
+
+	/**
+	 * A marked link: the node holding it is being removed, and nothing may be
+	 * linked after it. Marking replaces a link with a new Marked, so a
+	 * compare-and-set that expects the unmarked link fails.
+	 */
+	private static final class Marked {
+
+		/**
+		 * The node the link leads to.
+		 */
+		private final Node<?> node;
+
+		/**
+		 * Creates a marked link to node.
+		 *
+		 * @param node The node the link leads to.
+		 */
+		private Marked(final Node<?> node) {
+			this.node = node;
+		}
+	}
+
+	/**
+	 * A node of the list, linked into levels 0 to next.length - 1.
+	 */
+	private static final class Node<T extends Comparable<T>> {
+
+		/**
+		 * The count of the key, DEAD once the node is removed. Changed by
+		 * compare-and-set through COUNT.
+		 */
+		private volatile int count;
+		/**
+		 * The key, null in the head and tail. Held directly rather than in a
+		 * CountedData, which saves a dereference at every comparison.
+		 */
+		private final T key;
+		/**
+		 * The link at each level, a Node or a Marked. Changed by compare-and-set
+		 * through NEXT.
+		 */
+		private final Object[] next;
+
+		/**
+		 * Creates a node.
+		 *
+		 * @param key    The key.
+		 * @param count  The count of the key.
+		 * @param levels The number of levels the node is linked into.
+		 */
+		private Node(final T key, final int count, final int levels) {
+			this.key = key;
+			this.count = count;
+			this.next = new Object[levels];
+		}
+	}
+
+	/**
+	 * The count of a removed node.
+	 */
+	private static final int DEAD = -1;
+	/**
+	 * Number of levels of the list, enough for 4^LEVELS keys.
+	 */
+	private static final int LEVELS = 16;
+	/**
+	 * Access to Node.count.
+	 */
+	private static final VarHandle COUNT;
+	/**
+	 * Access to the elements of Node.next.
+	 */
+	private static final VarHandle NEXT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+	static {
+		try {
+			COUNT = MethodHandles.lookup().findVarHandle(Node.class, "count", int.class);
+		} catch (final ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	// Attributes.
+	/**
+	 * The node before the first node at every level.
+	 */
+	private final Node<T> head = new Node<T>(null, 0, LEVELS);
+	/**
+	 * Count of comparisons performed by retrieve, contention free.
+	 */
+	private final LongAdder lookups = new LongAdder();
+	/**
+	 * Number of live nodes, contention free.
+	 */
+	private final LongAdder nodes = new LongAdder();
+	/**
+	 * The node after the last node at every level.
+	 */
+	private final Node<T> tail = new Node<T>(null, 0, 0);
+
+	/**
+	 * Creates an empty list.
+	 */
+	public CountedSkipList() {
+
+		for (int level = 0; level < LEVELS; level++) {
+			this.head.next[level] = this.tail;
+		}
+	}
+
+	/**
+	 * Sets the link of node at level from expected to value.
+	 *
+	 * @param node     The node.
+	 * @param level    The level of the link.
+	 * @param expected The link expected.
+	 * @param value    The new link.
+	 * @return true if the link was expected and is now value, false otherwise.
+	 */
+	private static boolean cas(final Node<?> node, final int level, final Object expected, final Object value) {
+		return NEXT.compareAndSet(node.next, level, expected, value);
+	}
+
+	/**
+	 * Returns a copy of the data of node with its current count.
+	 *
+	 * @param node The node.
+	 * @return The copy, null if node is removed.
+	 */
+	private static <T extends Comparable<T>> CountedData<T> copy(final Node<T> node) {
+		final int count = node.count;
+		return count != DEAD ? new CountedData<T>(node.key, count) : null;
+	}
+
+	/**
+	 * Adds count to the count of node unless it is removed.
+	 *
+	 * @param node  The node.
+	 * @param count The amount to add.
+	 * @return true if count was added, false if node is removed.
+	 */
+	private static boolean increment(final Node<?> node, final int count) {
+		int current = node.count;
+
+		while (current != DEAD && !COUNT.compareAndSet(node, current, current + count)) {
+			current = node.count;
+		}
+		return current != DEAD;
+	}
+
+	/**
+	 * Returns the number of levels of the node of key: the number of trailing pairs
+	 * of zero bits of a hash of key, plus 1.
+	 *
+	 * @param key The key.
+	 * @return The number of levels, 1 to LEVELS.
+	 */
+	private static int levels(final Object key) {
+		// Offset first: 0 is a fixed point of the mix.
+		long hash = key.hashCode() + 0x9E3779B97F4A7C15L;
+		hash = (hash ^ hash >>> 33) * 0xFF51AFD7ED558CCDL;
+		hash = (hash ^ hash >>> 33) * 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+		return Long.numberOfTrailingZeros(hash | 1L << 2 * (LEVELS - 1)) / 2 + 1;
+	}
+
+	/**
+	 * Reads the link of node at level.
+	 *
+	 * @param node  The node.
+	 * @param level The level.
+	 * @return The link, a Node or a Marked.
+	 */
+	private static Object link(final Node<?> node, final int level) {
+		return NEXT.getVolatile(node.next, level);
+	}
+
+	/**
+	 * Returns the node a link leads to, whether or not it is marked.
+	 *
+	 * @param link A Node or a Marked.
+	 * @return The node.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T extends Comparable<T>> Node<T> target(final Object link) {
+		return (Node<T>) (link instanceof Marked ? ((Marked) link).node : link);
+	}
+
+	/**
+	 * Returns the first live node whose key is greater than key, or equal to it
+	 * if inclusive. Does not count comparisons.
+	 *
+	 * @param key       The key, null to find the first node.
+	 * @param inclusive Whether a node equal to key is wanted.
+	 * @return The node, the tail if there is none.
+	 */
+	private Node<T> above(final T key, final boolean inclusive) {
+		Node<T> pred = this.head;
+		Node<T> curr = this.tail;
+
+		for (int level = LEVELS - 1; level >= 0; level--) {
+			curr = target(link(pred, level));
+
+			while (curr != this.tail) {
+				final Object next = link(curr, level);
+
+				if (next instanceof Marked) {
+					curr = target(next);
+				} else if (key != null && (inclusive ? curr.key.compareTo(key) < 0 : curr.key.compareTo(key) <= 0)) {
+					pred = curr;
+					curr = target(next);
+				} else {
+					break;
+				}
+			}
+		}
+		while (curr != this.tail && copy(curr) == null) {
+			curr = target(link(curr, 0));
+		}
+		return curr;
+	}
+
+	/**
+	 * Returns the last live node whose key is less than key, or equal to it if
+	 * inclusive. If the last node before key is being removed, searches again
+	 * before it. Does not count comparisons.
+	 *
+	 * @param key       The key, null to find the last node.
+	 * @param inclusive Whether a node equal to key is wanted.
+	 * @return The node, null if there is none.
+	 */
+	private Node<T> below(T key, boolean inclusive) {
+		Node<T> found = null;
+
+		while (found == null) {
+			Node<T> pred = this.head;
+
+			for (int level = LEVELS - 1; level >= 0; level--) {
+				Node<T> curr = target(link(pred, level));
+
+				while (curr != this.tail) {
+					final Object next = link(curr, level);
+
+					if (next instanceof Marked) {
+						curr = target(next);
+					} else if (key == null || (inclusive ? curr.key.compareTo(key) <= 0 : curr.key.compareTo(key) < 0)) {
+						pred = curr;
+						curr = target(next);
+					} else {
+						break;
+					}
+				}
+			}
+			if (pred == this.head) {
+				break;
+			}
+			if (copy(pred) != null) {
+				found = pred;
+			} else {
+				key = pred.key;
+				inclusive = false;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Finds key, unlinking the marked nodes met on the way. For each level below
+	 * preds.length, stores in preds the last node before key and in succs the
+	 * node after it, the first whose key is not less than key.
+	 *
+	 * @param key   The key to find.
+	 * @param preds Receives the predecessors of key, at least 1 level.
+	 * @param succs Receives the successors of key, as many levels as preds.
+	 * @return true if the node in succs[0] holds key, false otherwise.
+	 */
+	private boolean find(final T key, final Node<T>[] preds, final Node<T>[] succs) {
+		int result = 1;
+
+		retry: while (true) {
+			Node<T> pred = this.head;
+
+			for (int level = LEVELS - 1; level >= 0; level--) {
+				final Object link = link(pred, level);
+
+				if (link instanceof Marked) {
+					// pred is being removed: start again from the head.
+					continue retry;
+				}
+				Node<T> curr = target(link);
+				result = 1;
+
+				while (curr != this.tail) {
+					final Object next = link(curr, level);
+
+					if (next instanceof Marked) {
+						// curr is being removed: unlink it from this level.
+						final Node<T> succ = target(next);
+
+						if (!cas(pred, level, curr, succ)) {
+							continue retry;
+						}
+						curr = succ;
+					} else if ((result = curr.key.compareTo(key)) < 0) {
+						pred = curr;
+						curr = target(next);
+					} else {
+						break;
+					}
+				}
+				if (curr == this.tail) {
+					result = 1;
+				}
+				if (level < preds.length) {
+					preds[level] = pred;
+					succs[level] = curr;
+				}
+			}
+			return result == 0;
+		}
+	}
+
+	/**
+	 * Finishes the removal of a node whose count is DEAD: marks its links from
+	 * the top level down, so that no node is linked after it, then unlinks it
+	 * with a search. Any thread may call unlink for a dead node.
+	 *
+	 * @param node The dead node.
+	 */
+	@SuppressWarnings("unchecked")
+	private void unlink(final Node<T> node) {
+
+		for (int level = node.next.length - 1; level >= 0; level--) {
+			Object link = link(node, level);
+
+			while (!(link instanceof Marked) && !cas(node, level, link, new Marked((Node<?>) link))) {
+				link = link(node, level);
+			}
+		}
+		this.find(node.key, (Node<T>[]) new Node<?>[1], (Node<T>[]) new Node<?>[1]);
+		return;
+	}
+
+	/**
+	 * Auxiliary method for add. The count of an existing key is changed in place,
+	 * found by a read-only search. A new node is linked at the bottom level first,
+	 * which puts it in the list, then at each level above.
+	 *
+	 * @param key   The key to store.
+	 * @param count The amount to add to its count, not negative.
+	 */
+	@SuppressWarnings("unchecked")
+	private void addAux(final T key, final int count) {
+		final Node<T> existing = this.above(key, true);
+
+		if (existing != this.tail && existing.key.compareTo(key) == 0 && increment(existing, count)) {
+			return;
+		}
+		final int levels = levels(key);
+		final Node<T>[] preds = (Node<T>[]) new Node<?>[levels];
+		final Node<T>[] succs = (Node<T>[]) new Node<?>[levels];
+		Node<T> node = null;
+
+		while (node == null) {
+			if (this.find(key, preds, succs)) {
+				if (increment(succs[0], count)) {
+					return;
+				}
+				// The key is being removed: finish removing it, then insert it anew.
+				this.unlink(succs[0]);
+			} else {
+				node = new Node<T>(key, count, levels);
+
+				for (int level = 0; level < levels; level++) {
+					node.next[level] = succs[level];
+				}
+				if (!cas(preds[0], 0, succs[0], node)) {
+					node = null;
+				}
+			}
+		}
+		this.nodes.increment();
+
+		for (int level = 1; level < levels; level++) {
+			while (true) {
+				final Object link = link(node, level);
+
+				if (link instanceof Marked) {
+					// The node is already being removed: link it no higher.
+					return;
+				}
+				if (link == succs[level] || cas(node, level, link, succs[level])) {
+					if (cas(preds[level], level, succs[level], node)) {
+						break;
+					}
+					this.find(key, preds, succs);
+				}
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Records an update of key that started at start in metrics, if there are
+	 * metrics. The depth of an update is the number of levels of the node of key.
+	 *
+	 * @param metrics   The metrics of this list, may be null.
+	 * @param operation The operation.
+	 * @param key       The key updated.
+	 * @param start     The start time in nanoseconds.
+	 */
+	private static void record(final TreeMetrics metrics, final TreeMetrics.Operation operation, final Object key,
+			final long start) {
+
+		if (metrics != null) {
+			metrics.record(operation, -1, levels(key), 0, System.nanoTime() - start);
+		}
+		return;
+	}
+
+	/**
+	 * Auxiliary method for remove. Decrements the count of key, and if the count is
+	 * not greater than 1, removes its node.
+	 *
+	 * @param key The key to decrement or remove.
+	 */
+	@SuppressWarnings("unchecked")
+	private void removeAux(final T key) {
+		final Node<T>[] preds = (Node<T>[]) new Node<?>[1];
+		final Node<T>[] succs = (Node<T>[]) new Node<?>[1];
+
+		while (this.find(key, preds, succs)) {
+			final Node<T> node = succs[0];
+			final int count = node.count;
+
+			if (count == DEAD) {
+				// Removed by another thread: finish removing it, then look again.
+				this.unlink(node);
+			} else if (COUNT.compareAndSet(node, count, count > 1 ? count - 1 : DEAD)) {
+				if (count <= 1) {
+					this.nodes.decrement();
+					this.unlink(node);
+				}
+				break;
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Replaces the contents of this list with sorted. Every node is removed, then
+	 * the new nodes are linked to one another at every level and the chains are
+	 * published from the head, bottom level first, so the load takes O(n) time.
+	 * Readers see either node removed or the new nodes linked, never a partial
+	 * node, but writers must not run during a load.
+	 *
+	 * @param sorted The data in strictly increasing order, with their counts.
+	 */
+	@SuppressWarnings("unchecked")
+	private void replaceAll(final List<CountedData<T>> sorted) {
+		Node<T> node = target(link(this.head, 0));
+
+		while (node != this.tail) {
+			final int count = node.count;
+
+			if (count != DEAD && COUNT.compareAndSet(node, count, DEAD)) {
+				this.nodes.decrement();
+				this.unlink(node);
+			}
+			node = target(link(node, 0));
+		}
+		final Node<T>[] first = (Node<T>[]) new Node<?>[LEVELS];
+		final Node<T>[] last = (Node<T>[]) new Node<?>[LEVELS];
+
+		for (final CountedData<T> data : sorted) {
+			node = new Node<T>(data.getData(), data.getCount(), levels(data.getData()));
+
+			for (int level = 0; level < node.next.length; level++) {
+				if (last[level] == null) {
+					first[level] = node;
+				} else {
+					last[level].next[level] = node;
+				}
+				last[level] = node;
+			}
+		}
+		for (int level = 0; level < LEVELS && first[level] != null; level++) {
+			last[level].next[level] = this.tail;
+			NEXT.setVolatile(this.head.next, level, first[level]);
+		}
+		this.nodes.add(sorted.size());
+		return;
+	}
+
+	/**
+	 * Replaces the contents of this list with the data of a snapshot, read in order
+	 * with their counts. A snapshot of a tree gives the data of the tree.
+	 *
+	 * @param channel The channel to read from.
+	 * @param codec   Decodes the keys; must be the codec they were saved with.
+	 * @throws IOException if the channel cannot be read or does not hold a tree
+	 *                     snapshot. This list is then unchanged.
+	 */
+	@Override
+	protected void load(final ReadableByteChannel channel, final KeyCodec<T> codec) throws IOException {
+		this.replaceAll(TreeSnapshot.readSorted(channel, codec, this::newData));
+		return;
+	}
+
+	/**
+	 * Replaces the contents of this list with the data of the tree rooted at
+	 * root, in order, with their counts.
+	 *
+	 * @param root The root of the new contents, may be null.
+	 */
+	@Override
+	protected void replace(final TreeNode<T> root) {
+		final ArrayList<CountedData<T>> sorted = new ArrayList<>();
+		final TreeIterator<T> iterator = new TreeIterator.InOrder<T>(root);
+
+		while (iterator.hasNext()) {
+			sorted.add(iterator.next());
+		}
+		this.replaceAll(sorted);
+		return;
+	}
+
+	/**
+	 * Writes the data of this list to channel in order, with their counts, as a
+	 * sorted snapshot. Any tree can load it.
+	 *
+	 * @param channel The channel to write to.
+	 * @param codec   Encodes the keys.
+	 * @throws IOException if the channel cannot be written.
+	 */
+	@Override
+	protected void save(final WritableByteChannel channel, final KeyCodec<T> codec) throws IOException {
+		TreeSnapshot.writeSorted(this.inOrder(), codec, channel);
+		return;
+	}
+
+	/**
+	 * Adds count to the count of data, inserting data with a count of count if it
+	 * is not in the list. Does not change data.
+	 *
+	 * @param data  Data to store.
+	 * @param count The amount to add to the data count, not negative.
+	 */
+	@Override
+	public void add(final CountedData<T> data, final int count) {
+		final TreeMetrics metrics = this.getMetrics();
+		final long start = metrics != null ? System.nanoTime() : 0;
+		this.addAux(data.getData(), count);
+		record(metrics, TreeMetrics.Operation.INSERT, data.getData(), start);
+		return;
+	}
+
+	/**
+	 * Returns the smallest data not less than key. Does not count comparisons.
+	 *
+	 * @param key The key to search from.
+	 * @return A copy of the least data greater than or equal to key, null if
+	 *         there is none.
+	 */
+	@Override
+	public CountedData<T> ceiling(final CountedData<T> key) {
+		return this.data(this.above(key.getData(), true));
+	}
+
+	/**
+	 * Returns the number of data from lo to hi inclusive, by visiting them.
+	 *
+	 * @param lo The smallest key to count.
+	 * @param hi The largest key to count.
+	 * @return The number of data in the range, 0 if lo is greater than hi.
+	 */
+	@Override
+	public int countRange(final CountedData<T> lo, final CountedData<T> hi) {
+		int count = 0;
+		final Iterator<CountedData<T>> range = this.range(lo, hi);
+
+		while (range.hasNext()) {
+			range.next();
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the data of node, or null for the tail or a removed node.
+	 *
+	 * @param node A node, may be null.
+	 * @return A copy of its data, null if there is none.
+	 */
+	private CountedData<T> data(final Node<T> node) {
+		return node != null && node != this.tail ? copy(node) : null;
+	}
+
+	/**
+	 * Determines whether this list holds the same data with the same counts, in
+	 * the same order, as target. A skip list has no tree shape to compare.
+	 *
+	 * @param target The tree to compare against.
+	 * @return true if this and target hold equal data with equal counts, false
+	 *         otherwise.
+	 */
+	@Override
+	public boolean equals(final BST<T> target) {
+		final Iterator<CountedData<T>> source = this.iterator();
+		final Iterator<CountedData<T>> other = target.iterator();
+		boolean isEqual = true;
+
+		while (isEqual && source.hasNext() && other.hasNext()) {
+			final CountedData<T> data = source.next();
+			final CountedData<T> match = other.next();
+			isEqual = data.compareTo(match) == 0 && data.getCount() == match.getCount();
+		}
+		return isEqual && !source.hasNext() && !other.hasNext();
+	}
+
+	/**
+	 * Returns the smallest data in the list.
+	 *
+	 * @return A copy of the least data, null if the list is empty.
+	 */
+	@Override
+	public CountedData<T> first() {
+		return this.data(this.above(null, true));
+	}
+
+	/**
+	 * Returns the largest data not greater than key. Does not count comparisons.
+	 *
+	 * @param key The key to search from.
+	 * @return A copy of the greatest data less than or equal to key, null if there
+	 *         is none.
+	 */
+	@Override
+	public CountedData<T> floor(final CountedData<T> key) {
+		return this.data(this.below(key.getData(), true));
+	}
+
+	/**
+	 * Get number of comparisons executed by the retrieve method.
+	 *
+	 * @return comparisons
+	 */
+	@Override
+	public long getComparisonsLong() {
+		return this.lookups.sum();
+	}
+
+	/**
+	 * Returns the number of levels in use, the counterpart of the height of a
+	 * tree: a search compares at most a few nodes on each level.
+	 *
+	 * @return The number of levels that hold a node, 0 if the list is empty.
+	 */
+	@Override
+	public int getHeight() {
+		int height = LEVELS;
+
+		while (height > 0 && target(link(this.head, height - 1)) == this.tail) {
+			height--;
+		}
+		return height;
+	}
+
+	/**
+	 * Returns the number of data in the list. While other threads change the list
+	 * the number may lag behind them.
+	 *
+	 * @return The number of data.
+	 */
+	@Override
+	public int getSize() {
+		return (int) this.nodes.sum();
+	}
+
+	/**
+	 * Returns the smallest data greater than key. Does not count comparisons.
+	 *
+	 * @param key The key to search from.
+	 * @return A copy of the least data strictly greater than key, null if there is
+	 *         none.
+	 */
+	@Override
+	public CountedData<T> higher(final CountedData<T> key) {
+		return this.data(this.above(key.getData(), false));
+	}
+
+	/**
+	 * Returns a list of copies of the data, in order from smallest to largest.
+	 *
+	 * @return The contents of this list.
+	 */
+	@Override
+	public ArrayList<CountedData<T>> inOrder() {
+		final ArrayList<CountedData<T>> list = new ArrayList<>();
+
+		for (final CountedData<T> data : this) {
+			list.add(data);
+		}
+		return list;
+	}
+
+	/**
+	 * Inserts data into this list, counting the insertion.
+	 *
+	 * @param data Data to store.
+	 */
+	@Override
+	public void insert(final CountedData<T> data) {
+		this.add(data, this.insertIncrement());
+		return;
+	}
+
+	/**
+	 * Inserts each of data in turn with {@code insert}.
+	 *
+	 * @param data Data to store.
+	 */
+	@Override
+	public void insertAll(final Collection<CountedData<T>> data) {
+
+		for (final CountedData<T> item : data) {
+			this.insert(item);
+		}
+		return;
+	}
+
+	/**
+	 * Inserts each of data in turn with {@code insert}.
+	 *
+	 * @param data Data to store.
+	 */
+	@Override
+	public void insertBatch(final CountedData<T>[] data) {
+
+		for (final CountedData<T> item : data) {
+			this.insert(item);
+		}
+		return;
+	}
+
+	/**
+	 * Determines if this list is empty.
+	 *
+	 * @return true if the list is empty, false otherwise.
+	 */
+	@Override
+	public boolean isEmpty() {
+		return this.above(null, true) == this.tail;
+	}
+
+	/**
+	 * Determines if the list is valid: at every level the unmarked nodes are in
+	 * strictly increasing order of key.
+	 *
+	 * @return true if this list is valid, false otherwise.
+	 */
+	@Override
+	public boolean isValid() {
+		boolean valid = true;
+
+		for (int level = 0; valid && level < LEVELS; level++) {
+			Node<T> previous = null;
+			Node<T> curr = target(link(this.head, level));
+
+			while (valid && curr != this.tail) {
+				final Object next = link(curr, level);
+
+				if (!(next instanceof Marked)) {
+					valid = previous == null || previous.key.compareTo(curr.key) < 0;
+					previous = curr;
+				}
+				curr = target(next);
+			}
+		}
+		return valid;
+	}
+
+	/**
+	 * Returns a weakly consistent iterator over copies of the data, in order from
+	 * smallest to largest.
+	 *
+	 * @return An in-order iterator.
+	 */
+	@Override
+	public Iterator<CountedData<T>> iterator() {
+		return new Cursor(target(link(this.head, 0)), null);
+	}
+
+	/**
+	 * Returns the largest data in the list.
+	 *
+	 * @return A copy of the greatest data, null if the list is empty.
+	 */
+	@Override
+	public CountedData<T> last() {
+		return this.data(this.below(null, true));
+	}
+
+	/**
+	 * Returns a list of copies of the data in level order: by the top level of
+	 * their nodes, highest first, and in order within a level.
+	 *
+	 * @return The contents of this list in level order.
+	 */
+	@Override
+	public ArrayList<CountedData<T>> levelOrder() {
+		final ArrayList<CountedData<T>> list = new ArrayList<>();
+		final Iterator<CountedData<T>> iterator = this.levelOrderIterator();
+
+		while (iterator.hasNext()) {
+			list.add(iterator.next());
+		}
+		return list;
+	}
+
+	/**
+	 * Returns a weakly consistent iterator over copies of the data in level order:
+	 * by the top level of their nodes, highest first, and in order within a level.
+	 * A node whose top level changes cannot be met twice, as the top level of a
+	 * node is fixed.
+	 *
+	 * @return A level order iterator.
+	 */
+	@Override
+	public Iterator<CountedData<T>> levelOrderIterator() {
+		return new Levels();
+	}
+
+	/**
+	 * Returns the largest data less than key. Does not count comparisons.
+	 *
+	 * @param key The key to search from.
+	 * @return A copy of the greatest data strictly less than key, null if there is
+	 *         none.
+	 */
+	@Override
+	public CountedData<T> lower(final CountedData<T> key) {
+		return this.data(this.below(key.getData(), false));
+	}
+
+	/**
+	 * Returns a list of copies of the data in preorder, which for a skip list is
+	 * the order of the keys: each node comes before the nodes it skips over.
+	 *
+	 * @return The contents of this list in preorder.
+	 */
+	@Override
+	public ArrayList<CountedData<T>> preOrder() {
+		return this.inOrder();
+	}
+
+	/**
+	 * Returns a weakly consistent iterator over copies of the data in preorder,
+	 * which for a skip list is the order of the keys.
+	 *
+	 * @return A preorder iterator.
+	 */
+	@Override
+	public Iterator<CountedData<T>> preOrderIterator() {
+		return this.iterator();
+	}
+
+	/**
+	 * Returns a weakly consistent iterator over copies of the data from lo to hi
+	 * inclusive, in order. The iterator finds lo in O(log n) and then visits only
+	 * the nodes in range.
+	 *
+	 * @param lo The smallest key to return.
+	 * @param hi The largest key to return.
+	 * @return An iterator over the data in the range.
+	 */
+	@Override
+	public Iterator<CountedData<T>> range(final CountedData<T> lo, final CountedData<T> hi) {
+		return new Cursor(this.above(lo.getData(), true), hi.getData());
+	}
+
+	/**
+	 * Returns the number of data less than key, by visiting them. A skip list
+	 * keeps no subtree sizes, so this takes O(n) time.
+	 *
+	 * @param key The key to rank.
+	 * @return The number of data less than key.
+	 */
+	@Override
+	public int rank(final CountedData<T> key) {
+		int rank = 0;
+		final Iterator<CountedData<T>> iterator = this.iterator();
+
+		while (iterator.hasNext() && iterator.next().compareTo(key) < 0) {
+			rank++;
+		}
+		return rank;
+	}
+
+	/**
+	 * Removes data from the list. Decrements the count of data, and if the count
+	 * is not greater than 1, removes its node.
+	 *
+	 * @param data Data to decrement or remove.
+	 */
+	@Override
+	public void remove(final CountedData<T> data) {
+		final TreeMetrics metrics = this.getMetrics();
+		final long start = metrics != null ? System.nanoTime() : 0;
+		this.removeAux(data.getData());
+		record(metrics, TreeMetrics.Operation.REMOVE, data.getData(), start);
+		return;
+	}
+
+	/**
+	 * Removes each of data in turn with {@code remove}.
+	 *
+	 * @param data Data to decrement or remove.
+	 */
+	@Override
+	public void removeBatch(final CountedData<T>[] data) {
+
+		for (final CountedData<T> item : data) {
+			this.remove(item);
+		}
+		return;
+	}
+
+	/**
+	 * Resets the comparison count to 0.
+	 */
+	@Override
+	public void resetComparisons() {
+		this.lookups.reset();
+		return;
+	}
+
+	/**
+	 * Retrieves a copy of the data matching key, without locking or changing the
+	 * list. Marked nodes are stepped over rather than unlinked.
+	 *
+	 * @param key The key to look for.
+	 * @return A copy of the data that matches key, with its count, null if key is
+	 *         not in the list.
+	 */
+	@Override
+	public CountedData<T> retrieve(final CountedData<T> key) {
+		final TreeMetrics metrics = this.getMetrics();
+		final long start = metrics != null ? System.nanoTime() : 0;
+		Node<T> pred = this.head;
+		Node<T> found = null;
+		int visited = 0;
+
+		for (int level = LEVELS - 1; level >= 0 && found == null; level--) {
+			Node<T> curr = target(link(pred, level));
+
+			while (curr != this.tail) {
+				final Object next = link(curr, level);
+
+				if (next instanceof Marked) {
+					curr = target(next);
+				} else {
+					visited++;
+					final int result = curr.key.compareTo(key.getData());
+
+					if (result < 0) {
+						pred = curr;
+						curr = target(next);
+					} else {
+						if (result == 0) {
+							found = curr;
+						}
+						break;
+					}
+				}
+			}
+		}
+		this.lookups.add(visited);
+
+		if (metrics != null) {
+			metrics.record(TreeMetrics.Operation.RETRIEVE, visited, visited, 0, System.nanoTime() - start);
+		}
+		return found != null ? copy(found) : null;
+	}
+
+	/**
+	 * Retrieves each key in turn with {@code retrieve}.
+	 *
+	 * @param keys The keys to look for.
+	 * @return Copies of the data matching each key, in the order of keys, null for
+	 *         keys that are not in the list.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public CountedData<T>[] retrieveBatch(final CountedData<T>[] keys) {
+		final CountedData<T>[] results = (CountedData<T>[]) new CountedData<?>[keys.length];
+
+		for (int i = 0; i < keys.length; i++) {
+			results[i] = this.retrieve(keys[i]);
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the data at index in order, by visiting the data before it. A skip
+	 * list keeps no subtree sizes, so this takes O(n) time.
+	 *
+	 * @param index The position of the data in {@code inOrder()}.
+	 * @return A copy of the data at index, null if index is negative or not less
+	 *         than the size of the list.
+	 */
+	@Override
+	public CountedData<T> select(final int index) {
+		final Iterator<CountedData<T>> iterator = this.iterator();
+		CountedData<T> data = null;
+		int i = 0;
+
+		while (index >= 0 && data == null && iterator.hasNext()) {
+			final CountedData<T> next = iterator.next();
+
+			if (i++ == index) {
+				data = next;
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Returns a sequential stream over copies of the data, in order from smallest
+	 * to largest. The stream is weakly consistent, as the iterator is.
+	 *
+	 * @return A stream over the data in this list.
+	 */
+	@Override
+	public Stream<CountedData<T>> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this.iterator(),
+				Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+	}
+
+	/**
+	 * Returns the sum of the counts of the data from lo to hi inclusive, by
+	 * visiting them.
+	 *
+	 * @param lo The smallest key to count.
+	 * @param hi The largest key to count.
+	 * @return The sum of the counts in the range, 0 if lo is greater than hi.
+	 */
+	@Override
+	public long sumCountsRange(final CountedData<T> lo, final CountedData<T> hi) {
+		long sum = 0;
+		final Iterator<CountedData<T>> range = this.range(lo, hi);
+
+		while (range.hasNext()) {
+			sum += range.next().getCount();
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the k data with the greatest counts, by scanning the list with a
+	 * bounded heap in O(n log k) time.
+	 *
+	 * @param k The number of data wanted.
+	 * @return Copies of the k data with the greatest counts, or all of the data if
+	 *         there are fewer than k, in order of decreasing count.
+	 */
+	public ArrayList<CountedData<T>> topK(final int k) {
+		return CountIndex.scan(this.iterator(), k);
+	}
+}
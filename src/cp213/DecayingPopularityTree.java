@@ -0,0 +1,301 @@
+package cp213;
+
+import java.util.ArrayList;
+
+/**
+ * Implements a Popularity Tree whose counts decay exponentially, so that data
+ * that were popular once but are no longer retrieved drift away from the root
+ * and make room for data that are popular now. Extends PopularityTree.
+ *
+ * Time is measured in retrievals: every halfLife retrievals begin a new epoch,
+ * and every count is halved once per epoch. Halving every count at the start of
+ * each epoch would take O(n) time, so it is done lazily. Each count is stored
+ * with the epoch in which it was last brought up to date, and the halvings it
+ * has missed since are applied the next time retrieve compares it. A retrieval
+ * therefore only pays for the nodes on its own path. Halving keeps counts in
+ * order, so decay never breaks the count ordering of the tree: it only lets
+ * data retrieved now rise above data retrieved long ago.
+ *
+ * Counts seen through traversals, {@code sumCountsRange} and {@code topK} are
+ * those of each data's last update, and may not yet include their latest
+ * halvings. {@code settle} brings every count up to date. Data are stored as
+ * copies, so inserting data does not change it.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class DecayingPopularityTree<T extends Comparable<T>> extends PopularityTree<T> {
+
+	/**
+	 * CountedData stamped with the epoch of its count.
+	 */
+	private static final class Stamped<T extends Comparable<T>> extends CountedData<T> {
+
+		private int epoch; // epoch in which the count was last brought up to date
+
+		/**
+		 * Constructor.
+		 *
+		 * @param data  The data to be counted.
+		 * @param count The data count.
+		 * @param epoch The current epoch.
+		 */
+		Stamped(final T data, final int count, final int epoch) {
+			super(data, count);
+			this.epoch = epoch;
+		}
+	}
+
+	/**
+	 * The default number of retrievals in which counts halve.
+	 */
+	public static final int DEFAULT_HALF_LIFE = 1 << 16;
+
+	// Attributes.
+	/**
+	 * Retrievals since the start of the current epoch.
+	 */
+	private long clock = 0;
+	/**
+	 * The number of epochs since the tree was created.
+	 */
+	private int epoch = 0;
+	/**
+	 * The number of retrievals in an epoch.
+	 */
+	private final int halfLife;
+
+	/**
+	 * Creates a tree whose counts halve every DEFAULT_HALF_LIFE retrievals.
+	 */
+	public DecayingPopularityTree() {
+		this(DEFAULT_HALF_LIFE);
+	}
+
+	/**
+	 * Creates a tree whose counts halve every halfLife retrievals.
+	 *
+	 * @param halfLife The number of retrievals in which counts halve.
+	 */
+	public DecayingPopularityTree(final int halfLife) {
+
+		if (halfLife < 1) {
+			throw new IllegalArgumentException("halfLife must be positive: " + halfLife);
+		}
+		this.halfLife = halfLife;
+	}
+
+	/**
+	 * Applies to the count of node the halvings it has missed since it was last
+	 * brought up to date.
+	 *
+	 * @param node The node to bring up to date.
+	 * @return true if the count of node changed, false otherwise.
+	 */
+	private boolean decay(final TreeNode<T> node) {
+		final Stamped<T> data = (Stamped<T>) node.getData();
+		final int elapsed = this.epoch - data.epoch;
+		boolean changed = false;
+
+		if (elapsed > 0) {
+			data.epoch = this.epoch;
+
+			if (data.getCount() > 0) {
+				data.setCount(elapsed < Integer.SIZE ? data.getCount() >>> elapsed : 0);
+				this.counted(data, true);
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Advances the clock by a number of retrievals, starting new epochs as they
+	 * fill.
+	 *
+	 * @param retrievals The number of retrievals.
+	 */
+	private void tick(final int retrievals) {
+		this.clock += retrievals;
+
+		if (this.clock >= this.halfLife) {
+			this.epoch += (int) (this.clock / this.halfLife);
+			this.clock %= this.halfLife;
+		}
+		return;
+	}
+
+	/**
+	 * Stores a copy of data stamped with the current epoch, then inserts it as a
+	 * Popularity Tree does.
+	 *
+	 * @param node      The root of the subtree (TreeNode).
+	 * @param data      Data to be inserted into the tree.
+	 * @param increment The amount to add to the data count.
+	 * @return The new root of the subtree.
+	 */
+	@Override
+	protected TreeNode<T> insertAux(final TreeNode<T> node, final CountedData<T> data, final int increment) {
+		return super.insertAux(node, new Stamped<T>(data.getData(), data.getCount(), this.epoch), increment);
+	}
+
+	/**
+	 * Brings the counts of node and of the roots of left and right up to date,
+	 * then joins them as a Popularity Tree does.
+	 *
+	 * @param left  The left subtree, may be null.
+	 * @param node  The node to put between left and right.
+	 * @param right The right subtree, may be null.
+	 * @return The root of the joined subtree.
+	 */
+	@Override
+	protected TreeNode<T> join(final TreeNode<T> left, final TreeNode<T> node, final TreeNode<T> right) {
+		this.touch(left);
+		this.touch(node);
+		this.touch(right);
+		return super.join(left, node, right);
+	}
+
+	/**
+	 * Returns data stamped with the current epoch, so that a loaded count decays
+	 * from the time of the load.
+	 *
+	 * @param key   The key.
+	 * @param count The count of key.
+	 * @return The data.
+	 */
+	@Override
+	protected CountedData<T> newData(final T key, final int count) {
+		return new Stamped<T>(key, count, this.epoch);
+	}
+
+	/**
+	 * Returns the count of data as it stands in the current epoch, without
+	 * bringing data up to date: a save does not change the tree.
+	 *
+	 * @param data The data of a node.
+	 * @return The decayed count.
+	 */
+	@Override
+	protected int savedCount(final CountedData<T> data) {
+		final int elapsed = this.epoch - ((Stamped<T>) data).epoch;
+		return elapsed < Integer.SIZE ? data.getCount() >>> elapsed : 0;
+	}
+
+	/**
+	 * Brings the count of node up to date before retrieve compares it.
+	 *
+	 * @param node The node, may be null.
+	 * @return true if the count of node changed, false otherwise.
+	 */
+	@Override
+	protected boolean touch(final TreeNode<T> node) {
+		final boolean changed = node != null && this.decay(node);
+
+		if (changed) {
+			node.updateHeight();
+		}
+		return changed;
+	}
+
+	/**
+	 * Adds count to the count of data as if data were retrieved count times,
+	 * inserting data first if it is not in the tree. The clock advances by count
+	 * retrievals.
+	 *
+	 * @param data  Data to store.
+	 * @param count The amount to add to the data count, not negative.
+	 */
+	@Override
+	public void add(final CountedData<T> data, final int count) {
+		this.tick(count);
+		super.add(data, count);
+		return;
+	}
+
+	/**
+	 * Inserts each of data in turn with {@code insert}, so that each is stamped.
+	 *
+	 * @param data Data to store.
+	 */
+	@Override
+	public void insertBatch(final CountedData<T>[] data) {
+
+		for (final CountedData<T> item : data) {
+			this.insert(item);
+		}
+		return;
+	}
+
+	/**
+	 * Brings every count up to date before checking the count ordering, which is
+	 * checked against the stored counts.
+	 *
+	 * @return true if this tree is valid, false otherwise.
+	 */
+	@Override
+	public boolean isValid() {
+		this.settle();
+		return super.isValid();
+	}
+
+	/**
+	 * Retrieves the data matching key, adding one retrieval to its count as a
+	 * Popularity Tree does. Each retrieval advances the clock by one.
+	 *
+	 * @param key The key to search for.
+	 * @return data The complete CountedData that matches key, null otherwise.
+	 */
+	@Override
+	public CountedData<T> retrieve(final CountedData<T> key) {
+		this.tick(1);
+		return super.retrieve(key);
+	}
+
+	/**
+	 * Retrieves each key in turn with {@code retrieve}, so that each retrieval
+	 * advances the clock.
+	 *
+	 * @param keys The keys to look for.
+	 * @return The data matching each key, in the order of keys, null for keys that
+	 *         are not in the tree.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public CountedData<T>[] retrieveBatch(final CountedData<T>[] keys) {
+		final CountedData<T>[] results = (CountedData<T>[]) new CountedData<?>[keys.length];
+
+		for (int i = 0; i < keys.length; i++) {
+			results[i] = this.retrieve(keys[i]);
+		}
+		return results;
+	}
+
+	/**
+	 * Brings every count in the tree up to date, along with the subtree count
+	 * sums. Takes O(n) time. Does not change the shape of the tree.
+	 */
+	public void settle() {
+		// Children follow their parents in level order, so update in reverse.
+		final ArrayList<TreeNode<T>> nodes = new ArrayList<>(this.size);
+
+		if (this.root != null) {
+			nodes.add(this.root);
+		}
+		for (int i = 0; i < nodes.size(); i++) {
+			final TreeNode<T> node = nodes.get(i);
+
+			if (node.getLeft() != null) {
+				nodes.add(node.getLeft());
+			}
+			if (node.getRight() != null) {
+				nodes.add(node.getRight());
+			}
+		}
+		for (int i = nodes.size() - 1; i >= 0; i--) {
+			this.decay(nodes.get(i));
+			nodes.get(i).updateHeight();
+		}
+		return;
+	}
+}
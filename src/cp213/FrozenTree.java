@@ -0,0 +1,198 @@
+package cp213;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable snapshot of a tree, searched without nodes or pointers. Keys and
+ * counts are stored in two parallel arrays in Eytzinger (breadth-first) order:
+ * the root is at index 1 and the children of index k are at 2k and 2k + 1. A
+ * search is a fixed number of steps, each computing the next index from the
+ * last comparison rather than branching on it, so its only memory accesses are
+ * to the array. The first levels share a few cache lines, and the sixteen
+ * descendants four levels below index k are adjacent, from 16k to 16k + 15, so
+ * descents are friendly to the hardware prefetcher.
+ *
+ * Nothing in a FrozenTree changes after it is built, so it can be shared
+ * between threads without synchronization. It does not count comparisons.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public final class FrozenTree<T extends Comparable<T>> implements Iterable<CountedData<T>> {
+
+	// Attributes.
+	/**
+	 * The data counts, in the order of keys.
+	 */
+	private final int[] counts;
+	/**
+	 * The keys in Eytzinger order, starting at index 1. Index 0 is unused.
+	 */
+	private final T[] keys;
+	/**
+	 * The number of keys.
+	 */
+	private final int size;
+
+	/**
+	 * Builds a snapshot of sorted data. The keys and counts are copied, so later
+	 * changes to the data do not change the snapshot.
+	 *
+	 * @param sorted Data in strictly increasing order.
+	 */
+	@SuppressWarnings("unchecked")
+	FrozenTree(final List<CountedData<T>> sorted) {
+		this.size = sorted.size();
+		this.keys = (T[]) new Comparable<?>[this.size + 1];
+		this.counts = new int[this.size + 1];
+		this.fill(sorted, 1, 0);
+	}
+
+	/**
+	 * Copies sorted data into the subtree rooted at index k, in order.
+	 *
+	 * @param sorted The sorted data.
+	 * @param k      The index of the subtree root.
+	 * @param next   The index in sorted of the first data of the subtree.
+	 * @return The index in sorted of the first data after the subtree.
+	 */
+	private int fill(final List<CountedData<T>> sorted, final int k, int next) {
+
+		if (k <= this.size) {
+			next = this.fill(sorted, 2 * k, next);
+			final CountedData<T> data = sorted.get(next++);
+			this.keys[k] = data.getData();
+			this.counts[k] = data.getCount();
+			next = this.fill(sorted, 2 * k + 1, next);
+		}
+		return next;
+	}
+
+	/**
+	 * Finds the index of the smallest key not less than key. The descent always
+	 * runs to the bottom of the tree: each step goes to the right child when the
+	 * key at k is less than key. The last left step is then undone by removing
+	 * the trailing 1 bits of k, and the 0 bit below them.
+	 *
+	 * @param key The key to search for.
+	 * @return The index of the smallest key not less than key, 0 if there is
+	 *         none.
+	 */
+	private int lowerBound(final T key) {
+		int k = 1;
+
+		while (k <= this.size) {
+			k = 2 * k + (this.keys[k].compareTo(key) >>> 31);
+		}
+		return k >>> Integer.numberOfTrailingZeros(~k) + 1;
+	}
+
+	/**
+	 * Determines if this tree contains key.
+	 *
+	 * @param key The key to search for.
+	 * @return true if this contains key, false otherwise.
+	 */
+	public boolean contains(final CountedData<T> key) {
+		final int k = this.lowerBound(key.getData());
+		return k != 0 && this.keys[k].compareTo(key.getData()) == 0;
+	}
+
+	/**
+	 * Returns the count of the data matching key.
+	 *
+	 * @param key The key to search for.
+	 * @return The count of the matching data, 0 if key is not in the tree.
+	 */
+	public int getCount(final CountedData<T> key) {
+		final int k = this.lowerBound(key.getData());
+		return k != 0 && this.keys[k].compareTo(key.getData()) == 0 ? this.counts[k] : 0;
+	}
+
+	/**
+	 * Returns the height of the tree. Every level but the last is full.
+	 *
+	 * @return The height of the tree, 0 if it is empty.
+	 */
+	public int getHeight() {
+		return 32 - Integer.numberOfLeadingZeros(this.size);
+	}
+
+	/**
+	 * Returns the number of data in the tree.
+	 *
+	 * @return The number of data in this tree.
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Determines if this tree is empty.
+	 *
+	 * @return true if this tree is empty, false otherwise.
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Returns an iterator over copies of the data, in order from smallest to
+	 * largest. Walks the implicit tree by index arithmetic, without a stack.
+	 *
+	 * @return An in-order iterator over this tree.
+	 */
+	@Override
+	public Iterator<CountedData<T>> iterator() {
+		return new Iterator<CountedData<T>>() {
+
+			private int k = FrozenTree.this.size > 0 ? Integer.highestOneBit(FrozenTree.this.size) : 0;
+
+			@Override
+			public boolean hasNext() {
+				return this.k != 0;
+			}
+
+			@Override
+			public CountedData<T> next() {
+
+				if (this.k == 0) {
+					throw new NoSuchElementException();
+				}
+				final CountedData<T> data = new CountedData<T>(FrozenTree.this.keys[this.k],
+						FrozenTree.this.counts[this.k]);
+
+				if (2 * this.k + 1 <= FrozenTree.this.size) {
+					// Go to the leftmost index of the right subtree.
+					this.k = 2 * this.k + 1;
+
+					while (2 * this.k <= FrozenTree.this.size) {
+						this.k *= 2;
+					}
+				} else {
+					// Go up past every right child, then up once more.
+					this.k >>>= Integer.numberOfTrailingZeros(~this.k) + 1;
+				}
+				return data;
+			}
+		};
+	}
+
+	/**
+	 * Retrieves a copy of the data matching key.
+	 *
+	 * @param key The key to look for.
+	 * @return A copy of the data that matches key, null otherwise.
+	 */
+	public CountedData<T> retrieve(final CountedData<T> key) {
+		final int k = this.lowerBound(key.getData());
+		CountedData<T> data = null;
+
+		if (k != 0 && this.keys[k].compareTo(key.getData()) == 0) {
+			data = new CountedData<T>(this.keys[k], this.counts[k]);
+		}
+		return data;
+	}
+}
@@ -0,0 +1,150 @@
+package cp213;
+
+/**
+ * Counts a stream of keys in a CountMinSketch, and keeps only the keys that
+ * occur often - the heavy hitters - in a tree. A key is counted in the sketch
+ * until its estimated count reaches the threshold. It is then promoted: it is
+ * added to the tree with its estimated count, and from then on its count is
+ * kept exactly in the tree. The memory used is that of the sketch plus one node
+ * per heavy hitter, however many distinct keys the stream holds.
+ *
+ * Let N be the total of the counts added to the sketch. Estimates are never
+ * less than true counts, so every key whose true count reaches the threshold
+ * is promoted. With probability at least 1 - delta, a promoted key had a true
+ * count of at least threshold - epsilon * N when it was promoted, and its count
+ * in the tree exceeds its true count by at most epsilon * N. Choose epsilon
+ * well below threshold / N to keep light keys out of the tree.
+ *
+ * Keys are hashed with hashCode, so keys that are equal must have equal hash
+ * codes.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class HeavyHitterTree<T extends Comparable<T>> {
+
+	// Attributes.
+	/**
+	 * Counts the keys that have not been promoted.
+	 */
+	private final CountMinSketch<T> sketch;
+	/**
+	 * The estimated count at which a key is promoted.
+	 */
+	private final int threshold;
+	/**
+	 * Holds the promoted keys.
+	 */
+	private final BST<T> tree;
+
+	/**
+	 * Creates a front end to tree.
+	 *
+	 * @param tree      The tree that holds the heavy hitters, normally empty.
+	 * @param epsilon   The error bound of the sketch as a fraction of the total
+	 *                  count, 0 &lt; epsilon &lt; 1.
+	 * @param delta     The probability of exceeding the error bound, 0 &lt; delta
+	 *                  &lt; 1.
+	 * @param threshold The estimated count at which a key is promoted into tree.
+	 * @throws IllegalArgumentException if threshold is not positive, or epsilon
+	 *                                  or delta is not between 0 and 1.
+	 */
+	public HeavyHitterTree(final BST<T> tree, final double epsilon, final double delta, final int threshold) {
+
+		if (threshold < 1) {
+			throw new IllegalArgumentException("threshold must be positive: " + threshold);
+		}
+		this.sketch = new CountMinSketch<T>(epsilon, delta);
+		this.threshold = threshold;
+		this.tree = tree;
+	}
+
+	/**
+	 * Adds count occurrences of data. A key that is not yet promoted is counted in
+	 * the sketch, and promoted if its estimate reaches the threshold. A promoted
+	 * key is counted in the tree with {@code add}. Since estimates never fall, a
+	 * key whose estimate is below the threshold cannot be in the tree, so keys
+	 * that are not heavy hitters never touch the tree.
+	 *
+	 * @param data  The key to count.
+	 * @param count The number of occurrences, not negative.
+	 */
+	public void add(final CountedData<T> data, final int count) {
+		final CountedData<T> key = new CountedData<T>(data.getData());
+		int estimate = this.sketch.estimate(data.getData());
+
+		if (estimate < this.threshold) {
+			estimate = this.sketch.add(data.getData(), count);
+
+			if (estimate >= this.threshold) {
+				this.tree.add(key, estimate);
+			}
+		} else {
+			final int size = this.tree.getSize();
+			this.tree.add(key, count);
+
+			if (this.tree.getSize() > size) {
+				// Other keys raised its estimate past the threshold: promote it now.
+				this.tree.add(key, estimate);
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Returns the estimated count of key: its count in the tree if it has been
+	 * promoted, its estimate in the sketch otherwise. Does not change any count.
+	 *
+	 * @param key The key.
+	 * @return The estimated count of key, never less than its true count.
+	 */
+	public int estimate(final CountedData<T> key) {
+		int estimate = this.sketch.estimate(key.getData());
+
+		if (estimate >= this.threshold) {
+			final CountedData<T> found = this.tree.floor(key);
+
+			if (found != null && found.compareTo(key) == 0) {
+				estimate = found.getCount();
+			}
+		}
+		return estimate;
+	}
+
+	/**
+	 * Returns the sketch that counts the keys that are not promoted.
+	 *
+	 * @return The sketch.
+	 */
+	public CountMinSketch<T> getSketch() {
+		return this.sketch;
+	}
+
+	/**
+	 * Returns the estimated count at which a key is promoted.
+	 *
+	 * @return The threshold.
+	 */
+	public int getThreshold() {
+		return this.threshold;
+	}
+
+	/**
+	 * Returns the tree of promoted keys.
+	 *
+	 * @return The tree.
+	 */
+	public BST<T> getTree() {
+		return this.tree;
+	}
+
+	/**
+	 * Adds one occurrence of data.
+	 *
+	 * @param data The key to count.
+	 */
+	public void insert(final CountedData<T> data) {
+		this.add(data, 1);
+		return;
+	}
+}
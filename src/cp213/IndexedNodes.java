@@ -0,0 +1,130 @@
+package cp213;
+
+/**
+ * The child links and heights of a tree whose nodes are numbers rather than
+ * objects, as in NodePool and MappedAVL, with the rotations and AVL rebalancing
+ * of such trees. Node 0 is the empty node and has height 0. The rebalancing is
+ * written once here over the accessors, so the pooled and mapped trees share
+ * one copy of it; PrimitiveAVL holds the same steps over node objects.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+interface IndexedNodes {
+
+	/**
+	 * Returns the balance of node: left height minus right height.
+	 *
+	 * @param nodes The nodes of the tree.
+	 * @param node  A node.
+	 * @return The balance of node.
+	 */
+	static int balance(final IndexedNodes nodes, final int node) {
+		return nodes.height(nodes.left(node)) - nodes.height(nodes.right(node));
+	}
+
+	/**
+	 * Rebalances node if its children are not balanced. The height of node must
+	 * be up to date.
+	 *
+	 * @param nodes The nodes of the tree.
+	 * @param node  The node to rebalance.
+	 * @return The replacement for node.
+	 */
+	static int rebalance(final IndexedNodes nodes, final int node) {
+		final int balance = balance(nodes, node);
+		int replacement = node;
+
+		if (balance > 1) {
+			if (balance(nodes, nodes.left(node)) < 0) {
+				nodes.setLeft(node, rotateLeft(nodes, nodes.left(node)));
+			}
+			replacement = rotateRight(nodes, node);
+		} else if (balance < -1) {
+			if (balance(nodes, nodes.right(node)) > 0) {
+				nodes.setRight(node, rotateRight(nodes, nodes.right(node)));
+			}
+			replacement = rotateLeft(nodes, node);
+		}
+		return replacement;
+	}
+
+	/**
+	 * Performs a left rotation around node.
+	 *
+	 * @param nodes The nodes of the tree.
+	 * @param node  The subtree to rotate.
+	 * @return The new root of the subtree.
+	 */
+	static int rotateLeft(final IndexedNodes nodes, final int node) {
+		final int child = nodes.right(node);
+		nodes.setRight(node, nodes.left(child));
+		nodes.setLeft(child, node);
+		nodes.updateHeight(node);
+		nodes.updateHeight(child);
+		return child;
+	}
+
+	/**
+	 * Performs a right rotation around node.
+	 *
+	 * @param nodes The nodes of the tree.
+	 * @param node  The subtree to rotate.
+	 * @return The new root of the subtree.
+	 */
+	static int rotateRight(final IndexedNodes nodes, final int node) {
+		final int child = nodes.left(node);
+		nodes.setLeft(node, nodes.right(child));
+		nodes.setRight(child, node);
+		nodes.updateHeight(node);
+		nodes.updateHeight(child);
+		return child;
+	}
+
+	/**
+	 * Returns the height of node.
+	 *
+	 * @param node A node, may be the empty node.
+	 * @return The height of node, 0 for the empty node.
+	 */
+	int height(int node);
+
+	/**
+	 * Returns the left child of node.
+	 *
+	 * @param node A node.
+	 * @return The left child, the empty node if there is none.
+	 */
+	int left(int node);
+
+	/**
+	 * Returns the right child of node.
+	 *
+	 * @param node A node.
+	 * @return The right child, the empty node if there is none.
+	 */
+	int right(int node);
+
+	/**
+	 * Sets the left child of node.
+	 *
+	 * @param node  A node.
+	 * @param child The new left child, may be the empty node.
+	 */
+	void setLeft(int node, int child);
+
+	/**
+	 * Sets the right child of node.
+	 *
+	 * @param node  A node.
+	 * @param child The new right child, may be the empty node.
+	 */
+	void setRight(int node, int child);
+
+	/**
+	 * Updates the height of node from the heights of its children.
+	 *
+	 * @param node A node.
+	 */
+	void updateHeight(int node);
+}
@@ -0,0 +1,167 @@
+package cp213;
+
+/**
+ * Implements an AVL (Adelson-Velsky Landis) tree of int keys with int counts.
+ * Keys and counts are stored as primitives in the nodes, so no key is ever
+ * boxed and lookups allocate nothing. Counting follows BST: every insertion of
+ * a key increments its count, and removal decrements it, removing the key when
+ * the count falls to 0. Rebalancing is shared with LongAVL in PrimitiveAVL.
+ *
+ * A node is a 12 byte header plus key, count, height and two child references,
+ * 32 bytes with compressed references. The equivalent AVL&lt;Integer&gt; uses a
+ * TreeNode (40 bytes, as it keeps its subtree size and count sum), a CountedData
+ * (24 bytes) and an Integer (16 bytes): 80 bytes a key.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class IntAVL extends PrimitiveAVL<IntAVL.Node> {
+
+	/**
+	 * A tree node.
+	 */
+	static final class Node extends PrimitiveAVL.Node<Node> {
+		private final int key; // the node key
+
+		/**
+		 * Constructor.
+		 *
+		 * @param key The node key.
+		 */
+		Node(final int key) {
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Returns the node holding key.
+	 *
+	 * @param key The key to search for.
+	 * @return The matching node, null if key is not in the tree.
+	 */
+	private Node find(final int key) {
+		Node current = this.root;
+
+		while (current != null) {
+			this.comparisons++;
+
+			if (key == current.key) {
+				break;
+			}
+			current = key < current.key ? current.left : current.right;
+		}
+		return current;
+	}
+
+	/**
+	 * Determines if the key of lower is less than the key of upper.
+	 *
+	 * @param lower A node.
+	 * @param upper A node.
+	 * @return true if the key of lower is less than the key of upper, false
+	 *         otherwise.
+	 */
+	@Override
+	protected boolean ordered(final Node lower, final Node upper) {
+		return lower.key < upper.key;
+	}
+
+	/**
+	 * Determines if this tree contains key.
+	 *
+	 * @param key The key to search for.
+	 * @return true if this contains key, false otherwise.
+	 */
+	public boolean contains(final int key) {
+		return this.find(key) != null;
+	}
+
+	/**
+	 * Returns the count of key.
+	 *
+	 * @param key The key to look for.
+	 * @return The count of key, 0 if key is not in the tree.
+	 */
+	public int count(final int key) {
+		final Node node = this.find(key);
+		return node != null ? node.count : 0;
+	}
+
+	/**
+	 * Returns the keys of this tree in order from smallest to largest.
+	 *
+	 * @return The keys of this tree.
+	 */
+	public int[] inOrderKeys() {
+		final int[] keys = new int[this.size];
+		final Node[] stack = new Node[this.getHeight()];
+		int top = 0;
+		int i = 0;
+		Node current = this.root;
+
+		while (current != null || top > 0) {
+			while (current != null) {
+				stack[top++] = current;
+				current = current.left;
+			}
+			current = stack[--top];
+			keys[i++] = current.key;
+			current = current.right;
+		}
+		return keys;
+	}
+
+	/**
+	 * Increments the count of key, adding key if it is not in the tree. The nodes
+	 * visited on the way down are kept on the path and rebalanced on the way back
+	 * up, without recursion.
+	 *
+	 * @param key The key to insert.
+	 */
+	public void insert(final int key) {
+		Node current = this.root;
+		int depth = 0;
+
+		while (current != null && key != current.key) {
+			this.push(depth++, current);
+			current = key < current.key ? current.left : current.right;
+		}
+
+		if (current != null) {
+			// Key is already in the tree, increment its count. The shape is unchanged.
+			current.count++;
+			this.clearPath(depth);
+		} else {
+			this.add(depth, new Node(key));
+		}
+		return;
+	}
+
+	/**
+	 * Decrements the count of key, and if the count is 0, removes key. The nodes
+	 * visited on the way down are kept on the path and rebalanced on the way back
+	 * up, without recursion.
+	 *
+	 * @param key The key to decrement or remove.
+	 */
+	public void remove(final int key) {
+		Node current = this.root;
+		int depth = 0;
+
+		while (current != null && key != current.key) {
+			this.push(depth++, current);
+			current = key < current.key ? current.left : current.right;
+		}
+
+		if (current == null || current.count > 1) {
+			// Key is not in the tree, or only its count changes. The shape is unchanged.
+			if (current != null) {
+				current.count--;
+			}
+			this.clearPath(depth);
+		} else {
+			this.unlink(depth, current);
+		}
+		return;
+	}
+}
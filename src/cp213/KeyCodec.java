@@ -0,0 +1,192 @@
+package cp213;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts keys to and from a fixed number of bytes. Encodings preserve order:
+ * comparing two encoded keys byte by byte as unsigned values gives the same
+ * result as comparing the keys themselves, so encoded keys can be searched
+ * without decoding them.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public interface KeyCodec<T> {
+
+	/**
+	 * Encodes char keys in 2 bytes.
+	 */
+	KeyCodec<Character> CHAR = new KeyCodec<Character>() {
+
+		@Override
+		public Character decode(final byte[] source, final int offset) {
+			return (char) KeyCodec.getBits(source, offset, 2);
+		}
+
+		@Override
+		public void encode(final Character key, final byte[] target, final int offset) {
+			KeyCodec.putBits(key, target, offset, 2);
+			return;
+		}
+
+		@Override
+		public int width() {
+			return 2;
+		}
+	};
+
+	/**
+	 * Encodes int keys in 4 bytes.
+	 */
+	KeyCodec<Integer> INT = new KeyCodec<Integer>() {
+
+		@Override
+		public Integer decode(final byte[] source, final int offset) {
+			return (int) KeyCodec.getBits(source, offset, 4) ^ Integer.MIN_VALUE;
+		}
+
+		@Override
+		public void encode(final Integer key, final byte[] target, final int offset) {
+			KeyCodec.putBits(key ^ Integer.MIN_VALUE, target, offset, 4);
+			return;
+		}
+
+		@Override
+		public int width() {
+			return 4;
+		}
+	};
+
+	/**
+	 * Encodes long keys in 8 bytes.
+	 */
+	KeyCodec<Long> LONG = new KeyCodec<Long>() {
+
+		@Override
+		public Long decode(final byte[] source, final int offset) {
+			return KeyCodec.getBits(source, offset, 8) ^ Long.MIN_VALUE;
+		}
+
+		@Override
+		public void encode(final Long key, final byte[] target, final int offset) {
+			KeyCodec.putBits(key ^ Long.MIN_VALUE, target, offset, 8);
+			return;
+		}
+
+		@Override
+		public int width() {
+			return 8;
+		}
+	};
+
+	/**
+	 * Reads a big-endian value.
+	 *
+	 * @param source The bytes to read.
+	 * @param offset The position of the first byte.
+	 * @param width  The number of bytes to read, at most 8.
+	 * @return The value read.
+	 */
+	private static long getBits(final byte[] source, final int offset, final int width) {
+		long bits = 0;
+
+		for (int i = 0; i < width; i++) {
+			bits = bits << 8 | source[offset + i] & 0xFF;
+		}
+		return bits;
+	}
+
+	/**
+	 * Writes a big-endian value.
+	 *
+	 * @param bits   The value to write.
+	 * @param target The bytes to write to.
+	 * @param offset The position of the first byte.
+	 * @param width  The number of low order bytes of bits to write, at most 8.
+	 */
+	private static void putBits(long bits, final byte[] target, final int offset, final int width) {
+
+		for (int i = width - 1; i >= 0; i--) {
+			target[offset + i] = (byte) bits;
+			bits >>>= 8;
+		}
+		return;
+	}
+
+	/**
+	 * Returns a codec for strings of at most width bytes in UTF-8. Shorter strings
+	 * are padded with zero bytes, so strings must not end with the character
+	 * {@code '\0'}. UTF-8 byte order is code point order, which matches
+	 * {@code String.compareTo} except between characters above U+FFFF and
+	 * characters from U+E000 to U+FFFF.
+	 *
+	 * @param width The number of bytes in an encoded key.
+	 * @return A string codec.
+	 */
+	static KeyCodec<String> string(final int width) {
+
+		if (width < 1) {
+			throw new IllegalArgumentException("width must be positive: " + width);
+		}
+		return new KeyCodec<String>() {
+
+			@Override
+			public String decode(final byte[] source, final int offset) {
+				int length = width;
+
+				while (length > 0 && source[offset + length - 1] == 0) {
+					length--;
+				}
+				return new String(source, offset, length, StandardCharsets.UTF_8);
+			}
+
+			@Override
+			public void encode(final String key, final byte[] target, final int offset) {
+				final byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+
+				if (bytes.length > width) {
+					throw new IllegalArgumentException(
+							"key is " + bytes.length + " bytes in UTF-8, more than " + width + ": " + key);
+				}
+				System.arraycopy(bytes, 0, target, offset, bytes.length);
+
+				for (int i = bytes.length; i < width; i++) {
+					target[offset + i] = 0;
+				}
+				return;
+			}
+
+			@Override
+			public int width() {
+				return width;
+			}
+		};
+	}
+
+	/**
+	 * Reads a key.
+	 *
+	 * @param source The bytes to read.
+	 * @param offset The position of the first byte of the key.
+	 * @return The decoded key.
+	 */
+	T decode(byte[] source, int offset);
+
+	/**
+	 * Writes key as exactly {@code width()} bytes.
+	 *
+	 * @param key    The key to write.
+	 * @param target The bytes to write to.
+	 * @param offset The position of the first byte of the key.
+	 * @throws IllegalArgumentException if key cannot be encoded in
+	 *                                  {@code width()} bytes.
+	 */
+	void encode(T key, byte[] target, int offset);
+
+	/**
+	 * Returns the number of bytes in an encoded key.
+	 *
+	 * @return The encoded key width.
+	 */
+	int width();
+}
@@ -0,0 +1,776 @@
+package cp213;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Implements an AVL (Adelson-Velsky Landis) tree whose nodes live in a
+ * memory-mapped file. Counting follows BST: every insertion of a key increments
+ * its count, and removal decrements it, removing the key when the count falls
+ * to 0.
+ *
+ * The file is a header followed by fixed-width node records. A record holds
+ * the left and right child numbers, height and count of a node, followed by
+ * its key encoded by a KeyCodec. Node numbers start at 1; 0 is the empty node.
+ * Removed records are kept on a free list and reused. Opening an existing file
+ * only maps it and reads the header, and the operating system loads pages as
+ * searches reach them. The file doubles in size when it is full, up to 2 GB.
+ *
+ * Changes are written to the mapped pages as they are made and reach the disk
+ * when the operating system writes the pages back, or on {@code force} and
+ * {@code close}. A crash part way through an update may leave the file
+ * inconsistent. Not thread safe.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class MappedAVL<T extends Comparable<T>> implements AutoCloseable {
+
+	/**
+	 * The node records as IndexedNodes sees them, so that the rotations and
+	 * rebalancing are the ones PooledAVL uses.
+	 */
+	private final class Records implements IndexedNodes {
+
+		@Override
+		public int height(final int node) {
+			return MappedAVL.this.height(node);
+		}
+
+		@Override
+		public int left(final int node) {
+			return MappedAVL.this.left(node);
+		}
+
+		@Override
+		public int right(final int node) {
+			return MappedAVL.this.right(node);
+		}
+
+		@Override
+		public void setLeft(final int node, final int child) {
+			MappedAVL.this.setLeft(node, child);
+			return;
+		}
+
+		@Override
+		public void setRight(final int node, final int child) {
+			MappedAVL.this.setRight(node, child);
+			return;
+		}
+
+		@Override
+		public void updateHeight(final int node) {
+			MappedAVL.this.updateHeight(node);
+			return;
+		}
+	}
+
+	// Constants.
+	/**
+	 * Offset of the count in a record.
+	 */
+	private static final int COUNT = 12;
+	/**
+	 * Size of the file header.
+	 */
+	private static final int HEADER = 32;
+	/**
+	 * Offset of the height in a record.
+	 */
+	private static final int HEIGHT = 8;
+	/**
+	 * Offset of the key in a record.
+	 */
+	private static final int KEY = 16;
+	/**
+	 * Offset of the left child in a record.
+	 */
+	private static final int LEFT = 0;
+	/**
+	 * Identifies a MappedAVL file: "AVL1".
+	 */
+	private static final int MAGIC = 0x41564C31;
+	/**
+	 * Offset of the right child in a record.
+	 */
+	private static final int RIGHT = 4;
+	/**
+	 * The empty node.
+	 */
+	private static final int NIL = 0;
+
+	// Attributes.
+	/**
+	 * The mapped file.
+	 */
+	private MappedByteBuffer buffer;
+	/**
+	 * The open file.
+	 */
+	private final FileChannel channel;
+	/**
+	 * Encodes and decodes keys.
+	 */
+	private final KeyCodec<T> codec;
+	/**
+	 * Count of comparisons performed by retrieve.
+	 */
+	private long comparisons = 0;
+	/**
+	 * Head of the list of released records, linked through their left children.
+	 */
+	private int free;
+	/**
+	 * The encoded key of the current operation.
+	 */
+	private final byte[] key;
+	/**
+	 * Number of the first record that has never been allocated.
+	 */
+	private int next;
+	/**
+	 * Nodes from the root down to the node being inserted or removed.
+	 */
+	private int[] path = new int[48];
+	/**
+	 * Size of a node record.
+	 */
+	private final int recordSize;
+	/**
+	 * The node records, for the rebalancing shared through IndexedNodes.
+	 */
+	private final IndexedNodes records = new Records();
+	/**
+	 * Root node of the tree.
+	 */
+	private int root;
+	/**
+	 * Number of nodes in the tree.
+	 */
+	private int size;
+
+	/**
+	 * Constructor. Use {@code open}.
+	 *
+	 * @param channel The open file.
+	 * @param codec   The key codec.
+	 * @throws IOException If the file cannot be mapped or is not a MappedAVL file
+	 *                     for keys of the codec's width.
+	 */
+	private MappedAVL(final FileChannel channel, final KeyCodec<T> codec) throws IOException {
+		this.channel = channel;
+		this.codec = codec;
+		this.key = new byte[codec.width()];
+		this.recordSize = KEY + codec.width();
+		final long length = channel.size();
+
+		if (length == 0) {
+			this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + 16L * this.recordSize);
+			this.buffer.putInt(0, MAGIC);
+			this.buffer.putInt(4, codec.width());
+			this.root = NIL;
+			this.size = 0;
+			this.next = 1;
+			this.free = NIL;
+			this.writeHeader();
+		} else {
+			if (length < HEADER || length > Integer.MAX_VALUE) {
+				throw new IOException("Not a MappedAVL file: length " + length);
+			}
+			this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+
+			if (this.buffer.getInt(0) != MAGIC) {
+				throw new IOException("Not a MappedAVL file");
+			}
+			if (this.buffer.getInt(4) != codec.width()) {
+				throw new IOException(
+						"File keys are " + this.buffer.getInt(4) + " bytes, codec keys are " + codec.width());
+			}
+			this.root = this.buffer.getInt(8);
+			this.size = this.buffer.getInt(12);
+			this.next = this.buffer.getInt(16);
+			this.free = this.buffer.getInt(20);
+		}
+	}
+
+	/**
+	 * Opens the tree stored in file, creating an empty tree if the file does not
+	 * exist or is empty.
+	 *
+	 * @param <T>   The key type.
+	 * @param file  The tree file.
+	 * @param codec Encodes the tree keys. Must be the codec the file was written
+	 *              with.
+	 * @return The tree.
+	 * @throws IOException If the file cannot be opened or mapped, or is not a
+	 *                     MappedAVL file for keys of the codec's width.
+	 */
+	public static <T extends Comparable<T>> MappedAVL<T> open(final Path file, final KeyCodec<T> codec)
+			throws IOException {
+		final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE);
+
+		try {
+			return new MappedAVL<T>(channel, codec);
+		} catch (final IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns a new record holding the current key with a count of 1, reusing a
+	 * released record if there is one and growing the file if there is not.
+	 *
+	 * @return The new node.
+	 */
+	private int allocate() {
+		int node = this.free;
+
+		if (node != NIL) {
+			this.free = this.left(node);
+		} else {
+			if (this.offset(this.next + 1) > this.buffer.capacity()) {
+				this.grow();
+			}
+			node = this.next++;
+		}
+		this.setLeft(node, NIL);
+		this.setRight(node, NIL);
+		this.buffer.putInt(this.offset(node) + HEIGHT, 1);
+		this.setCount(node, 1);
+		this.buffer.put(this.offset(node) + KEY, this.key);
+		this.size++;
+		return node;
+	}
+
+	/**
+	 * Compares the key of node with the current key.
+	 *
+	 * @param node A node.
+	 * @return A negative value, zero, or a positive value as the node key is less
+	 *         than, equal to, or greater than the current key.
+	 */
+	private int compare(final int node) {
+		final int offset = this.offset(node) + KEY;
+		int result = 0;
+
+		for (int i = 0; result == 0 && i < this.key.length; i++) {
+			result = (this.buffer.get(offset + i) & 0xFF) - (this.key[i] & 0xFF);
+		}
+		return result;
+	}
+
+	/**
+	 * Compares the keys of two nodes.
+	 *
+	 * @param left  A node.
+	 * @param right Another node.
+	 * @return A negative value, zero, or a positive value as the key of left is
+	 *         less than, equal to, or greater than the key of right.
+	 */
+	private int compareNodes(final int left, final int right) {
+		final int leftOffset = this.offset(left) + KEY;
+		final int rightOffset = this.offset(right) + KEY;
+		int result = 0;
+
+		for (int i = 0; result == 0 && i < this.key.length; i++) {
+			result = (this.buffer.get(leftOffset + i) & 0xFF) - (this.buffer.get(rightOffset + i) & 0xFF);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the count of node.
+	 *
+	 * @param node A node.
+	 * @return The node count.
+	 */
+	private int count(final int node) {
+		return this.buffer.getInt(this.offset(node) + COUNT);
+	}
+
+	/**
+	 * Returns the data held by node.
+	 *
+	 * @param node A node.
+	 * @return A new CountedData holding the node key and count.
+	 */
+	private CountedData<T> data(final int node) {
+		final byte[] bytes = new byte[this.key.length];
+		this.buffer.get(this.offset(node) + KEY, bytes);
+		return new CountedData<T>(this.codec.decode(bytes, 0), this.count(node));
+	}
+
+	/**
+	 * Encodes key as the current key and returns the node holding it.
+	 *
+	 * @param key The key to search for.
+	 * @return The matching node, NIL if key is not in the tree.
+	 */
+	private int find(final T key) {
+		this.codec.encode(key, this.key, 0);
+		int current = this.root;
+		int result = 0;
+
+		while (current != NIL && (result = this.compare(current)) != 0) {
+			current = result > 0 ? this.left(current) : this.right(current);
+		}
+		return current;
+	}
+
+	/**
+	 * Doubles the size of the file and maps it again.
+	 */
+	private void grow() {
+		final long length = Math.min(2L * this.buffer.capacity(), Integer.MAX_VALUE);
+
+		if (length < this.offset(this.next + 1)) {
+			throw new IllegalStateException("MappedAVL file is full at " + this.size + " keys");
+		}
+		try {
+			this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return;
+	}
+
+	/**
+	 * Returns the height of node.
+	 *
+	 * @param node A node, may be NIL.
+	 * @return The height of node, 0 for NIL.
+	 */
+	private int height(final int node) {
+		return node == NIL ? 0 : this.buffer.getInt(this.offset(node) + HEIGHT);
+	}
+
+	/**
+	 * Auxiliary method for isValid.
+	 *
+	 * @param node    The root of the subtree to test for validity.
+	 * @param minNode The node whose key all keys in the subtree must exceed, NIL
+	 *                if there is no lower bound.
+	 * @param maxNode The node whose key all keys in the subtree must be less than,
+	 *                NIL if there is no upper bound.
+	 * @return true if the subtree is ordered, balanced and has correct heights.
+	 */
+	private boolean isValidAux(final int node, final int minNode, final int maxNode) {
+		boolean valid = true;
+
+		if (node != NIL) {
+			valid = (minNode == NIL || this.compareNodes(node, minNode) > 0)
+					&& (maxNode == NIL || this.compareNodes(node, maxNode) < 0) && Math.abs(IndexedNodes.balance(this.records, node)) <= 1
+					&& this.height(node) == Math.max(this.height(this.left(node)), this.height(this.right(node))) + 1
+					&& this.isValidAux(this.left(node), minNode, node)
+					&& this.isValidAux(this.right(node), node, maxNode);
+		}
+		return valid;
+	}
+
+	/**
+	 * Returns the left child of node.
+	 *
+	 * @param node A node.
+	 * @return The left child, NIL if there is none.
+	 */
+	private int left(final int node) {
+		return this.buffer.getInt(this.offset(node) + LEFT);
+	}
+
+	/**
+	 * Returns the position of the record of node in the file.
+	 *
+	 * @param node A node.
+	 * @return The record offset.
+	 */
+	private int offset(final int node) {
+		return HEADER + (node - 1) * this.recordSize;
+	}
+
+	/**
+	 * Stores a node on the path, growing the path as necessary.
+	 *
+	 * @param depth The position of node on the path.
+	 * @param node  The node to store.
+	 */
+	private void push(final int depth, final int node) {
+
+		if (depth == this.path.length) {
+			this.path = Arrays.copyOf(this.path, depth * 2);
+		}
+		this.path[depth] = node;
+		return;
+	}
+
+	/**
+	 * Updates the height of node and rebalances it if its children are not
+	 * balanced.
+	 *
+	 * @param node The node to rebalance.
+	 * @return The replacement for node.
+	 */
+	private int rebalance(final int node) {
+		this.updateHeight(node);
+		return IndexedNodes.rebalance(this.records, node);
+	}
+
+	/**
+	 * Calls {@code rebalance} on the nodes of the path from the bottom up,
+	 * relinking each replacement to its parent.
+	 *
+	 * @param depth The number of entries in use.
+	 * @return The replacement for the top node of the path.
+	 */
+	private int retrace(int depth) {
+		int replacement = NIL;
+
+		while (depth > 0) {
+			final int node = this.path[--depth];
+			replacement = this.rebalance(node);
+
+			if (depth > 0 && replacement != node) {
+				final int parent = this.path[depth - 1];
+
+				if (this.left(parent) == node) {
+					this.setLeft(parent, replacement);
+				} else {
+					this.setRight(parent, replacement);
+				}
+			}
+		}
+		return replacement;
+	}
+
+	/**
+	 * Returns the right child of node.
+	 *
+	 * @param node A node.
+	 * @return The right child, NIL if there is none.
+	 */
+	private int right(final int node) {
+		return this.buffer.getInt(this.offset(node) + RIGHT);
+	}
+
+	/**
+	 * Sets the count of node.
+	 *
+	 * @param node  A node.
+	 * @param count The new count.
+	 */
+	private void setCount(final int node, final int count) {
+		this.buffer.putInt(this.offset(node) + COUNT, count);
+		return;
+	}
+
+	/**
+	 * Sets the left child of node.
+	 *
+	 * @param node  A node.
+	 * @param child The new left child, may be NIL.
+	 */
+	private void setLeft(final int node, final int child) {
+		this.buffer.putInt(this.offset(node) + LEFT, child);
+		return;
+	}
+
+	/**
+	 * Sets the right child of node.
+	 *
+	 * @param node  A node.
+	 * @param child The new right child, may be NIL.
+	 */
+	private void setRight(final int node, final int child) {
+		this.buffer.putInt(this.offset(node) + RIGHT, child);
+		return;
+	}
+
+	/**
+	 * Updates the height of node from the heights of its children.
+	 *
+	 * @param node A node.
+	 */
+	private void updateHeight(final int node) {
+		this.buffer.putInt(this.offset(node) + HEIGHT,
+				Math.max(this.height(this.left(node)), this.height(this.right(node))) + 1);
+		return;
+	}
+
+	/**
+	 * Writes the root, size and record allocation state to the file header.
+	 */
+	private void writeHeader() {
+		this.buffer.putInt(8, this.root);
+		this.buffer.putInt(12, this.size);
+		this.buffer.putInt(16, this.next);
+		this.buffer.putInt(20, this.free);
+		return;
+	}
+
+	/**
+	 * Writes all changes to the file and closes it.
+	 *
+	 * @throws IOException If the file cannot be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		this.force();
+		this.channel.close();
+		return;
+	}
+
+	/**
+	 * Determines if this tree contains key.
+	 *
+	 * @param key The key to search for.
+	 * @return true if this contains key, false otherwise.
+	 */
+	public boolean contains(final T key) {
+		return this.find(key) != NIL;
+	}
+
+	/**
+	 * Returns the count of key.
+	 *
+	 * @param key The key to look for.
+	 * @return The count of key, 0 if key is not in the tree.
+	 */
+	public int count(final T key) {
+		final int node = this.find(key);
+		return node != NIL ? this.count(node) : 0;
+	}
+
+	/**
+	 * Writes all changes to the storage device holding the file.
+	 */
+	public void force() {
+		this.buffer.force();
+		return;
+	}
+
+	/**
+	 * Get number of comparisons executed by the retrieve method.
+	 *
+	 * @return comparisons, Integer.MAX_VALUE if there have been more.
+	 */
+	public int getComparisons() {
+		return (int) Math.min(this.comparisons, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Get number of comparisons executed by the retrieve method, which may exceed
+	 * the range of {@code getComparisons} over a long run.
+	 *
+	 * @return comparisons
+	 */
+	public long getComparisonsLong() {
+		return this.comparisons;
+	}
+
+	/**
+	 * Returns the height of the root node of this tree.
+	 *
+	 * @return height of root node, 0 if the tree is empty.
+	 */
+	public int getHeight() {
+		return this.height(this.root);
+	}
+
+	/**
+	 * Returns the number of nodes in the tree.
+	 *
+	 * @return number of nodes in this tree.
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns a list of the data in the tree, in order from smallest to largest.
+	 * The data are decoded copies; changing them does not change the tree.
+	 *
+	 * @return The contents of this tree as a list of data.
+	 */
+	public ArrayList<CountedData<T>> inOrder() {
+		final ArrayList<CountedData<T>> list = new ArrayList<>(this.size);
+		final int[] stack = new int[this.getHeight()];
+		int top = 0;
+		int current = this.root;
+
+		while (current != NIL || top > 0) {
+			while (current != NIL) {
+				stack[top++] = current;
+				current = this.left(current);
+			}
+			current = stack[--top];
+			list.add(this.data(current));
+			current = this.right(current);
+		}
+		return list;
+	}
+
+	/**
+	 * Increments the count of key, adding key if it is not in the tree.
+	 *
+	 * @param key The key to insert.
+	 * @throws IllegalArgumentException if the codec cannot encode key.
+	 */
+	public void insert(final T key) {
+		this.codec.encode(key, this.key, 0);
+		int current = this.root;
+		int depth = 0;
+		int result = 0;
+
+		while (current != NIL && (result = this.compare(current)) != 0) {
+			this.push(depth++, current);
+			current = result > 0 ? this.left(current) : this.right(current);
+		}
+
+		if (current != NIL) {
+			this.setCount(current, this.count(current) + 1);
+		} else {
+			final int added = this.allocate();
+
+			if (depth == 0) {
+				this.root = added;
+			} else {
+				final int parent = this.path[depth - 1];
+
+				if (result > 0) {
+					this.setLeft(parent, added);
+				} else {
+					this.setRight(parent, added);
+				}
+				this.root = this.retrace(depth);
+			}
+			this.writeHeader();
+		}
+		return;
+	}
+
+	/**
+	 * Determines if this tree is empty.
+	 *
+	 * @return true if this tree is empty, false otherwise.
+	 */
+	public boolean isEmpty() {
+		return this.root == NIL;
+	}
+
+	/**
+	 * Determines if this tree is a valid AVL: ordered, balanced in every subtree,
+	 * and with correct node heights.
+	 *
+	 * @return true if this tree is a valid AVL, false otherwise.
+	 */
+	public boolean isValid() {
+		return this.isValidAux(this.root, NIL, NIL);
+	}
+
+	/**
+	 * Decrements the count of key, and if the count is 0, removes key. A node with
+	 * two children is replaced by its in-order predecessor.
+	 *
+	 * @param key The key to decrement or remove.
+	 */
+	public void remove(final T key) {
+		this.codec.encode(key, this.key, 0);
+		int current = this.root;
+		int depth = 0;
+		int result = 0;
+
+		while (current != NIL && (result = this.compare(current)) != 0) {
+			this.push(depth++, current);
+			current = result > 0 ? this.left(current) : this.right(current);
+		}
+
+		if (current != NIL && this.count(current) > 1) {
+			this.setCount(current, this.count(current) - 1);
+		} else if (current != NIL) {
+			final int position = depth;
+			int replacement = NIL;
+
+			if (this.left(current) == NIL) {
+				replacement = this.right(current);
+			} else if (this.right(current) == NIL) {
+				replacement = this.left(current);
+			} else {
+				// Replace the node with the largest node of its left subtree.
+				this.push(depth++, current);
+				int parent = current;
+				replacement = this.left(current);
+
+				while (this.right(replacement) != NIL) {
+					this.push(depth++, replacement);
+					parent = replacement;
+					replacement = this.right(replacement);
+				}
+
+				if (parent == current) {
+					this.setLeft(current, this.left(replacement));
+				} else {
+					this.setRight(parent, this.left(replacement));
+				}
+				this.setLeft(replacement, this.left(current));
+				this.setRight(replacement, this.right(current));
+				this.path[position] = replacement;
+			}
+
+			if (position > 0) {
+				final int parent = this.path[position - 1];
+
+				if (this.left(parent) == current) {
+					this.setLeft(parent, replacement);
+				} else {
+					this.setRight(parent, replacement);
+				}
+			}
+			// Release the record.
+			this.setLeft(current, this.free);
+			this.free = current;
+			this.size--;
+			this.root = depth > 0 ? this.retrace(depth) : replacement;
+			this.writeHeader();
+		}
+		return;
+	}
+
+	/**
+	 * Resets the comparison count to 0.
+	 */
+	public void resetComparisons() {
+		this.comparisons = 0;
+		return;
+	}
+
+	/**
+	 * Retrieves a copy of the data matching key.
+	 *
+	 * @param key The key to look for.
+	 * @return A new CountedData holding the key and its count, null if key is not
+	 *         in the tree.
+	 */
+	public CountedData<T> retrieve(final T key) {
+		this.codec.encode(key, this.key, 0);
+		int current = this.root;
+
+		while (current != NIL) {
+			this.comparisons++;
+			final int result = this.compare(current);
+
+			if (result == 0) {
+				break;
+			}
+			current = result > 0 ? this.left(current) : this.right(current);
+		}
+		return current != NIL ? this.data(current) : null;
+	}
+}
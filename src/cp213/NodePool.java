@@ -0,0 +1,250 @@
+package cp213;
+
+import java.util.Arrays;
+
+/**
+ * Storage for the nodes of the pooled trees. A node is an index into parallel
+ * arrays of keys, counts, heights and child indexes, so a tree of any size is
+ * held in five arrays rather than in one object per node, and following a
+ * child link reads an array element rather than a reference to another
+ * object. Removed nodes are kept on a free list and reused by later
+ * allocations.
+ *
+ * Index 0 is {@code NIL}, the empty node. Its height is always 0, so the
+ * height of an empty child needs no test.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class NodePool implements IndexedNodes {
+
+	/**
+	 * The index of the empty node.
+	 */
+	public static final int NIL = 0;
+
+	// Attributes.
+	/**
+	 * Node counts.
+	 */
+	private int[] counts;
+	/**
+	 * Head of the list of released nodes, linked through their left indexes.
+	 */
+	private int free = NIL;
+	/**
+	 * Node heights.
+	 */
+	private int[] heights;
+	/**
+	 * Node keys.
+	 */
+	private long[] keys;
+	/**
+	 * Left child indexes.
+	 */
+	private int[] lefts;
+	/**
+	 * Number of nodes allocated and not released.
+	 */
+	private int live = 0;
+	/**
+	 * Index of the first node that has never been allocated.
+	 */
+	private int next = 1;
+	/**
+	 * Right child indexes.
+	 */
+	private int[] rights;
+
+	/**
+	 * Constructor for a pool with a small initial capacity.
+	 */
+	public NodePool() {
+		this(16);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity The number of nodes the pool holds before it grows.
+	 */
+	public NodePool(final int capacity) {
+		final int length = Math.max(capacity, 1) + 1;
+		this.counts = new int[length];
+		this.heights = new int[length];
+		this.keys = new long[length];
+		this.lefts = new int[length];
+		this.rights = new int[length];
+	}
+
+	/**
+	 * Grows the arrays by half.
+	 */
+	private void grow() {
+		final int length = this.keys.length + (this.keys.length >> 1) + 1;
+		this.counts = Arrays.copyOf(this.counts, length);
+		this.heights = Arrays.copyOf(this.heights, length);
+		this.keys = Arrays.copyOf(this.keys, length);
+		this.lefts = Arrays.copyOf(this.lefts, length);
+		this.rights = Arrays.copyOf(this.rights, length);
+		return;
+	}
+
+	/**
+	 * Allocates a leaf node, reusing a released node if there is one.
+	 *
+	 * @param key   The node key.
+	 * @param count The node count.
+	 * @return The index of the new node.
+	 */
+	public int allocate(final long key, final int count) {
+		int node = this.free;
+
+		if (node != NIL) {
+			this.free = this.lefts[node];
+		} else {
+			if (this.next == this.keys.length) {
+				this.grow();
+			}
+			node = this.next++;
+		}
+		this.keys[node] = key;
+		this.counts[node] = count;
+		this.heights[node] = 1;
+		this.lefts[node] = NIL;
+		this.rights[node] = NIL;
+		this.live++;
+		return node;
+	}
+
+	/**
+	 * Returns the number of nodes the pool holds before it grows.
+	 *
+	 * @return The pool capacity.
+	 */
+	public int capacity() {
+		return this.keys.length - 1;
+	}
+
+	/**
+	 * Returns the count of node.
+	 *
+	 * @param node A node index.
+	 * @return The node count.
+	 */
+	public int count(final int node) {
+		return this.counts[node];
+	}
+
+	/**
+	 * Returns the height of node.
+	 *
+	 * @param node A node index, may be NIL.
+	 * @return The node height, 0 for NIL.
+	 */
+	@Override
+	public int height(final int node) {
+		return this.heights[node];
+	}
+
+	/**
+	 * Returns the key of node.
+	 *
+	 * @param node A node index.
+	 * @return The node key.
+	 */
+	public long key(final int node) {
+		return this.keys[node];
+	}
+
+	/**
+	 * Returns the left child of node.
+	 *
+	 * @param node A node index.
+	 * @return The left child index, NIL if there is none.
+	 */
+	@Override
+	public int left(final int node) {
+		return this.lefts[node];
+	}
+
+	/**
+	 * Puts node on the free list.
+	 *
+	 * @param node The index of a node that is no longer part of any tree.
+	 */
+	public void release(final int node) {
+		this.lefts[node] = this.free;
+		this.rights[node] = NIL;
+		this.free = node;
+		this.live--;
+		return;
+	}
+
+	/**
+	 * Returns the right child of node.
+	 *
+	 * @param node A node index.
+	 * @return The right child index, NIL if there is none.
+	 */
+	@Override
+	public int right(final int node) {
+		return this.rights[node];
+	}
+
+	/**
+	 * Sets the count of node.
+	 *
+	 * @param node  A node index.
+	 * @param count The new count.
+	 */
+	public void setCount(final int node, final int count) {
+		this.counts[node] = count;
+		return;
+	}
+
+	/**
+	 * Sets the left child of node.
+	 *
+	 * @param node  A node index.
+	 * @param child The new left child, may be NIL.
+	 */
+	@Override
+	public void setLeft(final int node, final int child) {
+		this.lefts[node] = child;
+		return;
+	}
+
+	/**
+	 * Sets the right child of node.
+	 *
+	 * @param node  A node index.
+	 * @param child The new right child, may be NIL.
+	 */
+	@Override
+	public void setRight(final int node, final int child) {
+		this.rights[node] = child;
+		return;
+	}
+
+	/**
+	 * Returns the number of nodes in use.
+	 *
+	 * @return The number of allocated nodes that have not been released.
+	 */
+	public int size() {
+		return this.live;
+	}
+
+	/**
+	 * Updates the height of node from the heights of its children.
+	 *
+	 * @param node A node index.
+	 */
+	@Override
+	public void updateHeight(final int node) {
+		this.heights[node] = Math.max(this.heights[this.lefts[node]], this.heights[this.rights[node]]) + 1;
+		return;
+	}
+}
@@ -0,0 +1,104 @@
+package cp213;
+
+/**
+ * Measures the single-key operations of one tree and records them in a
+ * TreeMetrics. A tree holds a recorder only while it records metrics, so a
+ * tree that does not record them carries none of this state. Like the tree
+ * that holds it, a recorder measures one operation at a time; the TreeMetrics
+ * it records in may be shared.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+final class OperationRecorder {
+
+	/**
+	 * The comparison count of the tree when the current operation began.
+	 */
+	private long marked = 0;
+	/**
+	 * The metrics operations are recorded in.
+	 */
+	private final TreeMetrics metrics;
+	/**
+	 * The number of path entries used by the current operation.
+	 */
+	private int reach = 0;
+	/**
+	 * Count of rotations performed by the current operation.
+	 */
+	private int rotations = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param metrics The metrics to record in.
+	 */
+	OperationRecorder(final TreeMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Starts measuring an operation.
+	 *
+	 * @param comparisons The comparison count of the tree.
+	 * @return The start time in nanoseconds.
+	 */
+	long begin(final long comparisons) {
+		this.marked = comparisons;
+		this.rotations = 0;
+		this.reach = 0;
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records an operation started by {@code begin}. The depth of a retrieval is
+	 * the number of comparisons it made, and of an update the number of path
+	 * entries it used.
+	 *
+	 * @param operation   The operation.
+	 * @param comparisons The comparison count of the tree.
+	 * @param start       The start time returned by {@code begin}.
+	 */
+	void end(final TreeMetrics.Operation operation, final long comparisons, final long start) {
+		final long nanos = System.nanoTime() - start;
+		final long made = comparisons - this.marked;
+
+		if (operation == TreeMetrics.Operation.RETRIEVE) {
+			this.metrics.record(operation, made, made, this.rotations, nanos);
+		} else {
+			this.metrics.record(operation, -1, this.reach, this.rotations, nanos);
+		}
+		return;
+	}
+
+	/**
+	 * Returns the metrics this recorder records in.
+	 *
+	 * @return The metrics.
+	 */
+	TreeMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * Notes that the current operation stored a node at depth on its path.
+	 *
+	 * @param depth The position on the path.
+	 */
+	void reached(final int depth) {
+
+		if (depth >= this.reach) {
+			this.reach = depth + 1;
+		}
+		return;
+	}
+
+	/**
+	 * Notes that the current operation made a rotation.
+	 */
+	void rotated() {
+		this.rotations++;
+		return;
+	}
+}
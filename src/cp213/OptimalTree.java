@@ -0,0 +1,247 @@
+package cp213;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Implements a read-only, statically optimal Binary Search Tree. Extends BST.
+ *
+ * The tree is built once from data whose counts are their access frequencies,
+ * for example the counts of a PopularityTree after a warm-up, and minimizes the
+ * expected number of comparisons of a retrieve weighted by those counts. Up to
+ * {@code EXACT} data the tree is optimal, found with Knuth's O(n^2) dynamic
+ * program. Larger trees use Mehlhorn's O(n log n) bisection, which roots every
+ * subtree at the data that best balances the weights on either side, and costs
+ * at most about 2 + 1.44 H comparisons per retrieve, where H is the entropy of
+ * the access distribution in bits.
+ *
+ * The tree does not change after it is built: retrieve does not change counts,
+ * and the methods that would insert or remove data, or load a snapshot in its
+ * place, throw UnsupportedOperationException. Build a new tree to follow new
+ * counts.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class OptimalTree<T extends Comparable<T>> extends BST<T> {
+
+	/**
+	 * The largest number of data for which the exact dynamic program is used. Its
+	 * tables take 12 (n + 1)^2 bytes.
+	 */
+	public static final int EXACT = 1024;
+
+	/**
+	 * Builds an optimal tree from sorted data, whose counts are the weights.
+	 *
+	 * @param sorted Data in strictly increasing order. The data are stored in the
+	 *               tree.
+	 */
+	OptimalTree(final List<CountedData<T>> sorted) {
+		final int n = sorted.size();
+		final long[] prefix = new long[n + 1];
+
+		for (int i = 0; i < n; i++) {
+			prefix[i + 1] = prefix[i] + Math.max(sorted.get(i).getCount(), 0);
+		}
+		if (n <= EXACT) {
+			this.root = this.build(sorted, this.exactRoots(prefix), n, 0, n);
+		} else {
+			this.root = this.bisect(sorted, prefix, 0, n);
+		}
+		this.size = n;
+	}
+
+	/**
+	 * Builds the subtree of data[low, high) with Mehlhorn's rule: the root is the
+	 * data for which the weights of the data before and after it differ least,
+	 * found by binary search on the prefix sums. A range with no weight is rooted
+	 * at its median. The recursion depth is bounded by the log of the total weight
+	 * plus the log of the number of data.
+	 *
+	 * @param data   The sorted data.
+	 * @param prefix The prefix sums of the data counts.
+	 * @param low    The first data of the subtree.
+	 * @param high   One past the last data of the subtree.
+	 * @return The root of the subtree, null if the range is empty.
+	 */
+	private TreeNode<T> bisect(final List<CountedData<T>> data, final long[] prefix, final int low,
+			final int high) {
+		TreeNode<T> node = null;
+
+		if (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (prefix[high] > prefix[low]) {
+				// The difference below minus above, prefix[r] + prefix[r + 1] - prefix[low] -
+				// prefix[high], does not decrease with r. Find the first r where it is not
+				// negative, then take whichever of r and r - 1 is closer to 0.
+				final long target = prefix[low] + prefix[high];
+				int first = low;
+				int last = high - 1;
+
+				while (first < last) {
+					final int r = (first + last) >>> 1;
+
+					if (prefix[r] + prefix[r + 1] < target) {
+						first = r + 1;
+					} else {
+						last = r;
+					}
+				}
+				middle = first;
+
+				if (middle > low && target - prefix[middle - 1] - prefix[middle] < prefix[middle] + prefix[middle + 1]
+						- target) {
+					middle--;
+				}
+			}
+			node = new TreeNode<T>(data.get(middle));
+			node.setLeft(this.bisect(data, prefix, low, middle));
+			node.setRight(this.bisect(data, prefix, middle + 1, high));
+			node.updateHeight();
+		}
+		return node;
+	}
+
+	/**
+	 * Builds the subtree of data[low, high) from a table of optimal roots.
+	 *
+	 * @param data  The sorted data.
+	 * @param roots The optimal root of each range, indexed by low * (n + 1) +
+	 *              high.
+	 * @param n     The number of data.
+	 * @param low   The first data of the subtree.
+	 * @param high  One past the last data of the subtree.
+	 * @return The root of the subtree, null if the range is empty.
+	 */
+	private TreeNode<T> build(final List<CountedData<T>> data, final int[] roots, final int n, final int low,
+			final int high) {
+		TreeNode<T> node = null;
+
+		if (low < high) {
+			final int middle = roots[low * (n + 1) + high];
+			node = new TreeNode<T>(data.get(middle));
+			node.setLeft(this.build(data, roots, n, low, middle));
+			node.setRight(this.build(data, roots, n, middle + 1, high));
+			node.updateHeight();
+		}
+		return node;
+	}
+
+	/**
+	 * Finds the optimal root of every range of data with Knuth's dynamic program.
+	 * The cost of a range is the total weight of its data, plus the costs of the
+	 * ranges before and after its root. By Knuth's monotonicity rule the optimal
+	 * root of [low, high) lies between the optimal roots of [low, high - 1) and
+	 * [low + 1, high), so each length of range takes linear time in all.
+	 *
+	 * @param prefix The prefix sums of the data counts.
+	 * @return The optimal root of each range, indexed by low * (n + 1) + high.
+	 */
+	private int[] exactRoots(final long[] prefix) {
+		final int n = prefix.length - 1;
+		final int width = n + 1;
+		final long[] costs = new long[width * width];
+		final int[] roots = new int[width * width];
+
+		for (int low = 0; low < n; low++) {
+			roots[low * width + low + 1] = low;
+			costs[low * width + low + 1] = prefix[low + 1] - prefix[low];
+		}
+		for (int length = 2; length <= n; length++) {
+			for (int low = 0, high = length; high <= n; low++, high++) {
+				final int from = roots[low * width + high - 1];
+				final int to = roots[(low + 1) * width + high];
+				long best = Long.MAX_VALUE;
+				int root = from;
+
+				for (int r = from; r <= to; r++) {
+					final long cost = costs[low * width + r] + costs[(r + 1) * width + high];
+
+					if (cost < best) {
+						best = cost;
+						root = r;
+					}
+				}
+				roots[low * width + high] = root;
+				costs[low * width + high] = best + prefix[high] - prefix[low];
+			}
+		}
+		return roots;
+	}
+
+	/**
+	 * An OptimalTree is read-only: a snapshot would replace its optimal shape.
+	 *
+	 * @param channel The channel to read from.
+	 * @param codec   Decodes the keys.
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	protected void load(final ReadableByteChannel channel, final KeyCodec<T> codec) throws IOException {
+		throw new UnsupportedOperationException("OptimalTree is read-only");
+	}
+
+	/**
+	 * An OptimalTree is read-only.
+	 *
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public void add(final CountedData<T> data, final int count) {
+		throw new UnsupportedOperationException("OptimalTree is read-only");
+	}
+
+	/**
+	 * An OptimalTree is read-only.
+	 *
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public void insert(final CountedData<T> data) {
+		throw new UnsupportedOperationException("OptimalTree is read-only");
+	}
+
+	/**
+	 * An OptimalTree is read-only.
+	 *
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public void insertAll(final Collection<CountedData<T>> data) {
+		throw new UnsupportedOperationException("OptimalTree is read-only");
+	}
+
+	/**
+	 * An OptimalTree is read-only.
+	 *
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public void insertBatch(final CountedData<T>[] data) {
+		throw new UnsupportedOperationException("OptimalTree is read-only");
+	}
+
+	/**
+	 * An OptimalTree is read-only.
+	 *
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public void remove(final CountedData<T> data) {
+		throw new UnsupportedOperationException("OptimalTree is read-only");
+	}
+
+	/**
+	 * An OptimalTree is read-only.
+	 *
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public void removeBatch(final CountedData<T>[] data) {
+		throw new UnsupportedOperationException("OptimalTree is read-only");
+	}
+}
@@ -0,0 +1,55 @@
+package cp213;
+
+/**
+ * Implements an AVL (Adelson-Velsky Landis) tree of long keys whose nodes are
+ * stored in a NodePool. Extends PooledBST and rebalances the nodes on the path
+ * of every insertion and removal, rotating indexes rather than references. The
+ * rebalancing is shared with MappedAVL through IndexedNodes.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class PooledAVL extends PooledBST {
+
+	/**
+	 * Constructor for a tree with a small initial capacity.
+	 */
+	public PooledAVL() {
+		super();
+	}
+
+	/**
+	 * Constructor for a tree that holds capacity keys before its pool grows.
+	 *
+	 * @param capacity The initial pool capacity.
+	 */
+	public PooledAVL(final int capacity) {
+		super(capacity);
+	}
+
+	/**
+	 * Auxiliary method for isValid. Also requires every node to be balanced.
+	 *
+	 * @param node    The root of the subtree to test for validity.
+	 * @param minNode The lower bound node, NIL if there is none.
+	 * @param maxNode The upper bound node, NIL if there is none.
+	 * @return true if the subtree based on node is a valid AVL, false otherwise.
+	 */
+	@Override
+	protected boolean isValidAux(final int node, final int minNode, final int maxNode) {
+		return (node == NodePool.NIL || Math.abs(IndexedNodes.balance(this.pool, node)) <= 1)
+				&& super.isValidAux(node, minNode, maxNode);
+	}
+
+	/**
+	 * Updates the node height and rebalances it.
+	 *
+	 * @param node The node to repair.
+	 * @return The node that replaces node as root of its subtree.
+	 */
+	@Override
+	protected int restore(final int node) {
+		this.pool.updateHeight(node);
+		return IndexedNodes.rebalance(this.pool, node);
+	}
+}
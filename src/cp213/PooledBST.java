@@ -0,0 +1,461 @@
+package cp213;
+
+import java.util.Arrays;
+
+/**
+ * Implements a Binary Search Tree of long keys whose nodes are stored in a
+ * NodePool. Behaves as BST does: every insertion of a key increments its
+ * count, and removal decrements it, removing the key when the count falls to
+ * 0. Nodes are indexes into the pool's arrays, so the tree holds no per-node
+ * objects for the garbage collector to trace.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class PooledBST {
+
+	// Attributes.
+	/**
+	 * Count of comparisons performed by tree.
+	 */
+	protected long comparisons = 0;
+	/**
+	 * Storage for the nodes of the tree.
+	 */
+	protected final NodePool pool;
+	/**
+	 * Root node of the tree.
+	 */
+	protected int root = NodePool.NIL;
+	/**
+	 * Nodes from the root down to the node being inserted or removed. Reused
+	 * between calls so that updates do not allocate.
+	 */
+	private int[] path = new int[32];
+
+	/**
+	 * Constructor for a tree with a small initial capacity.
+	 */
+	public PooledBST() {
+		this(new NodePool());
+	}
+
+	/**
+	 * Constructor for a tree that holds capacity keys before its pool grows.
+	 *
+	 * @param capacity The initial pool capacity.
+	 */
+	public PooledBST(final int capacity) {
+		this(new NodePool(capacity));
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pool The pool that stores the tree nodes. Must not be shared with
+	 *             another tree.
+	 */
+	protected PooledBST(final NodePool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Returns the node holding key without counting comparisons.
+	 *
+	 * @param key The key to search for.
+	 * @return The matching node, NIL if key is not in the tree.
+	 */
+	protected int find(final long key) {
+		int current = this.root;
+
+		while (current != NodePool.NIL && this.pool.key(current) != key) {
+			current = key < this.pool.key(current) ? this.pool.left(current) : this.pool.right(current);
+		}
+		return current;
+	}
+
+	/**
+	 * Auxiliary method for insert. Inserts key into the subtree rooted at node
+	 * without recursion, repairing the nodes on the path with {@code restore}. If
+	 * key is already in the subtree its count is increased by increment,
+	 * otherwise key is stored in a new node with a count of increment.
+	 *
+	 * @param node      The root of the subtree.
+	 * @param key       The key to insert.
+	 * @param increment The amount to add to the key count.
+	 * @return The new root of the subtree.
+	 */
+	protected int insertAux(final int node, final long key, final int increment) {
+		int current = node;
+		int depth = 0;
+
+		while (current != NodePool.NIL) {
+			final long nodeKey = this.pool.key(current);
+
+			if (nodeKey == key) {
+				// Key is already in the tree, increment its count. The shape is unchanged.
+				this.pool.setCount(current, this.pool.count(current) + increment);
+				return node;
+			}
+			this.push(depth++, current);
+			current = key < nodeKey ? this.pool.left(current) : this.pool.right(current);
+		}
+		// Add a new node containing the key.
+		final int added = this.pool.allocate(key, increment);
+
+		if (depth == 0) {
+			return added;
+		}
+		final int parent = this.path[depth - 1];
+
+		if (key < this.pool.key(parent)) {
+			this.pool.setLeft(parent, added);
+		} else {
+			this.pool.setRight(parent, added);
+		}
+		return this.retrace(depth);
+	}
+
+	/**
+	 * Returns the count increment applied by {@code insert}. A BST counts every
+	 * insertion of a key.
+	 *
+	 * @return The amount added to a key count on insertion.
+	 */
+	protected int insertIncrement() {
+		return 1;
+	}
+
+	/**
+	 * Auxiliary method for isValid. Determines if the subtree rooted at node is
+	 * ordered and has correct heights.
+	 *
+	 * @param node    The root of the subtree to test for validity.
+	 * @param minNode The node whose key all keys in the subtree must exceed, NIL
+	 *                if there is no lower bound.
+	 * @param maxNode The node whose key all keys in the subtree must be less than,
+	 *                NIL if there is no upper bound.
+	 * @return true if the subtree based on node is valid, false otherwise.
+	 */
+	protected boolean isValidAux(final int node, final int minNode, final int maxNode) {
+		boolean valid = true;
+
+		if (node != NodePool.NIL) {
+			final long key = this.pool.key(node);
+			final int left = this.pool.left(node);
+			final int right = this.pool.right(node);
+			valid = (minNode == NodePool.NIL || key > this.pool.key(minNode))
+					&& (maxNode == NodePool.NIL || key < this.pool.key(maxNode))
+					&& this.pool.height(node) == Math.max(this.pool.height(left), this.pool.height(right)) + 1
+					&& this.isValidAux(left, minNode, node) && this.isValidAux(right, node, maxNode);
+		}
+		return valid;
+	}
+
+	/**
+	 * Auxiliary method for remove. Removes key from the subtree rooted at node
+	 * without recursion. Decrements the matching node count, and if the count is
+	 * not greater than 1, unlinks the node and returns it to the pool. A node with
+	 * two children is replaced by its in-order predecessor. The nodes on the path
+	 * are repaired from the bottom up with {@code restore}.
+	 *
+	 * @param node The root of the subtree.
+	 * @param key  The key to remove.
+	 * @return The new root of the subtree.
+	 */
+	protected int removeAux(final int node, final long key) {
+		int current = node;
+		int depth = 0;
+
+		while (current != NodePool.NIL && this.pool.key(current) != key) {
+			this.push(depth++, current);
+			current = key < this.pool.key(current) ? this.pool.left(current) : this.pool.right(current);
+		}
+
+		if (current == NodePool.NIL || this.pool.count(current) > 1) {
+			// Key is not in the tree, or only its count changes. The shape is unchanged.
+			if (current != NodePool.NIL) {
+				this.pool.setCount(current, this.pool.count(current) - 1);
+			}
+			return node;
+		}
+		final int position = depth;
+		int replacement = NodePool.NIL;
+
+		if (this.pool.left(current) == NodePool.NIL) {
+			replacement = this.pool.right(current);
+		} else if (this.pool.right(current) == NodePool.NIL) {
+			replacement = this.pool.left(current);
+		} else {
+			// Node has two children: replace it with the largest node of its left subtree.
+			this.push(depth++, current);
+			int parent = current;
+			replacement = this.pool.left(current);
+
+			while (this.pool.right(replacement) != NodePool.NIL) {
+				this.push(depth++, replacement);
+				parent = replacement;
+				replacement = this.pool.right(replacement);
+			}
+
+			if (parent == current) {
+				this.pool.setLeft(current, this.pool.left(replacement));
+			} else {
+				this.pool.setRight(parent, this.pool.left(replacement));
+			}
+			this.pool.setLeft(replacement, this.pool.left(current));
+			this.pool.setRight(replacement, this.pool.right(current));
+			this.path[position] = replacement;
+		}
+
+		if (position > 0) {
+			final int parent = this.path[position - 1];
+
+			if (this.pool.left(parent) == current) {
+				this.pool.setLeft(parent, replacement);
+			} else {
+				this.pool.setRight(parent, replacement);
+			}
+		}
+		this.pool.release(current);
+		return depth > 0 ? this.retrace(depth) : replacement;
+	}
+
+	/**
+	 * Repairs a node whose subtree has changed. A BST only updates the node height.
+	 * Subclasses may restructure the subtree.
+	 *
+	 * @param node The node to repair.
+	 * @return The node that replaces node as root of its subtree.
+	 */
+	protected int restore(final int node) {
+		this.pool.updateHeight(node);
+		return node;
+	}
+
+	/**
+	 * Performs a left rotation around node.
+	 *
+	 * @param node The subtree to rotate.
+	 * @return The new root of the subtree.
+	 */
+	protected int rotateLeft(final int node) {
+		return IndexedNodes.rotateLeft(this.pool, node);
+	}
+
+	/**
+	 * Performs a right rotation around node.
+	 *
+	 * @param node The subtree to rotate.
+	 * @return The new root of the subtree.
+	 */
+	protected int rotateRight(final int node) {
+		return IndexedNodes.rotateRight(this.pool, node);
+	}
+
+	/**
+	 * Stores a node on the path, growing the path as necessary.
+	 *
+	 * @param depth The position of node on the path.
+	 * @param node  The node to store.
+	 */
+	protected void push(final int depth, final int node) {
+
+		if (depth == this.path.length) {
+			this.path = Arrays.copyOf(this.path, depth * 2);
+		}
+		this.path[depth] = node;
+		return;
+	}
+
+	/**
+	 * Returns the node stored at depth on the path.
+	 *
+	 * @param depth A position on the path.
+	 * @return The node at depth.
+	 */
+	protected int pathNode(final int depth) {
+		return this.path[depth];
+	}
+
+	/**
+	 * Calls {@code restore} on the nodes of the path from the bottom up, relinking
+	 * each replacement to its parent.
+	 *
+	 * @param depth The number of entries in use.
+	 * @return The replacement for the top node of the path.
+	 */
+	private int retrace(int depth) {
+		int replacement = NodePool.NIL;
+
+		while (depth > 0) {
+			final int node = this.path[--depth];
+			replacement = this.restore(node);
+
+			if (depth > 0 && replacement != node) {
+				final int parent = this.path[depth - 1];
+
+				if (this.pool.left(parent) == node) {
+					this.pool.setLeft(parent, replacement);
+				} else {
+					this.pool.setRight(parent, replacement);
+				}
+			}
+		}
+		return replacement;
+	}
+
+	/**
+	 * Determines if this tree contains key. Does not count comparisons or change
+	 * counts.
+	 *
+	 * @param key The key to search for.
+	 * @return true if this contains key, false otherwise.
+	 */
+	public boolean contains(final long key) {
+		return this.find(key) != NodePool.NIL;
+	}
+
+	/**
+	 * Returns the count of key. Does not count comparisons or change counts.
+	 *
+	 * @param key The key to look for.
+	 * @return The count of key, 0 if key is not in the tree.
+	 */
+	public int count(final long key) {
+		final int node = this.find(key);
+		return node != NodePool.NIL ? this.pool.count(node) : 0;
+	}
+
+	/**
+	 * Get number of comparisons executed by the retrieve method.
+	 *
+	 * @return comparisons, Integer.MAX_VALUE if there have been more.
+	 */
+	public int getComparisons() {
+		return (int) Math.min(this.comparisons, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Get number of comparisons executed by the retrieve method, which may exceed
+	 * the range of {@code getComparisons} over a long run.
+	 *
+	 * @return comparisons
+	 */
+	public long getComparisonsLong() {
+		return this.comparisons;
+	}
+
+	/**
+	 * Returns the height of the root node of this tree.
+	 *
+	 * @return height of root node, 0 if the tree is empty.
+	 */
+	public int getHeight() {
+		return this.pool.height(this.root);
+	}
+
+	/**
+	 * Returns the number of nodes in the tree.
+	 *
+	 * @return number of nodes in this tree.
+	 */
+	public int getSize() {
+		return this.pool.size();
+	}
+
+	/**
+	 * Returns the keys of this tree in order from smallest to largest.
+	 *
+	 * @return The keys of this tree.
+	 */
+	public long[] inOrderKeys() {
+		final long[] keys = new long[this.getSize()];
+		final int[] stack = new int[this.getHeight()];
+		int top = 0;
+		int i = 0;
+		int current = this.root;
+
+		while (current != NodePool.NIL || top > 0) {
+			while (current != NodePool.NIL) {
+				stack[top++] = current;
+				current = this.pool.left(current);
+			}
+			current = stack[--top];
+			keys[i++] = this.pool.key(current);
+			current = this.pool.right(current);
+		}
+		return keys;
+	}
+
+	/**
+	 * Inserts key into this tree.
+	 *
+	 * @param key The key to store.
+	 */
+	public void insert(final long key) {
+		this.root = this.insertAux(this.root, key, this.insertIncrement());
+		return;
+	}
+
+	/**
+	 * Determines if this tree is empty.
+	 *
+	 * @return true if this tree is empty, false otherwise.
+	 */
+	public boolean isEmpty() {
+		return this.root == NodePool.NIL;
+	}
+
+	/**
+	 * Determines if this tree is a valid BST; i.e. a node's left child key is
+	 * smaller than its key, and its right child key is greater than its key, and a
+	 * node's height is equal to the maximum of the heights of its two children
+	 * (empty child nodes have a height of 0), plus 1.
+	 *
+	 * @return true if this tree is a valid BST, false otherwise.
+	 */
+	public boolean isValid() {
+		return this.isValidAux(this.root, NodePool.NIL, NodePool.NIL);
+	}
+
+	/**
+	 * Removes key from the tree. Decrements the node count, and if the count is 0,
+	 * removes the node entirely.
+	 *
+	 * @param key The key to decrement or remove.
+	 */
+	public void remove(final long key) {
+		this.root = this.removeAux(this.root, key);
+		return;
+	}
+
+	/**
+	 * Resets the comparison count to 0.
+	 */
+	public void resetComparisons() {
+		this.comparisons = 0;
+		return;
+	}
+
+	/**
+	 * Retrieves the count of key, counting the comparisons made.
+	 *
+	 * @param key The key to look for.
+	 * @return The count of key, 0 if key is not in the tree.
+	 */
+	public int retrieve(final long key) {
+		int current = this.root;
+
+		while (current != NodePool.NIL) {
+			this.comparisons++;
+			final long nodeKey = this.pool.key(current);
+
+			if (nodeKey == key) {
+				break;
+			}
+			current = key < nodeKey ? this.pool.left(current) : this.pool.right(current);
+		}
+		return current != NodePool.NIL ? this.pool.count(current) : 0;
+	}
+}
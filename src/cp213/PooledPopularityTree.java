@@ -0,0 +1,209 @@
+package cp213;
+
+/**
+ * Implements a Popularity Tree of long keys whose nodes are stored in a
+ * NodePool. Extends PooledBST. As in PopularityTree, insertion adds a key with
+ * a count of 0, and every retrieval increments the key's count and rotates the
+ * key above its parent when its count becomes greater than the parent's.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class PooledPopularityTree extends PooledBST {
+
+	/**
+	 * Constructor for a tree with a small initial capacity.
+	 */
+	public PooledPopularityTree() {
+		super();
+	}
+
+	/**
+	 * Constructor for a tree that holds capacity keys before its pool grows.
+	 *
+	 * @param capacity The initial pool capacity.
+	 */
+	public PooledPopularityTree(final int capacity) {
+		super(capacity);
+	}
+
+	/**
+	 * Auxiliary method for isValid. Also requires the count of every node to be
+	 * greater than or equal to the counts of its children, as PopularityTree does.
+	 *
+	 * @param node    The root of the subtree to test for validity.
+	 * @param minNode The lower bound node, NIL if there is none.
+	 * @param maxNode The upper bound node, NIL if there is none.
+	 * @return true if the subtree based on node is a valid Popularity Tree, false
+	 *         otherwise.
+	 */
+	@Override
+	protected boolean isValidAux(final int node, final int minNode, final int maxNode) {
+		boolean valid = true;
+
+		if (node != NodePool.NIL) {
+			final int count = this.pool.count(node);
+			final int left = this.pool.left(node);
+			final int right = this.pool.right(node);
+			valid = (left == NodePool.NIL || this.pool.count(left) <= count)
+					&& (right == NodePool.NIL || this.pool.count(right) <= count);
+		}
+		return valid && super.isValidAux(node, minNode, maxNode);
+	}
+
+	/**
+	 * Insertion does not count in a Popularity Tree, only retrieval does.
+	 *
+	 * @return 0
+	 */
+	@Override
+	protected int insertIncrement() {
+		return 0;
+	}
+
+	/**
+	 * Auxiliary method for remove. Decrements the count of key, then restores the
+	 * count ordering below it, as PopularityTree does: while a child of the node
+	 * has a greater count than the node, the child with the greater count is
+	 * rotated above it. If the count was not greater than 1 the node is removed
+	 * instead: it is rotated below the child with the greater count until it has
+	 * at most one child, which then takes its place, and it is returned to the
+	 * pool. Only the heights of the path need updating.
+	 *
+	 * @param node The root of the subtree.
+	 * @param key  The key to remove.
+	 * @return The new root of the subtree.
+	 */
+	@Override
+	protected int removeAux(final int node, final long key) {
+		int current = node;
+		int parent = NodePool.NIL;
+		int depth = 0;
+
+		while (current != NodePool.NIL && this.pool.key(current) != key) {
+			this.push(depth++, current);
+			parent = current;
+			current = key < this.pool.key(current) ? this.pool.left(current) : this.pool.right(current);
+		}
+
+		if (current == NodePool.NIL) {
+			return node;
+		}
+		final boolean removed = this.pool.count(current) <= 1;
+
+		if (!removed) {
+			this.pool.setCount(current, this.pool.count(current) - 1);
+		}
+		final int count = this.pool.count(current);
+
+		while (true) {
+			final int left = this.pool.left(current);
+			final int right = this.pool.right(current);
+			final int leftCount = left != NodePool.NIL ? this.pool.count(left) : -1;
+			final int rightCount = right != NodePool.NIL ? this.pool.count(right) : -1;
+			int lifted = NodePool.NIL;
+
+			if (removed ? leftCount >= 0 && rightCount >= 0 && leftCount >= rightCount
+					: leftCount > count && leftCount >= rightCount) {
+				lifted = this.rotateRight(current);
+			} else if (removed ? leftCount >= 0 && rightCount >= 0 : rightCount > count) {
+				lifted = this.rotateLeft(current);
+			} else {
+				break;
+			}
+			this.link(parent, current, lifted);
+			this.push(depth++, lifted);
+			parent = lifted;
+		}
+		int replacement = current;
+
+		if (removed) {
+			replacement = this.pool.left(current) != NodePool.NIL ? this.pool.left(current)
+					: this.pool.right(current);
+			this.link(parent, current, replacement);
+			this.pool.release(current);
+		} else {
+			this.pool.updateHeight(current);
+		}
+
+		while (depth > 0) {
+			replacement = this.pathNode(--depth);
+			this.pool.updateHeight(replacement);
+		}
+		return replacement;
+	}
+
+	/**
+	 * Replaces child of parent with replacement.
+	 *
+	 * @param parent      The parent of child, NIL if child is a root.
+	 * @param child       The child to replace.
+	 * @param replacement The node to put in its place, may be NIL.
+	 */
+	private void link(final int parent, final int child, final int replacement) {
+
+		if (parent != NodePool.NIL) {
+			if (this.pool.left(parent) == child) {
+				this.pool.setLeft(parent, replacement);
+			} else {
+				this.pool.setRight(parent, replacement);
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Retrieves key and increments its count, then rotates it towards the root:
+	 * first with a child whose count is now greater than the key's count, then
+	 * above each ancestor on the way up whose count is less than its child's
+	 * count.
+	 *
+	 * @param key The key to look for.
+	 * @return The new count of key, 0 if key is not in the tree.
+	 */
+	@Override
+	public int retrieve(final long key) {
+		int current = this.root;
+		int depth = 0;
+
+		while (current != NodePool.NIL) {
+			this.comparisons++;
+			final long nodeKey = this.pool.key(current);
+
+			if (nodeKey == key) {
+				break;
+			}
+			this.push(depth++, current);
+			current = key < nodeKey ? this.pool.left(current) : this.pool.right(current);
+		}
+		int count = 0;
+
+		if (current != NodePool.NIL) {
+			count = this.pool.count(current) + 1;
+			this.pool.setCount(current, count);
+			int node = current;
+			final int left = this.pool.left(node);
+			final int right = this.pool.right(node);
+
+			if (left != NodePool.NIL && this.pool.count(left) > count) {
+				node = this.rotateRight(node);
+			} else if (right != NodePool.NIL && this.pool.count(right) > count) {
+				node = this.rotateLeft(node);
+			}
+			while (depth > 0) {
+				final int parent = this.pathNode(--depth);
+
+				if (key < this.pool.key(parent)) {
+					this.pool.setLeft(parent, node);
+					node = this.pool.count(node) > this.pool.count(parent) ? this.rotateRight(parent) : parent;
+				} else {
+					this.pool.setRight(parent, node);
+					node = this.pool.count(node) > this.pool.count(parent) ? this.rotateLeft(parent) : parent;
+				}
+				this.pool.updateHeight(node);
+			}
+			this.root = node;
+		}
+		return count;
+	}
+}
@@ -1,194 +1,483 @@
-package cp213;
-
-/**
- * Implements a Popularity Tree. Extends BST.
- *
- * @author Giuseppe AKbari
- * @author David Brown
- * @version 2024-10-15
- */
-public class PopularityTree<T extends Comparable<T>> extends BST<T> {
-
-	/**
-	 * Auxiliary method for valid. May force node rotation if the retrieval count of
-	 * the located node data is incremented.
-	 *
-	 * @param node The node to examine for key.
-	 * @param key  The data to search for. Count is updated to count in matching
-	 *             node data if key is found.
-	 * @return The updated node.
-	 */
-	private TreeNode<T> retrieveAux(TreeNode<T> node, final CountedData<T> key) {
-
-		// your code here
-		if (node == null) {
-			return null;
-		}
-		int result = node.getData().compareTo(key);
-		this.comparisons++;
-		if (result == 0) {
-			// this.comparisons++;
-			node.getData().incrementCount();
-			if (node.getLeft() != null && node.getLeft().getData().getCount() > node.getData().getCount()) {
-				node = rotateRight(node);
-			} else if (node.getRight() != null && node.getRight().getData().getCount() > node.getData().getCount()) {
-				node = rotateLeft(node);
-			}
-			return node; // I CHANGED THIS
-		} else if (result > 0) {// node data is greater than key
-			TreeNode<T> left = retrieveAux(node.getLeft(), key);
-
-			if (left != null) {
-				node.setLeft(left);
-				if (node.getLeft().getData().getCount() > node.getData().getCount()) {
-					return rotateRight(node);
-				}
-			}
-			return node;
-		} else {
-			TreeNode<T> right = retrieveAux(node.getRight(), key);
-			if (right != null) {
-				node.setRight(right);
-				if (node.getRight().getData().getCount() > node.getData().getCount()) {
-					return rotateLeft(node);
-				}
-			}
-			return node;
-		}
-
-		// removed this return node;
-	}
-
-	/**
-	 * Performs a left rotation around node.
-	 *
-	 * @param parent The subtree to rotate.
-	 * @return The new root of the subtree.
-	 */
-	private TreeNode<T> rotateLeft(final TreeNode<T> parent) {
-
-		// your code here
-		TreeNode<T> RC = parent.getRight();
-		parent.setRight(RC.getLeft());
-		RC.setLeft(parent);
-		parent.updateHeight();
-		RC.updateHeight();
-
-		return RC;
-	}
-
-	/**
-	 * Performs a right rotation around {@code node}.
-	 *
-	 * @param parent The subtree to rotate.
-	 * @return The new root of the subtree.
-	 */
-	private TreeNode<T> rotateRight(final TreeNode<T> parent) {
-
-		// your code here
-		TreeNode<T> RC = parent.getLeft();
-		parent.setLeft(RC.getRight());
-		RC.setRight(parent);
-		parent.updateHeight();
-		RC.updateHeight();
-
-		return RC;
-	}
-
-	/**
-	 * Replaces BST insertAux - does not increment count on repeated insertion.
-	 * Counts are incremented only on retrieve.
-	 */
-	@Override
-	protected TreeNode<T> insertAux(TreeNode<T> node, final CountedData<T> data) {
-
-		// your code here
-		if (node == null) {
-			this.size++;
-			node = new TreeNode<T>(data);
-			return node;
-		}
-		int result = node.getData().compareTo(data);
-		if (result < 0) {// node is less than data
-			node.setRight(insertAux(node.getRight(), data));
-		} else if (result > 0) {// node greater than
-			node.setLeft(insertAux(node.getLeft(), data));
-		}
-		node.updateHeight();
-
-		return node;
-	}
-
-	/**
-	 * Auxiliary method for valid. Determines if a subtree based on node is a valid
-	 * subtree. An Popularity Tree must meet the BST validation conditions, and
-	 * additionally the counts of any node data must be greater than or equal to the
-	 * counts of its children.
-	 *
-	 * @param node The root of the subtree to test for validity.
-	 * @return true if the subtree base on node is valid, false otherwise.
-	 */
-	@Override
-	protected boolean isValidAux(final TreeNode<T> node, TreeNode<T> minNode, TreeNode<T> maxNode) {
-
-		// your code here
-		boolean boo = true;
-		if (node == null) {
-			boo = true;
-		} else if (node.getLeft() == null && node.getRight() == null) {
-			boo = true;
-		} else if (node.getLeft() == null || node.getRight() == null) {
-			if (node.getRight() != null) {
-				if (node.getRight().getData().getCount() < node.getData().getCount()
-						&& node.getData().compareTo(node.getRight().getData()) < 0) {
-					boo = isValidAux(node.getRight(), null, null);
-				} else {
-					boo = false;
-				}
-			}
-			if (node.getLeft() != null) {
-				if (node.getLeft().getData().getCount() < node.getData().getCount()
-						&& node.getData().compareTo(node.getLeft().getData()) > 0) {
-					boo = isValidAux(node.getLeft(), null, null);
-				} else {
-					boo = false;
-				}
-			}
-		} else {
-			boo = isValidAux(node.getRight(), null, null) && isValidAux(node.getLeft(), null, null);
-		}
-
-		return boo;
-	}
-
-	/**
-	 * Determines whether two PopularityTrees are identical.
-	 *
-	 * @param target The PopularityTree to compare this PopularityTree against.
-	 * @return true if this PopularityTree and target contain nodes that match in
-	 *         position, data, count, and height, false otherwise.
-	 */
-	public boolean equals(final PopularityTree<T> target) {
-		return super.equals(target);
-	}
-
-	/**
-	 * Very similar to the BST retrieve, but increments the data count here instead
-	 * of in the insertion.
-	 *
-	 * @param key The key to search for.
-	 */
-	@Override
-	public CountedData<T> retrieve(CountedData<T> key) {
-
-		// your code here
-		if (key == null || this.root == null) {
-			return null;
-		}
-		TreeNode<T> node = null;
-		node = retrieveAux(this.root, key);
-
-		return node != null ? node.getData() : null;
-	}
-
-}
+package cp213;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Implements a Popularity Tree. Extends BST.
+ *
+ * @author Giuseppe AKbari
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class PopularityTree<T extends Comparable<T>> extends BST<T> {
+
+	/**
+	 * Auxiliary method for retrieve and add. Finds key without recursion, adds
+	 * increment to its count, then rotates it towards the root: first with a child
+	 * whose count is now greater than its own, then above each ancestor on the way
+	 * back up whose count is less than its child's. Node heights on the path are
+	 * updated as it goes. Every node whose count is compared is passed to
+	 * {@code touch} first; if key is not found and touch changed a count, the
+	 * path is recounted from the bottom up.
+	 *
+	 * @param key       The data to search for.
+	 * @param increment The amount to add to the matching data count.
+	 * @param counted   Whether to count the comparisons made.
+	 * @return The matching data, null if key is not in the tree.
+	 */
+	private CountedData<T> retrieveAux(final CountedData<T> key, final int increment, final boolean counted) {
+		TreeNode<T> current = this.root;
+		int depth = 0;
+		int result = 0;
+		boolean touched = false;
+
+		while (current != null) {
+			if (counted) {
+				this.comparisons++;
+			}
+			touched |= this.touch(current);
+			result = current.getData().compareTo(key);
+
+			if (result == 0) {
+				break;
+			}
+			this.push(depth++, current);
+			current = result > 0 ? current.getLeft() : current.getRight();
+		}
+
+		if (current == null) {
+			if (touched) {
+				// A count on the path changed, so the count sums above it are stale.
+				this.recount(this.pop(depth - 1), depth - 1);
+			} else {
+				this.clearPath(depth);
+			}
+			return null;
+		}
+		final CountedData<T> data = current.getData();
+		data.setCount(data.getCount() + increment);
+		this.counted(data, true);
+		TreeNode<T> node = current;
+		this.touch(node.getLeft());
+		this.touch(node.getRight());
+		node.updateHeight();
+
+		if (node.getLeft() != null && node.getLeft().getData().getCount() > data.getCount()) {
+			node = this.rotateRight(node);
+		} else if (node.getRight() != null && node.getRight().getData().getCount() > data.getCount()) {
+			node = this.rotateLeft(node);
+		}
+		while (depth > 0) {
+			final TreeNode<T> parent = this.pop(--depth);
+
+			if (parent.getData().compareTo(key) > 0) {
+				parent.setLeft(node);
+				node = node.getData().getCount() > parent.getData().getCount() ? this.rotateRight(parent) : parent;
+			} else {
+				parent.setRight(node);
+				node = node.getData().getCount() > parent.getData().getCount() ? this.rotateLeft(parent) : parent;
+			}
+			node.updateHeight();
+		}
+		this.root = node;
+		return data;
+	}
+
+	/**
+	 * Joins left and right with node between them, then restores the count
+	 * ordering: while a child of node has a greater count than node, the child
+	 * with the greater count is rotated above node, and node is checked again in
+	 * its new position. Node heights are updated from the bottom up once node has
+	 * settled. Every child whose count is compared is passed to {@code touch}
+	 * first.
+	 *
+	 * @param left  The left subtree, may be null.
+	 * @param node  The node to put between left and right.
+	 * @param right The right subtree, may be null.
+	 * @return The root of the joined subtree.
+	 */
+	@Override
+	protected TreeNode<T> join(final TreeNode<T> left, final TreeNode<T> node, final TreeNode<T> right) {
+		node.setLeft(left);
+		node.setRight(right);
+		TreeNode<T> joined = node;
+		TreeNode<T> parent = null;
+		int depth = 0;
+
+		while (true) {
+			this.touch(node.getLeft());
+			this.touch(node.getRight());
+			final int count = node.getData().getCount();
+			final int leftCount = node.getLeft() != null ? node.getLeft().getData().getCount() : -1;
+			final int rightCount = node.getRight() != null ? node.getRight().getData().getCount() : -1;
+			TreeNode<T> lifted = null;
+
+			if (leftCount > count && leftCount >= rightCount) {
+				lifted = this.rotateRight(node);
+			} else if (rightCount > count) {
+				lifted = this.rotateLeft(node);
+			} else {
+				break;
+			}
+			if (parent == null) {
+				joined = lifted;
+			} else if (parent.getLeft() == node) {
+				parent.setLeft(lifted);
+			} else {
+				parent.setRight(lifted);
+			}
+			this.push(depth++, lifted);
+			parent = lifted;
+		}
+		node.updateHeight();
+
+		while (depth > 0) {
+			this.pop(--depth).updateHeight();
+		}
+		return joined;
+	}
+
+	/**
+	 * Returns the rank of data with a count of count in popularity order: data
+	 * with a greater count rank higher, and data with equal counts are ordered by
+	 * a hash of the data, which keeps runs of equal counts balanced on average.
+	 *
+	 * @param data  The data.
+	 * @param count The count of data.
+	 * @return The rank of data.
+	 */
+	static long popularity(final CountedData<?> data, final int count) {
+		int hash = data.getData().hashCode();
+		hash = (hash ^ hash >>> 16) * 0x85EBCA6B;
+		hash = (hash ^ hash >>> 13) * 0xC2B2AE35;
+		hash ^= hash >>> 16;
+		return (long) count << 32 | (hash ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Auxiliary method for remove. Finds data without recursion and decrements its
+	 * count, then restores the count ordering below it: while a child of the node
+	 * has a greater count than the node, the child with the greater count is
+	 * rotated above it. If the count was not greater than 1 the node is removed
+	 * instead: it is rotated below the child with the greater count until it has
+	 * at most one child, which then takes its place. The nodes above it keep
+	 * counts at least those of the nodes rotated up, so only the path needs its
+	 * heights updated. Every node whose count is compared is passed to
+	 * {@code touch} first.
+	 *
+	 * @param node The root of the subtree (TreeNode).
+	 * @param data Data to be removed from the tree.
+	 * @return The new root of the subtree.
+	 */
+	@Override
+	protected TreeNode<T> removeAux(final TreeNode<T> node, final CountedData<T> data) {
+		TreeNode<T> current = node;
+		TreeNode<T> parent = null;
+		int depth = 0;
+		int result = 0;
+		boolean touched = false;
+
+		while (current != null) {
+			touched |= this.touch(current);
+			result = current.getData().compareTo(data);
+
+			if (result == 0) {
+				break;
+			}
+			this.push(depth++, current);
+			parent = current;
+			current = result > 0 ? current.getLeft() : current.getRight();
+		}
+
+		if (current == null) {
+			if (touched) {
+				// A count on the path changed, so the count sums above it are stale.
+				this.recount(this.pop(depth - 1), depth - 1);
+			} else {
+				this.clearPath(depth);
+			}
+			return node;
+		}
+		final CountedData<T> found = current.getData();
+		final boolean removed = found.getCount() <= 1;
+
+		if (removed) {
+			this.size--;
+			this.counted(found, false);
+		} else {
+			found.decrementCount();
+			this.counted(found, true);
+		}
+		final int count = found.getCount();
+
+		while (true) {
+			this.touch(current.getLeft());
+			this.touch(current.getRight());
+			final int leftCount = current.getLeft() != null ? current.getLeft().getData().getCount() : -1;
+			final int rightCount = current.getRight() != null ? current.getRight().getData().getCount() : -1;
+			TreeNode<T> lifted = null;
+
+			if (removed ? leftCount >= 0 && rightCount >= 0 && leftCount >= rightCount
+					: leftCount > count && leftCount >= rightCount) {
+				lifted = this.rotateRight(current);
+			} else if (removed ? leftCount >= 0 && rightCount >= 0 : rightCount > count) {
+				lifted = this.rotateLeft(current);
+			} else {
+				break;
+			}
+			link(parent, current, lifted);
+			this.push(depth++, lifted);
+			parent = lifted;
+		}
+		TreeNode<T> replacement = current;
+
+		if (removed) {
+			replacement = current.getLeft() != null ? current.getLeft() : current.getRight();
+			link(parent, current, replacement);
+		} else {
+			current.updateHeight();
+		}
+
+		while (depth > 0) {
+			replacement = this.pop(--depth);
+			replacement.updateHeight();
+		}
+		return replacement;
+	}
+
+	/**
+	 * Replaces child of parent with replacement.
+	 *
+	 * @param <T>         The data type.
+	 * @param parent      The parent of child, may be null if child is a root.
+	 * @param child       The child to replace.
+	 * @param replacement The node to put in its place, may be null.
+	 */
+	private static <T extends Comparable<T>> void link(final TreeNode<T> parent, final TreeNode<T> child,
+			final TreeNode<T> replacement) {
+
+		if (parent != null) {
+			if (parent.getLeft() == child) {
+				parent.setLeft(replacement);
+			} else {
+				parent.setRight(replacement);
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Performs a left rotation around node.
+	 *
+	 * @param parent The subtree to rotate.
+	 * @return The new root of the subtree.
+	 */
+	private TreeNode<T> rotateLeft(final TreeNode<T> parent) {
+
+		// your code here
+		TreeNode<T> RC = parent.getRight();
+		parent.setRight(RC.getLeft());
+		RC.setLeft(parent);
+		parent.updateHeight();
+		RC.updateHeight();
+		this.rotated();
+
+		return RC;
+	}
+
+	/**
+	 * Performs a right rotation around {@code node}.
+	 *
+	 * @param parent The subtree to rotate.
+	 * @return The new root of the subtree.
+	 */
+	private TreeNode<T> rotateRight(final TreeNode<T> parent) {
+
+		// your code here
+		TreeNode<T> RC = parent.getLeft();
+		parent.setLeft(RC.getRight());
+		RC.setRight(parent);
+		parent.updateHeight();
+		RC.updateHeight();
+		this.rotated();
+
+		return RC;
+	}
+
+	/**
+	 * Inserts all of data into this tree one at a time, in the order given. The
+	 * shape of a Popularity Tree depends on the order of its insertions and
+	 * retrievals, so it is not rebuilt balanced as a BST is.
+	 *
+	 * @param data Data to store.
+	 */
+	@Override
+	public void insertAll(final Collection<CountedData<T>> data) {
+
+		for (final CountedData<T> item : data) {
+			this.insert(item);
+		}
+		return;
+	}
+
+	/**
+	 * Returns the Popularity Tree holding sorted, built in linear time as the
+	 * Cartesian tree on the counts of the data, so that no node has a greater
+	 * count than its parent. Ties are broken by {@code popularity}.
+	 *
+	 * @param sorted Data in strictly increasing order, with their counts.
+	 * @return The root of the tree, null if sorted is empty.
+	 */
+	@Override
+	protected TreeNode<T> newTree(final CountedData<T>[] sorted) {
+		final long[] priorities = new long[sorted.length];
+
+		for (int i = 0; i < sorted.length; i++) {
+			priorities[i] = popularity(sorted[i], sorted[i].getCount());
+		}
+		return TreeBuilder.cartesian(sorted, priorities);
+	}
+
+	/**
+	 * Replaces BST insertIncrement - does not increment count on repeated
+	 * insertion. Counts are incremented only on retrieve.
+	 */
+	@Override
+	protected int insertIncrement() {
+		return 0;
+	}
+
+	/**
+	 * Counts every retrieval, including those made by retrieveBatch.
+	 *
+	 * @return 1
+	 */
+	@Override
+	protected int retrieveIncrement() {
+		return 1;
+	}
+
+	/**
+	 * Called by retrieve on each node whose count it is about to compare, before
+	 * comparing it. A Popularity Tree does nothing. A subclass may bring the count
+	 * of node up to date here, and must then update the height of node.
+	 *
+	 * @param node The node, may be null.
+	 * @return true if the count of node changed, false otherwise.
+	 */
+	protected boolean touch(final TreeNode<T> node) {
+		return false;
+	}
+
+	/**
+	 * Auxiliary method for valid. Determines if a subtree based on node is a valid
+	 * subtree. An Popularity Tree must meet the BST validation conditions, and
+	 * additionally the counts of any node data must be greater than or equal to the
+	 * counts of its children. Equal counts are valid, since retrieve rotates a node
+	 * only above a parent with a smaller count.
+	 *
+	 * @param node The root of the subtree to test for validity.
+	 * @return true if the subtree base on node is valid, false otherwise.
+	 */
+	@Override
+	protected boolean isValidAux(final TreeNode<T> node, TreeNode<T> minNode, TreeNode<T> maxNode) {
+
+		// your code here
+		boolean boo = true;
+		if (node == null) {
+			boo = true;
+		} else if (node.getLeft() == null && node.getRight() == null) {
+			boo = true;
+		} else if (node.getLeft() == null || node.getRight() == null) {
+			if (node.getRight() != null) {
+				if (node.getRight().getData().getCount() <= node.getData().getCount()
+						&& node.getData().compareTo(node.getRight().getData()) < 0) {
+					boo = isValidAux(node.getRight(), null, null);
+				} else {
+					boo = false;
+				}
+			}
+			if (node.getLeft() != null) {
+				if (node.getLeft().getData().getCount() <= node.getData().getCount()
+						&& node.getData().compareTo(node.getLeft().getData()) > 0) {
+					boo = isValidAux(node.getLeft(), null, null);
+				} else {
+					boo = false;
+				}
+			}
+		} else {
+			boo = node.getLeft().getData().getCount() <= node.getData().getCount()
+					&& node.getRight().getData().getCount() <= node.getData().getCount()
+					&& node.getData().compareTo(node.getLeft().getData()) > 0
+					&& node.getData().compareTo(node.getRight().getData()) < 0
+					&& isValidAux(node.getRight(), null, null) && isValidAux(node.getLeft(), null, null);
+		}
+
+		return boo;
+	}
+
+	/**
+	 * Determines whether two PopularityTrees are identical.
+	 *
+	 * @param target The PopularityTree to compare this PopularityTree against.
+	 * @return true if this PopularityTree and target contain nodes that match in
+	 *         position, data, count, and height, false otherwise.
+	 */
+	public boolean equals(final PopularityTree<T> target) {
+		return super.equals(target);
+	}
+
+	/**
+	 * Adds count to the count of data as if data were retrieved count times,
+	 * inserting data first if it is not in the tree, then moves data towards the
+	 * root as retrieve does. Does not count comparisons.
+	 *
+	 * @param data  Data to store.
+	 * @param count The amount to add to the data count, not negative.
+	 */
+	@Override
+	public void add(final CountedData<T> data, final int count) {
+		final long start = this.begin();
+		this.root = this.insertAux(this.root, data, 0);
+		this.retrieveAux(data, count, false);
+		this.end(TreeMetrics.Operation.INSERT, start);
+		return;
+	}
+
+	/**
+	 * Very similar to the BST retrieve, but increments the data count here instead
+	 * of in the insertion, and moves the data towards the root when its count
+	 * passes its parent's.
+	 *
+	 * @param key The key to search for.
+	 * @return data The complete CountedData that matches key, null otherwise.
+	 */
+	@Override
+	public CountedData<T> retrieve(final CountedData<T> key) {
+		CountedData<T> data = null;
+
+		if (key != null) {
+			final long start = this.begin();
+			data = this.retrieveAux(key, 1, true);
+			this.end(TreeMetrics.Operation.RETRIEVE, start);
+		}
+		return data;
+	}
+
+	/**
+	 * Returns the k most popular data, those with the greatest counts. The data
+	 * are kept ordered by count in an index that is built on the first call and
+	 * updated in constant time by each retrieval from then on, so later calls take
+	 * O(k) time without visiting the tree. Data with equal counts are returned in
+	 * no particular order. Not copy safe as it returns references to the data, not
+	 * copies of the data.
+	 *
+	 * @param k The number of data wanted.
+	 * @return The k data with the greatest counts, or all of the data if there are
+	 *         fewer than k, in order of decreasing count.
+	 */
+	public ArrayList<CountedData<T>> topK(final int k) {
+		return this.topKAux(k);
+	}
+}
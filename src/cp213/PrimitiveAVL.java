@@ -0,0 +1,372 @@
+package cp213;
+
+import java.util.Arrays;
+
+/**
+ * The shape and bookkeeping shared by the AVL trees of primitive keys, IntAVL
+ * and LongAVL. Nodes carry a count, a height and two children here, and each
+ * subclass adds a key of its own primitive type, so keys are never boxed. The
+ * subclasses search for a key; this class links and unlinks the node found and
+ * rebalances the path above it without recursion, as BST and AVL do.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ *
+ * @param <N> The node type of the subclass.
+ */
+abstract class PrimitiveAVL<N extends PrimitiveAVL.Node<N>> {
+
+	/**
+	 * A tree node without its key.
+	 *
+	 * @param <N> The node type of the subclass.
+	 */
+	abstract static class Node<N extends Node<N>> {
+		protected int count = 1; // the key count
+		protected int height = 1; // the node height
+		protected N left = null; // pointer to the left child node
+		protected N right = null; // pointer to the right child node
+
+		/**
+		 * Updates the height of this node from the heights of its children.
+		 */
+		void updateHeight() {
+			this.height = Math.max(height(this.left), height(this.right)) + 1;
+			return;
+		}
+	}
+
+	// Attributes.
+	/**
+	 * Count of comparisons performed by count and contains.
+	 */
+	protected long comparisons = 0;
+	/**
+	 * Nodes from the root down to the node being inserted or removed. Reused
+	 * between calls so that updates do not allocate.
+	 */
+	@SuppressWarnings("unchecked")
+	private N[] path = (N[]) new Node<?>[32];
+	/**
+	 * Root node of the tree.
+	 */
+	protected N root = null;
+	/**
+	 * Number of nodes in the tree.
+	 */
+	protected int size = 0;
+
+	/**
+	 * Returns the balance of node: left height minus right height.
+	 *
+	 * @param node A node.
+	 * @return The balance of node, 0 if node is null.
+	 */
+	private static int balance(final Node<?> node) {
+		return node == null ? 0 : height(node.left) - height(node.right);
+	}
+
+	/**
+	 * Returns the height of node.
+	 *
+	 * @param node A node.
+	 * @return The height of node, 0 if node is null.
+	 */
+	private static int height(final Node<?> node) {
+		return node == null ? 0 : node.height;
+	}
+
+	/**
+	 * Auxiliary method for isValid.
+	 *
+	 * @param node The subtree root.
+	 * @param min  Keys in the subtree must be greater than the key of min, may be
+	 *             null.
+	 * @param max  Keys in the subtree must be less than the key of max, may be
+	 *             null.
+	 * @return true if the subtree is ordered, balanced and has correct heights.
+	 */
+	private boolean isValidAux(final N node, final N min, final N max) {
+		boolean valid = true;
+
+		if (node != null) {
+			valid = (min == null || this.ordered(min, node)) && (max == null || this.ordered(node, max))
+					&& Math.abs(balance(node)) <= 1
+					&& node.height == Math.max(height(node.left), height(node.right)) + 1
+					&& this.isValidAux(node.left, min, node) && this.isValidAux(node.right, node, max);
+		}
+		return valid;
+	}
+
+	/**
+	 * Rebalances node if its children are not balanced.
+	 *
+	 * @param <N>  The node type.
+	 * @param node The node to rebalance.
+	 * @return The replacement for node.
+	 */
+	private static <N extends Node<N>> N rebalance(final N node) {
+		node.updateHeight();
+		final int balance = balance(node);
+		N replacement = node;
+
+		if (balance > 1) {
+			if (balance(node.left) < 0) {
+				node.left = rotateLeft(node.left);
+			}
+			replacement = rotateRight(node);
+		} else if (balance < -1) {
+			if (balance(node.right) > 0) {
+				node.right = rotateRight(node.right);
+			}
+			replacement = rotateLeft(node);
+		}
+		return replacement;
+	}
+
+	/**
+	 * Calls {@code rebalance} on the nodes of the path from the bottom up,
+	 * relinking each replacement to its parent, clears the path, and makes the
+	 * replacement for the top node the root.
+	 *
+	 * @param depth The number of entries in use.
+	 */
+	private void retrace(int depth) {
+		N replacement = null;
+
+		while (depth > 0) {
+			final N node = this.path[--depth];
+			this.path[depth] = null;
+			replacement = rebalance(node);
+
+			if (depth > 0 && replacement != node) {
+				final N parent = this.path[depth - 1];
+
+				if (parent.left == node) {
+					parent.left = replacement;
+				} else {
+					parent.right = replacement;
+				}
+			}
+		}
+		this.root = replacement;
+		return;
+	}
+
+	/**
+	 * Performs a left rotation around node.
+	 *
+	 * @param <N>  The node type.
+	 * @param node The subtree to rotate.
+	 * @return The new root of the subtree.
+	 */
+	private static <N extends Node<N>> N rotateLeft(final N node) {
+		final N child = node.right;
+		node.right = child.left;
+		child.left = node;
+		node.updateHeight();
+		child.updateHeight();
+		return child;
+	}
+
+	/**
+	 * Performs a right rotation around node.
+	 *
+	 * @param <N>  The node type.
+	 * @param node The subtree to rotate.
+	 * @return The new root of the subtree.
+	 */
+	private static <N extends Node<N>> N rotateRight(final N node) {
+		final N child = node.left;
+		node.left = child.right;
+		child.right = node;
+		node.updateHeight();
+		child.updateHeight();
+		return child;
+	}
+
+	/**
+	 * Links a new node below the last node of the path and rebalances the path.
+	 *
+	 * @param depth The number of entries of the path in use, the ancestors of
+	 *              node.
+	 * @param node  The node to add.
+	 */
+	protected void add(final int depth, final N node) {
+		this.size++;
+
+		if (depth == 0) {
+			this.root = node;
+		} else {
+			final N parent = this.path[depth - 1];
+
+			if (this.ordered(node, parent)) {
+				parent.left = node;
+			} else {
+				parent.right = node;
+			}
+			this.retrace(depth);
+		}
+		return;
+	}
+
+	/**
+	 * Clears the first depth entries of the path so that it does not keep nodes
+	 * alive.
+	 *
+	 * @param depth The number of entries in use.
+	 */
+	protected void clearPath(final int depth) {
+
+		for (int i = 0; i < depth; i++) {
+			this.path[i] = null;
+		}
+		return;
+	}
+
+	/**
+	 * Determines if the key of lower is less than the key of upper.
+	 *
+	 * @param lower A node.
+	 * @param upper A node.
+	 * @return true if the key of lower is less than the key of upper, false
+	 *         otherwise.
+	 */
+	protected abstract boolean ordered(N lower, N upper);
+
+	/**
+	 * Stores a node on the path, growing the path as necessary.
+	 *
+	 * @param depth The position of node on the path.
+	 * @param node  The node to store.
+	 */
+	protected void push(final int depth, final N node) {
+
+		if (depth == this.path.length) {
+			this.path = Arrays.copyOf(this.path, depth * 2);
+		}
+		this.path[depth] = node;
+		return;
+	}
+
+	/**
+	 * Unlinks node from the tree and rebalances the path above it. A node with two
+	 * children is replaced by its in-order predecessor.
+	 *
+	 * @param depth The number of entries of the path in use, the ancestors of
+	 *              node.
+	 * @param node  The node to remove.
+	 */
+	protected void unlink(int depth, final N node) {
+		this.size--;
+		final int position = depth;
+		N replacement = null;
+
+		if (node.left == null) {
+			replacement = node.right;
+		} else if (node.right == null) {
+			replacement = node.left;
+		} else {
+			// Node has two children: replace it with the largest node of its left subtree.
+			this.push(depth++, node);
+			N parent = node;
+			replacement = node.left;
+
+			while (replacement.right != null) {
+				this.push(depth++, replacement);
+				parent = replacement;
+				replacement = replacement.right;
+			}
+
+			if (parent == node) {
+				node.left = replacement.left;
+			} else {
+				parent.right = replacement.left;
+			}
+			replacement.left = node.left;
+			replacement.right = node.right;
+			this.path[position] = replacement;
+		}
+
+		if (position > 0) {
+			final N parent = this.path[position - 1];
+
+			if (parent.left == node) {
+				parent.left = replacement;
+			} else {
+				parent.right = replacement;
+			}
+		}
+
+		if (depth > 0) {
+			this.retrace(depth);
+		} else {
+			this.root = replacement;
+		}
+		return;
+	}
+
+	/**
+	 * Get number of comparisons executed by count and contains.
+	 *
+	 * @return comparisons, Integer.MAX_VALUE if there have been more.
+	 */
+	public int getComparisons() {
+		return (int) Math.min(this.comparisons, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Get number of comparisons executed by count and contains, which may exceed
+	 * the range of {@code getComparisons} over a long run.
+	 *
+	 * @return comparisons
+	 */
+	public long getComparisonsLong() {
+		return this.comparisons;
+	}
+
+	/**
+	 * Returns the height of the root node of this tree.
+	 *
+	 * @return height of root node, 0 if the root node is null.
+	 */
+	public int getHeight() {
+		return height(this.root);
+	}
+
+	/**
+	 * Returns the number of keys in the tree.
+	 *
+	 * @return number of keys in this tree.
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Determines if this tree is empty.
+	 *
+	 * @return true if this tree is empty, false otherwise.
+	 */
+	public boolean isEmpty() {
+		return this.root == null;
+	}
+
+	/**
+	 * Determines if this tree is a valid AVL: ordered, balanced in every subtree,
+	 * and with correct node heights.
+	 *
+	 * @return true if this tree is a valid AVL, false otherwise.
+	 */
+	public boolean isValid() {
+		return this.isValidAux(this.root, null, null);
+	}
+
+	/**
+	 * Resets the comparison count to 0.
+	 */
+	public void resetComparisons() {
+		this.comparisons = 0;
+		return;
+	}
+}
@@ -0,0 +1,228 @@
+package cp213;
+
+/**
+ * Implements a Semi-Splay Tree. Extends BST.
+ *
+ * Like a SplayTree, every access restructures the search path, but where two
+ * steps go the same way only the parent is rotated above the grandparent, and
+ * restructuring continues from the parent. The accessed data moves about half
+ * way to the root rather than all the way, which does about half the rotations
+ * of splaying while keeping its O(log n) amortized bound, and disturbs the
+ * tree less when the access pattern shifts. The search path is kept on the
+ * BST path and restructured from the bottom up without recursion.
+ *
+ * As in a PopularityTree, data counts are incremented on retrieve, not on
+ * insert.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class SemiSplayTree<T extends Comparable<T>> extends BST<T> {
+
+	/**
+	 * Descends the subtree rooted at node towards key, pushing every node visited
+	 * onto the path, including the node matching key if there is one.
+	 *
+	 * @param node    The root of the subtree.
+	 * @param key     The key to search for.
+	 * @param counted Whether to count the comparisons made.
+	 * @return The number of nodes on the path. The last is the matching node, or
+	 *         the last node visited if key is not in the subtree.
+	 */
+	private int descend(final TreeNode<T> node, final CountedData<T> key, final boolean counted) {
+		TreeNode<T> current = node;
+		int depth = 0;
+
+		while (current != null) {
+			this.push(depth++, current);
+
+			if (counted) {
+				this.comparisons++;
+			}
+			final int result = current.getData().compareTo(key);
+
+			if (result == 0) {
+				break;
+			}
+			current = result > 0 ? current.getLeft() : current.getRight();
+		}
+		return depth;
+	}
+
+	/**
+	 * Rotates child above parent.
+	 *
+	 * @param parent The node to rotate down.
+	 * @param child  A child of parent.
+	 * @return child, the new root of the subtree.
+	 */
+	private TreeNode<T> rotate(final TreeNode<T> parent, final TreeNode<T> child) {
+
+		if (parent.getLeft() == child) {
+			parent.setLeft(child.getRight());
+			child.setRight(parent);
+		} else {
+			parent.setRight(child.getLeft());
+			child.setLeft(parent);
+		}
+		parent.updateHeight();
+		child.updateHeight();
+		this.rotated();
+		return child;
+	}
+
+	/**
+	 * Semi-splays the path from its last node up, then clears the path. With x the
+	 * current node, p its parent and g its grandparent: if x and p are children on
+	 * the same side, p is rotated above g and restructuring continues from p;
+	 * otherwise x is rotated above p and then above g, and restructuring continues
+	 * from x. When x is a child of the root it is rotated above the root. Nodes
+	 * above the restructured part have their heights updated.
+	 *
+	 * @param depth The number of nodes on the path, at least 1.
+	 * @return The new root of the tree.
+	 */
+	private TreeNode<T> semiSplay(int depth) {
+		TreeNode<T> current = this.pop(--depth);
+		current.updateHeight();
+
+		while (depth >= 2) {
+			final TreeNode<T> parent = this.pop(--depth);
+			final TreeNode<T> grandparent = this.pop(--depth);
+			TreeNode<T> top = null;
+
+			if (parent.getLeft() == current == (grandparent.getLeft() == parent)) {
+				// Zig-zig: rotate the parent only.
+				top = this.rotate(grandparent, parent);
+			} else {
+				// Zig-zag: rotate current twice.
+				if (grandparent.getLeft() == parent) {
+					grandparent.setLeft(this.rotate(parent, current));
+				} else {
+					grandparent.setRight(this.rotate(parent, current));
+				}
+				top = this.rotate(grandparent, current);
+			}
+			if (depth > 0) {
+				final TreeNode<T> above = this.pop(depth - 1);
+
+				if (above.getLeft() == grandparent) {
+					above.setLeft(top);
+				} else {
+					above.setRight(top);
+				}
+				this.push(depth - 1, above);
+			}
+			current = top;
+		}
+		if (depth == 1) {
+			current = this.rotate(this.pop(--depth), current);
+		}
+		return current;
+	}
+
+	/**
+	 * Inserts data at the bottom of the subtree as a BST does, or adds increment to
+	 * the count of the matching data, then semi-splays the search path.
+	 *
+	 * @param node      The root of the subtree.
+	 * @param data      Data to be inserted into the tree.
+	 * @param increment The amount to add to the data count.
+	 * @return The new root of the subtree.
+	 */
+	@Override
+	protected TreeNode<T> insertAux(final TreeNode<T> node, final CountedData<T> data, final int increment) {
+		int depth = this.descend(node, data, false);
+
+		if (depth == 0) {
+			data.setCount(data.getCount() + increment);
+			this.counted(data, true);
+			this.push(depth++, new TreeNode<T>(data));
+			this.size++;
+		} else {
+			final TreeNode<T> last = this.pop(depth - 1);
+			final int result = last.getData().compareTo(data);
+			this.push(depth - 1, last);
+
+			if (result == 0) {
+				last.getData().setCount(last.getData().getCount() + increment);
+				this.counted(last.getData(), true);
+			} else {
+				data.setCount(data.getCount() + increment);
+				this.counted(data, true);
+				final TreeNode<T> added = new TreeNode<T>(data);
+				this.size++;
+
+				if (result > 0) {
+					last.setLeft(added);
+				} else {
+					last.setRight(added);
+				}
+				this.push(depth++, added);
+			}
+		}
+		return this.semiSplay(depth);
+	}
+
+	/**
+	 * Replaces BST insertIncrement - does not increment count on repeated
+	 * insertion. Counts are incremented only on retrieve.
+	 */
+	@Override
+	protected int insertIncrement() {
+		return 0;
+	}
+
+	/**
+	 * Removes data as a BST does, then semi-splays the search path for data, which
+	 * ends at the parent of the removed node.
+	 *
+	 * @param node The root of the subtree.
+	 * @param data Data to be removed from the tree.
+	 * @return The new root of the subtree.
+	 */
+	@Override
+	protected TreeNode<T> removeAux(final TreeNode<T> node, final CountedData<T> data) {
+		final TreeNode<T> top = super.removeAux(node, data);
+		final int depth = this.descend(top, data, false);
+		return depth > 0 ? this.semiSplay(depth) : top;
+	}
+
+	/**
+	 * Counts every retrieval, including those made by retrieveBatch.
+	 *
+	 * @return 1
+	 */
+	@Override
+	protected int retrieveIncrement() {
+		return 1;
+	}
+
+	/**
+	 * Searches for key, increments the count of the data found, and semi-splays
+	 * the search path.
+	 *
+	 * @param key The key to search for.
+	 * @return data The complete CountedData that matches key, null otherwise.
+	 */
+	@Override
+	public CountedData<T> retrieve(final CountedData<T> key) {
+		final long start = this.begin();
+		CountedData<T> data = null;
+
+		if (key != null && this.root != null) {
+			final int depth = this.descend(this.root, key, true);
+			final TreeNode<T> last = this.pop(depth - 1);
+
+			if (last.getData().compareTo(key) == 0) {
+				data = last.getData();
+				data.setCount(data.getCount() + 1);
+				this.counted(data, true);
+			}
+			this.push(depth - 1, last);
+			this.root = this.semiSplay(depth);
+		}
+		this.end(TreeMetrics.Operation.RETRIEVE, start);
+		return data;
+	}
+}
@@ -0,0 +1,986 @@
+package cp213;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Implements a counted index that may be shared between threads by dividing
+ * its keys by range between independent trees, the shards, each guarded by its
+ * own lock. Extends BST, whose operations it implements by delegating to the
+ * shard that holds the key, so it can stand in for a BST.
+ *
+ * Every key of a single tree is reached through its one root, so writers of a
+ * tree shared between threads must all take one lock. Here writers of keys in
+ * different shards take different locks and run in parallel; with as many
+ * shards as threads and keys spread evenly, counting scales with the cores.
+ * The shards are divided by splitter keys chosen at the quantiles of a sample
+ * of the keys expected, so each shard receives about as many keys as any
+ * other. Shard i holds the keys not less than splitter i - 1 and less than
+ * splitter i.
+ *
+ * An operation on one key locks one shard. An operation over many keys, such
+ * as inOrder, getSize or rank, visits the shards in order, locking each in
+ * turn, and so sees each shard as it was when it was visited. As the shards
+ * hold disjoint ranges, the in-order traversal is the traversal of each shard
+ * in turn. The shards together have no single tree shape, so the level-order
+ * and preorder traversals are likewise those of each shard in turn. The data
+ * returned are copies holding the count when they were read. A snapshot of the
+ * index holds its data in order with their counts, and can be loaded by any
+ * tree.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class ShardedTree<T extends Comparable<T>> extends BST<T> {
+
+	// Attributes.
+	/**
+	 * The lock of each shard.
+	 */
+	private final ReentrantLock[] locks;
+	/**
+	 * Count of comparisons with the splitters made by retrieve, contention free.
+	 */
+	private final LongAdder routing = new LongAdder();
+	/**
+	 * The shards, in order of their key ranges.
+	 */
+	private final ArrayList<BST<T>> shards = new ArrayList<>();
+	/**
+	 * The least key of each shard after the first, in increasing order.
+	 */
+	private final ArrayList<CountedData<T>> splitters = new ArrayList<>();
+
+	/**
+	 * Creates an empty index of up to shards shards, divided at the quantiles of
+	 * sample. There are fewer shards if sample has fewer than shards distinct
+	 * keys, and one if sample is empty.
+	 *
+	 * @param sample  Keys drawn from those the index is expected to hold, in any
+	 *                order.
+	 * @param shards  The number of shards wanted, at least 1.
+	 * @param factory Creates the empty tree of each shard, e.g. {@code AVL::new}.
+	 */
+	public ShardedTree(final Collection<CountedData<T>> sample, final int shards,
+			final Supplier<? extends BST<T>> factory) {
+		final ArrayList<CountedData<T>> sorted = new ArrayList<>(sample);
+		sorted.sort(null);
+
+		for (int i = 1; i < shards && !sorted.isEmpty(); i++) {
+			final CountedData<T> splitter = sorted.get((int) ((long) i * sorted.size() / shards));
+
+			if ((this.splitters.isEmpty() ? sorted.get(0) : this.splitters.get(this.splitters.size() - 1))
+					.compareTo(splitter) < 0) {
+				this.splitters.add(new CountedData<T>(splitter.getData()));
+			}
+		}
+		this.locks = new ReentrantLock[this.splitters.size() + 1];
+
+		for (int i = 0; i < this.locks.length; i++) {
+			this.shards.add(factory.get());
+			this.locks[i] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * Returns a list of copies of the data of each shard in turn, in the order of
+	 * traversal, each shard copied under its lock.
+	 *
+	 * @param traversal Returns an iterator over a shard in the order wanted.
+	 * @return The data of every shard.
+	 */
+	private ArrayList<CountedData<T>> concat(final Function<BST<T>, Iterator<CountedData<T>>> traversal) {
+		final ArrayList<CountedData<T>> list = new ArrayList<>();
+
+		for (int i = 0; i < this.shards.size(); i++) {
+			this.locks[i].lock();
+
+			try {
+				final Iterator<CountedData<T>> iterator = traversal.apply(this.shards.get(i));
+
+				while (iterator.hasNext()) {
+					list.add(copy(iterator.next()));
+				}
+			} finally {
+				this.locks[i].unlock();
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Returns a copy of data.
+	 *
+	 * @param data The data to copy, may be null.
+	 * @return A copy of data with its current count, null if data is null.
+	 */
+	private static <T extends Comparable<T>> CountedData<T> copy(final CountedData<T> data) {
+		return data != null ? new CountedData<T>(data) : null;
+	}
+
+	/**
+	 * Returns a copy of the nearest data to key in the shards from index on,
+	 * searching each shard in turn in the direction given until one holds such
+	 * data.
+	 *
+	 * @param index     The shard to start from.
+	 * @param key       The key to search from.
+	 * @param before    true to search for data before key, false for data after
+	 *                  it.
+	 * @param inclusive Whether data equal to key is wanted.
+	 * @return A copy of the nearest data, null if there is none.
+	 */
+	private CountedData<T> nearest(int index, final CountedData<T> key, final boolean before,
+			final boolean inclusive) {
+		CountedData<T> data = null;
+
+		while (data == null && index >= 0 && index < this.shards.size()) {
+			final BST<T> shard = this.shards.get(index);
+			this.locks[index].lock();
+
+			try {
+				if (before) {
+					data = copy(inclusive ? shard.floor(key) : shard.lower(key));
+				} else {
+					data = copy(inclusive ? shard.ceiling(key) : shard.higher(key));
+				}
+			} finally {
+				this.locks[index].unlock();
+			}
+			index += before ? -1 : 1;
+		}
+		return data;
+	}
+
+	/**
+	 * Divides data between the shards.
+	 *
+	 * @param data The data to divide.
+	 * @return The data of each shard, in the order of the shards.
+	 */
+	private ArrayList<ArrayList<CountedData<T>>> partition(final CountedData<T>[] data) {
+		final ArrayList<ArrayList<CountedData<T>>> parts = new ArrayList<>();
+
+		for (int i = 0; i < this.shards.size(); i++) {
+			parts.add(new ArrayList<>());
+		}
+		for (final CountedData<T> item : data) {
+			parts.get(this.shardOf(item)).add(item);
+		}
+		return parts;
+	}
+
+	/**
+	 * Returns the index of the shard whose range holds key, the number of
+	 * splitters not greater than key, by binary search.
+	 *
+	 * @param key The key.
+	 * @return The index of its shard.
+	 */
+	private int shardOf(final CountedData<T> key) {
+		return this.shardOf(key, false);
+	}
+
+	/**
+	 * Returns the index of the shard whose range holds key, the number of
+	 * splitters not greater than key, by binary search.
+	 *
+	 * @param key     The key.
+	 * @param counted Whether to count the comparisons made.
+	 * @return The index of its shard.
+	 */
+	private int shardOf(final CountedData<T> key, final boolean counted) {
+		int low = 0;
+		int high = this.splitters.size();
+		int compared = 0;
+
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			compared++;
+
+			if (this.splitters.get(middle).compareTo(key) <= 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		if (counted) {
+			this.routing.add(compared);
+		}
+		return low;
+	}
+
+	/**
+	 * Replaces the contents of this index with sorted, divided between the shards
+	 * by the splitters of this index. Each shard is replaced under its lock by the
+	 * tree its own kind builds from its part, holding data of its own kind, so a
+	 * shard whose shape is a heap, such as a Treap or a Popularity Tree, keeps its
+	 * ordering.
+	 *
+	 * @param sorted The data in strictly increasing order, with their counts.
+	 */
+	@SuppressWarnings("unchecked")
+	private void replaceAll(final List<CountedData<T>> sorted) {
+		final ArrayList<ArrayList<CountedData<T>>> parts = this
+				.partition((CountedData<T>[]) sorted.toArray(new CountedData<?>[0]));
+
+		for (int i = 0; i < this.shards.size(); i++) {
+			final BST<T> shard = this.shards.get(i);
+			final ArrayList<CountedData<T>> part = parts.get(i);
+			final CountedData<T>[] data = (CountedData<T>[]) new CountedData<?>[part.size()];
+
+			for (int j = 0; j < data.length; j++) {
+				data[j] = shard.newData(part.get(j).getData(), part.get(j).getCount());
+			}
+			this.locks[i].lock();
+
+			try {
+				shard.replace(shard.newTree(data));
+			} finally {
+				this.locks[i].unlock();
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Replaces the contents of this index with the data of a snapshot, read in
+	 * order with their counts and divided between the shards by the splitters of
+	 * this index, which need not be those of the index saved. A snapshot of a tree
+	 * gives the data of the tree.
+	 *
+	 * @param channel The channel to read from.
+	 * @param codec   Decodes the keys; must be the codec they were saved with.
+	 * @throws IOException if the channel cannot be read or does not hold a tree
+	 *                     snapshot. This index is then unchanged.
+	 */
+	@Override
+	protected void load(final ReadableByteChannel channel, final KeyCodec<T> codec) throws IOException {
+		this.replaceAll(TreeSnapshot.readSorted(channel, codec, this::newData));
+		return;
+	}
+
+	/**
+	 * Replaces the contents of this index with the data of the tree rooted at
+	 * root, in order, with their counts.
+	 *
+	 * @param root The root of the new contents, may be null.
+	 */
+	@Override
+	protected void replace(final TreeNode<T> root) {
+		final ArrayList<CountedData<T>> sorted = new ArrayList<>();
+		final TreeIterator<T> iterator = new TreeIterator.InOrder<T>(root);
+
+		while (iterator.hasNext()) {
+			sorted.add(iterator.next());
+		}
+		this.replaceAll(sorted);
+		return;
+	}
+
+	/**
+	 * Writes the data of every shard to channel in order, with the counts each
+	 * shard would save, as a sorted snapshot. Each shard is read under its lock.
+	 * Any tree can load it.
+	 *
+	 * @param channel The channel to write to.
+	 * @param codec   Encodes the keys.
+	 * @throws IOException if the channel cannot be written.
+	 */
+	@Override
+	protected void save(final WritableByteChannel channel, final KeyCodec<T> codec) throws IOException {
+		final ArrayList<CountedData<T>> sorted = new ArrayList<>();
+
+		for (int i = 0; i < this.shards.size(); i++) {
+			final BST<T> shard = this.shards.get(i);
+			this.locks[i].lock();
+
+			try {
+				for (final CountedData<T> data : shard) {
+					sorted.add(new CountedData<T>(data.getData(), shard.savedCount(data)));
+				}
+			} finally {
+				this.locks[i].unlock();
+			}
+		}
+		TreeSnapshot.writeSorted(sorted, codec, channel);
+		return;
+	}
+
+	/**
+	 * Adds count to the count of data in its shard, inserting data if it is not
+	 * in the index.
+	 *
+	 * @param data  Data to store.
+	 * @param count The amount to add to the data count, not negative.
+	 */
+	@Override
+	public void add(final CountedData<T> data, final int count) {
+		final int index = this.shardOf(data);
+		this.locks[index].lock();
+
+		try {
+			this.shards.get(index).add(data, count);
+		} finally {
+			this.locks[index].unlock();
+		}
+		return;
+	}
+
+	/**
+	 * Returns the smallest data not less than key. Does not count comparisons.
+	 *
+	 * @param key The key to search from.
+	 * @return A copy of the least data greater than or equal to key, null if
+	 *         there is none.
+	 */
+	@Override
+	public CountedData<T> ceiling(final CountedData<T> key) {
+		return this.nearest(this.shardOf(key), key, false, true);
+	}
+
+	/**
+	 * Returns the number of data from lo to hi inclusive, summed over the shards
+	 * whose ranges meet lo to hi.
+	 *
+	 * @param lo The smallest key to count.
+	 * @param hi The largest key to count.
+	 * @return The number of data not less than lo and not greater than hi.
+	 */
+	@Override
+	public int countRange(final CountedData<T> lo, final CountedData<T> hi) {
+		int count = 0;
+
+		for (int i = this.shardOf(lo); i <= this.shardOf(hi); i++) {
+			this.locks[i].lock();
+
+			try {
+				count += this.shards.get(i).countRange(lo, hi);
+			} finally {
+				this.locks[i].unlock();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Determines whether this index holds the same data with the same counts, in
+	 * the same order, as target. The shards have no single tree shape to compare.
+	 *
+	 * @param target The tree to compare against.
+	 * @return true if this and target hold equal data with equal counts, false
+	 *         otherwise.
+	 */
+	@Override
+	public boolean equals(final BST<T> target) {
+		final Iterator<CountedData<T>> source = this.iterator();
+		final Iterator<CountedData<T>> other = target.iterator();
+		boolean isEqual = true;
+
+		while (isEqual && source.hasNext() && other.hasNext()) {
+			final CountedData<T> data = source.next();
+			final CountedData<T> match = other.next();
+			isEqual = data.compareTo(match) == 0 && data.getCount() == match.getCount();
+		}
+		return isEqual && !source.hasNext() && !other.hasNext();
+	}
+
+	/**
+	 * Returns the smallest data in the index.
+	 *
+	 * @return A copy of the least data, null if the index is empty.
+	 */
+	@Override
+	public CountedData<T> first() {
+		CountedData<T> data = null;
+
+		for (int i = 0; data == null && i < this.shards.size(); i++) {
+			this.locks[i].lock();
+
+			try {
+				data = copy(this.shards.get(i).first());
+			} finally {
+				this.locks[i].unlock();
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Returns the largest data not greater than key. Does not count comparisons.
+	 *
+	 * @param key The key to search from.
+	 * @return A copy of the greatest data less than or equal to key, null if there
+	 *         is none.
+	 */
+	@Override
+	public CountedData<T> floor(final CountedData<T> key) {
+		return this.nearest(this.shardOf(key), key, true, true);
+	}
+
+	/**
+	 * Get number of comparisons executed by the retrieve method: those with the
+	 * splitters, which choose the shard, and those made in every shard.
+	 *
+	 * @return comparisons
+	 */
+	@Override
+	public long getComparisonsLong() {
+		long comparisons = this.routing.sum();
+
+		for (int i = 0; i < this.shards.size(); i++) {
+			this.locks[i].lock();
+
+			try {
+				comparisons += this.shards.get(i).getComparisonsLong();
+			} finally {
+				this.locks[i].unlock();
+			}
+		}
+		return comparisons;
+	}
+
+	/**
+	 * Returns the height of the tallest shard, the most nodes an operation on one
+	 * key may visit.
+	 *
+	 * @return maximum height of the shards.
+	 */
+	@Override
+	public int getHeight() {
+		int height = 0;
+
+		for (int i = 0; i < this.shards.size(); i++) {
+			this.locks[i].lock();
+
+			try {
+				height = Math.max(height, this.shards.get(i).getHeight());
+			} finally {
+				this.locks[i].unlock();
+			}
+		}
+		return height;
+	}
+
+	/**
+	 * Returns the number of shards.
+	 *
+	 * @return The number of shards.
+	 */
+	public int getShardCount() {
+		return this.shards.size();
+	}
+
+	/**
+	 * Returns the number of nodes in the shards together.
+	 *
+	 * @return number of nodes in this index.
+	 */
+	@Override
+	public int getSize() {
+		int size = 0;
+
+		for (int i = 0; i < this.shards.size(); i++) {
+			this.locks[i].lock();
+
+			try {
+				size += this.shards.get(i).getSize();
+			} finally {
+				this.locks[i].unlock();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the smallest data greater than key. Does not count comparisons.
+	 *
+	 * @param key The key to search from.
+	 * @return A copy of the least data strictly greater than key, null if there is
+	 *         none.
+	 */
+	@Override
+	public CountedData<T> higher(final CountedData<T> key) {
+		return this.nearest(this.shardOf(key), key, false, false);
+	}
+
+	/**
+	 * Returns a list of copies of the data, in order from smallest to largest: the
+	 * data of each shard in turn, each copied under its lock.
+	 *
+	 * @return The contents of this index.
+	 */
+	@Override
+	public ArrayList<CountedData<T>> inOrder() {
+		return this.concat(BST::iterator);
+	}
+
+	/**
+	 * Inserts data into its shard.
+	 *
+	 * @param data Data to store.
+	 */
+	@Override
+	public void insert(final CountedData<T> data) {
+		final int index = this.shardOf(data);
+		this.locks[index].lock();
+
+		try {
+			this.shards.get(index).insert(data);
+		} finally {
+			this.locks[index].unlock();
+		}
+		return;
+	}
+
+	/**
+	 * Inserts all of data, passing each shard its own data with
+	 * {@code insertAll} under one acquisition of its lock.
+	 *
+	 * @param data Data to store.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public void insertAll(final Collection<CountedData<T>> data) {
+		final ArrayList<ArrayList<CountedData<T>>> parts = this.partition((CountedData<T>[]) data.toArray(new CountedData<?>[0]));
+
+		for (int i = 0; i < parts.size(); i++) {
+			if (!parts.get(i).isEmpty()) {
+				this.locks[i].lock();
+
+				try {
+					this.shards.get(i).insertAll(parts.get(i));
+				} finally {
+					this.locks[i].unlock();
+				}
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Inserts all of data, passing each shard its own data with
+	 * {@code insertBatch} under one acquisition of its lock.
+	 *
+	 * @param data Data to store.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public void insertBatch(final CountedData<T>[] data) {
+		final ArrayList<ArrayList<CountedData<T>>> parts = this.partition(data);
+
+		for (int i = 0; i < parts.size(); i++) {
+			if (!parts.get(i).isEmpty()) {
+				this.locks[i].lock();
+
+				try {
+					this.shards.get(i).insertBatch((CountedData<T>[]) parts.get(i).toArray(new CountedData<?>[0]));
+				} finally {
+					this.locks[i].unlock();
+				}
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Determines if this index is empty.
+	 *
+	 * @return true if every shard is empty, false otherwise.
+	 */
+	@Override
+	public boolean isEmpty() {
+		return this.first() == null;
+	}
+
+	/**
+	 * Determines if the index is valid: every shard is valid and holds only keys
+	 * in its range.
+	 *
+	 * @return true if this index is valid, false otherwise.
+	 */
+	@Override
+	public boolean isValid() {
+		boolean valid = true;
+
+		for (int i = 0; valid && i < this.shards.size(); i++) {
+			final BST<T> shard = this.shards.get(i);
+			this.locks[i].lock();
+
+			try {
+				valid = shard.isValid() && (shard.isEmpty()
+						|| (i == 0 || shard.first().compareTo(this.splitters.get(i - 1)) >= 0)
+								&& (i == this.splitters.size() || shard.last().compareTo(this.splitters.get(i)) < 0));
+			} finally {
+				this.locks[i].unlock();
+			}
+		}
+		return valid;
+	}
+
+	/**
+	 * Returns an iterator over copies of the data, in order from smallest to
+	 * largest, taken by {@code inOrder}.
+	 *
+	 * @return An in-order iterator.
+	 */
+	@Override
+	public Iterator<CountedData<T>> iterator() {
+		return this.inOrder().iterator();
+	}
+
+	/**
+	 * Returns the largest data in the index.
+	 *
+	 * @return A copy of the greatest data, null if the index is empty.
+	 */
+	@Override
+	public CountedData<T> last() {
+		CountedData<T> data = null;
+
+		for (int i = this.shards.size() - 1; data == null && i >= 0; i--) {
+			this.locks[i].lock();
+
+			try {
+				data = copy(this.shards.get(i).last());
+			} finally {
+				this.locks[i].unlock();
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Returns a list of copies of the data of each shard in level order, the shards
+	 * in order of their key ranges, each copied under its lock.
+	 *
+	 * @return The contents of this index in level order of each shard.
+	 */
+	@Override
+	public ArrayList<CountedData<T>> levelOrder() {
+		return this.concat(BST::levelOrderIterator);
+	}
+
+	/**
+	 * Returns an iterator over copies of the data of each shard in level order, the
+	 * shards in order of their key ranges, taken by {@code levelOrder}.
+	 *
+	 * @return A level order iterator.
+	 */
+	@Override
+	public Iterator<CountedData<T>> levelOrderIterator() {
+		return this.levelOrder().iterator();
+	}
+
+	/**
+	 * Returns the largest data less than key. Does not count comparisons.
+	 *
+	 * @param key The key to search from.
+	 * @return A copy of the greatest data strictly less than key, null if there is
+	 *         none.
+	 */
+	@Override
+	public CountedData<T> lower(final CountedData<T> key) {
+		return this.nearest(this.shardOf(key), key, true, false);
+	}
+
+	/**
+	 * Returns a list of copies of the data of each shard in preorder, the shards
+	 * in order of their key ranges, each copied under its lock.
+	 *
+	 * @return The contents of this index in preorder of each shard.
+	 */
+	@Override
+	public ArrayList<CountedData<T>> preOrder() {
+		return this.concat(BST::preOrderIterator);
+	}
+
+	/**
+	 * Returns an iterator over copies of the data of each shard in preorder, the
+	 * shards in order of their key ranges, taken by {@code preOrder}.
+	 *
+	 * @return A preorder iterator.
+	 */
+	@Override
+	public Iterator<CountedData<T>> preOrderIterator() {
+		return this.preOrder().iterator();
+	}
+
+	/**
+	 * Returns an iterator over copies of the data from lo to hi inclusive, in
+	 * order. Only the shards whose ranges meet lo to hi are visited.
+	 *
+	 * @param lo The smallest key to return.
+	 * @param hi The largest key to return.
+	 * @return An iterator over the data in the range.
+	 */
+	@Override
+	public Iterator<CountedData<T>> range(final CountedData<T> lo, final CountedData<T> hi) {
+		final ArrayList<CountedData<T>> list = new ArrayList<>();
+
+		for (int i = this.shardOf(lo); i <= this.shardOf(hi); i++) {
+			this.locks[i].lock();
+
+			try {
+				final Iterator<CountedData<T>> iterator = this.shards.get(i).range(lo, hi);
+
+				while (iterator.hasNext()) {
+					list.add(copy(iterator.next()));
+				}
+			} finally {
+				this.locks[i].unlock();
+			}
+		}
+		return list.iterator();
+	}
+
+	/**
+	 * Returns the number of data less than key: the sizes of the shards before
+	 * that of key, plus the rank of key in its shard.
+	 *
+	 * @param key The key to rank.
+	 * @return The number of data less than key.
+	 */
+	@Override
+	public int rank(final CountedData<T> key) {
+		final int index = this.shardOf(key);
+		int rank = 0;
+
+		for (int i = 0; i <= index; i++) {
+			this.locks[i].lock();
+
+			try {
+				rank += i < index ? this.shards.get(i).getSize() : this.shards.get(i).rank(key);
+			} finally {
+				this.locks[i].unlock();
+			}
+		}
+		return rank;
+	}
+
+	/**
+	 * Removes data from its shard. Decrements the count of data, and if the count
+	 * is 0, removes it entirely.
+	 *
+	 * @param data Data to decrement or remove.
+	 */
+	@Override
+	public void remove(final CountedData<T> data) {
+		final int index = this.shardOf(data);
+		this.locks[index].lock();
+
+		try {
+			this.shards.get(index).remove(data);
+		} finally {
+			this.locks[index].unlock();
+		}
+		return;
+	}
+
+	/**
+	 * Removes all of data, passing each shard its own data with
+	 * {@code removeBatch} under one acquisition of its lock.
+	 *
+	 * @param data Data to decrement or remove.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public void removeBatch(final CountedData<T>[] data) {
+		final ArrayList<ArrayList<CountedData<T>>> parts = this.partition(data);
+
+		for (int i = 0; i < parts.size(); i++) {
+			if (!parts.get(i).isEmpty()) {
+				this.locks[i].lock();
+
+				try {
+					this.shards.get(i).removeBatch((CountedData<T>[]) parts.get(i).toArray(new CountedData<?>[0]));
+				} finally {
+					this.locks[i].unlock();
+				}
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Resets the comparison count, and that of every shard, to 0.
+	 */
+	@Override
+	public void resetComparisons() {
+		this.routing.reset();
+
+		for (int i = 0; i < this.shards.size(); i++) {
+			this.locks[i].lock();
+
+			try {
+				this.shards.get(i).resetComparisons();
+			} finally {
+				this.locks[i].unlock();
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Retrieves a copy of the data matching key from its shard. The shard counts
+	 * the retrieval as it would alone, e.g. a PopularityTree shard increments the
+	 * count of key.
+	 *
+	 * @param key The key to look for.
+	 * @return A copy of the data that matches key, with its count, null if key is
+	 *         not in the index.
+	 */
+	@Override
+	public CountedData<T> retrieve(final CountedData<T> key) {
+		final int index = this.shardOf(key, true);
+		CountedData<T> data = null;
+		this.locks[index].lock();
+
+		try {
+			data = copy(this.shards.get(index).retrieve(key));
+		} finally {
+			this.locks[index].unlock();
+		}
+		return data;
+	}
+
+	/**
+	 * Retrieves each key in turn with {@code retrieve}.
+	 *
+	 * @param keys The keys to look for.
+	 * @return Copies of the data matching each key, in the order of keys, null for
+	 *         keys that are not in the index.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public CountedData<T>[] retrieveBatch(final CountedData<T>[] keys) {
+		final CountedData<T>[] results = (CountedData<T>[]) new CountedData<?>[keys.length];
+
+		for (int i = 0; i < keys.length; i++) {
+			results[i] = this.retrieve(keys[i]);
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the data at index in order from smallest to largest, found by
+	 * skipping whole shards by their sizes.
+	 *
+	 * @param index The position of the data in {@code inOrder()}.
+	 * @return A copy of the data at index, null if index is negative or not less
+	 *         than the size of the index.
+	 */
+	@Override
+	public CountedData<T> select(int index) {
+		CountedData<T> data = null;
+
+		for (int i = 0; data == null && index >= 0 && i < this.shards.size(); i++) {
+			final BST<T> shard = this.shards.get(i);
+			this.locks[i].lock();
+
+			try {
+				if (index < shard.getSize()) {
+					data = copy(shard.select(index));
+				} else {
+					index -= shard.getSize();
+				}
+			} finally {
+				this.locks[i].unlock();
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Records the single-key operations of every shard in metrics from now on, so
+	 * that one TreeMetrics describes the whole index.
+	 *
+	 * @param metrics The metrics to record in, null to stop recording.
+	 */
+	@Override
+	public void setMetrics(final TreeMetrics metrics) {
+		super.setMetrics(metrics);
+
+		for (int i = 0; i < this.shards.size(); i++) {
+			this.locks[i].lock();
+
+			try {
+				this.shards.get(i).setMetrics(metrics);
+			} finally {
+				this.locks[i].unlock();
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Returns a sequential stream over copies of the data, in order from smallest
+	 * to largest, taken by {@code inOrder}.
+	 *
+	 * @return A stream over the data in this index.
+	 */
+	@Override
+	public Stream<CountedData<T>> stream() {
+		return this.inOrder().stream();
+	}
+
+	/**
+	 * Returns the sum of the counts of the data from lo to hi inclusive, summed
+	 * over the shards whose ranges meet lo to hi.
+	 *
+	 * @param lo The smallest key to include.
+	 * @param hi The largest key to include.
+	 * @return The total count of the data not less than lo and not greater than
+	 *         hi.
+	 */
+	@Override
+	public long sumCountsRange(final CountedData<T> lo, final CountedData<T> hi) {
+		long sum = 0;
+
+		for (int i = this.shardOf(lo); i <= this.shardOf(hi); i++) {
+			this.locks[i].lock();
+
+			try {
+				sum += this.shards.get(i).sumCountsRange(lo, hi);
+			} finally {
+				this.locks[i].unlock();
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the k data with the greatest counts: the greatest k of the top k of
+	 * each shard.
+	 *
+	 * @param k The number of data wanted.
+	 * @return Copies of the k data with the greatest counts, or all of the data if
+	 *         there are fewer than k, in order of decreasing count.
+	 */
+	public ArrayList<CountedData<T>> topK(final int k) {
+		final List<CountedData<T>> candidates = new ArrayList<>();
+
+		for (int i = 0; i < this.shards.size(); i++) {
+			this.locks[i].lock();
+
+			try {
+				for (final CountedData<T> data : this.shards.get(i).topKAux(k)) {
+					candidates.add(copy(data));
+				}
+			} finally {
+				this.locks[i].unlock();
+			}
+		}
+		return CountIndex.scan(candidates.iterator(), k);
+	}
+}
@@ -0,0 +1,256 @@
+package cp213;
+
+/**
+ * Implements a Splay Tree. Extends BST.
+ *
+ * Every access splays the tree on its key, moving the data found, or the last
+ * data on its search path, to the root. Recently used data stay near the root,
+ * so skewed access patterns are cheap, and any sequence of m accesses to n data
+ * costs O((m + n) log n) comparisons whatever the order of the accesses.
+ * Splaying is done top-down in one pass without recursion.
+ *
+ * As in a PopularityTree, data counts are incremented on retrieve, not on
+ * insert.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class SplayTree<T extends Comparable<T>> extends BST<T> {
+
+	/**
+	 * Splays the subtree rooted at node on key without recursion. The subtree is
+	 * taken apart from the top down into a tree of the nodes less than key and a
+	 * tree of the nodes greater than key, rotating when two steps go the same way,
+	 * until the node matching key, or the last node on its search path, is
+	 * reached. That node then becomes the root with the two trees as its children.
+	 * Every node is compared with key at most once. The heights of the nodes
+	 * moved are updated from the bottom up.
+	 *
+	 * @param node    The root of the subtree, not null.
+	 * @param key     The key to splay on.
+	 * @param counted Whether to count the comparisons made.
+	 * @return The new root of the subtree.
+	 */
+	protected TreeNode<T> splay(final TreeNode<T> node, final CountedData<T> key, final boolean counted) {
+		TreeNode<T> current = node;
+		TreeNode<T> lessRoot = null; // the tree of nodes less than key
+		TreeNode<T> lessMax = null; // its largest node, whose right link is open
+		TreeNode<T> greaterRoot = null; // the tree of nodes greater than key
+		TreeNode<T> greaterMin = null; // its smallest node, whose left link is open
+		int depth = 0;
+		int result = this.compare(current, key, counted);
+
+		while (result != 0) {
+			// Whether current, and every node met before the next link, is greater.
+			final boolean greater = result > 0;
+			TreeNode<T> child = greater ? current.getLeft() : current.getRight();
+
+			if (child == null) {
+				break;
+			}
+			final int next = this.compare(child, key, counted);
+
+			if (next != 0 && next > 0 == greater) {
+				// Zig-zig: rotate child above current, then continue below child.
+				if (greater) {
+					current.setLeft(child.getRight());
+					child.setRight(current);
+				} else {
+					current.setRight(child.getLeft());
+					child.setLeft(current);
+				}
+				current.updateHeight();
+				this.rotated();
+				current = child;
+				child = greater ? current.getLeft() : current.getRight();
+
+				if (child == null) {
+					break;
+				}
+				result = this.compare(child, key, counted);
+			} else {
+				result = next;
+			}
+			// Link current into the tree on its side of key.
+			if (greater) {
+				if (greaterMin == null) {
+					greaterRoot = current;
+				} else {
+					greaterMin.setLeft(current);
+				}
+				greaterMin = current;
+			} else {
+				if (lessMax == null) {
+					lessRoot = current;
+				} else {
+					lessMax.setRight(current);
+				}
+				lessMax = current;
+			}
+			this.push(depth++, current);
+			current = child;
+		}
+		// Reassemble the tree with current at the root.
+		if (lessMax != null) {
+			lessMax.setRight(current.getLeft());
+			current.setLeft(lessRoot);
+		}
+		if (greaterMin != null) {
+			greaterMin.setLeft(current.getRight());
+			current.setRight(greaterRoot);
+		}
+		while (depth > 0) {
+			this.pop(--depth).updateHeight();
+		}
+		current.updateHeight();
+		return current;
+	}
+
+	/**
+	 * Compares the data of node against key.
+	 *
+	 * @param node    The node to compare.
+	 * @param key     The key to compare against.
+	 * @param counted Whether to count the comparison.
+	 * @return The result of comparing the node data to key.
+	 */
+	private int compare(final TreeNode<T> node, final CountedData<T> key, final boolean counted) {
+
+		if (counted) {
+			this.comparisons++;
+		}
+		return node.getData().compareTo(key);
+	}
+
+	/**
+	 * Splays the subtree on data, then either adds increment to the count of the
+	 * matching root or splits the subtree around a new root holding data.
+	 *
+	 * @param node      The root of the subtree.
+	 * @param data      Data to be inserted into the tree.
+	 * @param increment The amount to add to the data count.
+	 * @return The new root of the subtree.
+	 */
+	@Override
+	protected TreeNode<T> insertAux(final TreeNode<T> node, final CountedData<T> data, final int increment) {
+		TreeNode<T> top = null;
+
+		if (node == null) {
+			data.setCount(data.getCount() + increment);
+			this.counted(data, true);
+			top = new TreeNode<T>(data);
+			this.size++;
+		} else {
+			top = this.splay(node, data, false);
+			final int result = top.getData().compareTo(data);
+
+			if (result == 0) {
+				top.getData().setCount(top.getData().getCount() + increment);
+				this.counted(top.getData(), true);
+				top.updateHeight();
+			} else {
+				data.setCount(data.getCount() + increment);
+				this.counted(data, true);
+				final TreeNode<T> added = new TreeNode<T>(data);
+				this.size++;
+
+				if (result > 0) {
+					added.setLeft(top.getLeft());
+					added.setRight(top);
+					top.setLeft(null);
+				} else {
+					added.setRight(top.getRight());
+					added.setLeft(top);
+					top.setRight(null);
+				}
+				top.updateHeight();
+				added.updateHeight();
+				top = added;
+			}
+		}
+		return top;
+	}
+
+	/**
+	 * Replaces BST insertIncrement - does not increment count on repeated
+	 * insertion. Counts are incremented only on retrieve.
+	 */
+	@Override
+	protected int insertIncrement() {
+		return 0;
+	}
+
+	/**
+	 * Splays the subtree on data, then decrements the count of the matching root.
+	 * If the count is not greater than 1 the root is removed: its left subtree is
+	 * splayed on data, which brings its largest node to the top with no right
+	 * child, and the right subtree becomes that child.
+	 *
+	 * @param node The root of the subtree.
+	 * @param data Data to be removed from the tree.
+	 * @return The new root of the subtree.
+	 */
+	@Override
+	protected TreeNode<T> removeAux(final TreeNode<T> node, final CountedData<T> data) {
+		TreeNode<T> top = null;
+
+		if (node != null) {
+			top = this.splay(node, data, false);
+
+			if (top.getData().compareTo(data) == 0) {
+				if (top.getData().getCount() > 1) {
+					top.getData().decrementCount();
+					this.counted(top.getData(), true);
+					top.updateHeight();
+				} else if (top.getLeft() == null) {
+					this.counted(top.getData(), false);
+					top = top.getRight();
+					this.size--;
+				} else {
+					this.counted(top.getData(), false);
+					final TreeNode<T> right = top.getRight();
+					top = this.splay(top.getLeft(), data, false);
+					top.setRight(right);
+					top.updateHeight();
+					this.size--;
+				}
+			}
+		}
+		return top;
+	}
+
+	/**
+	 * Counts every retrieval, including those made by retrieveBatch.
+	 *
+	 * @return 1
+	 */
+	@Override
+	protected int retrieveIncrement() {
+		return 1;
+	}
+
+	/**
+	 * Splays the tree on key and increments the count of the data found.
+	 *
+	 * @param key The key to search for.
+	 * @return data The complete CountedData that matches key, null otherwise.
+	 */
+	@Override
+	public CountedData<T> retrieve(final CountedData<T> key) {
+		final long start = this.begin();
+		CountedData<T> data = null;
+
+		if (key != null && this.root != null) {
+			this.root = this.splay(this.root, key, true);
+
+			if (this.root.getData().compareTo(key) == 0) {
+				data = this.root.getData();
+				data.setCount(data.getCount() + 1);
+				this.counted(data, true);
+				this.root.updateHeight();
+			}
+		}
+		this.end(TreeMetrics.Operation.RETRIEVE, start);
+		return data;
+	}
+}
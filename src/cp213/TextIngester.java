@@ -0,0 +1,222 @@
+package cp213;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Counts the letters of UTF-8 text files in parallel and adds the counts to a
+ * tree. Letters are counted as {@code A04Main.retrieve} counts them: every char
+ * for which {@code Character.isLetter} is true, converted to upper case.
+ *
+ * A file is divided into one byte range per worker thread, each range starting
+ * on a character boundary. A worker reads its range with positional channel
+ * reads in large chunks, decodes it, and counts into its own table indexed by
+ * char, so workers share nothing until their tables are summed. The sums are
+ * then added to the tree with one {@code add} per distinct letter.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class TextIngester {
+
+	/**
+	 * Number of bytes read at a time by a worker.
+	 */
+	private static final int CHUNK = 1 << 20;
+	/**
+	 * The upper case form of every letter, indexed by char. Non-letters map to 0,
+	 * which is not a letter, so counting needs no test.
+	 */
+	private static final char[] LETTERS = new char[Character.MAX_VALUE + 1];
+	/**
+	 * Ranges smaller than this are not split further.
+	 */
+	private static final long MIN_RANGE = 1 << 22;
+
+	static {
+		for (int c = 0; c <= Character.MAX_VALUE; c++) {
+			if (Character.isLetter((char) c)) {
+				LETTERS[c] = Character.toUpperCase((char) c);
+			}
+		}
+	}
+
+	// Attributes.
+	/**
+	 * The maximum number of worker threads per file.
+	 */
+	private final int threads;
+
+	/**
+	 * Constructor for an ingester that uses one worker per available processor.
+	 */
+	public TextIngester() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param threads The maximum number of worker threads per file.
+	 */
+	public TextIngester(final int threads) {
+
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive: " + threads);
+		}
+		this.threads = threads;
+	}
+
+	/**
+	 * Returns the first character boundary at or after position: the first byte
+	 * that is not a UTF-8 continuation byte.
+	 *
+	 * @param channel  The file.
+	 * @param position A position in the file.
+	 * @param size     The size of the file.
+	 * @return The boundary, size if there is none.
+	 * @throws IOException If the file cannot be read.
+	 */
+	private static long align(final FileChannel channel, long position, final long size) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(4);
+
+		while (position < size) {
+			buffer.clear();
+			final int read = channel.read(buffer, position);
+
+			for (int i = 0; i < read; i++) {
+				if ((buffer.get(i) & 0xC0) != 0x80) {
+					return position + i;
+				}
+			}
+			position += Math.max(read, 1);
+		}
+		return size;
+	}
+
+	/**
+	 * Counts the letters of a byte range of a file.
+	 *
+	 * @param channel The file.
+	 * @param start   The first byte of the range, on a character boundary.
+	 * @param end     One past the last byte of the range, on a character boundary.
+	 * @return The letter counts, indexed by upper case letter. Index 0 holds the
+	 *         count of non-letters.
+	 * @throws IOException If the file cannot be read.
+	 */
+	private static long[] countRange(final FileChannel channel, final long start, final long end)
+			throws IOException {
+		final long[] counts = new long[Character.MAX_VALUE + 1];
+		final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		final ByteBuffer bytes = ByteBuffer.allocateDirect((int) Math.min(CHUNK, Math.max(end - start, 16)));
+		final CharBuffer chars = CharBuffer.allocate(bytes.capacity());
+		long position = start;
+		boolean last = false;
+
+		while (!last) {
+			bytes.limit((int) Math.min(bytes.capacity(), bytes.position() + end - position));
+			final int read = channel.read(bytes, position);
+			position += Math.max(read, 0);
+			last = read < 0 || position >= end;
+			bytes.flip();
+			CoderResult result = decoder.decode(bytes, chars, last);
+
+			if (last && result.isUnderflow()) {
+				result = decoder.flush(chars);
+			}
+			if (result.isError()) {
+				result.throwException();
+			}
+			chars.flip();
+
+			while (chars.hasRemaining()) {
+				counts[LETTERS[chars.get()]]++;
+			}
+			chars.clear();
+			// Keep the bytes of a character split by the chunk for the next read.
+			bytes.compact();
+		}
+		return counts;
+	}
+
+	/**
+	 * Counts the letters of a file.
+	 *
+	 * @param file A UTF-8 text file.
+	 * @return The letter counts, indexed by upper case letter. Index 0 holds the
+	 *         count of non-letters.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public long[] count(final Path file) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long size = channel.size();
+			final int workers = (int) Math.max(1, Math.min(this.threads, size / MIN_RANGE));
+			final List<Callable<long[]>> ranges = new ArrayList<>(workers);
+			long start = 0;
+
+			for (int i = 1; i <= workers; i++) {
+				final long end = i == workers ? size : align(channel, size / workers * i, size);
+				final long from = start;
+				ranges.add(() -> countRange(channel, from, end));
+				start = end;
+			}
+			final long[] counts = new long[Character.MAX_VALUE + 1];
+
+			for (final Future<long[]> future : ForkJoinPool.commonPool().invokeAll(ranges)) {
+				final long[] partial = future.get();
+
+				for (int c = 0; c < counts.length; c++) {
+					counts[c] += partial[c];
+				}
+			}
+			return counts;
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading " + file, e);
+		}
+	}
+
+	/**
+	 * Counts the letters of a file and adds each letter's count to tree with
+	 * {@code add}. In a PopularityTree this is the same as retrieving every letter
+	 * of the file; in a BST or AVL it is the same as inserting every letter.
+	 * Comparisons are not counted.
+	 *
+	 * @param file A UTF-8 text file.
+	 * @param tree The tree to add the letters to.
+	 * @throws IOException         If the file cannot be read.
+	 * @throws ArithmeticException if a letter occurs more than
+	 *                             {@code Integer.MAX_VALUE} times.
+	 */
+	public void ingest(final Path file, final BST<Character> tree) throws IOException {
+		final long[] counts = this.count(file);
+
+		for (int c = 1; c < counts.length; c++) {
+			if (counts[c] > 0) {
+				tree.add(new CountedData<Character>((char) c), Math.toIntExact(counts[c]));
+			}
+		}
+		return;
+	}
+}
@@ -0,0 +1,484 @@
+package cp213;
+
+import java.util.List;
+
+/**
+ * Implements a treap, a BST that is also a heap on the priorities of its
+ * nodes: no node has a greater priority than its parent. Extends BST.
+ *
+ * Priorities are computed rather than stored. By default the priority of a node
+ * is a hash of its data, which behaves as a random number, so the treap has the
+ * shape of a BST built by inserting its data in random order. Its expected
+ * height is O(log n), with no heights compared and no eager rebalancing as in
+ * an AVL. Since the priorities depend only on the data, the shape of a treap
+ * depends only on its contents, not on the order of its insertions. A treap
+ * ordered by count uses the data count as the priority, with the hash breaking
+ * ties, which keeps the most counted data near the root as a Popularity Tree
+ * does.
+ *
+ * The heap order lets a treap be split at a key, and joined with a treap of
+ * greater keys, in one descent of expected O(log n) time. Keys are hashed with
+ * hashCode, so keys that are equal must have equal hash codes.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class Treap<T extends Comparable<T>> extends BST<T> {
+
+	// Attributes.
+	/**
+	 * Whether priorities are data counts rather than hashes alone.
+	 */
+	private final boolean byCount;
+
+	/**
+	 * Creates a treap whose priorities are hashes of the data.
+	 */
+	public Treap() {
+		this(false);
+	}
+
+	/**
+	 * Creates a treap whose priorities are hashes of the data, or data counts.
+	 *
+	 * @param byCount Whether priorities are data counts, with hashes breaking
+	 *                ties.
+	 */
+	public Treap(final boolean byCount) {
+		this.byCount = byCount;
+	}
+
+	/**
+	 * Mixes the bits of a value so that every output bit depends on every input
+	 * bit (the finalizer of MurmurHash3).
+	 *
+	 * @param value The value to mix.
+	 * @return The mixed value.
+	 */
+	private static long mix(long value) {
+		value = (value ^ value >>> 33) * 0xFF51AFD7ED558CCDL;
+		value = (value ^ value >>> 33) * 0xC4CEB9FE1A85EC53L;
+		return value ^ value >>> 33;
+	}
+
+	/**
+	 * Merges two treaps by priority into one, without recursion: the root with the
+	 * greater priority stays on top, and its inner subtree is merged with the
+	 * other treap in turn. The nodes passed are kept on the path from index base,
+	 * so a caller may hold the entries below base.
+	 *
+	 * @param left  A treap whose data are all less than those of right, may be
+	 *              null.
+	 * @param right A treap whose data are all greater than those of left, may be
+	 *              null.
+	 * @param base  The first free index of the path.
+	 * @return The root of the merged treap.
+	 */
+	private TreeNode<T> merge(TreeNode<T> left, TreeNode<T> right, final int base) {
+
+		if (left == null || right == null) {
+			return left != null ? left : right;
+		}
+		// Data of left are not greater than its largest, data of right are greater.
+		TreeNode<T> largest = left;
+
+		while (largest.getRight() != null) {
+			largest = largest.getRight();
+		}
+		final CountedData<T> boundary = largest.getData();
+		int depth = base;
+
+		while (left != null && right != null) {
+			if (this.priority(left) > this.priority(right)) {
+				this.push(depth++, left);
+				left = left.getRight();
+			} else {
+				this.push(depth++, right);
+				right = right.getLeft();
+			}
+		}
+		TreeNode<T> merged = left != null ? left : right;
+
+		while (depth > base) {
+			final TreeNode<T> node = this.pop(--depth);
+
+			if (node.getData().compareTo(boundary) <= 0) {
+				node.setRight(merged);
+			} else {
+				node.setLeft(merged);
+			}
+			node.updateHeight();
+			merged = node;
+		}
+		return merged;
+	}
+
+	/**
+	 * Returns the priority of a node holding data.
+	 *
+	 * @param data The data of the node.
+	 * @return The priority of data.
+	 */
+	private long priority(final CountedData<T> data) {
+		final long hash = mix(data.getData().hashCode());
+		return this.byCount ? (long) data.getCount() << 32 | hash >>> 32 : hash;
+	}
+
+	/**
+	 * Returns the priority of node.
+	 *
+	 * @param node The node.
+	 * @return The priority of node.
+	 */
+	private long priority(final TreeNode<T> node) {
+		return this.priority(node.getData());
+	}
+
+	/**
+	 * Performs a left rotation around node.
+	 *
+	 * @param node The subtree to rotate.
+	 * @return The new root of the subtree.
+	 */
+	private TreeNode<T> rotateLeft(final TreeNode<T> node) {
+		final TreeNode<T> right = node.getRight();
+		node.setRight(right.getLeft());
+		right.setLeft(node);
+		node.updateHeight();
+		right.updateHeight();
+		this.rotated();
+		return right;
+	}
+
+	/**
+	 * Performs a right rotation around node.
+	 *
+	 * @param node The subtree to rotate.
+	 * @return The new root of the subtree.
+	 */
+	private TreeNode<T> rotateRight(final TreeNode<T> node) {
+		final TreeNode<T> left = node.getLeft();
+		node.setLeft(left.getRight());
+		left.setRight(node);
+		node.updateHeight();
+		left.updateHeight();
+		this.rotated();
+		return left;
+	}
+
+	/**
+	 * Relinks node below the nodes on the path, from the bottom up, rotating it
+	 * above each parent whose priority is less than its own, and updates the node
+	 * heights on the way. Clears the path.
+	 *
+	 * @param node  The node to relink.
+	 * @param depth The number of entries of the path in use, the ancestors of
+	 *              node.
+	 * @return The root of the tree.
+	 */
+	private TreeNode<T> siftUp(TreeNode<T> node, int depth) {
+		final CountedData<T> key = node.getData();
+		node.updateHeight();
+
+		while (depth > 0) {
+			final TreeNode<T> parent = this.pop(--depth);
+
+			if (parent.getData().compareTo(key) > 0) {
+				parent.setLeft(node);
+				node = this.priority(node) > this.priority(parent) ? this.rotateRight(parent) : parent;
+			} else {
+				parent.setRight(node);
+				node = this.priority(node) > this.priority(parent) ? this.rotateLeft(parent) : parent;
+			}
+			node.updateHeight();
+		}
+		return node;
+	}
+
+	/**
+	 * Auxiliary method for insert. Inserts data as a leaf, or adds increment to the
+	 * count of the matching node, then rotates the node up while its priority is
+	 * greater than its parent's.
+	 *
+	 * @param node      The root of the subtree (TreeNode).
+	 * @param data      Data to be inserted into the tree.
+	 * @param increment The amount to add to the data count.
+	 * @return The new root of the subtree.
+	 */
+	@Override
+	protected TreeNode<T> insertAux(final TreeNode<T> node, final CountedData<T> data, final int increment) {
+		TreeNode<T> current = node;
+		int depth = 0;
+		int result = 0;
+
+		while (current != null && (result = current.getData().compareTo(data)) != 0) {
+			this.push(depth++, current);
+			current = result > 0 ? current.getLeft() : current.getRight();
+		}
+
+		if (current != null) {
+			current.getData().setCount(current.getData().getCount() + increment);
+			this.counted(current.getData(), true);
+
+			if (!this.byCount) {
+				// The priority is unchanged, and so is the shape.
+				this.recount(current, depth);
+				return node;
+			}
+		} else {
+			data.setCount(data.getCount() + increment);
+			this.counted(data, true);
+			current = new TreeNode<T>(data);
+			this.size++;
+		}
+		return this.siftUp(current, depth);
+	}
+
+	/**
+	 * Auxiliary method for valid. A treap must meet the BST validation conditions,
+	 * and additionally no node may have a greater priority than its parent.
+	 *
+	 * @param node The root of the subtree to test for validity.
+	 * @return true if the subtree base on node is valid, false otherwise.
+	 */
+	@Override
+	protected boolean isValidAux(final TreeNode<T> node, final TreeNode<T> minNode, final TreeNode<T> maxNode) {
+		boolean valid = true;
+
+		if (node != null) {
+			final long priority = this.priority(node);
+			valid = (node.getLeft() == null || this.priority(node.getLeft()) <= priority)
+					&& (node.getRight() == null || this.priority(node.getRight()) <= priority);
+		}
+		return valid && super.isValidAux(node, minNode, maxNode);
+	}
+
+	/**
+	 * Joins left and right, all of whose data are less than those of right, by
+	 * merging them by priority.
+	 *
+	 * @param left  The left subtree, may be null.
+	 * @param right The right subtree, may be null.
+	 * @return The root of the joined subtree.
+	 */
+	@Override
+	protected TreeNode<T> join(final TreeNode<T> left, final TreeNode<T> right) {
+		return this.merge(left, right, 0);
+	}
+
+	/**
+	 * Joins left and right with node between them. If node has a priority at
+	 * least those of both roots it becomes the root, otherwise the three are
+	 * merged by priority.
+	 *
+	 * @param left  The left subtree, may be null.
+	 * @param node  The node to put between left and right.
+	 * @param right The right subtree, may be null.
+	 * @return The root of the joined subtree.
+	 */
+	@Override
+	protected TreeNode<T> join(final TreeNode<T> left, final TreeNode<T> node, final TreeNode<T> right) {
+		final long priority = this.priority(node);
+		TreeNode<T> joined = null;
+
+		if ((left == null || this.priority(left) <= priority) && (right == null || this.priority(right) <= priority)) {
+			node.setLeft(left);
+			node.setRight(right);
+			node.updateHeight();
+			joined = node;
+		} else {
+			node.setLeft(null);
+			node.setRight(null);
+			node.updateHeight();
+			joined = this.merge(this.merge(left, node, 0), right, 0);
+		}
+		return joined;
+	}
+
+	/**
+	 * Returns the treap holding sorted, built as a Cartesian tree on the
+	 * priorities of the data in linear time.
+	 *
+	 * @param sorted Data in strictly increasing order, with their counts.
+	 * @return The root of the treap, null if sorted is empty.
+	 */
+	@Override
+	protected TreeNode<T> newTree(final CountedData<T>[] sorted) {
+		final long[] priorities = new long[sorted.length];
+
+		for (int i = 0; i < sorted.length; i++) {
+			priorities[i] = this.priority(sorted[i]);
+		}
+		return TreeBuilder.cartesian(sorted, priorities);
+	}
+
+	/**
+	 * Removes data from the tree. Decrements the matching node count, and if the
+	 * count is not greater than 1, replaces the node with the merge of its
+	 * subtrees. In a treap ordered by count a decremented node is also taken out
+	 * and put back, since its priority has fallen.
+	 *
+	 * @param node The root of the subtree (TreeNode).
+	 * @param data Data to be removed from the tree.
+	 * @return The new root of the subtree.
+	 */
+	@Override
+	protected TreeNode<T> removeAux(final TreeNode<T> node, final CountedData<T> data) {
+		TreeNode<T> current = node;
+		int depth = 0;
+		int result = 0;
+
+		while (current != null && (result = current.getData().compareTo(data)) != 0) {
+			this.push(depth++, current);
+			current = result > 0 ? current.getLeft() : current.getRight();
+		}
+
+		if (current == null) {
+			this.clearPath(depth);
+			return node;
+		}
+		final CountedData<T> found = current.getData();
+		final boolean removed = found.getCount() <= 1;
+
+		if (!removed) {
+			found.decrementCount();
+			this.counted(found, true);
+
+			if (!this.byCount) {
+				this.recount(current, depth);
+				return node;
+			}
+		} else {
+			this.counted(found, false);
+		}
+		this.size--;
+		TreeNode<T> child = this.merge(current.getLeft(), current.getRight(), depth);
+
+		while (depth > 0) {
+			final TreeNode<T> parent = this.pop(--depth);
+
+			if (parent.getData().compareTo(found) > 0) {
+				parent.setLeft(child);
+			} else {
+				parent.setRight(child);
+			}
+			parent.updateHeight();
+			child = parent;
+		}
+
+		if (!removed) {
+			// Put the data back where its lower priority now belongs.
+			child = this.insertAux(child, found, 0);
+		}
+		return child;
+	}
+
+	/**
+	 * Returns a treap holding sorted, built in linear time. Equal data are
+	 * combined into one node, counted as if each were inserted in turn.
+	 *
+	 * @param <T>    The data type.
+	 * @param sorted Data in nondecreasing order. The data are stored in the tree.
+	 * @return A new Treap, whose priorities are hashes of the data.
+	 * @throws IllegalArgumentException if sorted is not in nondecreasing order.
+	 */
+	public static <T extends Comparable<T>> Treap<T> fromSorted(final List<CountedData<T>> sorted) {
+		final Treap<T> tree = new Treap<T>();
+		tree.load(sorted);
+		return tree;
+	}
+
+	/**
+	 * Inserts each of data in turn with {@code insert}, so that each new node
+	 * takes its place by priority.
+	 *
+	 * @param data Data to store.
+	 */
+	@Override
+	public void insertBatch(final CountedData<T>[] data) {
+
+		for (final CountedData<T> item : data) {
+			this.insert(item);
+		}
+		return;
+	}
+
+	/**
+	 * Moves all of the data of other into this treap, leaving other empty. Every
+	 * data of other must be greater than every data of this treap, as they are
+	 * after {@code split}. The two are merged along the right spine of this treap
+	 * and the left spine of other, in expected O(log n) time.
+	 *
+	 * @param other The treap to join to this one.
+	 * @throws IllegalArgumentException if other orders its priorities differently,
+	 *                                  or has data not greater than the data of
+	 *                                  this treap.
+	 */
+	public void join(final Treap<T> other) {
+
+		if (other.byCount != this.byCount) {
+			throw new IllegalArgumentException("treaps have different priorities");
+		}
+		if (!this.isEmpty() && !other.isEmpty() && this.last().compareTo(other.first()) >= 0) {
+			throw new IllegalArgumentException("data of other must be greater than the data of this treap");
+		}
+		this.replace(this.merge(this.root, other.root, 0));
+		other.replace(null);
+		return;
+	}
+
+	/**
+	 * Splits this treap at key: moves every data not less than key into a new
+	 * treap, and returns it. One descent from the root to key divides the nodes
+	 * on its path between the two treaps, and every other node stays in the
+	 * subtree it was in, so the split takes expected O(log n) time.
+	 *
+	 * @param key The smallest key to move.
+	 * @return A treap, with the same kind of priorities, holding the data not less
+	 *         than key.
+	 */
+	public Treap<T> split(final CountedData<T> key) {
+		TreeNode<T> current = this.root;
+		// The roots of the two parts, and the nodes their next nodes hang from.
+		TreeNode<T> less = null;
+		TreeNode<T> lessLast = null;
+		TreeNode<T> more = null;
+		TreeNode<T> moreLast = null;
+		int depth = 0;
+
+		while (current != null) {
+			this.push(depth++, current);
+
+			if (current.getData().compareTo(key) < 0) {
+				if (lessLast == null) {
+					less = current;
+				} else {
+					lessLast.setRight(current);
+				}
+				lessLast = current;
+				current = current.getRight();
+			} else {
+				if (moreLast == null) {
+					more = current;
+				} else {
+					moreLast.setLeft(current);
+				}
+				moreLast = current;
+				current = current.getLeft();
+			}
+		}
+		if (lessLast != null) {
+			lessLast.setRight(null);
+		}
+		if (moreLast != null) {
+			moreLast.setLeft(null);
+		}
+		while (depth > 0) {
+			this.pop(--depth).updateHeight();
+		}
+		final Treap<T> split = new Treap<T>(this.byCount);
+		split.replace(more);
+		this.replace(less);
+		return split;
+	}
+}
@@ -0,0 +1,231 @@
+package cp213;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Builds height-balanced trees of TreeNodes from sorted data in linear time.
+ * Each subtree is rooted at the median of its data, so the sizes of sibling
+ * subtrees differ by at most one and the result is a valid AVL. Large builds
+ * are split at the median between fork/join worker threads. Trees whose shape
+ * is a heap on a priority, such as a treap or a Popularity Tree, are built as
+ * Cartesian trees instead, also in linear time.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+final class TreeBuilder {
+
+	/**
+	 * Subtrees with no more than this many nodes are built by a single thread.
+	 */
+	private static final int SEQUENTIAL = 1 << 13;
+
+	/**
+	 * Builds the subtree holding a range of the data in parallel.
+	 */
+	private static final class BuildTask<T extends Comparable<T>> extends RecursiveTask<TreeNode<T>> {
+
+		private static final long serialVersionUID = 1L;
+
+		// Attributes
+		private final CountedData<T>[] data; // the sorted data
+		private final int high; // one past the last data of the subtree
+		private final int low; // the first data of the subtree
+
+		/**
+		 * Constructor.
+		 *
+		 * @param data The sorted data.
+		 * @param low  The first data of the subtree.
+		 * @param high One past the last data of the subtree.
+		 */
+		BuildTask(final CountedData<T>[] data, final int low, final int high) {
+			this.data = data;
+			this.low = low;
+			this.high = high;
+		}
+
+		@Override
+		protected TreeNode<T> compute() {
+			TreeNode<T> node = null;
+
+			if (this.high - this.low <= SEQUENTIAL) {
+				node = TreeBuilder.build(this.data, this.low, this.high);
+			} else {
+				final int middle = (this.low + this.high) >>> 1;
+				final BuildTask<T> left = new BuildTask<T>(this.data, this.low, middle);
+				left.fork();
+				final TreeNode<T> right = new BuildTask<T>(this.data, middle + 1, this.high).compute();
+				node = new TreeNode<T>(this.data[middle]);
+				node.setLeft(left.join());
+				node.setRight(right);
+				node.updateHeight();
+			}
+			return node;
+		}
+	}
+
+	/**
+	 * Not instantiable.
+	 */
+	private TreeBuilder() {
+	}
+
+	/**
+	 * Builds a height-balanced tree holding data, in order. Uses the common
+	 * fork/join pool for large arrays.
+	 *
+	 * @param <T>  The data type.
+	 * @param data Data in strictly increasing order.
+	 * @return The root of the tree, null if data is empty.
+	 */
+	static <T extends Comparable<T>> TreeNode<T> build(final CountedData<T>[] data) {
+		TreeNode<T> root = null;
+
+		if (data.length > SEQUENTIAL) {
+			root = ForkJoinPool.commonPool().invoke(new BuildTask<T>(data, 0, data.length));
+		} else {
+			root = build(data, 0, data.length);
+		}
+		return root;
+	}
+
+	/**
+	 * Builds the subtree holding a range of the data on the calling thread. The
+	 * recursion depth is the height of the subtree.
+	 *
+	 * @param <T>  The data type.
+	 * @param data The sorted data.
+	 * @param low  The first data of the subtree.
+	 * @param high One past the last data of the subtree.
+	 * @return The root of the subtree, null if the range is empty.
+	 */
+	private static <T extends Comparable<T>> TreeNode<T> build(final CountedData<T>[] data, final int low,
+			final int high) {
+		TreeNode<T> node = null;
+
+		if (low < high) {
+			final int middle = (low + high) >>> 1;
+			node = new TreeNode<T>(data[middle]);
+			node.setLeft(build(data, low, middle));
+			node.setRight(build(data, middle + 1, high));
+			node.updateHeight();
+		}
+		return node;
+	}
+
+	/**
+	 * Builds the Cartesian tree of data on priorities: the tree holding data in
+	 * order in which no node has a greater priority than its parent. Of two nodes
+	 * with equal priorities the earlier is the ancestor. The data are added in
+	 * order, keeping the right spine of the tree built so far on a stack: each new
+	 * node takes as its left subtree the nodes of the spine with lower
+	 * priorities, and is hung below the rest. Takes O(n) time.
+	 *
+	 * @param <T>        The data type.
+	 * @param data       Data in strictly increasing order.
+	 * @param priorities The priority of each data.
+	 * @return The root of the tree, null if data is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends Comparable<T>> TreeNode<T> cartesian(final CountedData<T>[] data, final long[] priorities) {
+		final TreeNode<T>[] spine = (TreeNode<T>[]) new TreeNode<?>[data.length];
+		final long[] ranks = new long[data.length];
+		int depth = 0;
+
+		for (int i = 0; i < data.length; i++) {
+			final TreeNode<T> node = new TreeNode<T>(data[i]);
+			TreeNode<T> last = null;
+
+			while (depth > 0 && ranks[depth - 1] < priorities[i]) {
+				// The subtree of the top of the spine is complete.
+				last = spine[--depth];
+				spine[depth] = null;
+				last.updateHeight();
+			}
+			node.setLeft(last);
+
+			if (depth > 0) {
+				spine[depth - 1].setRight(node);
+			}
+			spine[depth] = node;
+			ranks[depth++] = priorities[i];
+		}
+		TreeNode<T> root = null;
+
+		while (depth > 0) {
+			root = spine[--depth];
+			root.updateHeight();
+		}
+		return root;
+	}
+
+	/**
+	 * Merges the data already in a tree with sorted data to insert, giving the
+	 * data of the tree that inserting each new data in turn would produce: equal
+	 * data are combined into the first of them, whose count is increased by
+	 * increment for each inserted data. The counts of later equal data are
+	 * ignored, as insert ignores the count of data already in the tree.
+	 *
+	 * @param <T>       The data type.
+	 * @param existing  The data of the tree in strictly increasing order.
+	 * @param size      The number of data in the tree.
+	 * @param sorted    The data to insert, in nondecreasing order.
+	 * @param increment The amount added to a data count by each insertion.
+	 * @param copy      If true, no existing or inserted data is changed, and data
+	 *                  whose count changes are replaced by new CountedData. If
+	 *                  false, counts are updated in place and the first of each
+	 *                  run of equal inserted data is kept, as insert does.
+	 * @return The merged data in strictly increasing order.
+	 * @throws IllegalArgumentException if sorted is not in nondecreasing order.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends Comparable<T>> CountedData<T>[] merge(final Iterator<CountedData<T>> existing, final int size,
+			final List<CountedData<T>> sorted, final int increment, final boolean copy) {
+		final CountedData<T>[] inserted = sorted.toArray((CountedData<T>[]) new CountedData<?>[sorted.size()]);
+
+		for (int i = 1; i < inserted.length; i++) {
+			if (inserted[i - 1].compareTo(inserted[i]) > 0) {
+				throw new IllegalArgumentException("Data is not sorted at index " + i + ": " + inserted[i]);
+			}
+		}
+		final CountedData<T>[] merged = (CountedData<T>[]) new CountedData<?>[size + inserted.length];
+		CountedData<T> old = existing.hasNext() ? existing.next() : null;
+		int count = 0;
+		int i = 0;
+
+		while (old != null || i < inserted.length) {
+			CountedData<T> data = null;
+			int total = 0;
+			boolean changed = false;
+
+			if (i == inserted.length || old != null && old.compareTo(inserted[i]) <= 0) {
+				data = old;
+				total = old.getCount();
+				old = existing.hasNext() ? existing.next() : null;
+			} else {
+				data = inserted[i++];
+				total = data.getCount() + increment;
+				changed = true;
+			}
+			// Combine the inserted data equal to data.
+			while (i < inserted.length && data.compareTo(inserted[i]) == 0) {
+				total += increment;
+				i++;
+				changed = true;
+			}
+
+			if (changed && copy) {
+				data = new CountedData<T>(data.getData(), total);
+			} else if (changed) {
+				data.setCount(total);
+			}
+			merged[count++] = data;
+		}
+		return count == merged.length ? merged : Arrays.copyOf(merged, count);
+	}
+}
@@ -0,0 +1,189 @@
+package cp213;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy traversals of a linked tree of TreeNodes. Each traversal keeps its
+ * pending nodes in a single ArrayDeque, so walking the tree does not copy or
+ * allocate per node. The data returned is the data stored in the tree, not a
+ * copy.
+ *
+ * Not thread safe as it assumes contents of the tree are not changed by an
+ * external thread during the traversal.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+abstract class TreeIterator<T extends Comparable<T>> implements Iterator<CountedData<T>> {
+
+	/**
+	 * Iterates in order from smallest to largest data.
+	 */
+	static final class InOrder<T extends Comparable<T>> extends TreeIterator<T> {
+
+		/**
+		 * Constructor.
+		 *
+		 * @param root The root of the tree to traverse, may be null.
+		 */
+		InOrder(final TreeNode<T> root) {
+			this.pushLeft(root);
+		}
+
+		@Override
+		protected TreeNode<T> advance() {
+			final TreeNode<T> node = this.pending.pop();
+			this.pushLeft(node.getRight());
+			return node;
+		}
+	}
+
+	/**
+	 * Iterates in node level order starting from the root node.
+	 */
+	static final class LevelOrder<T extends Comparable<T>> extends TreeIterator<T> {
+
+		/**
+		 * Constructor.
+		 *
+		 * @param root The root of the tree to traverse, may be null.
+		 */
+		LevelOrder(final TreeNode<T> root) {
+
+			if (root != null) {
+				this.pending.add(root);
+			}
+		}
+
+		@Override
+		protected TreeNode<T> advance() {
+			final TreeNode<T> node = this.pending.poll();
+
+			if (node.getLeft() != null) {
+				this.pending.add(node.getLeft());
+			}
+			if (node.getRight() != null) {
+				this.pending.add(node.getRight());
+			}
+			return node;
+		}
+	}
+
+	/**
+	 * Iterates in node preorder.
+	 */
+	static final class PreOrder<T extends Comparable<T>> extends TreeIterator<T> {
+
+		/**
+		 * Constructor.
+		 *
+		 * @param root The root of the tree to traverse, may be null.
+		 */
+		PreOrder(final TreeNode<T> root) {
+
+			if (root != null) {
+				this.pending.push(root);
+			}
+		}
+
+		@Override
+		protected TreeNode<T> advance() {
+			final TreeNode<T> node = this.pending.pop();
+
+			if (node.getRight() != null) {
+				this.pending.push(node.getRight());
+			}
+			if (node.getLeft() != null) {
+				this.pending.push(node.getLeft());
+			}
+			return node;
+		}
+	}
+
+	/**
+	 * Iterates in order over the data from lo to hi inclusive. Only the nodes on
+	 * the path to lo and the nodes in range, with the left chains leading to
+	 * them, are visited, so a range of k data costs O(log n + k) in a balanced
+	 * tree.
+	 */
+	static final class Range<T extends Comparable<T>> extends TreeIterator<T> {
+
+		private final CountedData<T> hi; // the largest key in range
+
+		/**
+		 * Constructor. Pushes the nodes not less than lo on the path to lo, the
+		 * smallest on top.
+		 *
+		 * @param root The root of the tree to traverse, may be null.
+		 * @param lo   The smallest key in range.
+		 * @param hi   The largest key in range.
+		 */
+		Range(final TreeNode<T> root, final CountedData<T> lo, final CountedData<T> hi) {
+			this.hi = hi;
+			TreeNode<T> node = root;
+
+			while (node != null) {
+				if (node.getData().compareTo(lo) < 0) {
+					node = node.getRight();
+				} else {
+					this.pending.push(node);
+					node = node.getLeft();
+				}
+			}
+		}
+
+		@Override
+		protected TreeNode<T> advance() {
+			final TreeNode<T> node = this.pending.pop();
+			this.pushLeft(node.getRight());
+			return node;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !this.pending.isEmpty() && this.pending.peek().getData().compareTo(this.hi) <= 0;
+		}
+	}
+
+	/**
+	 * Nodes waiting to be visited.
+	 */
+	protected final ArrayDeque<TreeNode<T>> pending = new ArrayDeque<>();
+
+	/**
+	 * Removes the next node from pending and schedules the nodes that follow it.
+	 *
+	 * @return The next node of the traversal.
+	 */
+	protected abstract TreeNode<T> advance();
+
+	@Override
+	public boolean hasNext() {
+		return !this.pending.isEmpty();
+	}
+
+	@Override
+	public CountedData<T> next() {
+
+		if (!this.hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return this.advance().getData();
+	}
+
+	/**
+	 * Pushes node and its chain of left children.
+	 *
+	 * @param node The top of the chain, may be null.
+	 */
+	protected void pushLeft(TreeNode<T> node) {
+
+		while (node != null) {
+			this.pending.push(node);
+			node = node.getLeft();
+		}
+		return;
+	}
+}
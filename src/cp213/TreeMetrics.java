@@ -0,0 +1,341 @@
+package cp213;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Records the cost of single-key tree operations, for watching the health of a
+ * tree in use. For each operation (insert, remove, retrieve) a histogram is kept
+ * of each measure: the comparisons made, the depth reached, the rotations made
+ * and the time taken. A tree records into its metrics only once they are set
+ * with {@code BST.setMetrics}; until then an operation costs one test of a null
+ * field.
+ *
+ * Recording is thread safe, and lock free, so one TreeMetrics may be shared by
+ * trees used in several threads. The metrics are read with {@code getSnapshot}
+ * or {@code getHistogram}, or through JMX once registered with
+ * {@code register}.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public final class TreeMetrics implements TreeMetricsMXBean {
+
+	/**
+	 * A histogram of non-negative long values in buckets of bounded relative width,
+	 * as an HdrHistogram keeps them: values below 16 have a bucket each, and every
+	 * power of 2 above is divided into 8 buckets, so a value is known to within
+	 * 12.5% in 488 buckets whatever its magnitude. Recording is thread safe.
+	 */
+	public static final class Histogram {
+
+		/**
+		 * Number of bits of a value that select its bucket within a power of 2.
+		 */
+		private static final int SUB_BITS = 3;
+		/**
+		 * Number of buckets that divide each power of 2.
+		 */
+		private static final int SUB_BUCKETS = 1 << SUB_BITS;
+		/**
+		 * Number of buckets, enough for any non-negative long.
+		 */
+		private static final int BUCKETS = (Long.SIZE - 1 - SUB_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+		// Attributes.
+		/**
+		 * The number of values recorded in each bucket.
+		 */
+		private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+		/**
+		 * The largest value recorded.
+		 */
+		private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+		/**
+		 * The number of values recorded.
+		 */
+		private final LongAdder total = new LongAdder();
+		/**
+		 * The sum of the values recorded.
+		 */
+		private final LongAdder sum = new LongAdder();
+
+		/**
+		 * Returns the bucket of value.
+		 *
+		 * @param value A non-negative value.
+		 * @return The index of its bucket.
+		 */
+		private static int bucket(final long value) {
+			int bucket = (int) value;
+
+			if (value >= 2 * SUB_BUCKETS) {
+				final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+				bucket = (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+			}
+			return bucket;
+		}
+
+		/**
+		 * Returns the largest value that falls in bucket.
+		 *
+		 * @param bucket The index of a bucket.
+		 * @return The largest value of the bucket.
+		 */
+		private static long highest(final int bucket) {
+			long highest = bucket;
+
+			if (bucket >= 2 * SUB_BUCKETS) {
+				final int shift = bucket / SUB_BUCKETS - 1;
+				final long top = bucket % SUB_BUCKETS + SUB_BUCKETS;
+				highest = (top + 1 << shift) - 1;
+			}
+			return highest;
+		}
+
+		/**
+		 * Returns the largest value recorded.
+		 *
+		 * @return The largest value, 0 if none has been recorded.
+		 */
+		public long getMax() {
+			return this.max.get();
+		}
+
+		/**
+		 * Returns the mean of the values recorded.
+		 *
+		 * @return The mean, 0 if no value has been recorded.
+		 */
+		public double getMean() {
+			final long total = this.total.sum();
+			return total != 0 ? (double) this.sum.sum() / total : 0;
+		}
+
+		/**
+		 * Returns the number of values recorded.
+		 *
+		 * @return The number of values.
+		 */
+		public long getTotal() {
+			return this.total.sum();
+		}
+
+		/**
+		 * Returns the value that percentile percent of the values recorded do not
+		 * exceed, to within the width of its bucket. Values recorded while the
+		 * percentile is computed may or may not be counted.
+		 *
+		 * @param percentile The percentile, 0 to 100.
+		 * @return The highest value of the bucket that holds the percentile, but not
+		 *         more than the largest value recorded, 0 if no value has been
+		 *         recorded.
+		 */
+		public long getValueAtPercentile(final double percentile) {
+			final long rank = (long) Math.ceil(percentile / 100 * this.total.sum());
+			long seen = 0;
+			int bucket = 0;
+
+			while (bucket < BUCKETS - 1 && (seen += this.counts.get(bucket)) < Math.max(rank, 1)) {
+				bucket++;
+			}
+			return Math.min(highest(bucket), this.max.get());
+		}
+
+		/**
+		 * Records value. Negative values are recorded as 0.
+		 *
+		 * @param value The value to record.
+		 */
+		public void record(final long value) {
+			final long recorded = Math.max(value, 0);
+			this.counts.incrementAndGet(bucket(recorded));
+			this.max.accumulate(recorded);
+			this.total.increment();
+			this.sum.add(recorded);
+			return;
+		}
+
+		/**
+		 * Discards every value recorded. Values recorded while the histogram is reset
+		 * may or may not be discarded.
+		 */
+		public void reset() {
+
+			for (int i = 0; i < BUCKETS; i++) {
+				this.counts.set(i, 0);
+			}
+			this.max.reset();
+			this.total.reset();
+			this.sum.reset();
+			return;
+		}
+	}
+
+	/**
+	 * The measures recorded for each operation.
+	 */
+	public enum Measure {
+		/**
+		 * The comparisons made, as counted by {@code BST.getComparisonsLong}. Recorded for
+		 * retrievals only, the operations whose comparisons a tree counts.
+		 */
+		COMPARISONS,
+		/**
+		 * The depth reached: the nodes compared by a retrieval, or the nodes on the
+		 * path kept by an insertion or removal.
+		 */
+		DEPTH,
+		/**
+		 * The rotations made.
+		 */
+		ROTATIONS,
+		/**
+		 * The time taken, in nanoseconds.
+		 */
+		LATENCY
+	}
+
+	/**
+	 * The operations recorded.
+	 */
+	public enum Operation {
+		/**
+		 * {@code insert} and {@code add}.
+		 */
+		INSERT,
+		/**
+		 * {@code remove}.
+		 */
+		REMOVE,
+		/**
+		 * {@code retrieve}.
+		 */
+		RETRIEVE
+	}
+
+	// Attributes.
+	/**
+	 * The histograms, by operation then by measure.
+	 */
+	private final Histogram[][] histograms = new Histogram[Operation.values().length][Measure.values().length];
+
+	/**
+	 * Creates empty metrics.
+	 */
+	public TreeMetrics() {
+
+		for (final Histogram[] measures : this.histograms) {
+			for (int i = 0; i < measures.length; i++) {
+				measures[i] = new Histogram();
+			}
+		}
+	}
+
+	/**
+	 * Returns the histogram of measure for operation.
+	 *
+	 * @param operation The operation.
+	 * @param measure   The measure.
+	 * @return The histogram.
+	 */
+	public Histogram getHistogram(final Operation operation, final Measure measure) {
+		return this.histograms[operation.ordinal()][measure.ordinal()];
+	}
+
+	/**
+	 * Returns the current statistics of every histogram that has recorded a value,
+	 * named operation.measure.statistic in lower case, e.g.
+	 * retrieve.comparisons.p99. The statistics are total, mean (rounded), max,
+	 * p50, p90, p99 and p999 (the 99.9th percentile).
+	 *
+	 * @return The statistics by name, in order of operation then measure.
+	 */
+	@Override
+	public Map<String, Long> getSnapshot() {
+		final Map<String, Long> snapshot = new LinkedHashMap<>();
+
+		for (final Operation operation : Operation.values()) {
+			for (final Measure measure : Measure.values()) {
+				final Histogram histogram = this.getHistogram(operation, measure);
+
+				if (histogram.getTotal() > 0) {
+					final String name = (operation + "." + measure + ".").toLowerCase(Locale.ROOT);
+					snapshot.put(name + "total", histogram.getTotal());
+					snapshot.put(name + "mean", Math.round(histogram.getMean()));
+					snapshot.put(name + "max", histogram.getMax());
+					snapshot.put(name + "p50", histogram.getValueAtPercentile(50));
+					snapshot.put(name + "p90", histogram.getValueAtPercentile(90));
+					snapshot.put(name + "p99", histogram.getValueAtPercentile(99));
+					snapshot.put(name + "p999", histogram.getValueAtPercentile(99.9));
+				}
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Records one operation. A negative measure was not taken and is not recorded.
+	 *
+	 * @param operation   The operation.
+	 * @param comparisons The comparisons made.
+	 * @param depth       The depth reached.
+	 * @param rotations   The rotations made.
+	 * @param nanos       The time taken in nanoseconds.
+	 */
+	public void record(final Operation operation, final long comparisons, final long depth, final long rotations,
+			final long nanos) {
+		final Histogram[] measures = this.histograms[operation.ordinal()];
+
+		if (comparisons >= 0) {
+			measures[Measure.COMPARISONS.ordinal()].record(comparisons);
+		}
+		if (depth >= 0) {
+			measures[Measure.DEPTH.ordinal()].record(depth);
+		}
+		if (rotations >= 0) {
+			measures[Measure.ROTATIONS.ordinal()].record(rotations);
+		}
+		if (nanos >= 0) {
+			measures[Measure.LATENCY.ordinal()].record(nanos);
+		}
+		return;
+	}
+
+	/**
+	 * Registers these metrics with the platform MBean server as
+	 * cp213:type=TreeMetrics,name=name.
+	 *
+	 * @param name The name that tells these metrics apart from others.
+	 * @return The name they are registered under.
+	 * @throws JMException if name is not valid in an ObjectName, or the name is
+	 *                     already registered.
+	 */
+	public ObjectName register(final String name) throws JMException {
+		final ObjectName objectName = new ObjectName("cp213:type=TreeMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	/**
+	 * Discards everything recorded so far.
+	 */
+	@Override
+	public void reset() {
+
+		for (final Histogram[] measures : this.histograms) {
+			for (final Histogram histogram : measures) {
+				histogram.reset();
+			}
+		}
+		return;
+	}
+}
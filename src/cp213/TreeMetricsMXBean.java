@@ -0,0 +1,25 @@
+package cp213;
+
+import java.util.Map;
+
+/**
+ * The management interface of TreeMetrics, through which JMX clients such as
+ * JConsole read and reset the metrics of registered trees.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public interface TreeMetricsMXBean {
+
+	/**
+	 * Returns the current value of every recorded statistic.
+	 *
+	 * @return The statistics by name.
+	 */
+	public Map<String, Long> getSnapshot();
+
+	/**
+	 * Discards everything recorded so far.
+	 */
+	public void reset();
+}
@@ -1,210 +1,212 @@
-package cp213;
-
-import java.util.ArrayList;
-
-/**
- * The individual node of a linked structure that stores CountedData objects.
- * This is a doubly-linked node with left and right pointers to child nodes. The
- * node link can be updated, but not the node data, in order to avoid moving
- * data between nodes. Data structures must be reordered by moving nodes.
- *
- * @author David Brown
- * @version 2024-10-15
- */
-public class TreeNode<T extends Comparable<T>> {
-
-	// Attributes
-	private CountedData<T> data = null; // the node data
-	private int height = 1; // the node height
-
-	// Links to the child TreeNodes.
-	private TreeNode<T> left = null; // pointer to the left child node
-	private TreeNode<T> right = null; // pointer to the right child node
-
-	/**
-	 * Creates a new TreeNode with data data and null links to its child TreeNodes.
-	 *
-	 * @param data The data to store in the node.
-	 */
-	public TreeNode(final CountedData<T> data) {
-		this.data = data;
-	}
-
-	/**
-	 * Performs an inorder traversal of a tree adding node data to a list.
-	 *
-	 * @param node A TreeNode.
-	 * @param list The final list of node data.
-	 */
-	private final void inOrderAux(final TreeNode<T> node, final ArrayList<CountedData<T>> list) {
-		if (node != null) {
-			this.inOrderAux(node.getLeft(), list);
-			list.add(new CountedData<T>(node.getData()));
-			this.inOrderAux(node.getRight(), list);
-		}
-		return;
-	}
-
-	/**
-	 * Performs an preorder traversal of a tree adding node data to a list.
-	 *
-	 * @param node A TreeNode.
-	 * @param list The final list of node data.
-	 */
-	private final void preOrderAux(final TreeNode<T> node, final ArrayList<CountedData<T>> list) {
-		if (node != null) {
-			list.add(new CountedData<T>(node.getData()));
-			this.preOrderAux(node.getLeft(), list);
-			this.preOrderAux(node.getRight(), list);
-		}
-		return;
-	}
-
-	/**
-	 * Returns this node data. Not copy safe as it returns a reference to the data,
-	 * not a copy of the data.
-	 *
-	 * @return this node data.
-	 */
-	public CountedData<T> getData() {
-		return this.data;
-	}
-
-	/**
-	 * Returns the height of this TreeNode.
-	 *
-	 * @return this node height.
-	 */
-	public int getHeight() {
-		return this.height;
-	}
-
-	/**
-	 * Returns the left child of this TreeNode.
-	 *
-	 * @return this left child pointer.
-	 */
-	public TreeNode<T> getLeft() {
-		return this.left;
-	}
-
-	/**
-	 * Returns the right child of this TreeNode.
-	 *
-	 * @return this right child pointer.
-	 */
-	public TreeNode<T> getRight() {
-		return this.right;
-	}
-
-	/**
-	 * Returns a list of the data in the current tree. The list contents are in
-	 * order from smallest to largest.
-	 *
-	 * Not thread safe as it assumes contents of the tree are not changed by an
-	 * external thread during the loop.
-	 *
-	 * @return The contents of this tree as a list of data.
-	 */
-	public final ArrayList<CountedData<T>> inOrder() {
-		final ArrayList<CountedData<T>> list = new ArrayList<>();
-		this.inOrderAux(this, list);
-		return list;
-	}
-
-	/**
-	 * Returns a list of the data in the current tree. The list contents are in node
-	 * level order starting from the root node. Helps determine the structure of the
-	 * tree.
-	 *
-	 * Not thread safe as it assumes contents of the tree are not changed by an
-	 * external thread during the loop.
-	 *
-	 * @return this tree data as a list of data.
-	 */
-	public final ArrayList<CountedData<T>> levelOrder() {
-		final ArrayList<CountedData<T>> list = new ArrayList<>();
-		TreeNode<T> node = this;
-
-		if (this != null) {
-			// Put the nodes for one level into a temporary queue.
-			final ArrayList<TreeNode<T>> queue = new ArrayList<>();
-			queue.add(node);
-
-			while (queue.size() > 0) {
-				// Add the node to the queue
-				node = queue.remove(0);
-				// Add a copy of the node data to the list of data
-				list.add(new CountedData<T>(node.getData()));
-
-				if (node.getLeft() != null) {
-					queue.add(node.getLeft());
-				}
-				if (node.getRight() != null) {
-					queue.add(node.getRight());
-				}
-			}
-		}
-		return list;
-	}
-
-	/**
-	 * Returns a list of the data in the current tree. The list contents are in node
-	 * preorder.
-	 *
-	 * Not thread safe as it assumes contents of the tree are not changed by an
-	 * external thread during the loop.
-	 *
-	 * @return The contents of this tree as a list of data.
-	 */
-	public final ArrayList<CountedData<T>> preOrder() {
-		final ArrayList<CountedData<T>> list = new ArrayList<>();
-		this.preOrderAux(this, list);
-		return list;
-	}
-
-	/**
-	 * Updates the left child reference of this TreeNode to another TreeNode.
-	 *
-	 * @param left this new left child node to link to.
-	 */
-	public void setLeft(final TreeNode<T> left) {
-		this.left = left;
-	}
-
-	/**
-	 * Updates the right child reference of this TreeNode to another TreeNode.
-	 *
-	 * @param right this new right child node to link to.
-	 */
-	public void setRight(final TreeNode<T> right) {
-		this.right = right;
-	}
-
-	/**
-	 * @return a string version of this node including the data and height.
-	 */
-	@Override
-	public String toString() {
-		return "D: " + this.data + "; H: " + this.height;
-	}
-
-	/**
-	 * Updates the height of this TreeNode to 1 plus the maximum heights of its two
-	 * child nodes. Empty child nodes are defined to have a height of 0.
-	 */
-	public void updateHeight() {
-		int leftHeight = 0;
-		int rightHeight = 0;
-
-		if (this.left != null) {
-			leftHeight = this.left.height;
-		}
-		if (this.right != null) {
-			rightHeight = this.right.height;
-		}
-		this.height = Math.max(leftHeight, rightHeight) + 1;
-		return;
-	}
-
-}
+package cp213;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * The individual node of a linked structure that stores CountedData objects.
+ * This is a doubly-linked node with left and right pointers to child nodes. The
+ * node link can be updated, but not the node data, in order to avoid moving
+ * data between nodes. Data structures must be reordered by moving nodes. Each
+ * node also records the size and count sum of its subtree, which give order
+ * statistics in O(log n).
+ *
+ * The two fields are kept in every node rather than in an optional subclass,
+ * since loading, snapshots, selection and the sizes of the concurrent trees
+ * read them too. They make a node 40 bytes rather than 32 with compressed
+ * references, and a change of count alone must update the ancestors of the
+ * node as well.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class TreeNode<T extends Comparable<T>> {
+
+	// Attributes
+	private long countSum = 0; // the sum of the data counts of the subtree
+	private CountedData<T> data = null; // the node data
+	private int height = 1; // the node height
+	private int size = 1; // the number of nodes in the subtree
+
+	// Links to the child TreeNodes.
+	private TreeNode<T> left = null; // pointer to the left child node
+	private TreeNode<T> right = null; // pointer to the right child node
+
+	/**
+	 * Creates a new TreeNode with data data and null links to its child TreeNodes.
+	 *
+	 * @param data The data to store in the node.
+	 */
+	public TreeNode(final CountedData<T> data) {
+		this.data = data;
+		this.countSum = data.getCount();
+	}
+
+	/**
+	 * Copies the data of a traversal into a list.
+	 *
+	 * @param iterator A traversal of this tree.
+	 * @return A list of copies of the traversed data.
+	 */
+	private ArrayList<CountedData<T>> copy(final Iterator<CountedData<T>> iterator) {
+		final ArrayList<CountedData<T>> list = new ArrayList<>();
+
+		while (iterator.hasNext()) {
+			list.add(new CountedData<T>(iterator.next()));
+		}
+		return list;
+	}
+
+	/**
+	 * Returns the sum of the data counts of the subtree rooted at this TreeNode, as
+	 * of the last {@code updateHeight}.
+	 *
+	 * @return the subtree count sum.
+	 */
+	public long getCountSum() {
+		return this.countSum;
+	}
+
+	/**
+	 * Returns this node data. Not copy safe as it returns a reference to the data,
+	 * not a copy of the data.
+	 *
+	 * @return this node data.
+	 */
+	public CountedData<T> getData() {
+		return this.data;
+	}
+
+	/**
+	 * Returns the height of this TreeNode.
+	 *
+	 * @return this node height.
+	 */
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * Returns the left child of this TreeNode.
+	 *
+	 * @return this left child pointer.
+	 */
+	public TreeNode<T> getLeft() {
+		return this.left;
+	}
+
+	/**
+	 * Returns the right child of this TreeNode.
+	 *
+	 * @return this right child pointer.
+	 */
+	public TreeNode<T> getRight() {
+		return this.right;
+	}
+
+	/**
+	 * Returns the number of nodes in the subtree rooted at this TreeNode, as of the
+	 * last {@code updateHeight}.
+	 *
+	 * @return the subtree size.
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns a list of the data in the current tree. The list contents are in
+	 * order from smallest to largest.
+	 *
+	 * Not thread safe as it assumes contents of the tree are not changed by an
+	 * external thread during the loop.
+	 *
+	 * @return The contents of this tree as a list of data.
+	 */
+	public final ArrayList<CountedData<T>> inOrder() {
+		return this.copy(new TreeIterator.InOrder<T>(this));
+	}
+
+	/**
+	 * Returns a list of the data in the current tree. The list contents are in node
+	 * level order starting from the root node. Helps determine the structure of the
+	 * tree.
+	 *
+	 * Not thread safe as it assumes contents of the tree are not changed by an
+	 * external thread during the loop.
+	 *
+	 * @return this tree data as a list of data.
+	 */
+	public final ArrayList<CountedData<T>> levelOrder() {
+		return this.copy(new TreeIterator.LevelOrder<T>(this));
+	}
+
+	/**
+	 * Returns a list of the data in the current tree. The list contents are in node
+	 * preorder.
+	 *
+	 * Not thread safe as it assumes contents of the tree are not changed by an
+	 * external thread during the loop.
+	 *
+	 * @return The contents of this tree as a list of data.
+	 */
+	public final ArrayList<CountedData<T>> preOrder() {
+		return this.copy(new TreeIterator.PreOrder<T>(this));
+	}
+
+	/**
+	 * Updates the left child reference of this TreeNode to another TreeNode.
+	 *
+	 * @param left this new left child node to link to.
+	 */
+	public void setLeft(final TreeNode<T> left) {
+		this.left = left;
+	}
+
+	/**
+	 * Updates the right child reference of this TreeNode to another TreeNode.
+	 *
+	 * @param right this new right child node to link to.
+	 */
+	public void setRight(final TreeNode<T> right) {
+		this.right = right;
+	}
+
+	/**
+	 * @return a string version of this node including the data and height.
+	 */
+	@Override
+	public String toString() {
+		return "D: " + this.data + "; H: " + this.height;
+	}
+
+	/**
+	 * Updates the height of this TreeNode to 1 plus the maximum heights of its two
+	 * child nodes. Empty child nodes are defined to have a height of 0. The subtree
+	 * size and count sum are updated in the same way from those of the children
+	 * and this node data count, so every change to a node's children or data count
+	 * must be followed by updateHeight on it and on its ancestors, bottom up.
+	 */
+	public void updateHeight() {
+		int leftHeight = 0;
+		int rightHeight = 0;
+		int size = 1;
+		long countSum = this.data.getCount();
+
+		if (this.left != null) {
+			leftHeight = this.left.height;
+			size += this.left.size;
+			countSum += this.left.countSum;
+		}
+		if (this.right != null) {
+			rightHeight = this.right.height;
+			size += this.right.size;
+			countSum += this.right.countSum;
+		}
+		this.height = Math.max(leftHeight, rightHeight) + 1;
+		this.size = size;
+		this.countSum = countSum;
+		return;
+	}
+
+}
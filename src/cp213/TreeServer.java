@@ -0,0 +1,465 @@
+package cp213;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the operations of a tree over HTTP on the loopback interface, with
+ * the JDK's built-in server. Each request runs on its own virtual thread where
+ * the Java runtime has them (Java 21 and later), and on its own platform thread
+ * otherwise. Requests and responses are plain text:
+ *
+ * <pre>
+ * POST /insert?key=K[&amp;count=N]  adds N (default 1) to the count of K
+ * GET  /retrieve?key=K           K and its count, 404 if K is not in the tree
+ * GET  /topk?k=N                 the N keys with the greatest counts
+ * GET  /range?lo=A&amp;hi=B          the keys from A to B inclusive
+ * </pre>
+ *
+ * Each key in a response is written on its own line, followed by a space and
+ * its count. Malformed requests are answered with 400, and requests with the
+ * wrong method with 405.
+ *
+ * The tree is guarded by one lock. Retrievals are batched: each is queued
+ * before its thread takes the lock, and whichever thread holds the lock
+ * retrieves every queued key with one {@code retrieveBatch}, a single descent
+ * of the tree. A thread whose key was retrieved while it waited finds its
+ * answer ready and releases the lock at once, so under load the tree is
+ * searched once per batch rather than once per request. The tree counts
+ * retrievals by its own rules, e.g. a PopularityTree counts every retrieval.
+ *
+ * The JDK server is tuned by system properties that it reads once, when the
+ * first server in the JVM is created, and that apply to every server in the
+ * JVM. TreeServer leaves them to the application. Under load, start the JVM
+ * with {@code -Dsun.net.httpserver.nodelay=true}, so that small responses are
+ * sent at once rather than held for an acknowledgement (Nagle's algorithm),
+ * which costs a small request about 40 ms, and with
+ * {@code -Dsun.net.httpserver.maxIdleConnections=1024}, so that idle
+ * connections whose clients may be about to reuse them are kept open rather
+ * than closed beyond the default of 200.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+public class TreeServer<T extends Comparable<T>> {
+
+	/**
+	 * A queued retrieval.
+	 */
+	private static final class Lookup<T extends Comparable<T>> {
+
+		/**
+		 * The key to retrieve.
+		 */
+		private final CountedData<T> key;
+		/**
+		 * Whether the key has been retrieved. Written and read under the lock.
+		 */
+		private boolean done = false;
+		/**
+		 * A copy of the data retrieved, null if the key is not in the tree.
+		 */
+		private CountedData<T> result = null;
+
+		/**
+		 * Creates a retrieval of key.
+		 *
+		 * @param key The key to retrieve.
+		 */
+		private Lookup(final CountedData<T> key) {
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Number of connections that may wait to be accepted. The JDK default of 50
+	 * drops connections when hundreds of clients connect at once.
+	 */
+	private static final int BACKLOG = 1024;
+	/**
+	 * Most retrievals performed by one batch.
+	 */
+	public static final int MAX_BATCH = 256;
+
+	// Attributes.
+	/**
+	 * Number of batches of retrievals performed.
+	 */
+	private final LongAdder batches = new LongAdder();
+	/**
+	 * Runs the request handlers, null when the server is stopped.
+	 */
+	private ExecutorService executor = null;
+	/**
+	 * Guards tree.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+	/**
+	 * Number of retrievals performed.
+	 */
+	private final LongAdder lookups = new LongAdder();
+	/**
+	 * Converts the keys of requests to keys of the tree.
+	 */
+	private final Function<String, T> parser;
+	/**
+	 * Retrievals waiting to be performed.
+	 */
+	private final ConcurrentLinkedQueue<Lookup<T>> pending = new ConcurrentLinkedQueue<>();
+	/**
+	 * The HTTP server, null when the server is stopped.
+	 */
+	private HttpServer server = null;
+	/**
+	 * The tree served.
+	 */
+	private final BST<T> tree;
+
+	/**
+	 * Creates a server of tree. The server does not accept requests until it is
+	 * started.
+	 *
+	 * @param tree   The tree to serve. It must not be used other than through this
+	 *               server while the server runs.
+	 * @param parser Converts the keys of requests to keys of the tree, e.g.
+	 *               {@code Integer::valueOf}. It may throw an
+	 *               IllegalArgumentException for a key that is not valid.
+	 */
+	public TreeServer(final BST<T> tree, final Function<String, T> parser) {
+		this.tree = tree;
+		this.parser = parser;
+	}
+
+	/**
+	 * Returns an executor that runs each task on a new virtual thread if the Java
+	 * runtime has virtual threads, and on a new or reused platform thread
+	 * otherwise. Virtual threads are found by reflection so that this class also
+	 * compiles and runs before Java 21.
+	 *
+	 * @return A new executor.
+	 */
+	static ExecutorService newExecutor() {
+		ExecutorService executor = null;
+
+		try {
+			executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (final ReflectiveOperationException e) {
+			executor = Executors.newCachedThreadPool();
+		}
+		return executor;
+	}
+
+	/**
+	 * Returns the parameters of the query of a request, decoded.
+	 *
+	 * @param exchange The request.
+	 * @return The value of each parameter by name.
+	 */
+	private static Map<String, String> parameters(final HttpExchange exchange) {
+		final Map<String, String> parameters = new HashMap<>();
+		final String query = exchange.getRequestURI().getRawQuery();
+
+		if (query != null) {
+			for (final String parameter : query.split("&")) {
+				final int equals = parameter.indexOf('=');
+
+				if (equals > 0) {
+					parameters.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+							URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+				}
+			}
+		}
+		return parameters;
+	}
+
+	/**
+	 * Sends a response. A response without a body has no body stream: writing to
+	 * it, even nothing, would make the server drop the connection.
+	 *
+	 * @param exchange The request.
+	 * @param status   The HTTP status code.
+	 * @param body     The body of the response, may be empty.
+	 * @throws IOException if the response cannot be sent.
+	 */
+	private static void respond(final HttpExchange exchange, final int status, final String body)
+			throws IOException {
+		final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length > 0 ? bytes.length : -1);
+
+		if (bytes.length > 0) {
+			try (OutputStream output = exchange.getResponseBody()) {
+				output.write(bytes);
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Writes data to a response body, one key and its count per line.
+	 *
+	 * @param data The data to write.
+	 * @return The response body.
+	 */
+	private static <T extends Comparable<T>> String write(final List<CountedData<T>> data) {
+		final StringBuilder body = new StringBuilder();
+
+		for (final CountedData<T> item : data) {
+			body.append(item.getData()).append(' ').append(item.getCount()).append('\n');
+		}
+		return body.toString();
+	}
+
+	/**
+	 * Performs up to MAX_BATCH queued retrievals with one {@code retrieveBatch}.
+	 * Called with the lock held.
+	 */
+	@SuppressWarnings("unchecked")
+	private void drain() {
+		final ArrayList<Lookup<T>> batch = new ArrayList<>();
+		Lookup<T> lookup = null;
+
+		while (batch.size() < MAX_BATCH && (lookup = this.pending.poll()) != null) {
+			batch.add(lookup);
+		}
+		if (!batch.isEmpty()) {
+			final CountedData<T>[] keys = (CountedData<T>[]) new CountedData<?>[batch.size()];
+
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = batch.get(i).key;
+			}
+			final CountedData<T>[] results = this.tree.retrieveBatch(keys);
+
+			for (int i = 0; i < keys.length; i++) {
+				lookup = batch.get(i);
+				lookup.result = results[i] != null ? new CountedData<T>(results[i]) : null;
+				lookup.done = true;
+			}
+			this.batches.increment();
+			this.lookups.add(keys.length);
+		}
+		return;
+	}
+
+	/**
+	 * Runs one request: checks its method, parses its parameters with action and
+	 * sends the response action returns. A parameter that is missing or not valid
+	 * is answered with 400.
+	 *
+	 * @param exchange The request.
+	 * @param method   The HTTP method the request must use.
+	 * @param action   Returns the response to the parameters of the request, null
+	 *                 for 404.
+	 * @throws IOException if the response cannot be sent.
+	 */
+	private void handle(final HttpExchange exchange, final String method,
+			final Function<Map<String, String>, String> action) throws IOException {
+
+		try (InputStream input = exchange.getRequestBody()) {
+			// Read any body, so that the connection can carry the next request.
+			input.readAllBytes();
+
+			if (!exchange.getRequestMethod().equals(method)) {
+				exchange.getResponseHeaders().set("Allow", method);
+				respond(exchange, 405, "");
+			} else {
+				final String body = action.apply(parameters(exchange));
+
+				if (body != null) {
+					respond(exchange, 200, body);
+				} else {
+					respond(exchange, 404, "");
+				}
+			}
+		} catch (final IllegalArgumentException e) {
+			respond(exchange, 400, e.getMessage() != null ? e.getMessage() : "");
+		} finally {
+			exchange.close();
+		}
+		return;
+	}
+
+	/**
+	 * Returns a required parameter.
+	 *
+	 * @param parameters The parameters of a request.
+	 * @param name       The name of the parameter.
+	 * @return The value of the parameter.
+	 * @throws IllegalArgumentException if the parameter is missing.
+	 */
+	private String required(final Map<String, String> parameters, final String name) {
+		final String value = parameters.get(name);
+
+		if (value == null) {
+			throw new IllegalArgumentException("missing parameter " + name);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the mean number of retrievals performed by one batch, which is 1
+	 * when no two retrievals ever wait together.
+	 *
+	 * @return The mean batch size, 0 if nothing has been retrieved.
+	 */
+	public double getMeanBatch() {
+		final long batches = this.batches.sum();
+		return batches != 0 ? (double) this.lookups.sum() / batches : 0;
+	}
+
+	/**
+	 * Adds count to the count of key, inserting key if it is not in the tree.
+	 *
+	 * @param key   The key to insert.
+	 * @param count The amount to add to the count of key, not negative.
+	 */
+	public void insert(final T key, final int count) {
+		this.lock.lock();
+
+		try {
+			this.tree.add(new CountedData<T>(key), count);
+		} finally {
+			this.lock.unlock();
+		}
+		return;
+	}
+
+	/**
+	 * Returns copies of the data from lo to hi inclusive, in order.
+	 *
+	 * @param lo The smallest key to return.
+	 * @param hi The largest key to return.
+	 * @return The data in the range.
+	 */
+	public ArrayList<CountedData<T>> range(final T lo, final T hi) {
+		final ArrayList<CountedData<T>> data = new ArrayList<>();
+		this.lock.lock();
+
+		try {
+			final Iterator<CountedData<T>> iterator = this.tree.range(new CountedData<T>(lo),
+					new CountedData<T>(hi));
+
+			while (iterator.hasNext()) {
+				data.add(new CountedData<T>(iterator.next()));
+			}
+		} finally {
+			this.lock.unlock();
+		}
+		return data;
+	}
+
+	/**
+	 * Retrieves a copy of the data matching key, in a batch with any other
+	 * retrievals waiting for the lock.
+	 *
+	 * @param key The key to look for.
+	 * @return A copy of the data that matches key, null if key is not in the tree.
+	 */
+	public CountedData<T> retrieve(final T key) {
+		final Lookup<T> lookup = new Lookup<T>(new CountedData<T>(key));
+		this.pending.add(lookup);
+		this.lock.lock();
+
+		try {
+			while (!lookup.done) {
+				this.drain();
+			}
+		} finally {
+			this.lock.unlock();
+		}
+		return lookup.result;
+	}
+
+	/**
+	 * Starts accepting requests on the loopback interface.
+	 *
+	 * @param port The port to listen on, 0 for any free port.
+	 * @return The address the server listens on.
+	 * @throws IOException if the port cannot be bound.
+	 * @throws IllegalStateException if the server is already started.
+	 */
+	public InetSocketAddress start(final int port) throws IOException {
+
+		if (this.server != null) {
+			throw new IllegalStateException("TreeServer is already started");
+		}
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+		this.executor = newExecutor();
+		this.server.setExecutor(this.executor);
+		this.server.createContext("/insert", exchange -> this.handle(exchange, "POST", parameters -> {
+			final int count = parameters.containsKey("count") ? Integer.parseInt(parameters.get("count")) : 1;
+
+			if (count < 0) {
+				throw new IllegalArgumentException("count must not be negative");
+			}
+			this.insert(this.parser.apply(this.required(parameters, "key")), count);
+			return "";
+		}));
+		this.server.createContext("/retrieve", exchange -> this.handle(exchange, "GET", parameters -> {
+			final CountedData<T> data = this.retrieve(this.parser.apply(this.required(parameters, "key")));
+			return data != null ? write(List.of(data)) : null;
+		}));
+		this.server.createContext("/topk", exchange -> this.handle(exchange, "GET",
+				parameters -> write(this.topK(Integer.parseInt(this.required(parameters, "k"))))));
+		this.server.createContext("/range", exchange -> this.handle(exchange, "GET",
+				parameters -> write(this.range(this.parser.apply(this.required(parameters, "lo")),
+						this.parser.apply(this.required(parameters, "hi"))))));
+		this.server.start();
+		return this.server.getAddress();
+	}
+
+	/**
+	 * Stops accepting requests, closes the connections, and stops the threads
+	 * that run requests. Does nothing if the server is not started.
+	 */
+	public void stop() {
+
+		if (this.server != null) {
+			this.server.stop(0);
+			this.executor.shutdown();
+			this.server = null;
+			this.executor = null;
+		}
+		return;
+	}
+
+	/**
+	 * Returns copies of the k data with the greatest counts.
+	 *
+	 * @param k The number of data wanted.
+	 * @return The k data with the greatest counts, or all of the data if there are
+	 *         fewer than k, in order of decreasing count.
+	 */
+	public ArrayList<CountedData<T>> topK(final int k) {
+		final ArrayList<CountedData<T>> data = new ArrayList<>();
+		this.lock.lock();
+
+		try {
+			for (final CountedData<T> item : this.tree.topKAux(k)) {
+				data.add(new CountedData<T>(item));
+			}
+		} finally {
+			this.lock.unlock();
+		}
+		return data;
+	}
+}
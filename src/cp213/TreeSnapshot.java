@@ -0,0 +1,640 @@
+package cp213;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Writes trees of TreeNodes to channels and reads them back with the same
+ * shape, in a compact binary form. After a header, the nodes follow in
+ * preorder, each as its key, encoded by a KeyCodec, then a varint holding its
+ * count shifted left by 2 with the presence of its left and right children in
+ * the low bits. A preorder that marks which children are present fixes the
+ * shape of the tree, so reading makes no comparisons and no rotations: the
+ * nodes are linked where they stood, and then their heights, sizes and count
+ * sums are computed from the bottom up.
+ *
+ * Indexes with no tree shape write their data in the sorted layout instead:
+ * each key followed by a varint of its count alone, in increasing order of key.
+ * Either layout can be read as a tree or as sorted data; a sorted snapshot read
+ * as a tree is built in the shape the reading tree gives it.
+ *
+ * The header is the magic number, the format version, the layout, the width
+ * of the encoded keys and the number of nodes as a varint. Neither writing nor
+ * reading recurses, so the height of a tree is not limited by the stack.
+ *
+ * The public loads and saves of BST open their stream or file here, and pass
+ * the channel to the tree's own load or save, which subclasses override.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+final class TreeSnapshot {
+
+	/**
+	 * Creates the data of a node read from a snapshot.
+	 *
+	 * @param <T> The data type.
+	 */
+	@FunctionalInterface
+	interface DataFactory<T extends Comparable<T>> {
+
+		/**
+		 * Returns new data holding key with a count of count.
+		 *
+		 * @param key   The key.
+		 * @param count The count.
+		 * @return The data.
+		 */
+		CountedData<T> create(T key, int count);
+	}
+
+	/**
+	 * Reads the count of the data of a node written to a snapshot.
+	 *
+	 * @param <T> The data type.
+	 */
+	@FunctionalInterface
+	interface CountReader<T extends Comparable<T>> {
+
+		/**
+		 * Returns the count of data to write.
+		 *
+		 * @param data The data.
+		 * @return Its count.
+		 */
+		int count(CountedData<T> data);
+	}
+
+	/**
+	 * Builds a tree of data read from a sorted snapshot.
+	 *
+	 * @param <T> The data type.
+	 */
+	@FunctionalInterface
+	interface TreeFactory<T extends Comparable<T>> {
+
+		/**
+		 * Returns the root of a tree of sorted.
+		 *
+		 * @param sorted The data in strictly increasing order.
+		 * @return The root of the tree, null if sorted is empty. The heights, sizes
+		 *         and count sums of its nodes are up to date.
+		 */
+		TreeNode<T> create(CountedData<T>[] sorted);
+	}
+
+	/**
+	 * The layout and size given by the header of a snapshot.
+	 */
+	private static final class Header {
+
+		/**
+		 * The number of nodes.
+		 */
+		private final int count;
+		/**
+		 * SHAPE or SORTED.
+		 */
+		private final byte layout;
+
+		/**
+		 * Creates a header.
+		 *
+		 * @param layout SHAPE or SORTED.
+		 * @param count  The number of nodes.
+		 */
+		private Header(final byte layout, final int count) {
+			this.layout = layout;
+			this.count = count;
+		}
+	}
+
+	/**
+	 * Size of the buffer between a tree and a channel.
+	 */
+	private static final int BUFFER = 1 << 16;
+	/**
+	 * Flag of a node with a left child.
+	 */
+	private static final int LEFT = 2;
+	/**
+	 * Most nodes allocated for before they are read. The header count is not
+	 * trusted beyond this: the arrays grow as the nodes arrive.
+	 */
+	private static final int INITIAL = 1 << 12;
+	/**
+	 * The first bytes of every snapshot: "CPTS".
+	 */
+	private static final int MAGIC = 0x43505453;
+	/**
+	 * Most bytes of a varint.
+	 */
+	private static final int MAX_VARINT = 10;
+	/**
+	 * Flag of a node with a right child.
+	 */
+	private static final int RIGHT = 1;
+	/**
+	 * Layout of a tree in preorder with child flags.
+	 */
+	private static final byte SHAPE = 0;
+	/**
+	 * Layout of data in increasing order of key, with counts alone.
+	 */
+	private static final byte SORTED = 1;
+	/**
+	 * The format version written.
+	 */
+	private static final byte VERSION = 1;
+
+	/**
+	 * Not instantiable.
+	 */
+	private TreeSnapshot() {
+	}
+
+	/**
+	 * Makes at least needed bytes readable in buffer, reading more from channel
+	 * if there are fewer.
+	 *
+	 * @param channel The channel to read from.
+	 * @param buffer  The buffer, ready to be read.
+	 * @param needed  The number of bytes needed, not more than the capacity.
+	 * @return true if needed bytes are readable, false if the channel ended
+	 *         first.
+	 * @throws IOException if the channel cannot be read.
+	 */
+	private static boolean fill(final ReadableByteChannel channel, final ByteBuffer buffer, final int needed)
+			throws IOException {
+		boolean open = true;
+
+		if (buffer.remaining() < needed) {
+			buffer.compact();
+
+			while (open && buffer.position() < needed) {
+				open = channel.read(buffer) >= 0;
+			}
+			buffer.flip();
+		}
+		return buffer.remaining() >= needed;
+	}
+
+	/**
+	 * Writes what buffer holds to channel and empties it.
+	 *
+	 * @param channel The channel to write to.
+	 * @param buffer  The buffer, ready to be filled.
+	 * @throws IOException if the channel cannot be written.
+	 */
+	private static void flush(final WritableByteChannel channel, final ByteBuffer buffer) throws IOException {
+		buffer.flip();
+
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+		return;
+	}
+
+	/**
+	 * Reads a varint: 7 bits a byte, low bits first, the high bit of every byte
+	 * but the last set.
+	 *
+	 * @param buffer A buffer holding the whole varint.
+	 * @return The value.
+	 * @throws EOFException             if the buffer ends within the varint.
+	 * @throws StreamCorruptedException if the varint is longer than MAX_VARINT
+	 *                                  bytes.
+	 */
+	private static long getVarint(final ByteBuffer buffer) throws EOFException, StreamCorruptedException {
+		long value = 0;
+		int shift = 0;
+		byte b = 0;
+
+		do {
+			if (shift >= 7 * MAX_VARINT) {
+				throw new StreamCorruptedException("varint too long");
+			}
+			if (!buffer.hasRemaining()) {
+				throw new EOFException("snapshot truncated");
+			}
+			b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+
+	/**
+	 * Writes a varint.
+	 *
+	 * @param buffer The buffer, with room for MAX_VARINT bytes.
+	 * @param value  The value, taken as unsigned.
+	 */
+	private static void putVarint(final ByteBuffer buffer, long value) {
+
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte) (value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+		return;
+	}
+
+	/**
+	 * Reads and checks the header of a snapshot.
+	 *
+	 * @param channel The channel to read from.
+	 * @param buffer  The buffer, ready to be read.
+	 * @param width   The width of the keys of the codec that will read it.
+	 * @return The header.
+	 * @throws IOException if the channel cannot be read, ends early, or does not
+	 *                     hold a snapshot written with a codec of width.
+	 */
+	private static Header getHeader(final ReadableByteChannel channel, final ByteBuffer buffer, final int width)
+			throws IOException {
+
+		if (!fill(channel, buffer, 7)) {
+			throw new EOFException("snapshot header truncated");
+		}
+		if (buffer.getInt() != MAGIC) {
+			throw new StreamCorruptedException("not a tree snapshot");
+		}
+		final byte version = buffer.get();
+
+		if (version != VERSION) {
+			throw new StreamCorruptedException("unknown snapshot version " + version);
+		}
+		final byte layout = buffer.get();
+
+		if (layout != SHAPE && layout != SORTED) {
+			throw new StreamCorruptedException("unknown snapshot layout " + layout);
+		}
+		final int written = buffer.get() & 0xFF;
+
+		if (written != width) {
+			throw new StreamCorruptedException("snapshot keys are " + written + " bytes, codec keys " + width);
+		}
+		fill(channel, buffer, MAX_VARINT);
+		final long count = getVarint(buffer);
+
+		if (count < 0 || count > Integer.MAX_VALUE - 8) {
+			throw new StreamCorruptedException("snapshot too large: " + count + " nodes");
+		}
+		return new Header(layout, (int) count);
+	}
+
+	/**
+	 * Reads the nodes of a snapshot in the sorted layout.
+	 *
+	 * @param <T>     The data type.
+	 * @param channel The channel to read from.
+	 * @param buffer  The buffer, ready to be read.
+	 * @param codec   Decodes the keys.
+	 * @param factory Creates the data of each node.
+	 * @param count   The number of nodes given by the header.
+	 * @return The data in strictly increasing order.
+	 * @throws IOException if the channel cannot be read or ends early, or the keys
+	 *                     are not in strictly increasing order.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T extends Comparable<T>> CountedData<T>[] getSorted(final ReadableByteChannel channel,
+			final ByteBuffer buffer, final KeyCodec<T> codec, final DataFactory<T> factory, final int count)
+			throws IOException {
+		final int width = codec.width();
+		CountedData<T>[] data = (CountedData<T>[]) new CountedData<?>[Math.min(count, INITIAL)];
+		final byte[] array = buffer.array();
+
+		for (int i = 0; i < count; i++) {
+			if (!fill(channel, buffer, width + MAX_VARINT) && buffer.remaining() < width + 1) {
+				throw new EOFException("snapshot truncated after " + i + " of " + count + " nodes");
+			}
+			if (i == data.length) {
+				data = Arrays.copyOf(data, (int) Math.min(count, 2L * i));
+			}
+			final T key = codec.decode(array, buffer.arrayOffset() + buffer.position());
+			buffer.position(buffer.position() + width);
+			data[i] = factory.create(key, (int) getVarint(buffer));
+
+			if (i > 0 && data[i - 1].compareTo(data[i]) >= 0) {
+				throw new StreamCorruptedException("snapshot node " + i + " is out of order");
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Reads the nodes of a snapshot in the tree layout and links them.
+	 *
+	 * @param <T>     The data type.
+	 * @param channel The channel to read from.
+	 * @param buffer  The buffer, ready to be read.
+	 * @param codec   Decodes the keys.
+	 * @param factory Creates the data of each node.
+	 * @param count   The number of nodes given by the header.
+	 * @return The root of the tree, null if it is empty. The heights, sizes and
+	 *         count sums of its nodes are up to date.
+	 * @throws IOException if the channel cannot be read or ends early, or the
+	 *                     nodes do not form a tree.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T extends Comparable<T>> TreeNode<T> getTree(final ReadableByteChannel channel,
+			final ByteBuffer buffer, final KeyCodec<T> codec, final DataFactory<T> factory, final int count)
+			throws IOException {
+		final int width = codec.width();
+		// The nodes in preorder, for computing heights in reverse, and those whose
+		// right child is still to come.
+		TreeNode<T>[] nodes = (TreeNode<T>[]) new TreeNode<?>[Math.min(count, INITIAL)];
+		TreeNode<T>[] waiting = (TreeNode<T>[]) new TreeNode<?>[16];
+		int waitingCount = 0;
+		TreeNode<T> parent = null;
+		final byte[] array = buffer.array();
+
+		for (int i = 0; i < count; i++) {
+			if (!fill(channel, buffer, width + MAX_VARINT) && buffer.remaining() < width + 1) {
+				throw new EOFException("snapshot truncated after " + i + " of " + count + " nodes");
+			}
+			if (i == nodes.length) {
+				nodes = Arrays.copyOf(nodes, (int) Math.min(count, 2L * i));
+			}
+			final T key = codec.decode(array, buffer.arrayOffset() + buffer.position());
+			buffer.position(buffer.position() + width);
+			final long entry = getVarint(buffer);
+			final TreeNode<T> node = new TreeNode<T>(factory.create(key, (int) (entry >>> 2)));
+			nodes[i] = node;
+
+			// The root has no parent. Any other node is the left child of the node
+			// before it, if that has one, else the right child of the nearest
+			// ancestor still waiting for it.
+			if (parent != null) {
+				parent.setLeft(node);
+			} else if (waitingCount > 0) {
+				waiting[--waitingCount].setRight(node);
+				waiting[waitingCount] = null;
+			} else if (i > 0) {
+				throw new StreamCorruptedException("snapshot node " + i + " has no parent");
+			}
+			if ((entry & RIGHT) != 0) {
+				if (waitingCount == waiting.length) {
+					waiting = Arrays.copyOf(waiting, waitingCount * 2);
+				}
+				waiting[waitingCount++] = node;
+			}
+			parent = (entry & LEFT) != 0 ? node : null;
+		}
+		if (parent != null || waitingCount > 0) {
+			throw new StreamCorruptedException("snapshot ends before the children of a node");
+		}
+		// Every node follows its ancestors in preorder.
+		for (int i = count - 1; i >= 0; i--) {
+			nodes[i].updateHeight();
+		}
+		return count > 0 ? nodes[0] : null;
+	}
+
+	/**
+	 * Writes the header of a snapshot.
+	 *
+	 * @param buffer The empty buffer.
+	 * @param layout SHAPE or SORTED.
+	 * @param width  The width of the encoded keys.
+	 * @param count  The number of nodes.
+	 */
+	private static void putHeader(final ByteBuffer buffer, final byte layout, final int width, final int count) {
+		buffer.putInt(MAGIC);
+		buffer.put(VERSION);
+		buffer.put(layout);
+		buffer.put((byte) width);
+		putVarint(buffer, count);
+		return;
+	}
+
+	/**
+	 * Replaces the contents of tree with the snapshot read from input. The stream
+	 * is read to the end of the snapshot, and not closed.
+	 *
+	 * @param <T>   The data type.
+	 * @param tree  The tree to load.
+	 * @param input The stream to read from.
+	 * @param codec Decodes the keys; must be the codec they were saved with.
+	 * @throws IOException if input cannot be read or does not hold a tree
+	 *                     snapshot. The tree is then unchanged.
+	 */
+	static <T extends Comparable<T>> void load(final BST<T> tree, final InputStream input, final KeyCodec<T> codec)
+			throws IOException {
+		tree.load(Channels.newChannel(input), codec);
+		return;
+	}
+
+	/**
+	 * Replaces the contents of tree with the snapshot in the file path.
+	 *
+	 * @param <T>   The data type.
+	 * @param tree  The tree to load.
+	 * @param path  The file to read.
+	 * @param codec Decodes the keys; must be the codec they were saved with.
+	 * @throws IOException if the file cannot be read or does not hold a tree
+	 *                     snapshot. The tree is then unchanged.
+	 */
+	static <T extends Comparable<T>> void load(final BST<T> tree, final Path path, final KeyCodec<T> codec)
+			throws IOException {
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			tree.load(channel, codec);
+		}
+		return;
+	}
+
+	/**
+	 * Reads a snapshot written by {@code write} or {@code writeSorted} as a tree.
+	 * The channel is not closed.
+	 *
+	 * @param <T>     The data type.
+	 * @param channel The channel to read from.
+	 * @param codec   Decodes the keys; must be the codec they were written with.
+	 * @param factory Creates the data of each node.
+	 * @param builder Builds the tree of a sorted snapshot, so that the tree has
+	 *                the shape its reader requires.
+	 * @return The root of the tree, null if it is empty: the tree written, or the
+	 *         tree builder makes of sorted data. The heights, sizes and count sums
+	 *         of its nodes are up to date.
+	 * @throws IOException if the channel cannot be read, ends early, or does not
+	 *                     hold a snapshot written with a codec of the same width.
+	 */
+	static <T extends Comparable<T>> TreeNode<T> read(final ReadableByteChannel channel, final KeyCodec<T> codec,
+			final DataFactory<T> factory, final TreeFactory<T> builder) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(Math.max(BUFFER, codec.width() + MAX_VARINT)).flip();
+		final Header header = getHeader(channel, buffer, codec.width());
+		TreeNode<T> root = null;
+
+		if (header.layout == SHAPE) {
+			root = getTree(channel, buffer, codec, factory, header.count);
+		} else {
+			root = builder.create(getSorted(channel, buffer, codec, factory, header.count));
+		}
+		return root;
+	}
+
+	/**
+	 * Reads a snapshot written by {@code write} or {@code writeSorted} as data in
+	 * order. The channel is not closed.
+	 *
+	 * @param <T>     The data type.
+	 * @param channel The channel to read from.
+	 * @param codec   Decodes the keys; must be the codec they were written with.
+	 * @param factory Creates the data of each node.
+	 * @return The data in strictly increasing order.
+	 * @throws IOException if the channel cannot be read, ends early, or does not
+	 *                     hold a snapshot written with a codec of the same width.
+	 */
+	static <T extends Comparable<T>> ArrayList<CountedData<T>> readSorted(final ReadableByteChannel channel,
+			final KeyCodec<T> codec, final DataFactory<T> factory) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(Math.max(BUFFER, codec.width() + MAX_VARINT)).flip();
+		final Header header = getHeader(channel, buffer, codec.width());
+		final ArrayList<CountedData<T>> sorted = new ArrayList<>(Math.min(header.count, INITIAL));
+
+		if (header.layout == SORTED) {
+			sorted.addAll(Arrays.asList(getSorted(channel, buffer, codec, factory, header.count)));
+		} else {
+			final TreeIterator<T> iterator = new TreeIterator.InOrder<T>(
+					getTree(channel, buffer, codec, factory, header.count));
+
+			while (iterator.hasNext()) {
+				final CountedData<T> data = iterator.next();
+
+				if (!sorted.isEmpty() && sorted.get(sorted.size() - 1).compareTo(data) >= 0) {
+					throw new StreamCorruptedException("snapshot node " + sorted.size() + " is out of order");
+				}
+				sorted.add(data);
+			}
+		}
+		return sorted;
+	}
+
+	/**
+	 * Writes a snapshot of tree to output. The stream is not closed.
+	 *
+	 * @param <T>    The data type.
+	 * @param tree   The tree to save.
+	 * @param output The stream to write to.
+	 * @param codec  Encodes the keys.
+	 * @throws IOException if output cannot be written.
+	 */
+	static <T extends Comparable<T>> void save(final BST<T> tree, final OutputStream output,
+			final KeyCodec<T> codec) throws IOException {
+		tree.save(Channels.newChannel(output), codec);
+		return;
+	}
+
+	/**
+	 * Writes a snapshot of tree to the file path, replacing the file if it exists.
+	 *
+	 * @param <T>   The data type.
+	 * @param tree  The tree to save.
+	 * @param path  The file to write.
+	 * @param codec Encodes the keys.
+	 * @throws IOException if the file cannot be written.
+	 */
+	static <T extends Comparable<T>> void save(final BST<T> tree, final Path path, final KeyCodec<T> codec)
+			throws IOException {
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			tree.save(channel, codec);
+		}
+		return;
+	}
+
+	/**
+	 * Writes the tree rooted at root. The channel is not closed.
+	 *
+	 * @param <T>     The data type.
+	 * @param root    The root of the tree, may be null. The sizes of the nodes must
+	 *                be up to date.
+	 * @param codec   Encodes the keys.
+	 * @param counts  Reads the count of each node.
+	 * @param channel The channel to write to.
+	 * @throws IOException if the channel cannot be written.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends Comparable<T>> void write(final TreeNode<T> root, final KeyCodec<T> codec,
+			final CountReader<T> counts, final WritableByteChannel channel) throws IOException {
+		final int width = codec.width();
+		final ByteBuffer buffer = ByteBuffer.allocate(Math.max(BUFFER, width + MAX_VARINT));
+		final byte[] array = buffer.array();
+		putHeader(buffer, SHAPE, width, root != null ? root.getSize() : 0);
+		// The right children still to write, at most one for each ancestor.
+		TreeNode<T>[] stack = (TreeNode<T>[]) new TreeNode<?>[16];
+		int depth = 0;
+		TreeNode<T> node = root;
+
+		while (node != null) {
+			if (buffer.remaining() < width + MAX_VARINT) {
+				flush(channel, buffer);
+			}
+			final TreeNode<T> left = node.getLeft();
+			final TreeNode<T> right = node.getRight();
+			codec.encode(node.getData().getData(), array, buffer.arrayOffset() + buffer.position());
+			buffer.position(buffer.position() + width);
+			putVarint(buffer, (counts.count(node.getData()) & 0xFFFFFFFFL) << 2 | (left != null ? LEFT : 0)
+					| (right != null ? RIGHT : 0));
+
+			if (right != null) {
+				if (depth == stack.length) {
+					stack = Arrays.copyOf(stack, depth * 2);
+				}
+				stack[depth++] = right;
+			}
+			if (left != null) {
+				node = left;
+			} else {
+				node = depth > 0 ? stack[--depth] : null;
+			}
+		}
+		flush(channel, buffer);
+		return;
+	}
+
+	/**
+	 * Writes data in the sorted layout, for an index with no tree shape. The
+	 * channel is not closed.
+	 *
+	 * @param <T>     The data type.
+	 * @param sorted  The data in strictly increasing order, with the counts to
+	 *                write.
+	 * @param codec   Encodes the keys.
+	 * @param channel The channel to write to.
+	 * @throws IOException if the channel cannot be written.
+	 */
+	static <T extends Comparable<T>> void writeSorted(final Collection<CountedData<T>> sorted,
+			final KeyCodec<T> codec, final WritableByteChannel channel) throws IOException {
+		final int width = codec.width();
+		final ByteBuffer buffer = ByteBuffer.allocate(Math.max(BUFFER, width + MAX_VARINT));
+		final byte[] array = buffer.array();
+		putHeader(buffer, SORTED, width, sorted.size());
+
+		for (final CountedData<T> data : sorted) {
+			if (buffer.remaining() < width + MAX_VARINT) {
+				flush(channel, buffer);
+			}
+			codec.encode(data.getData(), array, buffer.arrayOffset() + buffer.position());
+			buffer.position(buffer.position() + width);
+			putVarint(buffer, data.getCount() & 0xFFFFFFFFL);
+		}
+		flush(channel, buffer);
+		return;
+	}
+}
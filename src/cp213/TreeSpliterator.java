@@ -0,0 +1,145 @@
+package cp213;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * An in-order Spliterator over a linked tree of TreeNodes. The traversal state
+ * is a stack in which every entry stands for its node followed by the node's
+ * right subtree, so a split hands the leading entries to a new Spliterator
+ * without visiting them. The data returned is the data stored in the tree, not
+ * a copy.
+ *
+ * Not thread safe as it assumes contents of the tree are not changed by an
+ * external thread during the traversal.
+ *
+ * @author David Brown
+ * @version 2024-10-15
+ */
+final class TreeSpliterator<T extends Comparable<T>> implements Spliterator<CountedData<T>> {
+
+	// Attributes
+	private TreeNode<T> cutoff = null; // bottom entry whose right subtree belongs to another Spliterator
+	private long estimate = 0; // estimated number of data remaining
+	private ArrayDeque<TreeNode<T>> stack = new ArrayDeque<>(); // the next node is at the top
+
+	/**
+	 * Creates a Spliterator over a subtree.
+	 *
+	 * @param root     The root of the subtree, may be null.
+	 * @param estimate The number of nodes in the subtree.
+	 */
+	TreeSpliterator(final TreeNode<T> root, final long estimate) {
+		this.estimate = estimate;
+		this.pushLeft(root);
+	}
+
+	/**
+	 * Creates a Spliterator over the entries split off another Spliterator.
+	 *
+	 * @param stack    The entries of the new Spliterator.
+	 * @param cutoff   The entry whose right subtree is excluded, may be null.
+	 * @param estimate The estimated number of data in the entries.
+	 */
+	private TreeSpliterator(final ArrayDeque<TreeNode<T>> stack, final TreeNode<T> cutoff, final long estimate) {
+		this.stack = stack;
+		this.cutoff = cutoff;
+		this.estimate = estimate;
+	}
+
+	/**
+	 * Pushes node and its chain of left children.
+	 *
+	 * @param node The top of the chain, may be null.
+	 */
+	private void pushLeft(TreeNode<T> node) {
+
+		while (node != null) {
+			this.stack.push(node);
+			node = node.getLeft();
+		}
+		return;
+	}
+
+	@Override
+	public int characteristics() {
+		return Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL;
+	}
+
+	@Override
+	public long estimateSize() {
+		return this.estimate;
+	}
+
+	@Override
+	public void forEachRemaining(final Consumer<? super CountedData<T>> action) {
+
+		while (this.tryAdvance(action)) {
+		}
+		return;
+	}
+
+	/**
+	 * Data is sorted by its natural order.
+	 *
+	 * @return null
+	 */
+	@Override
+	public Comparator<? super CountedData<T>> getComparator() {
+		return null;
+	}
+
+	@Override
+	public boolean tryAdvance(final Consumer<? super CountedData<T>> action) {
+
+		if (this.stack.isEmpty()) {
+			return false;
+		}
+		final TreeNode<T> node = this.stack.pop();
+
+		if (node != this.cutoff) {
+			this.pushLeft(node.getRight());
+		}
+		if (this.estimate > 0) {
+			this.estimate--;
+		}
+		action.accept(node.getData());
+		return true;
+	}
+
+	/**
+	 * Splits off the leading part of the remaining data. With two or more stack
+	 * entries, every entry except the bottom one is handed over. With a single
+	 * entry its node is handed over and this Spliterator keeps the node's right
+	 * subtree.
+	 *
+	 * @return A Spliterator over the leading data, null if this cannot be split.
+	 */
+	@Override
+	public Spliterator<CountedData<T>> trySplit() {
+		Spliterator<CountedData<T>> prefix = null;
+
+		if (this.stack.size() >= 2) {
+			final ArrayDeque<TreeNode<T>> leading = this.stack;
+			this.stack = new ArrayDeque<>();
+			this.stack.push(leading.removeLast());
+			final long half = this.estimate >>> 1;
+			this.estimate -= half;
+			prefix = new TreeSpliterator<T>(leading, null, half);
+		} else if (this.stack.size() == 1) {
+			final TreeNode<T> node = this.stack.peek();
+
+			if (node != this.cutoff && node.getRight() != null) {
+				this.stack.pop();
+				this.pushLeft(node.getRight());
+				final ArrayDeque<TreeNode<T>> leading = new ArrayDeque<>();
+				leading.push(node);
+				this.estimate = Math.max(this.estimate - 1, 1);
+				prefix = new TreeSpliterator<T>(leading, node, 1);
+			}
+		}
+		return prefix;
+	}
+}